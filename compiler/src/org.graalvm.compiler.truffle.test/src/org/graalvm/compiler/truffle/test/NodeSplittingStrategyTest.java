@@ -35,6 +35,7 @@ import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.RootCallTarget;
 import com.oracle.truffle.api.dsl.Cached;
 import com.oracle.truffle.api.dsl.Fallback;
+import com.oracle.truffle.api.dsl.GenerateCompactSpecialize;
 import com.oracle.truffle.api.dsl.NodeChild;
 import com.oracle.truffle.api.dsl.ReportPolymorphism;
 import com.oracle.truffle.api.dsl.Specialization;
@@ -106,6 +107,25 @@ public class NodeSplittingStrategyTest extends AbstractSplittingStrategyTest {
         }
     }
 
+    @NodeChild
+    @GenerateCompactSpecialize
+    abstract static class TurnsPolymorphicOnStringCompactNode extends SplittingTestNode {
+        @Specialization
+        static int doInt(int value) {
+            return value;
+        }
+
+        @Specialization
+        static String doString(String value) {
+            return value;
+        }
+
+        @Fallback
+        static int doFallback(@SuppressWarnings("unused") VirtualFrame frame, @SuppressWarnings("unused") Object value) {
+            return 0;
+        }
+    }
+
     @NodeChild
     @ReportPolymorphism
     abstract static class HasInlineCacheNode extends SplittingTestNode {
@@ -152,6 +172,13 @@ public class NodeSplittingStrategyTest extends AbstractSplittingStrategyTest {
         testSplitsDirectCallsHelper(callTarget, new Object[]{1}, new Object[]{0});
     }
 
+    @Test
+    public void testSplitsDirectCallsWithCompactSpecialize() {
+        OptimizedCallTarget callTarget = (OptimizedCallTarget) runtime.createCallTarget(
+                        new SplittingTestRootNode(NodeSplittingStrategyTestFactory.TurnsPolymorphicOnStringCompactNodeGen.create(new ReturnsFirstArgumentNode())));
+        testSplitsDirectCallsHelper(callTarget, new Object[]{1}, new Object[]{"a"});
+    }
+
     @Test
     public void testDoesNotSplitsDirectCalls() {
         OptimizedCallTarget callTarget = (OptimizedCallTarget) runtime.createCallTarget(new SplittingTestRootNode(
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package micro.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Benchmarks cost of synchronization that is contended, recursive, or on objects without a
+ * dedicated monitor field in Native Image (like arrays and strings).
+ */
+public class ContendedSyncBenchmark extends BenchmarkBase {
+
+    public static class Counter {
+        public int count;
+
+        public synchronized int increment() {
+            return ++count;
+        }
+
+        public synchronized int incrementRecursive() {
+            return increment();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedState {
+        Counter counter = new Counter();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        Counter counter = new Counter();
+        int[] array = new int[1];
+        String string = new String("lock");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int contended(SharedState state) {
+        return state.counter.increment();
+    }
+
+    @Benchmark
+    public int recursive(ThreadState state) {
+        return state.counter.incrementRecursive();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int uncontendedArray(ThreadState state) {
+        int[] array = state.array;
+        synchronized (array) {
+            return ++array[0];
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int uncontendedString(ThreadState state) {
+        synchronized (state.string) {
+            return state.string.length();
+        }
+    }
+}
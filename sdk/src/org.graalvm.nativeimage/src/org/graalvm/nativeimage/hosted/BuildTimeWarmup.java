@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.graalvm.nativeimage.hosted;
+
+import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.Platform;
+import org.graalvm.nativeimage.Platforms;
+import org.graalvm.nativeimage.impl.BuildTimeWarmupSupport;
+
+/**
+ * This class provides methods that can be called during native image generation to run
+ * application warmup code at image build time. Applications often spend their first seconds at
+ * run time filling caches, e.g., with parsed configuration files, lookup tables, or compiled
+ * regular expressions. If such a cache is stored in a static field, it can instead be filled during
+ * image building: all objects reachable from the static fields of the registered classes are then
+ * part of the image heap, and are available immediately when the image starts.
+ * <p>
+ * The registered classes are initialized at image build time, see
+ * {@link RuntimeClassInitialization#initializeAtBuildTime(Class...)}. The warmup code is executed
+ * in {@link Feature#beforeAnalysis}, i.e., after all features have been set up and before the
+ * static analysis starts. Warmup code registered by different features runs in the order of
+ * registration. It is unspecified whether it runs before or after the
+ * {@link Feature#beforeAnalysis} methods of the registering features. The same restrictions as
+ * for all other objects of the image heap apply to the objects created by the warmup code, e.g.,
+ * the image heap must not contain threads, and the warmup code must not initialize classes that
+ * are registered for initialization at run time. Violations are reported as errors during image
+ * building.
+ * <p>
+ * The warmup code runs in the image generator, so it sees the file system, system properties, and
+ * environment of the build machine. It is up to the user to ensure that the cached data is also
+ * valid at run time.
+ *
+ * @since 21.0
+ */
+@Platforms(Platform.HOSTED_ONLY.class)
+public final class BuildTimeWarmup {
+
+    /**
+     * Registers warmup code that fills caches in the static fields of the given classes at image
+     * build time. Must be called before or during {@link Feature#duringSetup}.
+     *
+     * @param action the warmup code, executed once during image building
+     * @param holders the classes whose static fields hold the results of the warmup code
+     *
+     * @since 21.0
+     */
+    public static void register(Runnable action, Class<?>... holders) {
+        StackTraceElement[] stacktrace = Thread.currentThread().getStackTrace();
+        ImageSingletons.lookup(BuildTimeWarmupSupport.class).register(action, holders, MESSAGE + getCaller(stacktrace));
+    }
+
+    private static String getCaller(StackTraceElement[] stackTrace) {
+        StackTraceElement e = stackTrace[2];
+        return e.getClassName() + "." + e.getMethodName();
+    }
+
+    private static final String MESSAGE = "build-time warmup registered from ";
+
+    private BuildTimeWarmup() {
+    }
+}
@@ -453,6 +453,14 @@ def svm_gate_body(args, tasks):
             maven_plugin_install([])
             maven_plugin_test([])
 
+    with Task('pointsto unittests', tasks, tags=[GraalTags.test]) as t:
+        if t:
+            mx_unittest.unittest(['com.oracle.graal.pointsto.typestate'])
+
+    with Task('hosted unittests', tasks, tags=[GraalTags.test]) as t:
+        if t:
+            mx_unittest.unittest(['com.oracle.svm.hosted.pgo'])
+
 
 def native_unittests_task():
     if not svm_java8():
@@ -465,6 +473,55 @@ def native_unittests_task():
     # We need the -H:+EnableAllSecurityServices for com.oracle.svm.test.SecurityServiceTest
     native_unittest(['--build-args', _native_unittest_features, '-H:+EnableAllSecurityServices'])
 
+    # Heap dumps require VM inspection support
+    native_unittest(['com.oracle.svm.test.HeapDumpTest', '--build-args', '-H:+AllowVMInspection'])
+
+    if not svm_java8():
+        # Read the completed chunks of an event recording while it continues
+        recording = join(tempfile.mkdtemp(), 'recording.jfr')
+        try:
+            native_unittest(['com.oracle.svm.test.jdk11.EventRecordingTest', '--build-args', '-H:+AllowEventRecording',
+                             '--run-args', '-XX:EventRecordingFile=' + recording, '-XX:EventRecordingMaxChunkSize=1',
+                             '-XX:EventRecordingFlushInterval=100', '-Dcom.oracle.svm.test.jdk11.EventRecordingTest.file=' + recording, '--verbose'])
+        finally:
+            remove_tree(dirname(recording))
+
+    if not mx.is_windows():
+        # Sample the test that consumes CPU time and check that its method shows up in the profile
+        profile_dir = tempfile.mkdtemp()
+        try:
+            profile = join(profile_dir, 'profile.txt')
+            native_unittest(['com.oracle.svm.test.ExecutionSamplerTest', '--build-args', '-H:+AllowExecutionSampling',
+                             '--run-args', '-XX:ExecutionSamplingFile=' + profile, '-XX:ExecutionSamplingInterval=5',
+                             '-XX:+PrintExecutionSamplingStatistics', '--verbose'])
+            if not exists(profile):
+                mx.abort('Execution sampling did not write ' + profile)
+            with open(profile) as f:
+                if not any('ExecutionSamplerTest.spin' in line for line in f):
+                    mx.abort('No samples of ExecutionSamplerTest.spin in ' + profile)
+        finally:
+            remove_tree(profile_dir)
+
+    # Group the image heap objects that are written at run time, and print the resulting page sharing and resident set size
+    native_unittest(['com.oracle.svm.test.ImageHeapLayoutTest',
+                     '--build-args', '--features=com.oracle.svm.test.ImageHeapLayoutTest$TestFeature', '-H:+GroupWrittenImageHeapObjects',
+                     '--run-args', '-Dcom.oracle.svm.test.ImageHeapLayoutTest.grouped=true', '-XX:+PrintImageHeapSharing', '--verbose'])
+
+    # Run the garbage collector tests again with the collection policy that sizes the young generation
+    native_unittest(['com.oracle.svm.test.GarbageCollectorTest',
+                     '--build-args', '-H:InitialCollectionPolicy=com.oracle.svm.core.genscavenge.CollectionPolicy$Adaptive',
+                     '--run-args', '-XX:MaxGCPauseMillis=2', '--verbose'])
+
+    # And with survivor spaces and the adaptive tenuring threshold
+    native_unittest(['com.oracle.svm.test.GarbageCollectorTest',
+                     '--build-args', '-H:MaxSurvivorSpaces=4',
+                     '--run-args', '-XX:TargetSurvivorPercent=10', '--verbose'])
+
+    # And with complete collections that compact the old generation in place
+    native_unittest(['com.oracle.svm.test.GarbageCollectorTest',
+                     '--build-args', '-H:+VerifyHeap',
+                     '--run-args', '-XX:+CompactOldGeneration', '-XX:+CollectYoungGenerationSeparately', '--verbose'])
+
 
 def javac_image_command(javac_path):
     return [join(javac_path, 'javac'), "-proc:none", "-bootclasspath",
@@ -351,6 +351,32 @@ suite = {
             ],
             "workingSets": "SVM",
         },
+        "com.oracle.graal.pointsto.test": {
+            "subDir": "src",
+            "sourceDirs": ["src"],
+            "dependencies": [
+                "mx:JUNIT_TOOL",
+                "com.oracle.graal.pointsto",
+            ],
+            "checkstyle": "com.oracle.graal.pointsto",
+            "javaCompliance": "8+",
+            "workingSets": "SVM",
+            "spotbugs": "false",
+            "testProject": True,
+        },
+        "com.oracle.svm.hosted.test": {
+            "subDir": "src",
+            "sourceDirs": ["src"],
+            "dependencies": [
+                "mx:JUNIT_TOOL",
+                "com.oracle.svm.hosted",
+            ],
+            "checkstyle": "com.oracle.svm.hosted",
+            "javaCompliance": "8+",
+            "workingSets": "SVM",
+            "spotbugs": "false",
+            "testProject": True,
+        },
         "com.oracle.svm.hosted": {
             "subDir": "src",
             "sourceDirs": ["src"],
@@ -1180,6 +1206,32 @@ suite = {
           "testDistribution" : True,
         },
 
+        "POINTSTO_TESTS" : {
+          "subDir": "src",
+          "relpath" : True,
+          "dependencies" : [
+            "com.oracle.graal.pointsto.test",
+          ],
+          "distDependencies": [
+            "mx:JUNIT_TOOL",
+            "POINTSTO",
+          ],
+          "testDistribution" : True,
+        },
+
+        "SVM_HOSTED_TESTS" : {
+          "subDir": "src",
+          "relpath" : True,
+          "dependencies" : [
+            "com.oracle.svm.hosted.test",
+          ],
+          "distDependencies": [
+            "mx:JUNIT_TOOL",
+            "SVM",
+          ],
+          "testDistribution" : True,
+        },
+
         "POLYGLOT_NATIVE_API" : {
             "subDir": "src",
             "dependencies": [
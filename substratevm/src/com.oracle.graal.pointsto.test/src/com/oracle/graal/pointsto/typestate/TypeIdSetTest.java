@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.pointsto.typestate;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares {@link TypeIdSet} with {@link BitSet} on random sets of different shapes, so that both
+ * the sparse and the dense representation and the conversions between them are covered.
+ */
+public class TypeIdSetTest {
+
+    private static final int ITERATIONS = 5000;
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void randomOperations() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            BitSet a = randomBitSet();
+            BitSet b = random.nextBoolean() ? randomBitSet() : derivedBitSet(a);
+            TypeIdSet setA = TypeIdSet.fromBitSet(a);
+            TypeIdSet setB = TypeIdSet.fromBitSet(b);
+            String context = "a = " + a + ", b = " + b;
+
+            checkSet(context, a, setA);
+            checkSet(context, b, setB);
+
+            BitSet or = (BitSet) a.clone();
+            or.or(b);
+            checkSet(context + ", a | b", or, setA.or(setB));
+
+            BitSet and = (BitSet) a.clone();
+            and.and(b);
+            checkSet(context + ", a & b", and, setA.and(setB));
+
+            BitSet andNot = (BitSet) a.clone();
+            andNot.andNot(b);
+            checkSet(context + ", a & ~b", andNot, setA.andNot(setB));
+
+            Assert.assertEquals(context, a.intersects(b), setA.intersects(setB));
+            Assert.assertEquals(context, andNot.isEmpty(), setA.isSubsetOf(setB));
+
+            int id = randomId(a);
+            BitSet with = (BitSet) a.clone();
+            with.set(id);
+            checkSet(context + ", a + " + id, with, setA.with(id));
+            BitSet without = (BitSet) a.clone();
+            without.clear(id);
+            checkSet(context + ", a - " + id, without, setA.without(id));
+        }
+    }
+
+    @Test
+    public void unchangedOperandsAreShared() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            BitSet a = randomBitSet();
+            BitSet b = derivedBitSet(a);
+            b.and(a);
+            TypeIdSet setA = TypeIdSet.fromBitSet(a);
+            TypeIdSet subset = TypeIdSet.fromBitSet(b);
+
+            String context = "a = " + a + ", subset = " + b;
+            TypeIdSet or = setA.or(subset);
+            Assert.assertTrue(context, or == setA || (or == subset && a.equals(b)));
+            TypeIdSet and = setA.and(subset);
+            Assert.assertTrue(context, and == subset || (and == setA && a.equals(b)));
+            if (!a.isEmpty()) {
+                Assert.assertTrue(context, setA.with(a.nextSetBit(0)) == setA);
+            }
+        }
+    }
+
+    /** Checks all queries of {@code set} against {@code expected}. */
+    private void checkSet(String context, BitSet expected, TypeIdSet set) {
+        String message = context + ": expected " + expected + " but was " + set;
+        Assert.assertEquals(message, expected.cardinality(), set.cardinality());
+        Assert.assertEquals(message, expected.isEmpty(), set.isEmpty());
+        Assert.assertTrue(message, set.equalsBitSet(expected));
+        Assert.assertEquals(message, expected.toString(), set.toString());
+
+        /* The representation only depends on the content. */
+        TypeIdSet canonical = TypeIdSet.fromBitSet(expected);
+        Assert.assertEquals(message, canonical, set);
+        Assert.assertEquals(message, canonical.hashCode(), set.hashCode());
+        Assert.assertTrue(message, set.isSubsetOf(canonical) && canonical.isSubsetOf(set));
+        Assert.assertEquals(message, canonical.isEmpty(), set.isEmpty());
+
+        int bound = Math.max(expected.length(), 1) + 130;
+        for (int j = 0; j < 32; j++) {
+            int id = random.nextInt(bound);
+            Assert.assertEquals(message + ", contains " + id, expected.get(id), set.contains(id));
+            Assert.assertEquals(message + ", nextSetBit " + id, expected.nextSetBit(id), set.nextSetBit(id));
+        }
+    }
+
+    /** Returns a set of one of several shapes that favor either the sparse or the dense form. */
+    private BitSet randomBitSet() {
+        BitSet result = new BitSet();
+        switch (random.nextInt(5)) {
+            case 0:
+                /* Empty or a single id. */
+                if (random.nextBoolean()) {
+                    result.set(random.nextInt(10000));
+                }
+                break;
+            case 1:
+                /* Few ids spread over a wide range. */
+                fill(result, 0, 20000, random.nextInt(40));
+                break;
+            case 2:
+                /* A dense range starting at 0. */
+                fill(result, 0, 64 * (1 + random.nextInt(8)), random.nextInt(300));
+                break;
+            case 3:
+                /* A dense cluster far from 0. */
+                int start = random.nextInt(10000);
+                fill(result, start, start + 1 + random.nextInt(500), random.nextInt(400));
+                break;
+            default:
+                /* Several clusters. */
+                for (int i = random.nextInt(4); i >= 0; i--) {
+                    int clusterStart = random.nextInt(5000);
+                    fill(result, clusterStart, clusterStart + 1 + random.nextInt(200), random.nextInt(150));
+                }
+                break;
+        }
+        return result;
+    }
+
+    /** Returns a set that overlaps with {@code base}, so that operations have non-trivial results. */
+    private BitSet derivedBitSet(BitSet base) {
+        BitSet result = (BitSet) base.clone();
+        int changes = random.nextInt(20);
+        for (int i = 0; i < changes; i++) {
+            result.flip(randomId(base));
+        }
+        return result;
+    }
+
+    private void fill(BitSet bitSet, int from, int to, int count) {
+        for (int i = 0; i < count; i++) {
+            bitSet.set(from + random.nextInt(to - from));
+        }
+    }
+
+    /** Returns an id that is in {@code bitSet} or close to its range. */
+    private int randomId(BitSet bitSet) {
+        if (!bitSet.isEmpty() && random.nextBoolean()) {
+            int id = bitSet.nextSetBit(random.nextInt(bitSet.length()));
+            return id >= 0 ? id : bitSet.nextSetBit(0);
+        }
+        return random.nextInt(bitSet.length() + 130);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.pointsto;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.graalvm.compiler.debug.DebugContext;
+import org.graalvm.compiler.debug.DebugHandlersFactory;
+import org.graalvm.compiler.options.OptionValues;
+
+import com.oracle.graal.pointsto.BigBang.TypeFlowRunnable;
+import com.oracle.graal.pointsto.api.PointstoOptions;
+import com.oracle.graal.pointsto.flow.TypeFlow;
+
+/**
+ * Propagates type flow updates in batches instead of posting one executor task per flow, see
+ * {@link PointstoOptions#BatchTypeFlowUpdates}.
+ *
+ * A batch processes its flows in ascending order of their {@link TypeFlow#id() ids}. Flows are
+ * created while a method graph is built, mostly before the flows that use them, so this order
+ * approximates a topological order of the flow graph: a flow that is pending together with one of
+ * its inputs usually runs after the input and picks up its update in the same pass. Flows posted
+ * while a batch is running are collected in the batch instead of the executor. Since a flow is
+ * only posted if it is not already {@link TypeFlow#inQueue queued}, repeated updates of the same
+ * flow are coalesced until it runs. When a pass finishes, the batch continues with the collected
+ * flows and hands everything beyond {@link PointstoOptions#TypeFlowUpdateBatchSize} to the
+ * executor as new batches, so that other threads can take over the work.
+ */
+final class BatchedTypeFlowPropagation {
+
+    private static final Comparator<TypeFlow<?>> BY_ID = Comparator.comparingInt(TypeFlow::id);
+
+    private final BigBang bb;
+    private final int batchSize;
+    /** The flows posted while a batch runs in the current thread, or null. */
+    private final ThreadLocal<List<TypeFlow<?>>> pendingFlows = new ThreadLocal<>();
+
+    BatchedTypeFlowPropagation(BigBang bb) {
+        this.bb = bb;
+        this.batchSize = Math.max(1, PointstoOptions.TypeFlowUpdateBatchSize.getValue(bb.getOptions()));
+    }
+
+    /** Schedules an update of the flow, which must already be marked as queued. */
+    void post(TypeFlow<?> flow) {
+        assert flow.inQueue;
+        List<TypeFlow<?>> pending = pendingFlows.get();
+        if (pending != null) {
+            pending.add(flow);
+        } else {
+            List<TypeFlow<?>> flows = new ArrayList<>(1);
+            flows.add(flow);
+            postBatch(flows);
+        }
+    }
+
+    private void postBatch(List<TypeFlow<?>> flows) {
+        bb.typeFlowTasks.increment();
+        bb.getExecutor().execute(new Batch(flows));
+    }
+
+    private final class Batch implements TypeFlowRunnable {
+        private List<TypeFlow<?>> flows;
+        /** The flow that is currently updated, or the last one when the batch is completed. */
+        private volatile TypeFlow<?> currentFlow;
+
+        Batch(List<TypeFlow<?>> flows) {
+            this.flows = flows;
+            this.currentFlow = flows.get(0);
+        }
+
+        @Override
+        public void run(DebugContext ignored) {
+            /* With a sequential executor batches nest, so the outer list must be restored. */
+            List<TypeFlow<?>> outerPending = pendingFlows.get();
+            List<TypeFlow<?>> pending = new ArrayList<>();
+            pendingFlows.set(pending);
+            try {
+                List<TypeFlow<?>> work = flows;
+                flows = null;
+                while (!work.isEmpty()) {
+                    work.sort(BY_ID);
+                    for (TypeFlow<?> flow : work) {
+                        currentFlow = flow;
+                        bb.runFlowUpdate(flow);
+                    }
+                    work = split(pending);
+                    pending.clear();
+                }
+            } finally {
+                pendingFlows.set(outerPending);
+            }
+        }
+
+        /** Keeps at most one batch of the pending flows and posts the rest as new batches. */
+        private List<TypeFlow<?>> split(List<TypeFlow<?>> pending) {
+            int size = pending.size();
+            for (int start = batchSize; start < size; start += batchSize) {
+                postBatch(new ArrayList<>(pending.subList(start, Math.min(start + batchSize, size))));
+            }
+            return new ArrayList<>(pending.subList(0, Math.min(batchSize, size)));
+        }
+
+        @Override
+        public TypeFlow<?> getTypeFlow() {
+            return currentFlow;
+        }
+
+        @Override
+        public DebugContext getDebug(OptionValues opts, List<DebugHandlersFactory> factories) {
+            return DebugContext.disabled(opts);
+        }
+
+        @Override
+        public String toString() {
+            return "Batch of " + (flows == null ? "running" : flows.size()) + " type flow updates";
+        }
+    }
+}
@@ -42,6 +42,7 @@ import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.graalvm.compiler.api.replacements.SnippetReflectionProvider;
 import org.graalvm.compiler.core.common.SuppressFBWarnings;
@@ -121,6 +122,12 @@ public abstract class BigBang {
     private ConcurrentMap<AbstractUnsafeStoreTypeFlow, Boolean> unsafeStores;
 
     public final AtomicLong numParsedGraphs = new AtomicLong();
+    /** The number of type flow updates that were run. */
+    public final LongAdder typeFlowUpdates = new LongAdder();
+    /** The number of executor tasks that were posted to run type flow updates. */
+    public final LongAdder typeFlowTasks = new LongAdder();
+    /** Null if each type flow update is posted as a separate executor task. */
+    private final BatchedTypeFlowPropagation batchedPropagation;
     private final CompletionExecutor.Timing timing;
 
     public final Timer typeFlowTimer;
@@ -168,6 +175,7 @@ public abstract class BigBang {
         executor = new CompletionExecutor(this, executorService, heartbeatCallback);
         executor.init(timing);
         this.heartbeatCallback = heartbeatCallback;
+        batchedPropagation = PointstoOptions.BatchTypeFlowUpdates.getValue(options) ? new BatchedTypeFlowPropagation(this) : null;
 
         heapScanningPolicy = PointstoOptions.ExhaustiveHeapScan.getValue(options)
                         ? HeapScanningPolicy.scanAll()
@@ -537,14 +545,17 @@ public abstract class BigBang {
         }
         operation.inQueue = true;
 
+        if (batchedPropagation != null) {
+            batchedPropagation.post(operation);
+            return;
+        }
+
+        typeFlowTasks.increment();
         executor.execute(new TypeFlowRunnable() {
 
             @Override
             public void run(DebugContext ignored) {
-                PointsToStats.registerTypeFlowQueuedUpdate(BigBang.this, operation);
-
-                operation.inQueue = false;
-                operation.update(BigBang.this);
+                runFlowUpdate(operation);
             }
 
             @Override
@@ -565,6 +576,14 @@ public abstract class BigBang {
         });
     }
 
+    void runFlowUpdate(TypeFlow<?> operation) {
+        PointsToStats.registerTypeFlowQueuedUpdate(this, operation);
+        typeFlowUpdates.increment();
+
+        operation.inQueue = false;
+        operation.update(this);
+    }
+
     public void postTask(final DebugContextRunnable task) {
         executor.execute(task);
     }
@@ -116,6 +116,12 @@ public class PointstoOptions {
     @Option(help = "Report unresolved elements as errors.")//
     public static final OptionKey<Boolean> UnresolvedIsError = new OptionKey<>(true);
 
+    @Option(help = "Run type flow updates in batches ordered by flow id instead of posting a separate task for each updated flow.")//
+    public static final OptionKey<Boolean> BatchTypeFlowUpdates = new OptionKey<>(false);
+
+    @Option(help = "The maximum number of type flow updates in one batch; used only when BatchTypeFlowUpdates is enabled.")//
+    public static final OptionKey<Integer> TypeFlowUpdateBatchSize = new OptionKey<>(64);
+
     @Option(help = "Report analysis statistics.")//
     public static final OptionKey<Boolean> PrintPointsToStatistics = new OptionKey<>(false);
 
@@ -77,6 +77,8 @@ public final class StatisticsPrinter {
         print(out, "app_removable_type_checks", typeChecksStats[3]);
 
         print(out, "typeflow_time_ms", bigbang.typeFlowTimer.getTotalTime());
+        print(out, "typeflow_updates", bigbang.typeFlowUpdates.sum());
+        print(out, "typeflow_tasks", bigbang.typeFlowTasks.sum());
         print(out, "objects_time_ms", bigbang.checkObjectsTimer.getTotalTime());
         print(out, "features_time_ms", bigbang.processFeaturesTimer.getTotalTime());
         print(out, "total_analysis_time_ms", bigbang.analysisTimer.getTotalTime());
@@ -44,40 +44,26 @@ public class MultiTypeState extends TypeState {
     /** See {@link #getObjectTypeIds()}. */
     protected int[] objectTypeIds;
     /**
-     * Keep a bit set for types to easily answer queries like contains type or types count, and
+     * Keep a set of the type ids to easily answer queries like contains type or types count, and
      * quickly iterate over the types. It costs us one linear pass over the objects when the state
-     * is first created but the cost is amortized for frequently used states.
+     * is first created but the cost is amortized for frequently used states. The set is immutable,
+     * so it is shared with derived states whose types don't change.
      */
-    final BitSet typesBitSet;
-    /** Cache the number of types since BitSet.cardinality() computes it every time is called. */
+    final TypeIdSet typesSet;
+    /** Cache the number of types to avoid an indirection. */
     private final int typesCount;
     /** Can this type state represent the null value? */
     protected final boolean canBeNull;
     /** Has this type state been merged with the all-instantiated type state? */
     protected boolean merged;
 
-    /** Creates a new type state using the provided types bit set and objects. */
-    MultiTypeState(BigBang bb, boolean canBeNull, int properties, BitSet typesBitSet, AnalysisObject... objects) {
+    /** Creates a new type state using the provided types set and objects. */
+    MultiTypeState(BigBang bb, boolean canBeNull, int properties, TypeIdSet typesSet, AnalysisObject... objects) {
         super(properties);
         this.bigbang = bb;
         this.objects = objects;
-        /*
-         * Trim the typesBitSet to size eagerly. The typesBitSet is effectively immutable, i.e., no
-         * calls to mutating methods are made on it after it is set in the MultiTypeState, thus we
-         * don't need to use any external synchronization. However, to keep it immutable we use
-         * BitSet.clone() when deriving a new BitSet since the set operations (and, or, etc.) mutate
-         * the original object. The problem is that BitSet.clone() breaks the informal contract that
-         * the clone method should not modify the original object; it calls trimToSize() before
-         * creating a copy. Thus, trimming the bit set here ensures that cloning does not modify the
-         * typesBitSet. Since BitSet is not thread safe mutating it during cloning is problematic in
-         * a multithreaded environment. If for example you iterate over the bits at the same time as
-         * another thread calls clone() the words[] array can be in an inconsistent state.
-         */
-        TypeStateUtils.trimBitSetToSize(typesBitSet);
-        this.typesBitSet = typesBitSet;
-        long cardinality = typesBitSet.cardinality();
-        assert cardinality < Integer.MAX_VALUE : "We don't expect so much types.";
-        this.typesCount = (int) cardinality;
+        this.typesSet = typesSet;
+        this.typesCount = typesSet.cardinality();
         this.canBeNull = canBeNull;
         this.merged = false;
         assert typesCount > 1 : "Multi type state with single type.";
@@ -91,7 +77,7 @@ public class MultiTypeState extends TypeState {
         super(other.properties);
         this.bigbang = bb;
         this.objects = other.objects;
-        this.typesBitSet = other.typesBitSet;
+        this.typesSet = other.typesSet;
         this.typesCount = other.typesCount;
         this.canBeNull = canBeNull;
         this.merged = other.merged;
@@ -128,9 +114,9 @@ public class MultiTypeState extends TypeState {
             /* Check that the objects array are sorted by type. */
             assert (o0.type().equals(o1.type()) && o0.getId() < o1.getId()) || o0.type().getId() < o1.type().getId() : "Analysis objects must be sorted by type ID and ID.";
 
-            /* Check that the bit is set for the types. */
-            assert typesBitSet.get(o0.type().getId());
-            assert typesBitSet.get(o1.type().getId());
+            /* Check that the types set contains the types. */
+            assert typesSet.contains(o0.type().getId());
+            assert typesSet.contains(o1.type().getId());
         }
 
         return true;
@@ -150,7 +136,7 @@ public class MultiTypeState extends TypeState {
 
     @Override
     public boolean hasExactTypes(BitSet inputTypesBitSet) {
-        return typesBitSet.equals(inputTypesBitSet);
+        return typesSet.equalsBitSet(inputTypesBitSet);
     }
 
     @Override
@@ -174,16 +160,15 @@ public class MultiTypeState extends TypeState {
     }
 
     /**
-     * It iterates over the types bit set and gets the types using
-     * {@link AnalysisUniverse#getType(int)}. The types are iterated in ascending order of their IDs
-     * by way of bit set iteration.
+     * It iterates over the types set and gets the types using
+     * {@link AnalysisUniverse#getType(int)}. The types are iterated in ascending order of their IDs.
      */
     @Override
     public Iterator<AnalysisType> typesIterator() {
         return new Iterator<AnalysisType>() {
 
             /** Initialize to the index of the first set bit. */
-            private int currentTypeId = typesBitSet.nextSetBit(0);
+            private int currentTypeId = typesSet.nextSetBit(0);
 
             @Override
             public boolean hasNext() {
@@ -193,7 +178,7 @@ public class MultiTypeState extends TypeState {
             @Override
             public AnalysisType next() {
                 AnalysisType next = bigbang.getUniverse().getType(currentTypeId);
-                currentTypeId = typesBitSet.nextSetBit(currentTypeId + 1);
+                currentTypeId = typesSet.nextSetBit(currentTypeId + 1);
                 return next;
             }
         };
@@ -201,7 +186,7 @@ public class MultiTypeState extends TypeState {
 
     @Override
     public boolean containsType(AnalysisType exactType) {
-        return typesBitSet.get(exactType.getId());
+        return typesSet.contains(exactType.getId());
     }
 
     @Override
@@ -256,7 +241,7 @@ public class MultiTypeState extends TypeState {
 
     Range findTypeRange(AnalysisType type) {
 
-        /* First do a quick check using the types bit set. */
+        /* First do a quick check using the types set. */
         if (!containsType(type)) {
             /* There is no object of the inquired type in this array. */
             return Range.EMPTY;
@@ -359,7 +344,7 @@ public class MultiTypeState extends TypeState {
 
         MultiTypeState that = (MultiTypeState) o;
         return this.canBeNull == that.canBeNull &&
-                        this.typesCount == that.typesCount && this.typesBitSet.equals(that.typesBitSet) &&
+                        this.typesCount == that.typesCount && this.typesSet.equals(that.typesSet) &&
                         Arrays.equals(this.objects, that.objects);
     }
 
@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.graal.pointsto.typestate;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An immutable set of type ids used by {@link MultiTypeState}.
+ *
+ * A {@link BitSet} always stores the words from bit 0 up to the highest set bit. With tens of
+ * thousands of types, a state holding a few types with high ids wastes kilobytes, and every set
+ * operation has to clone the whole array. This set instead picks the smaller of two canonical
+ * representations:
+ * <ul>
+ * <li>dense: the words between the lowest and the highest set bit, plus the index of the first
+ * word;</li>
+ * <li>sparse: the sorted array of ids.</li>
+ * </ul>
+ * Since the representation only depends on the content, two equal sets have the same
+ * representation. Set operations return one of their operands instead of a copy when the result
+ * is equal to it, so that unchanged sets are shared between type states.
+ */
+final class TypeIdSet {
+
+    static final TypeIdSet EMPTY = new TypeIdSet(0, null, new int[0], 0);
+
+    /** The index of the first word in {@link #words}. */
+    private final int wordOffset;
+    /** The dense representation, or null. The first and the last word are never zero. */
+    private final long[] words;
+    /** The sparse representation, or null. */
+    private final int[] ids;
+    private final int cardinality;
+    private int hash;
+
+    private TypeIdSet(int wordOffset, long[] words, int[] ids, int cardinality) {
+        assert (words == null) != (ids == null);
+        this.wordOffset = wordOffset;
+        this.words = words;
+        this.ids = ids;
+        this.cardinality = cardinality;
+    }
+
+    static TypeIdSet of(int id1, int id2) {
+        assert id1 != id2;
+        return fromSortedIds(new int[]{Math.min(id1, id2), Math.max(id1, id2)}, 2);
+    }
+
+    static TypeIdSet fromBitSet(BitSet bitSet) {
+        int[] result = new int[bitSet.cardinality()];
+        int idx = 0;
+        for (int id = bitSet.nextSetBit(0); id >= 0; id = bitSet.nextSetBit(id + 1)) {
+            result[idx++] = id;
+        }
+        return fromSortedIds(result, result.length);
+    }
+
+    /** The first {@code length} elements of {@code sortedIds} may be used by the result. */
+    private static TypeIdSet fromSortedIds(int[] sortedIds, int length) {
+        if (length == 0) {
+            return EMPTY;
+        }
+        int firstWord = wordIndex(sortedIds[0]);
+        int span = wordIndex(sortedIds[length - 1]) - firstWord + 1;
+        if (preferSparse(length, span)) {
+            return new TypeIdSet(0, null, sortedIds.length == length ? sortedIds : Arrays.copyOf(sortedIds, length), length);
+        }
+        long[] resultWords = new long[span];
+        for (int i = 0; i < length; i++) {
+            resultWords[wordIndex(sortedIds[i]) - firstWord] |= 1L << sortedIds[i];
+        }
+        return new TypeIdSet(firstWord, resultWords, null, length);
+    }
+
+    /** Trims zero words at both ends and chooses the representation; may reuse the array. */
+    private static TypeIdSet fromWords(int offset, long[] rawWords) {
+        int first = 0;
+        while (first < rawWords.length && rawWords[first] == 0) {
+            first++;
+        }
+        if (first == rawWords.length) {
+            return EMPTY;
+        }
+        int last = rawWords.length - 1;
+        while (rawWords[last] == 0) {
+            last--;
+        }
+        int count = 0;
+        for (int i = first; i <= last; i++) {
+            count += Long.bitCount(rawWords[i]);
+        }
+        int span = last - first + 1;
+        if (preferSparse(count, span)) {
+            int[] result = new int[count];
+            int idx = 0;
+            for (int i = first; i <= last; i++) {
+                long word = rawWords[i];
+                while (word != 0) {
+                    result[idx++] = ((offset + i) << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return new TypeIdSet(0, null, result, count);
+        }
+        long[] resultWords = first == 0 && span == rawWords.length ? rawWords : Arrays.copyOfRange(rawWords, first, last + 1);
+        return new TypeIdSet(offset + first, resultWords, null, count);
+    }
+
+    /** An id takes 4 bytes in the sparse representation, a word 8 bytes in the dense one. */
+    private static boolean preferSparse(int count, int span) {
+        return count < 2 * span;
+    }
+
+    private static int wordIndex(int id) {
+        return id >> 6;
+    }
+
+    int cardinality() {
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    boolean contains(int id) {
+        if (words == null) {
+            return Arrays.binarySearch(ids, id) >= 0;
+        }
+        int idx = wordIndex(id) - wordOffset;
+        return idx >= 0 && idx < words.length && (words[idx] & (1L << id)) != 0;
+    }
+
+    /** Returns the smallest id that is greater or equal to {@code from}, or -1 if there is none. */
+    int nextSetBit(int from) {
+        if (words == null) {
+            int idx = Arrays.binarySearch(ids, from);
+            if (idx < 0) {
+                idx = -idx - 1;
+            }
+            return idx < ids.length ? ids[idx] : -1;
+        }
+        int idx = Math.max(wordIndex(from) - wordOffset, 0);
+        if (idx >= words.length) {
+            return -1;
+        }
+        long word = idx == wordIndex(from) - wordOffset ? words[idx] & (-1L << from) : words[idx];
+        while (word == 0) {
+            if (++idx == words.length) {
+                return -1;
+            }
+            word = words[idx];
+        }
+        return ((wordOffset + idx) << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    boolean intersects(TypeIdSet other) {
+        if (words != null && other.words != null) {
+            int from = Math.max(wordOffset, other.wordOffset);
+            int to = Math.min(wordOffset + words.length, other.wordOffset + other.words.length);
+            for (int i = from; i < to; i++) {
+                if ((words[i - wordOffset] & other.words[i - other.wordOffset]) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        TypeIdSet smaller = cardinality <= other.cardinality ? this : other;
+        TypeIdSet larger = smaller == this ? other : this;
+        for (int id = smaller.nextSetBit(0); id >= 0; id = smaller.nextSetBit(id + 1)) {
+            if (larger.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isSubsetOf(TypeIdSet other) {
+        if (cardinality > other.cardinality) {
+            return false;
+        }
+        if (words != null && other.words != null) {
+            if (wordOffset < other.wordOffset || wordOffset + words.length > other.wordOffset + other.words.length) {
+                return false;
+            }
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                if ((other.words[i + wordOffset - other.wordOffset] & word) != word) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (int id = nextSetBit(0); id >= 0; id = nextSetBit(id + 1)) {
+            if (!other.contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns true if this set contains exactly the bits that are set in {@code bitSet}. */
+    boolean equalsBitSet(BitSet bitSet) {
+        if (cardinality != bitSet.cardinality()) {
+            return false;
+        }
+        for (int id = nextSetBit(0); id >= 0; id = nextSetBit(id + 1)) {
+            if (!bitSet.get(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    TypeIdSet with(int id) {
+        if (contains(id)) {
+            return this;
+        }
+        return or(fromSortedIds(new int[]{id}, 1));
+    }
+
+    TypeIdSet without(int id) {
+        if (!contains(id)) {
+            return this;
+        }
+        return andNot(fromSortedIds(new int[]{id}, 1));
+    }
+
+    TypeIdSet or(TypeIdSet other) {
+        if (other.isSubsetOf(this)) {
+            return this;
+        } else if (isSubsetOf(other)) {
+            return other;
+        }
+        if (words != null && other.words != null) {
+            int from = Math.min(wordOffset, other.wordOffset);
+            int to = Math.max(wordOffset + words.length, other.wordOffset + other.words.length);
+            long[] result = new long[to - from];
+            System.arraycopy(words, 0, result, wordOffset - from, words.length);
+            for (int i = 0; i < other.words.length; i++) {
+                result[i + other.wordOffset - from] |= other.words[i];
+            }
+            return fromWords(from, result);
+        }
+        int[] result = new int[cardinality + other.cardinality];
+        int length = 0;
+        int id1 = nextSetBit(0);
+        int id2 = other.nextSetBit(0);
+        while (id1 >= 0 || id2 >= 0) {
+            if (id2 < 0 || (id1 >= 0 && id1 < id2)) {
+                result[length++] = id1;
+                id1 = nextSetBit(id1 + 1);
+            } else if (id1 < 0 || id2 < id1) {
+                result[length++] = id2;
+                id2 = other.nextSetBit(id2 + 1);
+            } else {
+                result[length++] = id1;
+                id1 = nextSetBit(id1 + 1);
+                id2 = other.nextSetBit(id2 + 1);
+            }
+        }
+        return fromSortedIds(result, length);
+    }
+
+    TypeIdSet and(TypeIdSet other) {
+        if (isSubsetOf(other)) {
+            return this;
+        } else if (other.isSubsetOf(this)) {
+            return other;
+        }
+        if (words != null && other.words != null) {
+            int from = Math.max(wordOffset, other.wordOffset);
+            int to = Math.min(wordOffset + words.length, other.wordOffset + other.words.length);
+            if (from >= to) {
+                return EMPTY;
+            }
+            long[] result = new long[to - from];
+            for (int i = from; i < to; i++) {
+                result[i - from] = words[i - wordOffset] & other.words[i - other.wordOffset];
+            }
+            return fromWords(from, result);
+        }
+        TypeIdSet smaller = cardinality <= other.cardinality ? this : other;
+        TypeIdSet larger = smaller == this ? other : this;
+        int[] result = new int[smaller.cardinality];
+        int length = 0;
+        for (int id = smaller.nextSetBit(0); id >= 0; id = smaller.nextSetBit(id + 1)) {
+            if (larger.contains(id)) {
+                result[length++] = id;
+            }
+        }
+        return fromSortedIds(result, length);
+    }
+
+    /** Returns the ids of this set that are not in {@code other}. */
+    TypeIdSet andNot(TypeIdSet other) {
+        if (!intersects(other)) {
+            return this;
+        }
+        if (words != null && other.words != null) {
+            long[] result = words.clone();
+            int from = Math.max(wordOffset, other.wordOffset);
+            int to = Math.min(wordOffset + words.length, other.wordOffset + other.words.length);
+            for (int i = from; i < to; i++) {
+                result[i - wordOffset] &= ~other.words[i - other.wordOffset];
+            }
+            return fromWords(wordOffset, result);
+        }
+        int[] result = new int[cardinality];
+        int length = 0;
+        for (int id = nextSetBit(0); id >= 0; id = nextSetBit(id + 1)) {
+            if (!other.contains(id)) {
+                result[length++] = id;
+            }
+        }
+        return fromSortedIds(result, length);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = hash;
+        if (result == 0) {
+            result = words == null ? Arrays.hashCode(ids) : 31 * wordOffset + Arrays.hashCode(words);
+            hash = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TypeIdSet)) {
+            return false;
+        }
+        TypeIdSet that = (TypeIdSet) obj;
+        if (cardinality != that.cardinality || hashCode() != that.hashCode()) {
+            return false;
+        }
+        if (words == null) {
+            return that.words == null && Arrays.equals(ids, that.ids);
+        }
+        return that.words != null && wordOffset == that.wordOffset && Arrays.equals(words, that.words);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("{");
+        for (int id = nextSetBit(0); id >= 0; id = nextSetBit(id + 1)) {
+            result.append(result.length() > 1 ? ", " : "").append(id);
+        }
+        return result.append('}').toString();
+    }
+}
@@ -359,12 +359,9 @@ public abstract class TypeState {
                 idx++;
             }
             assert idx == objectsArray.length;
-            /*
-             * For types use the already created bit set, but clone it since it can change outside.
-             */
-            BitSet typesBitSet = (BitSet) exactTypes.clone();
+            TypeIdSet typesSet = TypeIdSet.fromBitSet(exactTypes);
             int properties = bb.analysisPolicy().makePoperties(bb, objectsArray);
-            return new MultiTypeState(bb, canBeNull, properties, typesBitSet, objectsArray);
+            return new MultiTypeState(bb, canBeNull, properties, typesSet, objectsArray);
         }
     }
 
@@ -391,13 +388,13 @@ public abstract class TypeState {
                     objectsArray[i++] = type.getContextInsensitiveAnalysisObject();
                 }
                 /*
-                 * For types use the already created bit set. Since the original type state is
-                 * immutable its types bit set cannot change.
+                 * For types use the already created types set. Since the original type state is
+                 * immutable its types set cannot change.
                  */
 
-                BitSet typesBitSet = multiState.typesBitSet;
+                TypeIdSet typesSet = multiState.typesSet;
                 int properties = bb.analysisPolicy().makePoperties(bb, objectsArray);
-                return new MultiTypeState(bb, multiState.canBeNull(), properties, typesBitSet, objectsArray);
+                return new MultiTypeState(bb, multiState.canBeNull(), properties, typesSet, objectsArray);
             }
         }
     }
@@ -527,14 +524,12 @@ public abstract class TypeState {
                 resultObjects = TypeStateUtils.concat(s2.objects, s1.objects);
             }
 
-            /* We know the types, construct the types bit set without walking the objects. */
-            BitSet typesBitSet = new BitSet();
-            typesBitSet.set(s1.exactType().getId());
-            typesBitSet.set(s2.exactType().getId());
+            /* We know the types, construct the types set without walking the objects. */
+            TypeIdSet typesSet = TypeIdSet.of(s1.exactType().getId(), s2.exactType().getId());
 
             int properties = bb.analysisPolicy().makePopertiesForUnion(s1, s2);
 
-            TypeState result = new MultiTypeState(bb, resultCanBeNull, properties, typesBitSet, resultObjects);
+            TypeState result = new MultiTypeState(bb, resultCanBeNull, properties, typesSet, resultObjects);
             PointsToStats.registerUnionOperation(bb, s1, s2, result);
             return result;
         }
@@ -588,11 +583,11 @@ public abstract class TypeState {
             System.arraycopy(unionObjects, 0, resultObjects, typeRange.left, unionObjects.length);
             System.arraycopy(so1, typeRange.right, resultObjects, typeRange.left + unionObjects.length, so1.length - typeRange.right);
 
-            /* The types bit set of the result and s1 are the same. */
+            /* The types set of the result and s1 are the same. */
 
             int properties = bb.analysisPolicy().makePopertiesForUnion(s1, s2);
 
-            MultiTypeState result = new MultiTypeState(bb, resultCanBeNull, properties, s1.typesBitSet, resultObjects);
+            MultiTypeState result = new MultiTypeState(bb, resultCanBeNull, properties, s1.typesSet, resultObjects);
             assert !result.equals(s1);
             /*
              * No need to check the result size against the all-instantiated since the type count
@@ -622,11 +617,11 @@ public abstract class TypeState {
                 System.arraycopy(so1, idx1, resultObjects, idx1 + so2.length, so1.length - idx1);
             }
 
-            /* Create the types bit set by adding the s2 type to avoid walking the objects. */
-            BitSet typesBitSet = TypeStateUtils.set(s1.typesBitSet, s2.exactType().getId());
+            /* Create the types set by adding the s2 type to avoid walking the objects. */
+            TypeIdSet typesSet = s1.typesSet.with(s2.exactType().getId());
             int properties = bb.analysisPolicy().makePopertiesForUnion(s1, s2);
 
-            MultiTypeState result = new MultiTypeState(bb, resultCanBeNull, properties, typesBitSet, resultObjects);
+            MultiTypeState result = new MultiTypeState(bb, resultCanBeNull, properties, typesSet, resultObjects);
             PointsToStats.registerUnionOperation(bb, s1, s2, result);
             return result;
         }
@@ -657,11 +652,11 @@ public abstract class TypeState {
             /* Concatenate the objects. */
             AnalysisObject[] resultObjects = TypeStateUtils.concat(s1.objects, s2.objects);
 
-            /* Logical OR the type bit sets. */
-            BitSet resultTypesBitSet = TypeStateUtils.or(s1.typesBitSet, s2.typesBitSet);
+            /* Logical OR the types sets. */
+            TypeIdSet resultTypesSet = s1.typesSet.or(s2.typesSet);
             int properties = bb.analysisPolicy().makePopertiesForUnion(s1, s2);
 
-            MultiTypeState result = new MultiTypeState(bb, resultCanBeNull, properties, resultTypesBitSet, resultObjects);
+            MultiTypeState result = new MultiTypeState(bb, resultCanBeNull, properties, resultTypesSet, resultObjects);
             PointsToStats.registerUnionOperation(bb, s1, s2, result);
             return result;
 
@@ -671,11 +666,11 @@ public abstract class TypeState {
             /* Concatenate the objects. */
             AnalysisObject[] resultObjects = TypeStateUtils.concat(s2.objects, s1.objects);
 
-            /* Logical OR the type bit sets. */
-            BitSet resultTypesBitSet = TypeStateUtils.or(s1.typesBitSet, s2.typesBitSet);
+            /* Logical OR the types sets. */
+            TypeIdSet resultTypesSet = s1.typesSet.or(s2.typesSet);
             int properties = bb.analysisPolicy().makePopertiesForUnion(s1, s2);
 
-            MultiTypeState result = new MultiTypeState(bb, resultCanBeNull, properties, resultTypesBitSet, resultObjects);
+            MultiTypeState result = new MultiTypeState(bb, resultCanBeNull, properties, resultTypesSet, resultObjects);
             PointsToStats.registerUnionOperation(bb, s1, s2, result);
             return result;
         }
@@ -695,23 +690,13 @@ public abstract class TypeState {
      * Optimization that gives 1.5-3x in performance for the (typeflow) phase.
      */
     private static TypeState allocationInsensitiveSpeculativeUnion1(BigBang bb, MultiTypeState s1, MultiTypeState s2, boolean resultCanBeNull) {
-        if (s1.typesBitSet.length() >= s2.typesBitSet.length()) {
-            long[] bits1 = TypeStateUtils.extractBitSetField(s1.typesBitSet);
-            long[] bits2 = TypeStateUtils.extractBitSetField(s2.typesBitSet);
-            assert s2.typesBitSet.cardinality() == s2.objects.length : "Cardinality and length of objects must match.";
-
-            boolean speculate = true;
-            int numberOfWords = Math.min(bits1.length, bits2.length);
-            for (int i = 0; i < numberOfWords; i++) {
-                /* bits2 is a subset of bits1 */
-                if ((bits1[i] & bits2[i]) != bits2[i]) {
-                    speculate = false;
-                    break;
-                }
-            }
-            if (speculate) {
-                return s1.forCanBeNull(bb, resultCanBeNull);
-            }
+        /*
+         * Without allocation site sensitivity there is exactly one object per type, so s2 is
+         * contained in s1 if and only if its types are.
+         */
+        assert s2.typesCount() == s2.objects.length : "Types count and length of objects must match.";
+        if (s2.typesSet.isSubsetOf(s1.typesSet)) {
+            return s1.forCanBeNull(bb, resultCanBeNull);
         }
         return doUnion2(bb, s1, s2, resultCanBeNull, 0, 0);
     }
@@ -862,11 +847,11 @@ public abstract class TypeState {
 
             assert resultObjects.size() > 1 : "The result state of a (Multi U Multi) operation must have at least 2 objects";
 
-            /* Logical OR the type bit sets. */
-            BitSet resultTypesBitSet = TypeStateUtils.or(s1.typesBitSet, s2.typesBitSet);
+            /* Logical OR the types sets. */
+            TypeIdSet resultTypesSet = s1.typesSet.or(s2.typesSet);
             int properties = bb.analysisPolicy().makePopertiesForUnion(s1, s2);
 
-            MultiTypeState result = new MultiTypeState(bb, resultCanBeNull, properties, resultTypesBitSet, resultObjects.copyToArray(new AnalysisObject[resultObjects.size()]));
+            MultiTypeState result = new MultiTypeState(bb, resultCanBeNull, properties, resultTypesSet, resultObjects.copyToArray(new AnalysisObject[resultObjects.size()]));
             assert !result.equals(s1) : "speculation code should prevent this case";
 
             /* The result can be equal to s2 only if s1 and s2 have the same number of types. */
@@ -958,12 +943,12 @@ public abstract class TypeState {
     private static TypeState doIntersection0(BigBang bb, MultiTypeState s1, MultiTypeState s2, boolean resultCanBeNull) {
         /* Speculate that s1 and s2 have either the same types, or no types in common. */
 
-        if (s1.typesBitSet.equals(s2.typesBitSet)) {
+        if (s1.typesSet.equals(s2.typesSet)) {
             /* Speculate that s1 and s2 have the same types, i.e., the result is s1. */
             return s1.forCanBeNull(bb, resultCanBeNull);
         }
 
-        if (!s1.typesBitSet.intersects(s2.typesBitSet)) {
+        if (!s1.typesSet.intersects(s2.typesSet)) {
             /* Speculate that s1 and s2 have no types in common, i.e., the result is empty. */
             return TypeState.forEmpty().forCanBeNull(bb, resultCanBeNull);
         }
@@ -1136,9 +1121,9 @@ public abstract class TypeState {
                     /* Multiple objects of the same type. */
                     return new SingleTypeState(bb, resultCanBeNull, bb.analysisPolicy().makePoperties(bb, objects), objects);
                 } else {
-                    /* Logical AND the type bit sets. */
-                    BitSet resultTypesBitSet = TypeStateUtils.and(s1.typesBitSet, s2.typesBitSet);
-                    MultiTypeState result = new MultiTypeState(bb, resultCanBeNull, bb.analysisPolicy().makePoperties(bb, objects), resultTypesBitSet, objects);
+                    /* Logical AND the types sets. */
+                    TypeIdSet resultTypesSet = s1.typesSet.and(s2.typesSet);
+                    MultiTypeState result = new MultiTypeState(bb, resultCanBeNull, bb.analysisPolicy().makePoperties(bb, objects), resultTypesSet, objects);
 
                     /*
                      * The result can be equal to s1 if and only if s1 and s2 have the same type
@@ -1248,8 +1233,8 @@ public abstract class TypeState {
                 /* Multiple objects of the same type. */
                 return new SingleTypeState(bb, resultCanBeNull, bb.analysisPolicy().makePoperties(bb, resultObjects), resultObjects);
             } else {
-                BitSet resultTypesBitSet = TypeStateUtils.clear(s1.typesBitSet, s2.exactType().getId());
-                return new MultiTypeState(bb, resultCanBeNull, bb.analysisPolicy().makePoperties(bb, resultObjects), resultTypesBitSet, resultObjects);
+                TypeIdSet resultTypesSet = s1.typesSet.without(s2.exactType().getId());
+                return new MultiTypeState(bb, resultCanBeNull, bb.analysisPolicy().makePoperties(bb, resultObjects), resultTypesSet, resultObjects);
             }
 
         } else {
@@ -1273,12 +1258,12 @@ public abstract class TypeState {
     private static TypeState doSubtraction0(BigBang bb, MultiTypeState s1, MultiTypeState s2, boolean resultCanBeNull) {
         /* Speculate that s1 and s2 have either the same types, or no types in common. */
 
-        if (s1.typesBitSet.equals(s2.typesBitSet)) {
+        if (s1.typesSet.equals(s2.typesSet)) {
             /* Speculate that s1 and s2 have the same types, i.e., the result is empty set. */
             return TypeState.forEmpty().forCanBeNull(bb, resultCanBeNull);
         }
 
-        if (!s1.typesBitSet.intersects(s2.typesBitSet)) {
+        if (!s1.typesSet.intersects(s2.typesSet)) {
             /* Speculate that s1 and s2 have no types in common, i.e., the result is s1. */
             return s1.forCanBeNull(bb, resultCanBeNull);
         }
@@ -1367,12 +1352,12 @@ public abstract class TypeState {
                     /* Multiple objects of the same type. */
                     return new SingleTypeState(bb, resultCanBeNull, bb.analysisPolicy().makePoperties(bb, objects), objects);
                 } else {
-                    BitSet resultTypesBitSet = TypeStateUtils.andNot(s1.typesBitSet, s2.typesBitSet);
+                    TypeIdSet resultTypesSet = s1.typesSet.andNot(s2.typesSet);
                     /*
                      * Don't need to check if the result is close-to-all-instantiated since result
                      * <= s1.
                      */
-                    return new MultiTypeState(bb, resultCanBeNull, bb.analysisPolicy().makePoperties(bb, objects), resultTypesBitSet, objects);
+                    return new MultiTypeState(bb, resultCanBeNull, bb.analysisPolicy().makePoperties(bb, objects), resultTypesSet, objects);
                 }
             }
         }
@@ -24,60 +24,17 @@
  */
 package com.oracle.graal.pointsto.typestate;
 
-import java.lang.invoke.MethodHandle;
-import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.BitSet;
 import java.util.List;
 
 import com.oracle.graal.pointsto.BigBang;
 import com.oracle.graal.pointsto.api.PointstoOptions;
 import com.oracle.graal.pointsto.flow.context.object.AnalysisObject;
-import com.oracle.svm.util.ReflectionUtil;
-
-import jdk.vm.ci.common.JVMCIError;
 
 /** Helper methods for type state. */
 public class TypeStateUtils {
 
-    private static final MethodHandle bitSetArrayAccess;
-    private static final MethodHandle trimToSizeAccess;
-    static {
-        try {
-            bitSetArrayAccess = MethodHandles.lookup().unreflectGetter(ReflectionUtil.lookupField(BitSet.class, "words"));
-            trimToSizeAccess = MethodHandles.lookup().unreflect(ReflectionUtil.lookupMethod(BitSet.class, "trimToSize"));
-        } catch (IllegalAccessException t) {
-            throw JVMCIError.shouldNotReachHere(t);
-        }
-    }
-
-    /**
-     * This method gives access to the java.lang.BitSet's array of bytes. We need that array for
-     * performance reasons (~30% reduction in GC pressure) so we use reflection to get the value of
-     * the array.
-     *
-     * @param bitSet to be intruded
-     * @return the array belonging to the bitSet. Please use this value responsibly: not modify or
-     *         loose track of this value.
-     */
-    static long[] extractBitSetField(BitSet bitSet) {
-        try {
-            return (long[]) bitSetArrayAccess.invokeExact(bitSet);
-        } catch (Throwable t) {
-            throw JVMCIError.shouldNotReachHere(t);
-        }
-    }
-
-    static void trimBitSetToSize(BitSet bs) {
-        try {
-            trimToSizeAccess.invokeExact(bs);
-        } catch (Throwable t) {
-            throw JVMCIError.shouldNotReachHere(t);
-        }
-
-    }
-
     protected static AnalysisObject[] concat(AnalysisObject[] oa1, AnalysisObject[] oa2) {
         int resultSize = oa1.length + oa2.length;
 
@@ -341,47 +298,4 @@ public class TypeStateUtils {
         }
         return false;
     }
-
-    /** Logical OR two bit sets without modifying the source. */
-    protected static BitSet or(BitSet bs1, BitSet bs2) {
-        BitSet bsr = (BitSet) bs1.clone();
-        bsr.or(bs2);
-        return bsr;
-    }
-
-    /** Logical AND two bit sets without modifying the source. */
-    protected static BitSet and(BitSet bs1, BitSet bs2) {
-        BitSet bsr = (BitSet) bs1.clone();
-        bsr.and(bs2);
-        return bsr;
-    }
-
-    /**
-     * Logical AND-NOT of the two bit sets, i.e., clearing all bits in first operand whose
-     * corresponding bits are set in the second one, without modifying the source.
-     */
-    static BitSet andNot(BitSet bs1, BitSet bs2) {
-        BitSet bsr = (BitSet) bs1.clone();
-        bsr.andNot(bs2);
-        return bsr;
-    }
-
-    /**
-     * Sets the bit specified by the index to {@code false} without modifying the source.
-     */
-    protected static BitSet clear(BitSet bs1, int bitIndex) {
-        BitSet bsr = (BitSet) bs1.clone();
-        bsr.clear(bitIndex);
-        return bsr;
-    }
-
-    /**
-     * Sets the bit specified by the index to {@code true} without modifying the source.
-     */
-    protected static BitSet set(BitSet bs1, int bitIndex) {
-        BitSet bsr = (BitSet) bs1.clone();
-        bsr.set(bitIndex);
-        return bsr;
-    }
-
 }
@@ -26,8 +26,8 @@
 package com.oracle.objectfile;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class LayoutDecisionMap implements Iterable<LayoutDecision> {
 
@@ -45,7 +45,8 @@ public class LayoutDecisionMap implements Iterable<LayoutDecision> {
      */
 
     ObjectFile.Element e; // the element whose decisions we store
-    HashMap<LayoutDecision.Kind, LayoutDecision> decisions = new HashMap<>();
+    /* Concurrent, because contents can be decided in parallel with other decisions. */
+    ConcurrentHashMap<LayoutDecision.Kind, LayoutDecision> decisions = new ConcurrentHashMap<>();
 
     public LayoutDecisionMap(ObjectFile.Element e) {
         this.e = e;
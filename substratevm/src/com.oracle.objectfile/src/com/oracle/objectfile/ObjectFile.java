@@ -24,14 +24,12 @@
  */
 package com.oracle.objectfile;
 
-import java.io.Closeable;
 import java.io.IOException;
-import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
-import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
@@ -43,6 +41,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Consumer;
 import java.util.stream.StreamSupport;
 
@@ -53,8 +53,6 @@ import com.oracle.objectfile.elf.ELFObjectFile;
 import com.oracle.objectfile.macho.MachOObjectFile;
 import com.oracle.objectfile.pecoff.PECoffObjectFile;
 
-import sun.nio.ch.DirectBuffer;
-
 /**
  * Abstract superclass for object files. An object file is a binary container for sections,
  * including DWARF debug sections. The currently supported file formats are ELF and Mach-O. In
@@ -999,6 +997,15 @@ public abstract class ObjectFile {
             return this;
         }
 
+        /**
+         * Returns true if the content of this element only depends on the decisions returned by
+         * {@link #getDependencies}, and deciding it does not modify any state shared with other
+         * elements. Such content is decided concurrently with the remaining decisions.
+         */
+        public boolean isContentDecidableConcurrently() {
+            return false;
+        }
+
         public abstract ElementImpl getImpl();
 
         /** This method can be overridden. */
@@ -1262,18 +1269,50 @@ public abstract class ObjectFile {
     private final Map<Element, List<BuildDependency>> dependenciesByDependingElement = new IdentityHashMap<>();
     private final Map<Element, List<BuildDependency>> dependenciesByDependedOnElement = new IdentityHashMap<>();
 
-    @SuppressWarnings("try")
+    /**
+     * Lays out the object file and writes it to the given channel. The elements are written in
+     * parallel, each with positional writes to its own range of the file, so the file is never
+     * assembled in a single buffer.
+     */
     public final void write(FileChannel outputChannel) {
+        long startNanos = System.nanoTime();
         List<Element> sortedObjectFileElements = new ArrayList<>();
         int totalSize = bake(sortedObjectFileElements);
+        long bakeNanos = System.nanoTime() - startNanos;
+        long usedMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+
+        sortedObjectFileElements.parallelStream().forEach(e -> writeElement(e, outputChannel));
         try {
-            ByteBuffer buffer = outputChannel.map(MapMode.READ_WRITE, 0, totalSize);
-            try (Closeable ignored = () -> ((DirectBuffer) buffer).cleaner().clean()) {
-                writeBuffer(sortedObjectFileElements, buffer);
+            if (outputChannel.size() < totalSize) {
+                /* The end of the file is not covered by any element, so we extend it explicitly. */
+                outputChannel.write(ByteBuffer.wrap(new byte[1]), totalSize - 1);
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+
+        if (debugContext != null) {
+            long writeNanos = System.nanoTime() - startNanos - bakeNanos;
+            debugContext.log("layout and content: %d ms, write: %d ms, file size: %d bytes, used memory after layout: %d MB", bakeNanos / 1_000_000, writeNanos / 1_000_000, totalSize,
+                            usedMemory / (1024 * 1024));
+        }
+    }
+
+    private void writeElement(Element e, FileChannel outputChannel) {
+        int off = (int) decisionsTaken.get(e).getDecision(LayoutDecision.Kind.OFFSET).getValue();
+        int expectedSize = (int) decisionsTaken.get(e).getDecidedValue(LayoutDecision.Kind.SIZE);
+        byte[] content = (byte[]) decisionsTaken.get(e).getDecidedValue(LayoutDecision.Kind.CONTENT);
+        if (content.length != expectedSize) {
+            throw new IllegalStateException("For element " + e + ", expected size " + expectedSize + " but emitted size " + content.length);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        try {
+            while (buffer.hasRemaining()) {
+                outputChannel.write(buffer, off + buffer.position());
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
     }
 
     /*
@@ -1578,13 +1617,34 @@ public abstract class ObjectFile {
          * point. Also, these decisions should be put into decisionsTake *here* rather than at the
          * point where they were scheduled. In fact, let's take them out of the schedule and remove
          * their dependencies.
+         *
+         * The content of elements that allow it is decided concurrently with the following
+         * decisions. A pending content decision is only taken when a later decision depends on it,
+         * so all decisions get exactly the values of a sequential build.
          */
+        Map<LayoutDecision, ForkJoinTask<byte[]>> pendingContents = new HashMap<>();
         for (LayoutDecision d : buildOrder) {
             Element e = d.getElement();
             if (e == null) {
                 continue; // it's the last iteration
             }
 
+            if (d.getKind() == LayoutDecision.Kind.CONTENT && !e.isContentDecidableConcurrently()) {
+                /* The content may read any decision taken so far, not only its dependencies. */
+                takePendingContents(new ArrayList<>(pendingContents.keySet()), pendingContents);
+            } else {
+                takePendingContents(d.dependsOn(), pendingContents);
+                if (d.getKind() == LayoutDecision.Kind.SIZE) {
+                    /* The size hint is the length of our content, if it is already decided. */
+                    takePendingContents(decisionsByElement.get(e).getDecisions(), pendingContents);
+                }
+            }
+
+            if (d.getKind() == LayoutDecision.Kind.CONTENT && !d.isTaken() && e.isContentDecidableConcurrently()) {
+                pendingContents.put(d, ForkJoinPool.commonPool().submit(() -> e.getOrDecideContent(decisionsTaken, new byte[0])));
+                continue;
+            }
+
             Object valueDecided = null;
             int offsetHint = nextAvailableOffset(decisionsTaken);
             /*
@@ -1638,6 +1698,7 @@ public abstract class ObjectFile {
             // rather than the "public" interface which maps kinds to decided values
             m.decisions.put(d.getKind(), d);
         }
+        takePendingContents(new ArrayList<>(pendingContents.keySet()), pendingContents);
 
         /*-
          * System.out.println(buildOrder.stream().map(LayoutDecision::toString).sorted().collect(Collectors.joining("\n", "\n", "")));
@@ -1654,35 +1715,22 @@ public abstract class ObjectFile {
         return totalSize;
     }
 
-    public Map<Element, LayoutDecisionMap> getDecisionsByElement() {
-        return decisionsByElement;
-    }
-
-    /**
-     * See {@code org.graalvm.compiler.serviceprovider.BufferUtil}.
-     */
-    private static Buffer asBaseBuffer(Buffer obj) {
-        return obj;
-    }
-
-    public void writeBuffer(List<Element> sortedObjectFileElements, ByteBuffer out) {
-        /* Emit each one! */
-        for (Element e : sortedObjectFileElements) {
-            int off = (int) decisionsTaken.get(e).getDecision(LayoutDecision.Kind.OFFSET).getValue();
-            assert off != Integer.MAX_VALUE; // not allowed any more -- this was a broken approach
-            asBaseBuffer(out).position(off);
-            int expectedSize = (int) decisionsTaken.get(e).getDecidedValue(LayoutDecision.Kind.SIZE);
-            byte[] content = (byte[]) decisionsTaken.get(e).getDecidedValue(LayoutDecision.Kind.CONTENT);
-            out.put(content);
-            int emittedSize = out.position() - off;
-            assert emittedSize >= 0;
-            if (emittedSize != expectedSize) {
-                throw new IllegalStateException("For element " + e + ", expected size " + expectedSize + " but emitted size " + emittedSize);
+    private void takePendingContents(Collection<LayoutDecision> decisions, Map<LayoutDecision, ForkJoinTask<byte[]>> pendingContents) {
+        for (LayoutDecision d : decisions) {
+            ForkJoinTask<byte[]> task = pendingContents.remove(d);
+            if (task != null) {
+                byte[] content = task.join();
+                assert content != null;
+                d.setValue(content);
+                decisionsTaken.get(d.getElement()).decisions.put(d.getKind(), d);
             }
-
         }
     }
 
+    public Map<Element, LayoutDecisionMap> getDecisionsByElement() {
+        return decisionsByElement;
+    }
+
     protected abstract int getMinimumFileSize();
 
     public int getPageSize() {
@@ -52,6 +52,10 @@ public abstract class DebugInfoBase {
      * user code.
      */
     private Map<Path, DirEntry> dirsIndex = new HashMap<>();
+    /**
+     * Index of class names as reported by the provider to their unique converted form.
+     */
+    private Map<String, String> classNamesIndex = new HashMap<>();
 
     /*
      * The obvious traversal structure for debug records is:
@@ -130,8 +134,7 @@ public abstract class DebugInfoBase {
             String fileName = debugCodeInfo.fileName();
             Path filePath = debugCodeInfo.filePath();
             Path cachePath = debugCodeInfo.cachePath();
-            // switch '$' in class names for '.'
-            String className = debugCodeInfo.className().replaceAll("\\$", ".");
+            String className = uniqueClassName(debugCodeInfo.className());
             String methodName = debugCodeInfo.methodName();
             String symbolName = debugCodeInfo.symbolNameForMethod();
             String paramNames = debugCodeInfo.paramNames();
@@ -147,8 +150,7 @@ public abstract class DebugInfoBase {
             debugCodeInfo.lineInfoProvider().forEach(debugLineInfo -> {
                 String fileNameAtLine = debugLineInfo.fileName();
                 Path filePathAtLine = debugLineInfo.filePath();
-                // Switch '$' in class names for '.'
-                String classNameAtLine = debugLineInfo.className().replaceAll("\\$", ".");
+                String classNameAtLine = uniqueClassName(debugLineInfo.className());
                 String methodNameAtLine = debugLineInfo.methodName();
                 String symbolNameAtLine = debugLineInfo.symbolNameForMethod();
                 int loAtLine = lo + debugLineInfo.addressLo();
@@ -176,6 +178,18 @@ public abstract class DebugInfoBase {
          */
     }
 
+    /**
+     * Switches '$' in a class name for '.' and returns the unique instance of the result. Class
+     * names recur in the line info of every method that inlines code from the class, so each
+     * distinct name is only converted once and all ranges share the same String.
+     *
+     * @param className the class name as reported by the provider.
+     * @return the unique instance of the converted class name.
+     */
+    private String uniqueClassName(String className) {
+        return classNamesIndex.computeIfAbsent(className, name -> stringTable.uniqueString(name.replace('$', '.')));
+    }
+
     private ClassEntry ensureClassEntry(Range range) {
         String className = range.getClassName();
         /*
@@ -172,7 +172,12 @@ public class ELFRelocationSection extends ELFSection {
         }
     }
 
-    public Entry addEntry(ELFSection s, long offset, ELFRelocationMethod t, ELFSymtab.Entry sym, Long explicitAddend) {
+    /*
+     * Synchronized because sections can write their content, and so register relocations, from
+     * several threads. The entries are kept sorted by offset, so their order does not depend on
+     * the order of registration.
+     */
+    public synchronized Entry addEntry(ELFSection s, long offset, ELFRelocationMethod t, ELFSymtab.Entry sym, Long explicitAddend) {
         if (explicitAddend != null) {
             if (!t.canUseExplicitAddend()) {
                 throw new IllegalArgumentException("cannot use relocation method " + t + " with explicit addends");
@@ -271,6 +276,12 @@ public class ELFRelocationSection extends ELFSection {
         return oa.getBlob();
     }
 
+    @Override
+    public boolean isContentDecidableConcurrently() {
+        /* Our entries are only read, and ELFSymtab.indexOf can be called concurrently. */
+        return true;
+    }
+
     @Override
     public int getOrDecideOffset(Map<Element, LayoutDecisionMap> alreadyDecided, int offsetHint) {
         return ObjectFile.defaultGetOrDecideOffset(alreadyDecided, this, offsetHint);
@@ -66,6 +66,12 @@ public class ELFStrtab extends ELFSection implements Iterable<String> {
         return impl.getOrDecideContent(alreadyDecided, contentHint);
     }
 
+    @Override
+    public boolean isContentDecidableConcurrently() {
+        /* The content providers only enumerate names, e.g., of the symbols of a symbol table. */
+        return true;
+    }
+
     @Override
     public Iterable<BuildDependency> getDependencies(Map<Element, LayoutDecisionMap> decisions) {
         return impl.getDependencies(decisions);
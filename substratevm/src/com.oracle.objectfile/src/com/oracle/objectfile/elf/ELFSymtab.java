@@ -274,7 +274,7 @@ public class ELFSymtab extends ELFObjectFile.ELFSection implements SymbolTable {
 
     private Map<String, Entry> entriesByName = new HashMap<>();
 
-    private Map<Entry, Integer> entriesToIndex;
+    private volatile Map<Entry, Integer> entriesToIndex;
 
     private void createNullEntry() {
         assert entries.size() == 0;
@@ -387,6 +387,11 @@ public class ELFSymtab extends ELFObjectFile.ELFSection implements SymbolTable {
         return out.getBlob();
     }
 
+    @Override
+    public boolean isContentDecidableConcurrently() {
+        return true;
+    }
+
     private int getWrittenSize() {
         return entries.size() * getEntrySize();
     }
@@ -454,10 +459,11 @@ public class ELFSymtab extends ELFObjectFile.ELFSection implements SymbolTable {
     }
 
     public int indexOf(Symbol sym) {
-        if (entriesToIndex == null) {
-            initializeEntriesToIndex();
+        Map<Entry, Integer> index = entriesToIndex;
+        if (index == null) {
+            index = initializeEntriesToIndex();
         }
-        Integer result = entriesToIndex.get(sym);
+        Integer result = index.get(sym);
         if (result == null) {
             return -1;
         } else {
@@ -465,14 +471,19 @@ public class ELFSymtab extends ELFObjectFile.ELFSection implements SymbolTable {
         }
     }
 
-    private void initializeEntriesToIndex() {
-        entriesToIndex = new HashMap<>(entries.size());
-        int index = 0;
-        for (Entry entry : entries) {
-            entriesToIndex.put(entry, index);
-            index++;
+    /* Synchronized because relocation sections can look up symbols concurrently. */
+    private synchronized Map<Entry, Integer> initializeEntriesToIndex() {
+        if (entriesToIndex == null) {
+            Map<Entry, Integer> result = new HashMap<>(entries.size());
+            int index = 0;
+            for (Entry entry : entries) {
+                result.put(entry, index);
+                index++;
+            }
+            assert result.size() == entries.size();
+            entriesToIndex = result;
         }
-        assert entriesToIndex.size() == entries.size();
+        return entriesToIndex;
     }
 
     @SuppressWarnings({"unchecked", "rawtypes"})
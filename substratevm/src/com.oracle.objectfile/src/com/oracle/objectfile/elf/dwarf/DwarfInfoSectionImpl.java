@@ -32,7 +32,11 @@ import com.oracle.objectfile.debugentry.PrimaryEntry;
 import com.oracle.objectfile.debugentry.Range;
 import org.graalvm.compiler.debug.DebugContext;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.oracle.objectfile.elf.dwarf.DwarfDebugInfo.DW_ABBREV_CODE_compile_unit_1;
 import static com.oracle.objectfile.elf.dwarf.DwarfDebugInfo.DW_ABBREV_CODE_compile_unit_2;
@@ -113,35 +117,48 @@ public class DwarfInfoSectionImpl extends DwarfSectionImpl {
          * i.e. it also looks like a null_value.
          */
 
-        byte[] buffer = null;
+        /*
+         * The size of a CU does not depend on its position in the section, so the CUs are sized
+         * concurrently. Their offsets are then assigned in section order and saved so they can be
+         * used when writing the CUs and the aranges section.
+         */
+        List<ClassEntry> classEntries = new ArrayList<>(dwarfSections.getPrimaryClasses());
+        int[] cuSizes = new int[classEntries.size()];
+        int[] deoptCUSizes = new int[classEntries.size()];
+        IntStream.range(0, classEntries.size()).parallel().forEach(i -> {
+            ClassEntry classEntry = classEntries.get(i);
+            cuSizes[i] = sizeCU(classEntry, false);
+            if (classEntry.includesDeoptTarget()) {
+                deoptCUSizes[i] = sizeCU(classEntry, true);
+            }
+        });
         int pos = 0;
-
         /* CUs for normal methods */
-        for (ClassEntry classEntry : getPrimaryClasses()) {
-            int lengthPos = pos;
-            pos = writeCUHeader(buffer, pos);
-            assert pos == lengthPos + DW_DIE_HEADER_SIZE;
-            pos = writeCU(null, classEntry, false, buffer, pos);
-            /*
-             * No need to backpatch length at lengthPos.
-             */
+        for (int i = 0; i < classEntries.size(); i++) {
+            classEntries.get(i).setCUIndex(pos);
+            pos += cuSizes[i];
         }
         /* CUs for deopt targets */
-        for (ClassEntry classEntry : getPrimaryClasses()) {
+        for (int i = 0; i < classEntries.size(); i++) {
+            ClassEntry classEntry = classEntries.get(i);
             if (classEntry.includesDeoptTarget()) {
-                int lengthPos = pos;
-                pos = writeCUHeader(buffer, pos);
-                assert pos == lengthPos + DW_DIE_HEADER_SIZE;
-                pos = writeCU(null, classEntry, true, buffer, pos);
-                /*
-                 * No need to backpatch length at lengthPos.
-                 */
+                classEntry.setDeoptCUIndex(pos);
+                pos += deoptCUSizes[i];
             }
         }
-        buffer = new byte[pos];
+        byte[] buffer = new byte[pos];
         super.setContent(buffer);
     }
 
+    private int sizeCU(ClassEntry classEntry, boolean isDeoptTargetCU) {
+        /*
+         * No need to backpatch length when sizing.
+         */
+        int pos = writeCUHeader(null, 0);
+        assert pos == DW_DIE_HEADER_SIZE;
+        return writeCU(null, classEntry, isDeoptTargetCU, null, pos);
+    }
+
     @Override
     public void writeContent(DebugContext context) {
         byte[] buffer = getContent();
@@ -152,42 +169,24 @@ public class DwarfInfoSectionImpl extends DwarfSectionImpl {
 
         log(context, "  [0x%08x] DEBUG_INFO", pos);
         log(context, "  [0x%08x] size = 0x%08x", pos, size);
+        List<ClassEntry> classEntries = new ArrayList<>(dwarfSections.getPrimaryClasses());
         /* write CUs for normal methods */
-        for (ClassEntry classEntry : getPrimaryClasses()) {
-            /*
-             * Save the offset of this file's CU so it can be used when writing the aranges section.
-             */
-            classEntry.setCUIndex(pos);
-            int lengthPos = pos;
-            pos = writeCUHeader(buffer, pos);
-            log(context, "  [0x%08x] Compilation Unit", pos, size);
-            assert pos == lengthPos + DW_DIE_HEADER_SIZE;
-            pos = writeCU(context, classEntry, false, buffer, pos);
-            /*
-             * Backpatch length at lengthPos (excluding length field).
-             */
-            patchLength(lengthPos, buffer, pos);
-        }
+        forEachCompilationUnit(classEntries, classEntry -> writeCUAt(context, classEntry, false, buffer));
         /* write CUs for deopt targets */
-        for (ClassEntry classEntry : getPrimaryClasses()) {
-            if (classEntry.includesDeoptTarget()) {
-                /*
-                 * Save the offset of this file's CU so it can be used when writing the aranges
-                 * section.
-                 */
-                classEntry.setDeoptCUIndex(pos);
-                int lengthPos = pos;
-                pos = writeCUHeader(buffer, pos);
-                log(context, "  [0x%08x] Compilation Unit (deopt targets)", pos, size);
-                assert pos == lengthPos + DW_DIE_HEADER_SIZE;
-                pos = writeCU(context, classEntry, true, buffer, pos);
-                /*
-                 * Backpatch length at lengthPos (excluding length field).
-                 */
-                patchLength(lengthPos, buffer, pos);
-            }
-        }
-        assert pos == size;
+        List<ClassEntry> deoptClassEntries = classEntries.stream().filter(ClassEntry::includesDeoptTarget).collect(Collectors.toList());
+        forEachCompilationUnit(deoptClassEntries, classEntry -> writeCUAt(context, classEntry, true, buffer));
+    }
+
+    private void writeCUAt(DebugContext context, ClassEntry classEntry, boolean isDeoptTargetCU, byte[] buffer) {
+        int lengthPos = (isDeoptTargetCU ? classEntry.getDeoptCUIndex() : classEntry.getCUIndex());
+        int pos = writeCUHeader(buffer, lengthPos);
+        log(context, "  [0x%08x] Compilation Unit%s", pos, (isDeoptTargetCU ? " (deopt targets)" : ""));
+        assert pos == lengthPos + DW_DIE_HEADER_SIZE;
+        pos = writeCU(context, classEntry, isDeoptTargetCU, buffer, pos);
+        /*
+         * Backpatch length at lengthPos (excluding length field).
+         */
+        patchLength(lengthPos, buffer, pos);
     }
 
     private int writeCUHeader(byte[] buffer, int p) {
@@ -37,6 +37,8 @@ import com.oracle.objectfile.debugentry.Range;
 import com.oracle.objectfile.debuginfo.DebugInfoProvider.DebugFrameSizeChange;
 import org.graalvm.compiler.debug.DebugContext;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import static com.oracle.objectfile.elf.dwarf.DwarfDebugInfo.DW_LINE_SECTION_NAME;
@@ -149,26 +151,38 @@ public class DwarfLineSectionImpl extends DwarfSectionImpl {
          */
 
         /*
-         * Write entries for each file listed in the primary list.
+         * Write entries for each file listed in the primary list. The size of a CU does not depend
+         * on its position in the section, so the CUs are sized concurrently before their offsets
+         * are assigned in section order.
          */
+        List<ClassEntry> classEntries = compilationUnits();
+        classEntries.parallelStream().forEach(classEntry -> {
+            int headerSize = headerSize();
+            int dirTableSize = computeDirTableSize(classEntry);
+            int fileTableSize = computeFileTableSize(classEntry);
+            int prologueSize = headerSize + dirTableSize + fileTableSize;
+            classEntry.setLinePrologueSize(prologueSize);
+            int lineNumberTableSize = computeLineNUmberTableSize(classEntry);
+            int totalSize = prologueSize + lineNumberTableSize;
+            classEntry.setTotalSize(totalSize);
+        });
         int pos = 0;
+        for (ClassEntry classEntry : classEntries) {
+            classEntry.setLineIndex(pos);
+            pos += classEntry.getTotalSize();
+        }
+        byte[] buffer = new byte[pos];
+        super.setContent(buffer);
+    }
+
+    private List<ClassEntry> compilationUnits() {
+        List<ClassEntry> classEntries = new ArrayList<>();
         for (ClassEntry classEntry : getPrimaryClasses()) {
             if (classEntry.getFileName().length() != 0) {
-                int startPos = pos;
-                classEntry.setLineIndex(startPos);
-                int headerSize = headerSize();
-                int dirTableSize = computeDirTableSize(classEntry);
-                int fileTableSize = computeFileTableSize(classEntry);
-                int prologueSize = headerSize + dirTableSize + fileTableSize;
-                classEntry.setLinePrologueSize(prologueSize);
-                int lineNumberTableSize = computeLineNUmberTableSize(classEntry);
-                int totalSize = prologueSize + lineNumberTableSize;
-                classEntry.setTotalSize(totalSize);
-                pos += totalSize;
+                classEntries.add(classEntry);
             }
         }
-        byte[] buffer = new byte[pos];
-        super.setContent(buffer);
+        return classEntries;
     }
 
     private static int headerSize() {
@@ -286,26 +300,26 @@ public class DwarfLineSectionImpl extends DwarfSectionImpl {
         enableLog(context, pos);
         log(context, "  [0x%08x] DEBUG_LINE", pos);
 
-        for (ClassEntry classEntry : getPrimaryClasses()) {
-            if (classEntry.getFileName().length() != 0) {
-                int startPos = pos;
-                assert classEntry.getLineIndex() == startPos;
-                log(context, "  [0x%08x] Compile Unit for %s", pos, classEntry.getFileName());
-                pos = writeHeader(classEntry, buffer, pos);
-                log(context, "  [0x%08x] headerSize = 0x%08x", pos, pos - startPos);
-                int dirTablePos = pos;
-                pos = writeDirTable(context, classEntry, buffer, pos);
-                log(context, "  [0x%08x] dirTableSize = 0x%08x", pos, pos - dirTablePos);
-                int fileTablePos = pos;
-                pos = writeFileTable(context, classEntry, buffer, pos);
-                log(context, "  [0x%08x] fileTableSize = 0x%08x", pos, pos - fileTablePos);
-                int lineNumberTablePos = pos;
-                pos = writeLineNumberTable(context, classEntry, buffer, pos);
-                log(context, "  [0x%08x] lineNumberTableSize = 0x%x", pos, pos - lineNumberTablePos);
-                log(context, "  [0x%08x] size = 0x%x", pos, pos - startPos);
-            }
-        }
-        assert pos == buffer.length;
+        forEachCompilationUnit(compilationUnits(), classEntry -> writeCU(context, classEntry, buffer));
+    }
+
+    private void writeCU(DebugContext context, ClassEntry classEntry, byte[] buffer) {
+        int startPos = classEntry.getLineIndex();
+        int pos = startPos;
+        log(context, "  [0x%08x] Compile Unit for %s", pos, classEntry.getFileName());
+        pos = writeHeader(classEntry, buffer, pos);
+        log(context, "  [0x%08x] headerSize = 0x%08x", pos, pos - startPos);
+        int dirTablePos = pos;
+        pos = writeDirTable(context, classEntry, buffer, pos);
+        log(context, "  [0x%08x] dirTableSize = 0x%08x", pos, pos - dirTablePos);
+        int fileTablePos = pos;
+        pos = writeFileTable(context, classEntry, buffer, pos);
+        log(context, "  [0x%08x] fileTableSize = 0x%08x", pos, pos - fileTablePos);
+        int lineNumberTablePos = pos;
+        pos = writeLineNumberTable(context, classEntry, buffer, pos);
+        log(context, "  [0x%08x] lineNumberTableSize = 0x%x", pos, pos - lineNumberTablePos);
+        log(context, "  [0x%08x] size = 0x%x", pos, pos - startPos);
+        assert pos == startPos + classEntry.getTotalSize();
     }
 
     private int writeHeader(ClassEntry classEntry, byte[] buffer, int p) {
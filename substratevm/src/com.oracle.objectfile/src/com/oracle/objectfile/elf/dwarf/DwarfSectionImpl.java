@@ -37,8 +37,10 @@ import com.oracle.objectfile.elf.ELFObjectFile;
 import org.graalvm.compiler.debug.DebugContext;
 
 import java.nio.ByteOrder;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import static com.oracle.objectfile.elf.dwarf.DwarfDebugInfo.TEXT_SECTION_NAME;
 
@@ -352,6 +354,7 @@ public abstract class DwarfSectionImpl extends BasicProgbitsSectionImpl {
 
     @Override
     public byte[] getOrDecideContent(Map<ObjectFile.Element, LayoutDecisionMap> alreadyDecided, byte[] contentHint) {
+        long startNanos = System.nanoTime();
         /*
          * Ensure content byte[] has been created before calling super method.
          */
@@ -363,7 +366,10 @@ public abstract class DwarfSectionImpl extends BasicProgbitsSectionImpl {
          * we do this in a nested debug scope derived from the one set up under the object file
          * write
          */
-        getOwner().debugContext(debugSectionLogName(), this::writeContent);
+        getOwner().debugContext(debugSectionLogName(), context -> {
+            writeContent(context);
+            context.log(DebugContext.BASIC_LEVEL, "%s: %d bytes, created and written in %d ms", getSectionName(), getContent().length, (System.nanoTime() - startNanos) / 1_000_000);
+        });
 
         return super.getOrDecideContent(alreadyDecided, contentHint);
     }
@@ -392,7 +398,8 @@ public abstract class DwarfSectionImpl extends BasicProgbitsSectionImpl {
     }
 
     /**
-     * A scratch buffer used during computation of a section's size.
+     * A scratch buffer used during computation of a section's size. Its content is never read, so
+     * sizing passes running concurrently may share it.
      */
     protected static final byte[] scratch = new byte[10];
 
@@ -400,6 +407,23 @@ public abstract class DwarfSectionImpl extends BasicProgbitsSectionImpl {
         return dwarfSections.getPrimaryClasses();
     }
 
+    /**
+     * Applies an action to each class entry, i.e. to each compilation unit. The entries are
+     * processed concurrently unless logging is enabled, in which case they are processed in order
+     * so that the log follows the section layout. The action must only write the part of the
+     * section belonging to its entry.
+     *
+     * @param classEntries the class entries to process.
+     * @param action the action to apply to each entry.
+     */
+    protected void forEachCompilationUnit(List<ClassEntry> classEntries, Consumer<ClassEntry> action) {
+        if (debug) {
+            classEntries.forEach(action);
+        } else {
+            classEntries.parallelStream().forEach(action);
+        }
+    }
+
     protected int debugStringIndex(String str) {
         return dwarfSections.debugStringIndex(str);
     }
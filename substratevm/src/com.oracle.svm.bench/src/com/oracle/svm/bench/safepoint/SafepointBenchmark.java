@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.bench.safepoint;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.graalvm.nativeimage.IsolateThread;
+
+import com.oracle.svm.core.thread.Handshake;
+import com.oracle.svm.core.thread.JavaVMOperation;
+import com.oracle.svm.core.thread.Safepoint;
+
+/**
+ * Measures the cost of stopping threads with many worker threads. In mode {@code handshake}, the
+ * main thread repeatedly executes an empty {@link Handshake thread-local handshake} for a single
+ * worker thread. In mode {@code safepoint}, it repeatedly executes an empty VM operation, which
+ * stops all threads at a global safepoint. The workers either compute in Java code
+ * ({@code running}), or are blocked in native code most of the time ({@code blocked}).
+ * <p>
+ * The benchmark reports the latency distribution seen by the requesting thread, the distribution
+ * of pauses seen by running worker threads, the time-to-handshake distribution, and, if the image
+ * was built with {@code -H:+GatherSafepointStatistics}, the time-to-safepoint distribution.
+ * <p>
+ * Usage: {@code safepointbenchmark [handshake|safepoint] [threads] [iterations] [running|blocked]}
+ */
+public final class SafepointBenchmark {
+
+    /** Pauses shorter than this are considered to be regular scheduling noise. */
+    private static final long MIN_PAUSE_NANOS = 10_000;
+
+    /** Histogram with power-of-two buckets in nanoseconds. */
+    static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+
+        void record(long nanos) {
+            buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(nanos, 1)));
+        }
+
+        long getCount() {
+            long count = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+
+        /** Returns the upper bound of the bucket that contains the given percentile. */
+        long getPercentile(double percentile) {
+            long count = getCount();
+            long threshold = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= threshold && seen > 0) {
+                    return 1L << (i + 1);
+                }
+            }
+            return 0;
+        }
+
+        void print(String name) {
+            System.out.printf("%-20s count: %8d  p50: <%9d ns  p90: <%9d ns  p99: <%9d ns  max: <%9d ns%n", name, getCount(),
+                            getPercentile(50), getPercentile(90), getPercentile(99), getPercentile(100));
+        }
+    }
+
+    /** A handshake that does nothing, so that only the cost of the handshake itself is measured. */
+    static final class EmptyOperation extends Handshake.Operation {
+        EmptyOperation() {
+            super("SafepointBenchmark");
+        }
+
+        @Override
+        protected void execute(IsolateThread thread) {
+        }
+    }
+
+    private static volatile boolean running = true;
+
+    public static void main(String[] args) throws InterruptedException {
+        boolean handshake = args.length < 1 || args[0].equals("handshake");
+        int threadCount = args.length < 2 ? 64 : Integer.parseInt(args[1]);
+        int iterations = args.length < 3 ? 10_000 : Integer.parseInt(args[2]);
+        boolean blocked = args.length >= 4 && args[3].equals("blocked");
+
+        Histogram pauses = new Histogram();
+        Thread[] workers = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            workers[i] = new Thread(blocked ? SafepointBenchmark::block : () -> work(pauses), "Worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+
+        Histogram latencies = new Histogram();
+        Histogram timesToHandshake = new Histogram();
+        Histogram timesToSafepoint = new Histogram();
+        boolean gatherStatistics = Safepoint.Statistics.Options.GatherSafepointStatistics.getValue();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            long requestNanos = System.nanoTime();
+            if (handshake) {
+                EmptyOperation operation = new EmptyOperation();
+                Handshake.execute(workers[i % threadCount], operation);
+                timesToHandshake.record(operation.getTimeToStartNanos());
+            } else {
+                JavaVMOperation.enqueueBlockingSafepoint("SafepointBenchmark", () -> {
+                    if (gatherStatistics) {
+                        timesToSafepoint.record(Safepoint.Statistics.getFrozenNanos());
+                    }
+                });
+            }
+            latencies.record(System.nanoTime() - requestNanos);
+        }
+        long totalNanos = System.nanoTime() - startNanos;
+
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        System.out.printf("mode: %s  workers: %s  threads: %d  iterations: %d  total: %d ms%n", handshake ? "handshake" : "safepoint", blocked ? "blocked" : "running",
+                        threadCount, iterations, totalNanos / 1_000_000);
+        latencies.print("request latency");
+        if (!blocked) {
+            pauses.print("worker pauses");
+        }
+        if (handshake) {
+            timesToHandshake.print("time to handshake");
+            System.out.printf("handshakes executed by target: %d  by requester: %d  at safepoint: %d%n", Handshake.Statistics.getExecutedByTarget(),
+                            Handshake.Statistics.getExecutedByRequester(), Handshake.Statistics.getExecutedAtSafepoint());
+        } else if (gatherStatistics) {
+            timesToSafepoint.print("time to safepoint");
+        }
+    }
+
+    private static void block() {
+        while (running) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static void work(Histogram pauses) {
+        long last = System.nanoTime();
+        long value = 0;
+        while (running) {
+            for (int i = 0; i < 100; i++) {
+                value = value * 31 + i;
+            }
+            long now = System.nanoTime();
+            if (now - last >= MIN_PAUSE_NANOS) {
+                pauses.record(now - last);
+            }
+            last = now;
+        }
+        if (value == 42) {
+            System.out.println();
+        }
+    }
+}
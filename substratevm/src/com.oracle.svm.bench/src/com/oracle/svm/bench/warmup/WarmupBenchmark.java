@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.bench.warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.graalvm.nativeimage.hosted.BuildTimeWarmup;
+import org.graalvm.nativeimage.hosted.Feature;
+
+/**
+ * Measures the latency of the first request of a service that fills typical caches on first use: a
+ * parsed configuration, a lookup table, and compiled regular expressions. The benchmark reports the
+ * time from the start of {@code main} until the first request is answered.
+ * <p>
+ * Build the image once as is, and once with
+ * {@code --features=com.oracle.svm.bench.warmup.WarmupBenchmark$WarmupFeature}, which fills the
+ * caches at image build time using {@link BuildTimeWarmup}. The startup latency of the whole
+ * process is best compared with an external tool, e.g., {@code perf stat -r 50 <image>}.
+ * <p>
+ * Usage: {@code warmupbenchmark [config entries] [patterns]}
+ */
+public final class WarmupBenchmark {
+
+    /** The caches of the service. They are null until filled, at build time or on first use. */
+    static final class Caches {
+        static Map<String, String> config;
+        static int[] crcTable;
+        static List<Pattern> routes;
+
+        static void fill(int configEntries, int patterns) {
+            config = parseConfig(configEntries);
+            crcTable = computeCrcTable();
+            routes = compileRoutes(patterns);
+        }
+    }
+
+    /** Cache sizes used by the build-time warmup, and by default at run time. */
+    static final int DEFAULT_CONFIG_ENTRIES = 20_000;
+    static final int DEFAULT_PATTERNS = 500;
+
+    public static final class WarmupFeature implements Feature {
+        @Override
+        public void duringSetup(DuringSetupAccess access) {
+            BuildTimeWarmup.register(() -> Caches.fill(DEFAULT_CONFIG_ENTRIES, DEFAULT_PATTERNS), Caches.class);
+        }
+    }
+
+    public static void main(String[] args) {
+        long startNanos = System.nanoTime();
+        int configEntries = args.length < 1 ? DEFAULT_CONFIG_ENTRIES : Integer.parseInt(args[0]);
+        int patterns = args.length < 2 ? DEFAULT_PATTERNS : Integer.parseInt(args[1]);
+
+        boolean prewarmed = Caches.config != null;
+        if (!prewarmed) {
+            Caches.fill(configEntries, patterns);
+        }
+        String response = handleRequest("/api/v1/route" + (patterns - 1) + "/item/42");
+        long firstRequestNanos = System.nanoTime() - startNanos;
+
+        System.out.printf("caches: %s  config entries: %d  patterns: %d  first request: %d us  response: %s%n", prewarmed ? "image heap" : "filled at run time",
+                        Caches.config.size(), Caches.routes.size(), firstRequestNanos / 1_000, response);
+    }
+
+    private static String handleRequest(String path) {
+        for (int i = 0; i < Caches.routes.size(); i++) {
+            Matcher matcher = Caches.routes.get(i).matcher(path);
+            if (matcher.matches()) {
+                String handler = Caches.config.get("route" + i + ".handler");
+                return handler + ":" + Integer.toHexString(crc(matcher.group(1)));
+            }
+        }
+        return "not found";
+    }
+
+    private static Map<String, String> parseConfig(int entries) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < entries; i++) {
+            text.append("route").append(i).append(".handler = handler-").append(i).append('\n');
+        }
+        Properties properties = new Properties();
+        try {
+            properties.load(new StringReader(text.toString()));
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        Map<String, String> config = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            config.put(key, properties.getProperty(key));
+        }
+        return config;
+    }
+
+    private static int[] computeCrcTable() {
+        int[] table = new int[256];
+        for (int n = 0; n < table.length; n++) {
+            int c = n;
+            for (int k = 0; k < 8; k++) {
+                c = (c & 1) != 0 ? 0xEDB88320 ^ (c >>> 1) : c >>> 1;
+            }
+            table[n] = c;
+        }
+        return table;
+    }
+
+    private static List<Pattern> compileRoutes(int patterns) {
+        List<Pattern> routes = new ArrayList<>(patterns);
+        for (int i = 0; i < patterns; i++) {
+            routes.add(Pattern.compile("/api/v[0-9]+/route" + i + "/item/([0-9]+)"));
+        }
+        return routes;
+    }
+
+    private static int crc(String value) {
+        int c = 0xFFFFFFFF;
+        for (int i = 0; i < value.length(); i++) {
+            c = Caches.crcTable[(c ^ value.charAt(i)) & 0xFF] ^ (c >>> 8);
+        }
+        return ~c;
+    }
+}
@@ -26,7 +26,10 @@ package com.oracle.svm.core.genscavenge;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import com.oracle.svm.core.config.ConfigurationValues;
 import com.oracle.svm.core.hub.DynamicHub;
@@ -89,10 +92,13 @@ public abstract class AbstractImageHeapLayouter<T extends AbstractImageHeapLayou
     }
 
     @Override
-    public void assignObjectToPartition(ImageHeapObject info, boolean immutable, boolean references, boolean relocatable) {
+    public void assignObjectToPartition(ImageHeapObject info, boolean immutable, boolean references, boolean relocatable, boolean likelyWritten) {
         T partition = choosePartition(info, immutable, references, relocatable);
         info.setHeapPartition(partition);
         partition.assign(info);
+        if (likelyWritten && partition.isWritable()) {
+            partition.markLikelyWritten(info);
+        }
     }
 
     @Override
@@ -115,7 +121,7 @@ public abstract class AbstractImageHeapLayouter<T extends AbstractImageHeapLayou
             partition.setEndAlignment(endAlignment);
         }
 
-        ImageHeapLayoutInfo layoutInfo = doLayout(imageHeap);
+        ImageHeapLayoutInfo layoutInfo = doLayout(imageHeap, pageSize);
 
         for (T partition : getPartitions()) {
             assert partition.getStartOffset() % partition.getStartAlignment() == 0;
@@ -133,7 +139,7 @@ public abstract class AbstractImageHeapLayouter<T extends AbstractImageHeapLayou
         // For implementation in subclasses, if necessary.
     }
 
-    protected abstract ImageHeapLayoutInfo doLayout(ImageHeap imageHeap);
+    protected abstract ImageHeapLayoutInfo doLayout(ImageHeap imageHeap, int pageSize);
 
     protected T getReadOnlyPrimitive() {
         return getPartitions()[READ_ONLY_PRIMITIVE];
@@ -211,6 +217,7 @@ public abstract class AbstractImageHeapLayouter<T extends AbstractImageHeapLayou
         private int startAlignment = -1;
         private int endAlignment = -1;
         private final List<ImageHeapObject> objects = new ArrayList<>();
+        private final Set<ImageHeapObject> likelyWrittenObjects = Collections.newSetFromMap(new IdentityHashMap<>());
 
         public AbstractImageHeapPartition(String name, boolean writable) {
             this.name = name;
@@ -222,6 +229,21 @@ public abstract class AbstractImageHeapLayouter<T extends AbstractImageHeapLayou
             objects.add(obj);
         }
 
+        void markLikelyWritten(ImageHeapObject obj) {
+            assert obj.getPartition() == this && writable;
+            likelyWrittenObjects.add(obj);
+        }
+
+        /** Returns true if the object is expected to be written at run time. */
+        public boolean isLikelyWritten(ImageHeapObject obj) {
+            return likelyWrittenObjects.contains(obj);
+        }
+
+        /** Returns true if some, but not all objects are expected to be written at run time. */
+        public boolean hasMixedWriteLikelihood() {
+            return !likelyWrittenObjects.isEmpty() && likelyWrittenObjects.size() < objects.size();
+        }
+
         public void setStartAlignment(int alignment) {
             assert this.startAlignment == -1 : "Start alignment already assigned: " + this.startAlignment;
             this.startAlignment = alignment;
@@ -67,11 +67,11 @@ public class ChunkedImageHeapLayouter extends AbstractImageHeapLayouter<ChunkedI
     }
 
     @Override
-    protected ImageHeapLayoutInfo doLayout(ImageHeap imageHeap) {
+    protected ImageHeapLayoutInfo doLayout(ImageHeap imageHeap, int pageSize) {
         assert !compressedNullPadding || AlignedHeapChunk.getObjectsStartOffset().aboveThan(0) : "Expecting header to pad start so object offsets are strictly greater than 0";
         allocator = new ChunkedImageHeapAllocator(imageHeap, startOffset);
         for (ChunkedImageHeapPartition partition : getPartitions()) {
-            partition.layout(allocator);
+            partition.layout(allocator, pageSize);
         }
         return populateInfoObjects(imageHeap.countDynamicHubs());
     }
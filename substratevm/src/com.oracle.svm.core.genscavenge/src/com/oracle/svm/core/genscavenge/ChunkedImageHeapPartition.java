@@ -25,6 +25,7 @@
 package com.oracle.svm.core.genscavenge;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
@@ -63,11 +64,11 @@ public class ChunkedImageHeapPartition extends AbstractImageHeapPartition {
         return hugeObjects;
     }
 
-    void layout(ChunkedImageHeapAllocator allocator) {
+    void layout(ChunkedImageHeapAllocator allocator, int pageSize) {
         if (hugeObjects) {
             layoutInUnalignedChunks(allocator);
         } else {
-            layoutInAlignedChunks(allocator);
+            layoutInAlignedChunks(allocator, pageSize);
         }
     }
 
@@ -84,19 +85,39 @@ public class ChunkedImageHeapPartition extends AbstractImageHeapPartition {
         endOffset = allocator.getPosition();
     }
 
-    private void layoutInAlignedChunks(ChunkedImageHeapAllocator allocator) {
+    private void layoutInAlignedChunks(ChunkedImageHeapAllocator allocator, int pageSize) {
         allocator.maybeStartAlignedChunk();
         allocator.alignInAlignedChunk(getStartAlignment());
         startOffset = allocator.getPosition();
 
-        allocateObjectsInAlignedChunks(allocator);
+        if (hasMixedWriteLikelihood()) {
+            /*
+             * Place the objects that are likely written first and start the remaining objects on a
+             * new page. The pages of the remaining objects then stay clean and can be shared with
+             * other processes that map the same image.
+             */
+            List<ImageHeapObject> likelyWritten = new ArrayList<>();
+            List<ImageHeapObject> others = new ArrayList<>();
+            for (ImageHeapObject info : getObjects()) {
+                if (isLikelyWritten(info)) {
+                    likelyWritten.add(info);
+                } else {
+                    others.add(info);
+                }
+            }
+            allocateObjectsInAlignedChunks(allocator, likelyWritten);
+            allocator.alignInAlignedChunk(pageSize);
+            allocateObjectsInAlignedChunks(allocator, others);
+        } else {
+            allocateObjectsInAlignedChunks(allocator, getObjects());
+        }
 
         allocator.alignInAlignedChunk(getEndAlignment());
         endOffset = allocator.getPosition();
     }
 
-    private void allocateObjectsInAlignedChunks(ChunkedImageHeapAllocator allocator) {
-        NavigableMap<Long, Queue<ImageHeapObject>> objects = createSortedObjectsMap(getObjects());
+    private void allocateObjectsInAlignedChunks(ChunkedImageHeapAllocator allocator, List<ImageHeapObject> objectsToAllocate) {
+        NavigableMap<Long, Queue<ImageHeapObject>> objects = createSortedObjectsMap(objectsToAllocate);
         while (!objects.isEmpty()) {
             ImageHeapObject info = dequeueBestFit(objects, allocator.getRemainingBytesInAlignedChunk());
             if (info == null) {
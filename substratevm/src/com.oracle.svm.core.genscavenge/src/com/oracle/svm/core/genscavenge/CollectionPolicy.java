@@ -33,11 +33,13 @@ import org.graalvm.nativeimage.Platform;
 import org.graalvm.nativeimage.Platforms;
 import org.graalvm.nativeimage.hosted.Feature.FeatureAccess;
 import org.graalvm.word.UnsignedWord;
+import org.graalvm.word.WordFactory;
 
 import com.oracle.svm.core.log.Log;
 import com.oracle.svm.core.option.HostedOptionKey;
 import com.oracle.svm.core.option.RuntimeOptionKey;
 import com.oracle.svm.core.util.TimeUtils;
+import com.oracle.svm.core.util.UnsignedUtils;
 import com.oracle.svm.core.util.UserError;
 
 /** A collection policy decides when to collect incrementally or completely. */
@@ -48,6 +50,18 @@ public abstract class CollectionPolicy {
 
         @Option(help = "Percentage of total collection time that should be spent on young generation collections.")//
         public static final RuntimeOptionKey<Integer> PercentTimeInIncrementalCollection = new RuntimeOptionKey<>(50);
+
+        @Option(help = "The pause time goal in milliseconds for incremental collections of the adaptive collection policy, 0 for no goal.")//
+        public static final RuntimeOptionKey<Long> MaxGCPauseMillis = new RuntimeOptionKey<>(0L);
+
+        @Option(help = "The throughput goal of the adaptive collection policy: at most 1/(1+GCTimeRatio) of the time should be spent in collections.")//
+        public static final RuntimeOptionKey<Integer> GCTimeRatio = new RuntimeOptionKey<>(19);
+
+        @Option(help = "Percentage by which the adaptive collection policy grows the young generation if the throughput goal is missed.")//
+        public static final RuntimeOptionKey<Integer> YoungGenerationSizeIncrement = new RuntimeOptionKey<>(20);
+
+        @Option(help = "Percentage by which the adaptive collection policy shrinks the young generation if the pause time goal is missed.")//
+        public static final RuntimeOptionKey<Integer> YoungGenerationSizeDecrement = new RuntimeOptionKey<>(10);
     }
 
     @Platforms(Platform.HOSTED_ONLY.class)
@@ -79,6 +93,25 @@ public abstract class CollectionPolicy {
     /** Return {@code true} if the current collection should entail a complete collection. */
     public abstract boolean collectCompletely();
 
+    /**
+     * Return the number of bytes that can be allocated in the young generation before an
+     * incremental collection is triggered.
+     */
+    public UnsignedWord getYoungGenerationCapacity() {
+        return HeapPolicy.getMaximumYoungGenerationSize();
+    }
+
+    /**
+     * Called at the end of every collection, before the memory of released chunks is handed back
+     * to the {@link com.oracle.svm.core.os.CommittedMemoryProvider}.
+     *
+     * @param collectionNanos the duration of the collection
+     * @param mutatorNanos the time the application ran since the previous collection
+     */
+    @SuppressWarnings("unused")
+    public void onCollectionEnd(boolean completeCollection, long collectionNanos, long mutatorNanos) {
+    }
+
     CollectionPolicy() {
     }
 
@@ -207,4 +240,95 @@ public abstract class CollectionPolicy {
             return "by space and time";
         }
     }
+
+    /**
+     * A collection policy that sizes the young generation from pause time and throughput goals,
+     * similar to the adaptive size policy of the HotSpot parallel collector. Complete collections
+     * are triggered like in {@link BySpaceAndTime}.
+     * <p>
+     * After every incremental collection, the young generation is shrunk if the average pause
+     * exceeds {@code MaxGCPauseMillis}, grown if the average share of time spent in collections
+     * exceeds {@code 1/(1+GCTimeRatio)}, and otherwise slowly shrunk to reduce the footprint. The
+     * size stays between 1/8 of and the maximum young generation size, which is derived from the
+     * physical memory or container memory limit. Unused chunks beyond what the next young
+     * generation needs are returned to the operating system, but never below the minimum heap
+     * size.
+     */
+    public static class Adaptive extends BySpaceAndTime {
+        /** Weight in percent of a new sample in the decaying averages. */
+        private static final int AVERAGE_WEIGHT = 25;
+        /** Fraction of the maximum young generation size that is the minimum size. */
+        private static final int MINIMUM_YOUNG_GENERATION_FRACTION = 8;
+        /** Fraction of the decrement that is used when shrinking to reduce the footprint. */
+        private static final int FOOTPRINT_DECREMENT_FRACTION = 4;
+
+        private UnsignedWord youngGenerationCapacity = WordFactory.zero();
+        private long averagePauseNanos;
+        private long averageMutatorNanos;
+
+        @Override
+        public UnsignedWord getYoungGenerationCapacity() {
+            UnsignedWord maxYoungSize = HeapPolicy.getMaximumYoungGenerationSize();
+            if (youngGenerationCapacity.equal(0)) {
+                return maxYoungSize;
+            }
+            /* The maximum can change, e.g., when the physical memory size becomes known. */
+            return UnsignedUtils.min(youngGenerationCapacity, maxYoungSize);
+        }
+
+        @Override
+        public void onCollectionEnd(boolean completeCollection, long collectionNanos, long mutatorNanos) {
+            if (!completeCollection) {
+                averagePauseNanos = average(averagePauseNanos, collectionNanos);
+                averageMutatorNanos = average(averageMutatorNanos, mutatorNanos);
+                youngGenerationCapacity = computeYoungGenerationCapacity();
+            }
+            freeExcessUnusedChunks();
+        }
+
+        private UnsignedWord computeYoungGenerationCapacity() {
+            UnsignedWord maxSize = HeapPolicy.getMaximumYoungGenerationSize();
+            UnsignedWord minSize = UnsignedUtils.max(maxSize.unsignedDivide(MINIMUM_YOUNG_GENERATION_FRACTION), HeapPolicy.getAlignedHeapChunkSize());
+            UnsignedWord size = getYoungGenerationCapacity();
+            UnsignedWord decrement = size.unsignedDivide(100).multiply(Options.YoungGenerationSizeDecrement.getValue());
+
+            long pauseGoalNanos = TimeUtils.millisToNanos(Options.MaxGCPauseMillis.getValue());
+            if (pauseGoalNanos > 0 && averagePauseNanos > pauseGoalNanos) {
+                size = size.subtract(decrement);
+            } else if (averagePauseNanos * (1L + Options.GCTimeRatio.getValue()) > averagePauseNanos + averageMutatorNanos) {
+                size = size.add(size.unsignedDivide(100).multiply(Options.YoungGenerationSizeIncrement.getValue()));
+            } else {
+                size = size.subtract(decrement.unsignedDivide(FOOTPRINT_DECREMENT_FRACTION));
+            }
+            size = UnsignedUtils.roundDown(size, HeapPolicy.getAlignedHeapChunkSize());
+            return UnsignedUtils.min(UnsignedUtils.max(size, minSize), maxSize);
+        }
+
+        private static long average(long average, long sample) {
+            if (average == 0) {
+                return sample;
+            }
+            return average + (sample - average) * AVERAGE_WEIGHT / 100;
+        }
+
+        private void freeExcessUnusedChunks() {
+            UnsignedWord youngBytes = HeapImpl.getHeapImpl().getYoungGeneration().getChunkBytes();
+            UnsignedWord capacity = getYoungGenerationCapacity();
+            UnsignedWord keepForYoung = capacity.aboveThan(youngBytes) ? capacity.subtract(youngBytes) : WordFactory.zero();
+            UnsignedWord chunkBytes = GCImpl.getChunkBytes();
+            UnsignedWord minimumHeapSize = getMinimumHeapSize();
+            UnsignedWord keepForMinimum = minimumHeapSize.aboveThan(chunkBytes) ? minimumHeapSize.subtract(chunkBytes) : WordFactory.zero();
+            HeapImpl.getChunkProvider().freeExcessAlignedChunks(UnsignedUtils.max(keepForYoung, keepForMinimum));
+        }
+
+        @Override
+        public void nameToLog(Log log) {
+            log.string(getName()).string(": young generation capacity ").unsigned(getYoungGenerationCapacity());
+        }
+
+        @Override
+        public String getName() {
+            return "adaptive";
+        }
+    }
 }
@@ -75,6 +75,7 @@ import com.oracle.svm.core.heap.ObjectVisitor;
 import com.oracle.svm.core.heap.ReferenceHandler;
 import com.oracle.svm.core.heap.RuntimeCodeCacheCleaner;
 import com.oracle.svm.core.jdk.RuntimeSupport;
+import com.oracle.svm.core.jfr.JfrEvents;
 import com.oracle.svm.core.log.Log;
 import com.oracle.svm.core.os.CommittedMemoryProvider;
 import com.oracle.svm.core.snippets.ImplicitExceptions;
@@ -109,6 +110,7 @@ public final class GCImpl implements GC {
     private final OutOfMemoryError oldGenerationSizeExceeded = new OutOfMemoryError("Garbage-collected heap size exceeded.");
     private final NoAllocationVerifier noAllocationVerifier = NoAllocationVerifier.factory("GCImpl.GCImpl()", false);
     private final ChunkReleaser chunkReleaser = new ChunkReleaser();
+    private final MarkCompactCollector markCompactCollector = new MarkCompactCollector(timers);
 
     private CollectionPolicy policy;
     private boolean completeCollection = false;
@@ -120,6 +122,7 @@ public final class GCImpl implements GC {
     GCImpl(FeatureAccess access) {
         this.policy = CollectionPolicy.getInitialPolicy(access);
         RuntimeSupport.getRuntimeSupport().addShutdownHook(this::printGCSummary);
+        RuntimeSupport.getRuntimeSupport().addShutdownHook(ImageHeapWriteProfiler::onShutdown);
     }
 
     @Override
@@ -173,10 +176,12 @@ public final class GCImpl implements GC {
         /* Flush all TLAB chunks to eden. */
         ThreadLocalAllocation.disableAndFlushForAllThreads();
 
+        long startTicks = JfrEvents.ticks();
         printGCBefore(cause.getName());
         boolean outOfMemory = collectImpl(cause.getName(), forceFullGC);
         HeapPolicy.setEdenAndYoungGenBytes(WordFactory.unsigned(0), accounting.getYoungChunkBytesAfter());
         printGCAfter(cause.getName());
+        JfrEvents.emitGarbageCollection(startTicks, getCollectionEpoch().rawValue(), cause);
 
         finishCollection();
         timers.mutator.open();
@@ -238,15 +243,21 @@ public final class GCImpl implements GC {
             completeCollection = forceFullGC || policy.collectCompletely();
             if (completeCollection) {
                 if (HeapPolicyOptions.CollectYoungGenerationSeparately.getValue()) {
+                    /* An incremental collection, which must not release the old generation. */
+                    completeCollection = false;
                     scavenge(true);
+                    completeCollection = true;
+                }
+                if (!HeapPolicyOptions.CompactOldGeneration.getValue() || !markCompact()) {
+                    scavenge(false);
                 }
-                scavenge(false);
             } else if (policy.collectIncrementally()) {
                 scavenge(true);
             }
         } finally {
             collectionTimer.close();
         }
+        policy.onCollectionEnd(completeCollection, collectionTimer.getLastIntervalNanos(), timers.mutator.getLastIntervalNanos());
         CommittedMemoryProvider.get().afterGarbageCollection(completeCollection);
 
         accounting.afterCollection(completeCollection, timers.collection);
@@ -495,6 +506,60 @@ public final class GCImpl implements GC {
         }
     }
 
+    /**
+     * Collect all generations with the {@link MarkCompactCollector}, which compacts the aligned
+     * chunks in place. Returns false, without having changed the heap, if the collector cannot be
+     * used for this collection.
+     */
+    private boolean markCompact() {
+        assert completeCollection;
+        if (!markCompactCollector.prepare()) {
+            return false;
+        }
+        try {
+            Log trace = Log.noopLog().string("[GCImpl.markCompact:").newline();
+            Timer rootScanTimer = timers.rootScan.open();
+            try {
+                promoteIndividualPinnedObjects();
+                markCompactCollector.markFromRoots();
+            } finally {
+                rootScanTimer.close();
+            }
+
+            trace.string("  Discovered references: ");
+            Timer referenceObjectsTimer = timers.referenceObjects.open();
+            try {
+                Reference<?> newlyPendingList = ReferenceObjectProcessing.processRememberedReferences();
+                HeapImpl.getHeapImpl().addToReferencePendingList(newlyPendingList);
+            } finally {
+                referenceObjectsTimer.close();
+            }
+
+            trace.string("  Compact: ");
+            assert chunkReleaser.isEmpty();
+            markCompactCollector.compact(chunkReleaser);
+
+            trace.string("  Release spaces: ");
+            Timer releaseSpacesTimer = timers.releaseSpaces.open();
+            try {
+                releaseSpaces();
+                chunkReleaser.release();
+            } finally {
+                releaseSpacesTimer.close();
+            }
+            trace.string("  Swap spaces: ");
+            swapSpaces();
+            trace.string("]").newline();
+        } finally {
+            markCompactCollector.release();
+        }
+        return true;
+    }
+
+    MarkCompactCollector getMarkCompactCollector() {
+        return markCompactCollector;
+    }
+
     /**
      * Visit all the memory that is reserved for runtime compiled code. References from the runtime
      * compiled code to the Java heap must be consider as either strong or weak references,
@@ -934,6 +999,7 @@ public final class GCImpl implements GC {
         OldGeneration oldGen = heap.getOldGeneration();
         heap.getYoungGeneration().swapSpaces();
         oldGen.swapSpaces();
+        heap.getYoungGeneration().computeTenuringThreshold();
         trace.string("]").newline();
     }
 
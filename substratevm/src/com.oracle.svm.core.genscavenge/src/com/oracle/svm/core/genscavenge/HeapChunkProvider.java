@@ -43,6 +43,7 @@ import com.oracle.svm.core.jdk.UninterruptibleUtils;
 import com.oracle.svm.core.jdk.UninterruptibleUtils.AtomicUnsigned;
 import com.oracle.svm.core.log.Log;
 import com.oracle.svm.core.os.CommittedMemoryProvider;
+import com.oracle.svm.core.thread.VMOperation;
 import com.oracle.svm.core.thread.VMThreads;
 
 /**
@@ -152,6 +153,21 @@ final class HeapChunkProvider {
         freeAlignedChunkList(cur);
     }
 
+    /**
+     * Returns unused AlignedHeapChunks to the operating system until at most the given number of
+     * bytes is left in the free list. May only be called during a garbage collection.
+     */
+    void freeExcessAlignedChunks(UnsignedWord maxUnusedBytes) {
+        assert VMOperation.isGCInProgress() : "would race with pushes otherwise";
+        while (getBytesInUnusedChunks().aboveThan(maxUnusedBytes)) {
+            AlignedHeader chunk = popUnusedAlignedChunk();
+            if (chunk.isNull()) {
+                break;
+            }
+            freeAlignedChunk(chunk);
+        }
+    }
+
     private static void cleanAlignedChunk(AlignedHeader alignedChunk) {
         resetAlignedHeapChunk(alignedChunk);
         if (HeapPolicy.getZapConsumedHeapChunks()) {
@@ -80,6 +80,12 @@ public final class HeapOptions {
     @Option(help = "Enables card marking for image heap objects, which arranges them in chunks. Automatically enabled when supported.", type = OptionType.Expert) //
     public static final HostedOptionKey<Boolean> ImageHeapCardMarking = new HostedOptionKey<>(null);
 
+    @Option(help = "Print how many pages of the image heap are shared with other processes and how many are private to this process, and the resident set size of the process, on exit. Linux only.")//
+    public static final RuntimeOptionKey<Boolean> PrintImageHeapSharing = new RuntimeOptionKey<>(false);
+
+    @Option(help = "On exit, write the names of the types with objects on written image heap pages to this file, for use with -H:ImageHeapWriteProfile. Linux only.")//
+    public static final RuntimeOptionKey<String> DumpImageHeapWriteProfile = new RuntimeOptionKey<>("");
+
     private HeapOptions() {
     }
 }
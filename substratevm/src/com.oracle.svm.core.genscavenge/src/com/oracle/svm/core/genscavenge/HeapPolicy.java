@@ -313,7 +313,7 @@ public final class HeapPolicy {
     }
 
     public static void maybeCollectOnAllocation() {
-        UnsignedWord maxYoungSize = getMaximumYoungGenerationSize();
+        UnsignedWord maxYoungSize = HeapImpl.getHeapImpl().getGCImpl().getPolicy().getYoungGenerationCapacity();
         maybeCollectOnAllocation(maxYoungSize);
     }
 
@@ -73,9 +73,18 @@ public final class HeapPolicyOptions {
     @Option(help = "Maximum number of survivor spaces.") //
     public static final HostedOptionKey<Integer> MaxSurvivorSpaces = new HostedOptionKey<>(0);
 
+    @Option(help = "Percentage of the young generation capacity that survivor spaces should occupy after an incremental collection. " +
+                    "If set, objects are promoted before reaching the oldest survivor space when survivors occupy more. " +
+                    "The default of 0 promotes objects only when they leave the oldest survivor space.") //
+    public static final RuntimeOptionKey<Integer> TargetSurvivorPercent = new RuntimeOptionKey<>(0);
+
     @Option(help = "Determines if a full GC collects the young generation separately or together with the old generation.") //
     public static final RuntimeOptionKey<Boolean> CollectYoungGenerationSeparately = new RuntimeOptionKey<>(false);
 
+    @Option(help = "Compact the old generation in place during a full GC instead of copying it, which lowers the peak footprint. " +
+                    "Full GCs still copy when runtime compilation is enabled.") //
+    public static final RuntimeOptionKey<Boolean> CompactOldGeneration = new RuntimeOptionKey<>(false);
+
     private HeapPolicyOptions() {
     }
 }
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.genscavenge;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.graalvm.compiler.word.Word;
+import org.graalvm.nativeimage.Platform;
+import org.graalvm.word.Pointer;
+import org.graalvm.word.UnsignedWord;
+
+import com.oracle.svm.core.heap.ObjectVisitor;
+import com.oracle.svm.core.hub.LayoutEncoding;
+import com.oracle.svm.core.log.Log;
+import com.oracle.svm.core.os.VirtualMemoryProvider;
+import com.oracle.svm.core.util.UnsignedUtils;
+
+/**
+ * Determines which pages of the image heap were written by this process, i.e., which pages are no
+ * longer shared with other processes that map the same image. It can print a summary of shared
+ * versus private pages, and write a profile of the types with objects on written pages that a
+ * subsequent image build can use to group such objects together, see
+ * {@link com.oracle.svm.core.SubstrateOptions#ImageHeapWriteProfile}.
+ * <p>
+ * The page states are read from {@code /proc/self/pagemap}, so this is only supported on Linux.
+ */
+final class ImageHeapWriteProfiler {
+    /* Flags of a /proc/self/pagemap entry. */
+    private static final long PAGE_PRESENT = 1L << 63;
+    private static final long PAGE_SWAPPED = 1L << 62;
+    private static final long PAGE_FILE_OR_SHARED_ANON = 1L << 61;
+    private static final long PAGE_EXCLUSIVELY_MAPPED = 1L << 56;
+
+    private final Pointer begin;
+    private final long pageSize;
+    private final long[] pageFlags;
+
+    private ImageHeapWriteProfiler(Pointer begin, long pageSize, long[] pageFlags) {
+        this.begin = begin;
+        this.pageSize = pageSize;
+        this.pageFlags = pageFlags;
+    }
+
+    static void onShutdown() {
+        boolean printSharing = HeapOptions.PrintImageHeapSharing.getValue();
+        String profileFile = HeapOptions.DumpImageHeapWriteProfile.getValue();
+        if (!printSharing && profileFile.isEmpty()) {
+            return;
+        }
+        if (!Platform.includedIn(Platform.LINUX.class)) {
+            Log.log().string("Image heap page sharing information is only available on Linux.").newline();
+            return;
+        }
+
+        ImageHeapWriteProfiler profiler;
+        try {
+            profiler = create();
+        } catch (IOException ex) {
+            Log.log().string("Cannot read image heap page information: ").string(ex.getMessage()).newline();
+            return;
+        }
+        if (printSharing) {
+            profiler.printSharing(Log.log());
+            printResidentSetSize(Log.log());
+        }
+        if (!profileFile.isEmpty()) {
+            try {
+                profiler.writeProfile(profileFile);
+            } catch (IOException ex) {
+                Log.log().string("Cannot write image heap write profile: ").string(ex.getMessage()).newline();
+            }
+        }
+    }
+
+    private static ImageHeapWriteProfiler create() throws IOException {
+        ImageHeapInfo info = HeapImpl.getImageHeapInfo();
+        UnsignedWord pageSize = VirtualMemoryProvider.get().getGranularity();
+        Pointer begin = (Pointer) UnsignedUtils.roundDown(Word.objectToUntrackedPointer(info.firstObject), pageSize);
+        Pointer end = (Pointer) UnsignedUtils.roundUp(LayoutEncoding.getObjectEnd(info.lastObject), pageSize);
+        int pageCount = (int) end.subtract(begin).unsignedDivide(pageSize).rawValue();
+
+        byte[] entries = new byte[pageCount * Long.BYTES];
+        try (RandomAccessFile pagemap = new RandomAccessFile("/proc/self/pagemap", "r")) {
+            pagemap.seek(begin.unsignedDivide(pageSize).rawValue() * Long.BYTES);
+            pagemap.readFully(entries);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(entries).order(ByteOrder.nativeOrder());
+        long[] pageFlags = new long[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            pageFlags[i] = buffer.getLong(i * Long.BYTES);
+        }
+        return new ImageHeapWriteProfiler(begin, pageSize.rawValue(), pageFlags);
+    }
+
+    /** A page is private if this process wrote it, so that it no longer maps the file page. */
+    private boolean isPrivateDirty(int page) {
+        long flags = pageFlags[page];
+        return (flags & PAGE_SWAPPED) != 0 || ((flags & PAGE_PRESENT) != 0 && (flags & PAGE_FILE_OR_SHARED_ANON) == 0);
+    }
+
+    private void printSharing(Log log) {
+        long sharedClean = 0;
+        long privateClean = 0;
+        long privateDirty = 0;
+        long notResident = 0;
+        for (int page = 0; page < pageFlags.length; page++) {
+            long flags = pageFlags[page];
+            if (isPrivateDirty(page)) {
+                privateDirty++;
+            } else if ((flags & PAGE_PRESENT) == 0) {
+                notResident++;
+            } else if ((flags & PAGE_EXCLUSIVELY_MAPPED) != 0) {
+                privateClean++;
+            } else {
+                sharedClean++;
+            }
+        }
+        long kb = pageSize / 1024;
+        log.string("Image heap pages (").signed(pageFlags.length * kb).string(" kB):");
+        log.string(" shared clean: ").signed(sharedClean * kb).string(" kB,");
+        log.string(" private clean: ").signed(privateClean * kb).string(" kB,");
+        log.string(" private dirty: ").signed(privateDirty * kb).string(" kB,");
+        log.string(" not resident: ").signed(notResident * kb).string(" kB").newline();
+    }
+
+    /** Prints the resident set size of the whole process, split into anonymous and file pages. */
+    private static void printResidentSetSize(Log log) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Paths.get("/proc/self/status"));
+        } catch (IOException ex) {
+            log.string("Cannot read the resident set size: ").string(ex.getMessage()).newline();
+            return;
+        }
+        log.string("Process memory:");
+        String separator = " ";
+        for (String line : lines) {
+            if (line.startsWith("VmRSS:") || line.startsWith("RssAnon:") || line.startsWith("RssFile:")) {
+                log.string(separator).string(line.replaceAll("\\s+", " "));
+                separator = ", ";
+            }
+        }
+        log.newline();
+    }
+
+    private void writeProfile(String file) throws IOException {
+        ImageHeapInfo info = HeapImpl.getImageHeapInfo();
+        DirtyObjectVisitor visitor = new DirtyObjectVisitor(this);
+        walkWritablePartitions(info, visitor);
+        visitor.classes = new Class<?>[visitor.count];
+        visitor.count = 0;
+        walkWritablePartitions(info, visitor);
+
+        Map<String, Long> counts = new HashMap<>();
+        for (int i = 0; i < visitor.count; i++) {
+            counts.merge(visitor.classes[i].getName(), 1L, Long::sum);
+        }
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(file)))) {
+            writer.println("# Types with objects on written image heap pages, and the number of such objects");
+            for (Map.Entry<String, Long> entry : entries) {
+                writer.println(entry.getKey() + " " + entry.getValue());
+            }
+        }
+    }
+
+    private static void walkWritablePartitions(ImageHeapInfo info, ObjectVisitor visitor) {
+        ImageHeapWalker.walkPartition(info.firstWritablePrimitiveObject, info.lastWritablePrimitiveObject, visitor, true);
+        ImageHeapWalker.walkPartition(info.firstWritableReferenceObject, info.lastWritableReferenceObject, visitor, true);
+        ImageHeapWalker.walkPartition(info.firstWritableHugeObject, info.lastWritableHugeObject, visitor, false);
+    }
+
+    /** Counts, and in a second pass records, the objects that overlap a written page. */
+    private static final class DirtyObjectVisitor implements ObjectVisitor {
+        private final ImageHeapWriteProfiler profiler;
+        Class<?>[] classes;
+        int count;
+
+        DirtyObjectVisitor(ImageHeapWriteProfiler profiler) {
+            this.profiler = profiler;
+        }
+
+        @Override
+        public boolean visitObject(Object o) {
+            Pointer start = Word.objectToUntrackedPointer(o);
+            int firstPage = (int) (start.subtract(profiler.begin).rawValue() / profiler.pageSize);
+            int lastPage = (int) (LayoutEncoding.getObjectEnd(o).subtract(1).subtract(profiler.begin).rawValue() / profiler.pageSize);
+            for (int page = firstPage; page <= lastPage; page++) {
+                if (profiler.isPrivateDirty(page)) {
+                    if (classes == null) {
+                        count++;
+                    } else if (count < classes.length) {
+                        /* Pages written after the first pass are ignored. */
+                        classes[count++] = o.getClass();
+                    }
+                    break;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -50,7 +50,7 @@ public class LinearImageHeapLayouter extends AbstractImageHeapLayouter<LinearIma
     }
 
     @Override
-    protected ImageHeapLayoutInfo doLayout(ImageHeap imageHeap) {
+    protected ImageHeapLayoutInfo doLayout(ImageHeap imageHeap, int pageSize) {
         long beginOffset = startOffset;
         if (compressedNullPadding) {
             /*
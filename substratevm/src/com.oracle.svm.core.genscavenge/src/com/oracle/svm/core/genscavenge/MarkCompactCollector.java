@@ -0,0 +1,846 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.genscavenge;
+
+import static com.oracle.svm.core.snippets.KnownIntrinsics.readCallerStackPointer;
+import static com.oracle.svm.core.snippets.KnownIntrinsics.readReturnAddress;
+
+import java.lang.ref.Reference;
+
+import org.graalvm.compiler.api.replacements.Fold;
+import org.graalvm.compiler.word.Word;
+import org.graalvm.nativeimage.CurrentIsolate;
+import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.IsolateThread;
+import org.graalvm.nativeimage.Platform;
+import org.graalvm.nativeimage.Platforms;
+import org.graalvm.nativeimage.StackValue;
+import org.graalvm.nativeimage.c.function.CodePointer;
+import org.graalvm.nativeimage.impl.UnmanagedMemorySupport;
+import org.graalvm.word.Pointer;
+import org.graalvm.word.UnsignedWord;
+import org.graalvm.word.WordFactory;
+
+import com.oracle.svm.core.MemoryUtil;
+import com.oracle.svm.core.MemoryWalker;
+import com.oracle.svm.core.SubstrateOptions;
+import com.oracle.svm.core.annotate.AlwaysInline;
+import com.oracle.svm.core.annotate.NeverInline;
+import com.oracle.svm.core.annotate.Uninterruptible;
+import com.oracle.svm.core.c.NonmovableArray;
+import com.oracle.svm.core.code.CodeInfo;
+import com.oracle.svm.core.code.CodeInfoAccess;
+import com.oracle.svm.core.code.CodeInfoQueryResult;
+import com.oracle.svm.core.code.CodeInfoTable;
+import com.oracle.svm.core.code.SimpleCodeInfoQueryResult;
+import com.oracle.svm.core.deopt.DeoptimizationSupport;
+import com.oracle.svm.core.deopt.DeoptimizedFrame;
+import com.oracle.svm.core.deopt.Deoptimizer;
+import com.oracle.svm.core.genscavenge.AlignedHeapChunk.AlignedHeader;
+import com.oracle.svm.core.genscavenge.GCImpl.ChunkReleaser;
+import com.oracle.svm.core.genscavenge.UnalignedHeapChunk.UnalignedHeader;
+import com.oracle.svm.core.heap.CodeReferenceMapDecoder;
+import com.oracle.svm.core.heap.ObjectReferenceVisitor;
+import com.oracle.svm.core.heap.ObjectVisitor;
+import com.oracle.svm.core.heap.ReferenceAccess;
+import com.oracle.svm.core.heap.ReferenceInternals;
+import com.oracle.svm.core.hub.DynamicHub;
+import com.oracle.svm.core.hub.InteriorObjRefWalker;
+import com.oracle.svm.core.hub.LayoutEncoding;
+import com.oracle.svm.core.log.Log;
+import com.oracle.svm.core.snippets.KnownIntrinsics;
+import com.oracle.svm.core.stack.JavaStackWalk;
+import com.oracle.svm.core.stack.JavaStackWalker;
+import com.oracle.svm.core.thread.VMOperation;
+import com.oracle.svm.core.thread.VMThreads;
+import com.oracle.svm.core.util.VMError;
+
+/**
+ * An in-place, sliding mark-compact collector for complete collections, enabled with
+ * {@link HeapPolicyOptions#CompactOldGeneration}.
+ * <p>
+ * A complete collection of the copying collector needs a free chunk for every chunk of surviving
+ * objects, so its peak footprint is up to twice the live data. This collector keeps the surviving
+ * objects in the {@linkplain AlignedHeapChunk aligned chunks} they already occupy and slides them
+ * towards the lowest chunk addresses, so that the chunks at the end become empty and are released.
+ * The aligned chunks of the young generation are compacted together with those of the old
+ * generation, so the young generation is empty afterwards, as after a complete copying collection.
+ * <p>
+ * The object header has no spare bits, so the mark bits and the forwarding information are kept in
+ * side tables in unmanaged memory. There is a mark bit for every word of a live object, and for
+ * every block of {@link #BLOCK_WORDS} words, the address to which the first live word of the block
+ * moves. The new address of an object is that address plus the size of the live words that precede
+ * the object in its block. All objects that start in the same block move to the same destination
+ * chunk, so that one destination address per block is sufficient. The side tables need about 3% of
+ * the size of the compacted chunks.
+ * <p>
+ * {@linkplain UnalignedHeapChunk Unaligned chunks} are never moved: when their object is marked, the
+ * chunk is promoted to the old to-space as in the copying collector. Chunks with pinned objects are
+ * promoted the same way before marking, and all of their objects are treated as live. After the
+ * objects were moved, the {@link FirstObjectTable} and the card table of every chunk that received
+ * objects are rebuilt.
+ * <p>
+ * Runtime compiled code is not supported because {@link RuntimeCodeCacheWalker} relies on the
+ * forwarding pointers of the copying collector. In that case, and when the side tables cannot be
+ * allocated, complete collections are done by the copying collector.
+ */
+final class MarkCompactCollector {
+    private static final int LOG_BYTES_PER_WORD = 3;
+    private static final int LOG_BLOCK_WORDS = 6;
+    private static final int BLOCK_WORDS = 1 << LOG_BLOCK_WORDS;
+    private static final int INITIAL_MARK_STACK_ENTRIES = 4096;
+
+    private final Timers timers;
+    private final MarkingObjRefVisitor markingObjRefVisitor = new MarkingObjRefVisitor();
+    private final MarkingObjectVisitor markingObjectVisitor = new MarkingObjectVisitor();
+    private final UpdatingObjRefVisitor updatingObjRefVisitor = new UpdatingObjRefVisitor();
+    private final UpdatingObjectVisitor updatingObjectVisitor = new UpdatingObjectVisitor();
+    private final ImageHeapRootsVisitor imageHeapRootsVisitor = new ImageHeapRootsVisitor();
+
+    /** The capacity of the side tables, in chunks. */
+    private int chunkCapacity;
+    /** The number of chunks that are compacted. */
+    private int chunkCount;
+    /** The chunks that are compacted, sorted by address. */
+    private Pointer chunks;
+    /** The top of each chunk after compaction, or zero if the chunk is released. */
+    private Pointer newTops;
+    /** The mark bits and block destinations of each chunk, see {@link #getTable}. */
+    private Pointer tables;
+
+    private AlignedHeader lastLookupChunk;
+    private Pointer lastLookupTable;
+
+    private Pointer markStack;
+    private int markStackSize;
+    private int markStackCapacity;
+    private boolean markStackOverflowed;
+
+    @Platforms(Platform.HOSTED_ONLY.class)
+    MarkCompactCollector(Timers timers) {
+        this.timers = timers;
+    }
+
+    /**
+     * Allocates the side tables for all the aligned chunks that could be compacted. Returns false
+     * if this collector cannot be used, in which case the heap has not been changed.
+     */
+    boolean prepare() {
+        assert VMOperation.isGCInProgress();
+        if (DeoptimizationSupport.enabled()) {
+            return false;
+        }
+        HeapImpl heap = HeapImpl.getHeapImpl();
+        YoungGeneration youngGen = heap.getYoungGeneration();
+        int count = countAlignedChunks(youngGen.getEden()) + countAlignedChunks(heap.getOldGeneration().getFromSpace());
+        for (int i = 0; i < HeapPolicy.getMaxSurvivorSpaces(); i++) {
+            count += countAlignedChunks(youngGen.getSurvivorFromSpaceAt(i));
+        }
+        chunkCapacity = Math.max(count, 1);
+        UnsignedWord chunkWords = WordFactory.unsigned(chunkCapacity).shiftLeft(LOG_BYTES_PER_WORD);
+        UnsignedWord tableBytes = WordFactory.unsigned(chunkCapacity).multiply(getTableSize());
+        chunks = memory().calloc(chunkWords.multiply(2).add(tableBytes));
+        markStack = memory().malloc(WordFactory.unsigned(INITIAL_MARK_STACK_ENTRIES).shiftLeft(LOG_BYTES_PER_WORD));
+        if (chunks.isNull() || markStack.isNull()) {
+            release();
+            return false;
+        }
+        newTops = chunks.add(chunkWords);
+        tables = newTops.add(chunkWords);
+        chunkCount = 0;
+        markStackSize = 0;
+        markStackCapacity = INITIAL_MARK_STACK_ENTRIES;
+        markStackOverflowed = false;
+        return true;
+    }
+
+    /** Frees the side tables. */
+    void release() {
+        if (chunks.isNonNull()) {
+            memory().free(chunks);
+        }
+        if (markStack.isNonNull()) {
+            memory().free(markStack);
+        }
+        chunks = WordFactory.nullPointer();
+        newTops = WordFactory.nullPointer();
+        tables = WordFactory.nullPointer();
+        markStack = WordFactory.nullPointer();
+        lastLookupChunk = WordFactory.nullPointer();
+        lastLookupTable = WordFactory.nullPointer();
+        chunkCount = 0;
+    }
+
+    /**
+     * Takes the aligned chunks out of their spaces and marks all reachable objects. The chunks with
+     * pinned objects must already have been promoted to the old to-space.
+     */
+    void markFromRoots() {
+        Log trace = Log.noopLog().string("[MarkCompactCollector.markFromRoots:").newline();
+        Timer markFromRootsTimer = timers.markFromRoots.open();
+        try {
+            HeapImpl heap = HeapImpl.getHeapImpl();
+            YoungGeneration youngGen = heap.getYoungGeneration();
+            extractAlignedChunks(heap.getOldGeneration().getFromSpace());
+            extractAlignedChunks(youngGen.getEden());
+            for (int i = 0; i < HeapPolicy.getMaxSurvivorSpaces(); i++) {
+                extractAlignedChunks(youngGen.getSurvivorFromSpaceAt(i));
+            }
+            sortChunks();
+            trace.string("  chunks: ").signed(chunkCount).newline();
+
+            /* The old to-space only contains chunks with pinned objects, which are all live. */
+            walkOldToSpaceSnapshot(markingObjectVisitor);
+            walkStackRoots(markingObjRefVisitor);
+            if (SubstrateOptions.MultiThreaded.getValue()) {
+                ThreadLocalMTWalker.walk(markingObjRefVisitor);
+            }
+            imageHeapRootsVisitor.initialize(markingObjectVisitor);
+            heap.walkNativeImageHeapRegions(imageHeapRootsVisitor);
+            imageHeapRootsVisitor.reset();
+            drainMarkStack();
+
+            while (markStackOverflowed) {
+                /*
+                 * Some marked objects could not be pushed. Visiting all marked objects again finds
+                 * them, and it is harmless for the objects that were already visited.
+                 */
+                trace.string("  mark stack overflowed").newline();
+                markStackOverflowed = false;
+                walkMarkedObjects(markingObjectVisitor, true);
+                heap.getOldGeneration().getToSpace().walkObjects(markingObjectVisitor);
+                drainMarkStack();
+            }
+        } finally {
+            markFromRootsTimer.close();
+        }
+        trace.string("]").newline();
+    }
+
+    /**
+     * Moves the marked objects, updates all references to them, and puts the chunks that still
+     * contain objects into the old to-space. The chunks that became empty are added to the
+     * releaser. Reference objects must have been processed before.
+     */
+    void compact(ChunkReleaser chunkReleaser) {
+        Log trace = Log.noopLog().string("[MarkCompactCollector.compact:").newline();
+        Timer compactTimer = timers.compact.open();
+        try {
+            computeForwardingAddresses();
+            updateReferences();
+            moveObjects();
+            rebuildChunks(chunkReleaser);
+        } finally {
+            compactTimer.close();
+        }
+        trace.string("]").newline();
+    }
+
+    /** Whether an object in a chunk that is being compacted has been marked. */
+    boolean isMarked(Object obj) {
+        Pointer p = Word.objectToUntrackedPointer(obj);
+        AlignedHeader chunk = AlignedHeapChunk.getEnclosingChunkFromObjectPointer(p);
+        assert HeapChunk.getSpace(chunk) == null : "Only chunks that are being compacted have mark bits";
+        return isMarked(getTable(chunk), chunk, p);
+    }
+
+    private static int countAlignedChunks(Space space) {
+        int count = 0;
+        for (AlignedHeader chunk = space.getFirstAlignedHeapChunk(); chunk.isNonNull(); chunk = HeapChunk.getNext(chunk)) {
+            count++;
+        }
+        return count;
+    }
+
+    /*
+     * The chunks that are compacted are not in any space, so a null space identifies them during
+     * marking, reference processing and reference updating.
+     */
+    private void extractAlignedChunks(Space space) {
+        AlignedHeader chunk = space.getFirstAlignedHeapChunk();
+        while (chunk.isNonNull()) {
+            AlignedHeader next = HeapChunk.getNext(chunk);
+            space.extractAlignedHeapChunk(chunk);
+            assert chunkCount < chunkCapacity : "More chunks than counted before";
+            chunks.writeWord(indexOffset(chunkCount), chunk);
+            chunkCount++;
+            chunk = next;
+        }
+    }
+
+    /** Heap sort, so that objects slide towards lower addresses and table lookups can bisect. */
+    private void sortChunks() {
+        for (int i = chunkCount / 2 - 1; i >= 0; i--) {
+            siftDown(i, chunkCount);
+        }
+        for (int end = chunkCount - 1; end > 0; end--) {
+            swapChunks(0, end);
+            siftDown(0, end);
+        }
+    }
+
+    private void siftDown(int start, int end) {
+        int root = start;
+        while (2 * root + 1 < end) {
+            int child = 2 * root + 1;
+            if (child + 1 < end && HeapChunk.asPointer(getChunk(child)).belowThan(HeapChunk.asPointer(getChunk(child + 1)))) {
+                child++;
+            }
+            if (!HeapChunk.asPointer(getChunk(root)).belowThan(HeapChunk.asPointer(getChunk(child)))) {
+                return;
+            }
+            swapChunks(root, child);
+            root = child;
+        }
+    }
+
+    private void swapChunks(int i, int j) {
+        AlignedHeader chunk = getChunk(i);
+        chunks.writeWord(indexOffset(i), getChunk(j));
+        chunks.writeWord(indexOffset(j), chunk);
+    }
+
+    private AlignedHeader getChunk(int index) {
+        return chunks.readWord(indexOffset(index));
+    }
+
+    private static UnsignedWord indexOffset(int index) {
+        return WordFactory.unsigned(index).shiftLeft(LOG_BYTES_PER_WORD);
+    }
+
+    /**
+     * Returns the side table of a chunk that is being compacted. The table starts with one word of
+     * mark bits per block, followed by the destination address of each block.
+     */
+    private Pointer getTable(AlignedHeader chunk) {
+        if (chunk.equal(lastLookupChunk)) {
+            return lastLookupTable;
+        }
+        int low = 0;
+        int high = chunkCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            AlignedHeader candidate = getChunk(middle);
+            if (HeapChunk.asPointer(candidate).belowThan(HeapChunk.asPointer(chunk))) {
+                low = middle + 1;
+            } else if (HeapChunk.asPointer(candidate).aboveThan(HeapChunk.asPointer(chunk))) {
+                high = middle - 1;
+            } else {
+                lastLookupChunk = chunk;
+                lastLookupTable = getTableAt(middle);
+                return lastLookupTable;
+            }
+        }
+        throw VMError.shouldNotReachHere("Chunk is not being compacted");
+    }
+
+    private Pointer getTableAt(int index) {
+        return tables.add(WordFactory.unsigned(index).multiply(getTableSize()));
+    }
+
+    @Fold
+    static int getBlocksPerChunk() {
+        return (int) HeapPolicy.getAlignedHeapChunkSize().unsignedShiftRight(LOG_BYTES_PER_WORD + LOG_BLOCK_WORDS).rawValue();
+    }
+
+    @Fold
+    static UnsignedWord getTableSize() {
+        return WordFactory.unsigned(2 * getBlocksPerChunk()).shiftLeft(LOG_BYTES_PER_WORD);
+    }
+
+    private static long getWordIndex(AlignedHeader chunk, Pointer p) {
+        return p.subtract(HeapChunk.asPointer(chunk)).unsignedShiftRight(LOG_BYTES_PER_WORD).rawValue();
+    }
+
+    private static Pointer getMarkBitsAddress(Pointer table, long wordIndex) {
+        return table.add(WordFactory.unsigned(wordIndex >>> LOG_BLOCK_WORDS).shiftLeft(LOG_BYTES_PER_WORD));
+    }
+
+    private static Pointer getBlockDestinationAddress(Pointer table, long wordIndex) {
+        return getMarkBitsAddress(table, wordIndex).add(WordFactory.unsigned(getBlocksPerChunk()).shiftLeft(LOG_BYTES_PER_WORD));
+    }
+
+    /** The mark bits of the words in the block of the given word that precede that word. */
+    private static long getMarkBitsBelow(Pointer table, long wordIndex) {
+        long mask = (1L << (wordIndex & (BLOCK_WORDS - 1))) - 1;
+        return getMarkBitsAddress(table, wordIndex).readLong(0) & mask;
+    }
+
+    private static boolean isMarked(Pointer table, AlignedHeader chunk, Pointer p) {
+        long wordIndex = getWordIndex(chunk, p);
+        return (getMarkBitsAddress(table, wordIndex).readLong(0) & (1L << (wordIndex & (BLOCK_WORDS - 1)))) != 0;
+    }
+
+    private static void setMarkBits(Pointer table, AlignedHeader chunk, Pointer p, UnsignedWord size) {
+        long wordIndex = getWordIndex(chunk, p);
+        long endIndex = wordIndex + size.unsignedShiftRight(LOG_BYTES_PER_WORD).rawValue();
+        while (wordIndex < endIndex) {
+            int bit = (int) (wordIndex & (BLOCK_WORDS - 1));
+            long bits = Math.min(BLOCK_WORDS - bit, endIndex - wordIndex);
+            long mask = (bits == BLOCK_WORDS) ? -1L : ((1L << bits) - 1) << bit;
+            Pointer address = getMarkBitsAddress(table, wordIndex);
+            address.writeLong(0, address.readLong(0) | mask);
+            wordIndex += bits;
+        }
+    }
+
+    /** Returns the address to which an object in a chunk that is being compacted moves. */
+    private Pointer getForwardedAddress(Pointer p) {
+        AlignedHeader chunk = AlignedHeapChunk.getEnclosingChunkFromObjectPointer(p);
+        Pointer table = getTable(chunk);
+        long wordIndex = getWordIndex(chunk, p);
+        assert isMarked(table, chunk, p) : "Only marked objects are moved";
+        Pointer blockDestination = getBlockDestinationAddress(table, wordIndex).readWord(0);
+        return blockDestination.add(WordFactory.unsigned(Long.bitCount(getMarkBitsBelow(table, wordIndex))).shiftLeft(LOG_BYTES_PER_WORD));
+    }
+
+    @AlwaysInline("GC performance")
+    private void markObject(Pointer p) {
+        UnsignedWord header = ObjectHeaderImpl.readHeaderFromPointer(p);
+        if (ObjectHeaderImpl.isAlignedHeader(p, header)) {
+            AlignedHeader chunk = AlignedHeapChunk.getEnclosingChunkFromObjectPointer(p);
+            if (HeapChunk.getSpace(chunk) == null) {
+                Pointer table = getTable(chunk);
+                if (!isMarked(table, chunk, p)) {
+                    setMarkBits(table, chunk, p, LayoutEncoding.getSizeFromObject(p.toObject()));
+                    pushMarkStack(p);
+                }
+            } else {
+                /* A chunk with pinned objects, whose objects are all visited as roots. */
+                assert HeapChunk.getSpace(chunk) == HeapImpl.getHeapImpl().getOldGeneration().getToSpace();
+            }
+        } else {
+            UnalignedHeader chunk = UnalignedHeapChunk.getEnclosingChunkFromObjectPointer(p);
+            Space space = HeapChunk.getSpace(chunk);
+            if (space.isFromSpace()) {
+                HeapImpl.getHeapImpl().getOldGeneration().promoteUnalignedChunk(chunk, space);
+                pushMarkStack(p);
+            }
+        }
+    }
+
+    private void pushMarkStack(Pointer p) {
+        if (markStackSize == markStackCapacity && !growMarkStack()) {
+            markStackOverflowed = true;
+            return;
+        }
+        markStack.writeWord(indexOffset(markStackSize), p);
+        markStackSize++;
+    }
+
+    private boolean growMarkStack() {
+        int newCapacity = markStackCapacity * 2;
+        Pointer newMarkStack = memory().realloc(markStack, indexOffset(newCapacity));
+        if (newMarkStack.isNull()) {
+            return false;
+        }
+        markStack = newMarkStack;
+        markStackCapacity = newCapacity;
+        return true;
+    }
+
+    private void drainMarkStack() {
+        while (markStackSize > 0) {
+            markStackSize--;
+            Pointer p = markStack.readWord(indexOffset(markStackSize));
+            markingObjectVisitor.visitObjectInline(p.toObject());
+        }
+    }
+
+    /**
+     * Visits the objects in the old to-space, but not those in unaligned chunks that get promoted
+     * while visiting, because those are pushed on the mark stack.
+     */
+    private static void walkOldToSpaceSnapshot(ObjectVisitor visitor) {
+        Space toSpace = HeapImpl.getHeapImpl().getOldGeneration().getToSpace();
+        UnalignedHeader lastUnaligned = toSpace.getLastUnalignedHeapChunk();
+        for (AlignedHeader chunk = toSpace.getFirstAlignedHeapChunk(); chunk.isNonNull(); chunk = HeapChunk.getNext(chunk)) {
+            AlignedHeapChunk.walkObjectsInline(chunk, visitor);
+        }
+        if (lastUnaligned.isNonNull()) {
+            UnalignedHeader chunk = toSpace.getFirstUnalignedHeapChunk();
+            while (true) {
+                UnalignedHeapChunk.walkObjectsInline(chunk, visitor);
+                if (chunk.equal(lastUnaligned)) {
+                    break;
+                }
+                chunk = HeapChunk.getNext(chunk);
+            }
+        }
+    }
+
+    /** Visits the marked objects in the chunks that are being compacted, in address order. */
+    private void walkMarkedObjects(ObjectVisitor visitor, boolean drain) {
+        for (int i = 0; i < chunkCount; i++) {
+            AlignedHeader chunk = getChunk(i);
+            Pointer table = getTableAt(i);
+            Pointer p = AlignedHeapChunk.getObjectsStart(chunk);
+            Pointer top = HeapChunk.getTopPointer(chunk);
+            while (p.belowThan(top)) {
+                Object obj = p.toObject();
+                UnsignedWord size = LayoutEncoding.getSizeFromObject(obj);
+                if (isMarked(table, chunk, p)) {
+                    visitor.visitObjectInline(obj);
+                    if (drain) {
+                        drainMarkStack();
+                    }
+                }
+                p = p.add(size);
+            }
+        }
+    }
+
+    /**
+     * Assigns destination addresses in address order, filling one chunk after the other. The
+     * objects that start in a block are assigned together so that they stay contiguous. A block
+     * never moves to a chunk after its own chunk, and never to a higher address within its own
+     * chunk, so moving the objects in address order never overwrites objects that were not moved
+     * yet.
+     */
+    private void computeForwardingAddresses() {
+        if (chunkCount == 0) {
+            return;
+        }
+        int destinationIndex = 0;
+        AlignedHeader destinationChunk = getChunk(0);
+        Pointer destinationTop = AlignedHeapChunk.getObjectsStart(destinationChunk);
+        Pointer destinationEnd = HeapChunk.getEndPointer(destinationChunk);
+        for (int i = 0; i < chunkCount; i++) {
+            AlignedHeader chunk = getChunk(i);
+            Pointer table = getTableAt(i);
+            Pointer p = AlignedHeapChunk.getObjectsStart(chunk);
+            Pointer top = HeapChunk.getTopPointer(chunk);
+            while (p.belowThan(top)) {
+                if (!isMarked(table, chunk, p)) {
+                    p = p.add(LayoutEncoding.getSizeFromObject(p.toObject()));
+                    continue;
+                }
+                /* The first marked object that starts in its block: sum the live objects. */
+                long wordIndex = getWordIndex(chunk, p);
+                Pointer blockEnd = HeapChunk.asPointer(chunk).add(WordFactory.unsigned((wordIndex | (BLOCK_WORDS - 1)) + 1).shiftLeft(LOG_BYTES_PER_WORD));
+                UnsignedWord liveBytes = WordFactory.zero();
+                Pointer q = p;
+                while (q.belowThan(top) && q.belowThan(blockEnd)) {
+                    UnsignedWord size = LayoutEncoding.getSizeFromObject(q.toObject());
+                    if (isMarked(table, chunk, q)) {
+                        liveBytes = liveBytes.add(size);
+                    }
+                    q = q.add(size);
+                }
+                if (destinationTop.add(liveBytes).aboveThan(destinationEnd)) {
+                    newTops.writeWord(indexOffset(destinationIndex), destinationTop);
+                    destinationIndex++;
+                    assert destinationIndex <= i : "Objects must not move to a later chunk";
+                    destinationChunk = getChunk(destinationIndex);
+                    destinationTop = AlignedHeapChunk.getObjectsStart(destinationChunk);
+                    destinationEnd = HeapChunk.getEndPointer(destinationChunk);
+                }
+                assert destinationIndex < i || destinationTop.belowOrEqual(p) : "Objects must not move to a higher address";
+                UnsignedWord precedingLiveBytes = WordFactory.unsigned(Long.bitCount(getMarkBitsBelow(table, wordIndex))).shiftLeft(LOG_BYTES_PER_WORD);
+                getBlockDestinationAddress(table, wordIndex).writeWord(0, destinationTop.subtract(precedingLiveBytes));
+                destinationTop = destinationTop.add(liveBytes);
+                p = q;
+            }
+        }
+        newTops.writeWord(indexOffset(destinationIndex), destinationTop);
+    }
+
+    /** Updates all references to objects that move, before any object is moved. */
+    private void updateReferences() {
+        walkStackRoots(updatingObjRefVisitor);
+        if (SubstrateOptions.MultiThreaded.getValue()) {
+            ThreadLocalMTWalker.walk(updatingObjRefVisitor);
+        }
+        imageHeapRootsVisitor.initialize(updatingObjectVisitor);
+        HeapImpl.getHeapImpl().walkNativeImageHeapRegions(imageHeapRootsVisitor);
+        imageHeapRootsVisitor.reset();
+        HeapImpl.getHeapImpl().getOldGeneration().getToSpace().walkObjects(updatingObjectVisitor);
+        walkMarkedObjects(updatingObjectVisitor, false);
+    }
+
+    private void moveObjects() {
+        for (int i = 0; i < chunkCount; i++) {
+            AlignedHeader chunk = getChunk(i);
+            Pointer table = getTableAt(i);
+            Pointer p = AlignedHeapChunk.getObjectsStart(chunk);
+            Pointer top = HeapChunk.getTopPointer(chunk);
+            while (p.belowThan(top)) {
+                UnsignedWord size = LayoutEncoding.getSizeFromObject(p.toObject());
+                if (isMarked(table, chunk, p)) {
+                    Pointer destination = getForwardedAddress(p);
+                    if (destination.notEqual(p)) {
+                        MemoryUtil.copyConjointMemoryAtomic(p, destination, size);
+                    }
+                }
+                p = p.add(size);
+            }
+        }
+    }
+
+    /**
+     * Sets the new tops, rebuilds the remembered sets of the chunks that contain objects and moves
+     * them to the old to-space, and releases the chunks that became empty.
+     */
+    private void rebuildChunks(ChunkReleaser chunkReleaser) {
+        Space toSpace = HeapImpl.getHeapImpl().getOldGeneration().getToSpace();
+        AlignedHeader emptyChunks = WordFactory.nullPointer();
+        for (int i = 0; i < chunkCount; i++) {
+            AlignedHeader chunk = getChunk(i);
+            Pointer newTop = newTops.readWord(indexOffset(i));
+            if (newTop.aboveThan(AlignedHeapChunk.getObjectsStart(chunk))) {
+                HeapChunk.setTopPointer(chunk, newTop);
+                CardTable.cleanTableToPointer(AlignedHeapChunk.getCardTableStart(chunk), AlignedHeapChunk.getCardTableLimit(chunk));
+                FirstObjectTable.initializeTableToLimit(AlignedHeapChunk.getFirstObjectTableStart(chunk), AlignedHeapChunk.getFirstObjectTableLimit(chunk));
+                toSpace.appendAlignedHeapChunk(chunk);
+                AlignedHeapChunk.constructRememberedSet(chunk);
+            } else {
+                HeapChunk.setPrevious(chunk, WordFactory.nullPointer());
+                HeapChunk.setNext(chunk, emptyChunks);
+                if (emptyChunks.isNonNull()) {
+                    HeapChunk.setPrevious(emptyChunks, chunk);
+                }
+                emptyChunks = chunk;
+            }
+        }
+        chunkReleaser.add(emptyChunks);
+        chunkCount = 0;
+    }
+
+    @NeverInline("Starting a stack walk in the caller frame. The frames of the collector do not hold references to objects that are processed by the GC.")
+    @Uninterruptible(reason = "Required by called JavaStackWalker methods. We are at a safepoint during GC, so it does not change anything for this method.", calleeMustBe = false)
+    private static void walkStackRoots(ObjectReferenceVisitor visitor) {
+        Pointer sp = readCallerStackPointer();
+        CodePointer ip = readReturnAddress();
+
+        JavaStackWalk walk = StackValue.get(JavaStackWalk.class);
+        JavaStackWalker.initWalk(walk, sp, ip);
+        walkStack(walk, visitor);
+
+        if (SubstrateOptions.MultiThreaded.getValue()) {
+            for (IsolateThread vmThread = VMThreads.firstThread(); vmThread.isNonNull(); vmThread = VMThreads.nextThread(vmThread)) {
+                if (vmThread == CurrentIsolate.getCurrentThread()) {
+                    /* The current thread was walked above. */
+                    continue;
+                }
+                if (JavaStackWalker.initWalk(walk, vmThread)) {
+                    walkStack(walk, visitor);
+                }
+            }
+        }
+    }
+
+    /** See {@link GCImpl}, without support for runtime compiled code. */
+    @Uninterruptible(reason = "Required by called JavaStackWalker methods. We are at a safepoint during GC, so it does not change anything for this method.", calleeMustBe = false)
+    private static void walkStack(JavaStackWalk walk, ObjectReferenceVisitor visitor) {
+        assert VMOperation.isGCInProgress() : "This methods accesses a CodeInfo without a tether";
+
+        while (true) {
+            SimpleCodeInfoQueryResult queryResult = StackValue.get(SimpleCodeInfoQueryResult.class);
+            Pointer sp = walk.getSP();
+            CodePointer ip = walk.getPossiblyStaleIP();
+
+            /* We are during a GC, so tethering of the CodeInfo is not necessary. */
+            CodeInfo codeInfo = CodeInfoAccess.convert(walk.getIPCodeInfo());
+            DeoptimizedFrame deoptFrame = Deoptimizer.checkDeoptimized(sp);
+            if (deoptFrame == null) {
+                if (codeInfo.isNull()) {
+                    throw JavaStackWalker.reportUnknownFrameEncountered(sp, ip, deoptFrame);
+                }
+
+                CodeInfoAccess.lookupCodeInfo(codeInfo, CodeInfoAccess.relativeIP(codeInfo, ip), queryResult);
+                NonmovableArray<Byte> referenceMapEncoding = CodeInfoAccess.getStackReferenceMapEncoding(codeInfo);
+                long referenceMapIndex = queryResult.getReferenceMapIndex();
+                if (referenceMapIndex == CodeInfoQueryResult.NO_REFERENCE_MAP) {
+                    throw CodeInfoTable.reportNoReferenceMap(sp, ip, codeInfo);
+                }
+                CodeReferenceMapDecoder.walkOffsetsFromPointer(sp, referenceMapEncoding, referenceMapIndex, visitor);
+            }
+
+            if (!JavaStackWalker.continueWalk(walk, queryResult, deoptFrame)) {
+                return;
+            }
+        }
+    }
+
+    @Fold
+    static UnmanagedMemorySupport memory() {
+        return ImageSingletons.lookup(UnmanagedMemorySupport.class);
+    }
+
+    private static boolean isCompacted(Pointer p) {
+        if (p.isNull() || HeapImpl.getHeapImpl().isInImageHeap(p)) {
+            return false;
+        }
+        UnsignedWord header = ObjectHeaderImpl.readHeaderFromPointer(p);
+        return ObjectHeaderImpl.isAlignedHeader(p, header) && HeapChunk.getSpace(AlignedHeapChunk.getEnclosingChunkFromObjectPointer(p)) == null;
+    }
+
+    /** Marks the objects that are referenced and pushes them on the mark stack. */
+    private final class MarkingObjRefVisitor implements ObjectReferenceVisitor {
+        @Platforms(Platform.HOSTED_ONLY.class)
+        MarkingObjRefVisitor() {
+        }
+
+        @Override
+        public boolean visitObjectReference(Pointer objRef, boolean compressed) {
+            return visitObjectReferenceInline(objRef, 0, compressed, null);
+        }
+
+        @Override
+        @AlwaysInline("GC performance")
+        public boolean visitObjectReferenceInline(Pointer objRef, boolean compressed, Object holderObject) {
+            return visitObjectReferenceInline(objRef, 0, compressed, holderObject);
+        }
+
+        @Override
+        @AlwaysInline("GC performance")
+        public boolean visitObjectReferenceInline(Pointer objRef, int innerOffset, boolean compressed) {
+            return visitObjectReferenceInline(objRef, innerOffset, compressed, null);
+        }
+
+        @Override
+        @AlwaysInline("GC performance")
+        public boolean visitObjectReferenceInline(Pointer objRef, int innerOffset, boolean compressed, Object holderObject) {
+            Pointer offsetP = ReferenceAccess.singleton().readObjectAsUntrackedPointer(objRef, compressed);
+            assert offsetP.isNonNull() || innerOffset == 0;
+            Pointer p = offsetP.subtract(innerOffset);
+            if (p.isNonNull() && !HeapImpl.getHeapImpl().isInImageHeap(p)) {
+                markObject(p);
+            }
+            return true;
+        }
+    }
+
+    /** Discovers reference objects and marks the objects that are referenced by an object. */
+    private final class MarkingObjectVisitor implements ObjectVisitor {
+        @Platforms(Platform.HOSTED_ONLY.class)
+        MarkingObjectVisitor() {
+        }
+
+        @Override
+        public boolean visitObject(Object o) {
+            return visitObjectInline(o);
+        }
+
+        @Override
+        @AlwaysInline("GC performance")
+        public boolean visitObjectInline(Object o) {
+            ReferenceObjectProcessing.discoverIfReference(o, markingObjRefVisitor);
+            InteriorObjRefWalker.walkObjectInline(o, markingObjRefVisitor);
+            return true;
+        }
+    }
+
+    /** Replaces references to objects that move with their new address. */
+    private final class UpdatingObjRefVisitor implements ObjectReferenceVisitor {
+        @Platforms(Platform.HOSTED_ONLY.class)
+        UpdatingObjRefVisitor() {
+        }
+
+        @Override
+        public boolean visitObjectReference(Pointer objRef, boolean compressed) {
+            return visitObjectReferenceInline(objRef, 0, compressed, null);
+        }
+
+        @Override
+        @AlwaysInline("GC performance")
+        public boolean visitObjectReferenceInline(Pointer objRef, boolean compressed, Object holderObject) {
+            return visitObjectReferenceInline(objRef, 0, compressed, holderObject);
+        }
+
+        @Override
+        @AlwaysInline("GC performance")
+        public boolean visitObjectReferenceInline(Pointer objRef, int innerOffset, boolean compressed) {
+            return visitObjectReferenceInline(objRef, innerOffset, compressed, null);
+        }
+
+        @Override
+        @AlwaysInline("GC performance")
+        public boolean visitObjectReferenceInline(Pointer objRef, int innerOffset, boolean compressed, Object holderObject) {
+            Pointer offsetP = ReferenceAccess.singleton().readObjectAsUntrackedPointer(objRef, compressed);
+            assert offsetP.isNonNull() || innerOffset == 0;
+            Pointer p = offsetP.subtract(innerOffset);
+            if (isCompacted(p)) {
+                Pointer forwarded = getForwardedAddress(p);
+                ReferenceAccess.singleton().writeObjectAt(objRef, forwarded.add(innerOffset).toObject(), compressed);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Updates the references in an object, including the referent of a reference object, which is
+     * not part of the reference map.
+     */
+    private final class UpdatingObjectVisitor implements ObjectVisitor {
+        @Platforms(Platform.HOSTED_ONLY.class)
+        UpdatingObjectVisitor() {
+        }
+
+        @Override
+        public boolean visitObject(Object o) {
+            return visitObjectInline(o);
+        }
+
+        @Override
+        @AlwaysInline("GC performance")
+        public boolean visitObjectInline(Object o) {
+            DynamicHub hub = KnownIntrinsics.readHub(o);
+            if (hub.isReferenceInstanceClass()) {
+                Reference<?> dr = KnownIntrinsics.convertUnknownValue(o, Reference.class);
+                Pointer referent = ReferenceInternals.getReferentPointer(dr);
+                if (isCompacted(referent)) {
+                    ReferenceInternals.setReferentPointer(dr, getForwardedAddress(referent));
+                }
+            }
+            InteriorObjRefWalker.walkObjectInline(o, updatingObjRefVisitor);
+            return true;
+        }
+    }
+
+    private static final class ImageHeapRootsVisitor implements MemoryWalker.ImageHeapRegionVisitor {
+        private ObjectVisitor visitor;
+
+        @Platforms(Platform.HOSTED_ONLY.class)
+        ImageHeapRootsVisitor() {
+        }
+
+        void initialize(ObjectVisitor objectVisitor) {
+            this.visitor = objectVisitor;
+        }
+
+        void reset() {
+            this.visitor = null;
+        }
+
+        @Override
+        public <T> boolean visitNativeImageHeapRegion(T region, MemoryWalker.NativeImageHeapRegionAccess<T> access) {
+            if (access.containsReferences(region) && access.isWritable(region)) {
+                access.visitObjects(region, visitor);
+            }
+            return true;
+        }
+    }
+}
@@ -219,6 +219,10 @@ final class ReferenceObjectProcessing {
     private static boolean willSurviveThisCollection(Object obj) {
         HeapChunk.Header<?> chunk = HeapChunk.getEnclosingHeapChunk(obj);
         Space space = HeapChunk.getSpace(chunk);
+        if (space == null) {
+            /* An aligned chunk that is being compacted. */
+            return GCImpl.getGCImpl().getMarkCompactCollector().isMarked(obj);
+        }
         return !space.isFromSpace();
     }
 
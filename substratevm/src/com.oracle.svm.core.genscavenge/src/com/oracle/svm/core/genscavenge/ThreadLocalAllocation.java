@@ -50,8 +50,10 @@ import com.oracle.svm.core.genscavenge.UnalignedHeapChunk.UnalignedHeader;
 import com.oracle.svm.core.genscavenge.graal.nodes.FormatArrayNode;
 import com.oracle.svm.core.genscavenge.graal.nodes.FormatObjectNode;
 import com.oracle.svm.core.graal.snippets.DeoptTester;
+import com.oracle.svm.core.heapdump.HeapDumpSupportImpl;
 import com.oracle.svm.core.hub.DynamicHub;
 import com.oracle.svm.core.hub.LayoutEncoding;
+import com.oracle.svm.core.jfr.JfrEvents;
 import com.oracle.svm.core.log.Log;
 import com.oracle.svm.core.snippets.KnownIntrinsics;
 import com.oracle.svm.core.snippets.SubstrateForeignCallTarget;
@@ -60,6 +62,7 @@ import com.oracle.svm.core.thread.VMThreads;
 import com.oracle.svm.core.threadlocal.FastThreadLocal;
 import com.oracle.svm.core.threadlocal.FastThreadLocalBytes;
 import com.oracle.svm.core.threadlocal.FastThreadLocalFactory;
+import com.oracle.svm.core.util.UnsignedUtils;
 import com.oracle.svm.core.util.VMError;
 
 /**
@@ -144,9 +147,17 @@ public final class ThreadLocalAllocation {
     private static Object slowPathNewInstance(Word objectHeader) {
         DynamicHub hub = ObjectHeaderImpl.getObjectHeaderImpl().dynamicHubFromObjectHeader(objectHeader);
         UnsignedWord gcEpoch = HeapImpl.getHeapImpl().getGCImpl().possibleCollectionPrologue();
-        Object result = slowPathNewInstanceWithoutAllocating(hub);
+        Object result;
+        try {
+            result = slowPathNewInstanceWithoutAllocating(hub);
+        } catch (OutOfMemoryError e) {
+            HeapDumpSupportImpl.dumpHeapOnOutOfMemoryError();
+            throw e;
+        }
         /* If a collection happened, do follow-up tasks now that allocation, etc., is allowed. */
         HeapImpl.getHeapImpl().getGCImpl().possibleCollectionEpilogue(gcEpoch);
+        /* A new TLAB was started, so the sample stands for the allocations in a whole chunk. */
+        JfrEvents.emitObjectAllocationSample(hub, HeapPolicy.getAlignedHeapChunkSize().rawValue());
         runSlowPathHooks();
         return result;
     }
@@ -184,13 +195,21 @@ public final class ThreadLocalAllocation {
          * object is allocated and survives.
          */
         if (size.aboveOrEqual(HeapPolicy.getMaximumHeapSize())) {
+            HeapDumpSupportImpl.dumpHeapOnOutOfMemoryError();
             throw new OutOfMemoryError("Array allocation too large.");
         }
 
         UnsignedWord gcEpoch = HeapImpl.getHeapImpl().getGCImpl().possibleCollectionPrologue();
-        Object result = slowPathNewArrayWithoutAllocating(hub, length, size);
+        Object result;
+        try {
+            result = slowPathNewArrayWithoutAllocating(hub, length, size);
+        } catch (OutOfMemoryError e) {
+            HeapDumpSupportImpl.dumpHeapOnOutOfMemoryError();
+            throw e;
+        }
         /* If a collection happened, do follow-up tasks now that allocation, etc., is allowed. */
         HeapImpl.getHeapImpl().getGCImpl().possibleCollectionEpilogue(gcEpoch);
+        JfrEvents.emitObjectAllocationSample(hub, UnsignedUtils.max(size, HeapPolicy.getAlignedHeapChunkSize()).rawValue());
         runSlowPathHooks();
         return result;
     }
@@ -99,6 +99,8 @@ final class Timers {
     final Timer cleanCodeCache = new Timer("cleanCodeCache");
     final Timer referenceObjects = new Timer("referenceObjects");
     final Timer promotePinnedObjects = new Timer("promotePinnedObjects");
+    final Timer markFromRoots = new Timer("markFromRoots");
+    final Timer compact = new Timer("compact");
     final Timer rootScan = new Timer("rootScan");
     final Timer scanGreyObjects = new Timer("scanGreyObjects");
     final Timer releaseSpaces = new Timer("releaseSpaces");
@@ -121,6 +123,8 @@ final class Timers {
         cheneyScanFromRoots.reset();
         cheneyScanFromDirtyRoots.reset();
         promotePinnedObjects.reset();
+        markFromRoots.reset();
+        compact.reset();
         blackenStackRoots.reset();
         walkThreadLocals.reset();
         walkRuntimeCodeCache.reset();
@@ -153,8 +157,10 @@ final class Timers {
             logOneTimer(log, "          ", blackenImageHeapRoots);
             logOneTimer(log, "          ", blackenDirtyCardRoots);
             logOneTimer(log, "          ", scanGreyObjects);
+            logOneTimer(log, "        ", markFromRoots);
             logOneTimer(log, "      ", cleanCodeCache);
             logOneTimer(log, "      ", referenceObjects);
+            logOneTimer(log, "      ", compact);
             logOneTimer(log, "      ", releaseSpaces);
             logOneTimer(log, "    ", verifyAfter);
             logGCLoad(log, "    ", "GCLoad", collection, mutator);
@@ -43,12 +43,15 @@ final class YoungGeneration extends Generation {
     private final Space[] survivorToSpaces;
     private final GreyObjectsWalker[] survivorGreyObjectsWalkers;
     private final int maxSurvivorSpaces;
+    /** Objects in spaces with at least this age are promoted to the old generation. */
+    private int tenuringThreshold;
 
     @Platforms(Platform.HOSTED_ONLY.class)
     YoungGeneration(String name) {
         super(name);
         this.eden = new Space("edenSpace", true, 0);
         this.maxSurvivorSpaces = HeapPolicy.getMaxSurvivorSpaces();
+        this.tenuringThreshold = maxSurvivorSpaces;
         this.survivorFromSpaces = new Space[maxSurvivorSpaces];
         this.survivorToSpaces = new Space[maxSurvivorSpaces];
         this.survivorGreyObjectsWalkers = new GreyObjectsWalker[maxSurvivorSpaces];
@@ -172,6 +175,38 @@ final class YoungGeneration extends Generation {
         }
     }
 
+    int getTenuringThreshold() {
+        return tenuringThreshold;
+    }
+
+    /**
+     * Computes the age at which objects are promoted in the next incremental collection, after
+     * the survivor spaces were swapped. Like the HotSpot collectors, the threshold is the youngest
+     * age at which the survivors of that age and all younger ages exceed the desired survivor
+     * size, so that medium-lived objects stay in the young generation as long as there is room
+     * for them and are promoted early when the survivors would grow too large.
+     */
+    void computeTenuringThreshold() {
+        int targetPercent = HeapPolicyOptions.TargetSurvivorPercent.getValue();
+        if (maxSurvivorSpaces == 0 || targetPercent <= 0) {
+            tenuringThreshold = maxSurvivorSpaces;
+            return;
+        }
+        UnsignedWord youngCapacity = HeapImpl.getHeapImpl().getGCImpl().getPolicy().getYoungGenerationCapacity();
+        UnsignedWord desiredSurvivorBytes = youngCapacity.unsignedDivide(100).multiply(targetPercent);
+        UnsignedWord survivorBytes = WordFactory.zero();
+        int age = 1;
+        while (age < maxSurvivorSpaces) {
+            /* Survivor space i contains the objects of age i + 1. */
+            survivorBytes = survivorBytes.add(getSurvivorFromSpaceAt(age - 1).computeObjectBytes());
+            if (survivorBytes.aboveThan(desiredSurvivorBytes)) {
+                break;
+            }
+            age++;
+        }
+        tenuringThreshold = age;
+    }
+
     @Override
     protected boolean verify(HeapVerifier.Occasion occasion) {
         boolean result = true;
@@ -308,7 +343,7 @@ final class YoungGeneration extends Generation {
         assert originalSpace.isEdenSpace() || originalSpace.isSurvivorSpace() : "Should be Eden or survivor.";
         assert originalSpace.isFromSpace() : "must not be called for other objects";
 
-        if (originalSpace.getAge() < maxSurvivorSpaces) {
+        if (originalSpace.getAge() < tenuringThreshold) {
             int age = originalSpace.getNextAgeForPromotion();
             Space toSpace = getSurvivorToSpaceAt(age - 1);
             return toSpace.promoteAlignedObject(original, originalSpace);
@@ -321,7 +356,7 @@ final class YoungGeneration extends Generation {
     private void promoteUnalignedObject(UnalignedHeapChunk.UnalignedHeader originalChunk, Space originalSpace) {
         assert originalSpace.isFromSpace() : "must not be called for other objects";
 
-        if (originalSpace.getAge() < maxSurvivorSpaces) {
+        if (originalSpace.getAge() < tenuringThreshold) {
             int age = originalSpace.getNextAgeForPromotion();
             Space toSpace = getSurvivorToSpaceAt(age - 1);
             toSpace.promoteUnalignedHeapChunk(originalChunk, originalSpace);
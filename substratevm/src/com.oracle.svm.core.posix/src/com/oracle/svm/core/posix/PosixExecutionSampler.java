@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.posix;
+
+import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.IsolateThread;
+import org.graalvm.nativeimage.Platform;
+import org.graalvm.nativeimage.Platforms;
+import org.graalvm.nativeimage.StackValue;
+import org.graalvm.nativeimage.c.function.CEntryPoint;
+import org.graalvm.nativeimage.c.function.CEntryPointLiteral;
+import org.graalvm.nativeimage.c.function.CodePointer;
+import org.graalvm.nativeimage.c.struct.SizeOf;
+import org.graalvm.nativeimage.c.type.WordPointer;
+import org.graalvm.nativeimage.hosted.Feature;
+import org.graalvm.word.LocationIdentity;
+import org.graalvm.word.Pointer;
+import org.graalvm.word.WordFactory;
+
+import com.oracle.svm.core.CErrorNumber;
+import com.oracle.svm.core.Isolates;
+import com.oracle.svm.core.RegisterDumper;
+import com.oracle.svm.core.SubstrateOptions;
+import com.oracle.svm.core.annotate.AutomaticFeature;
+import com.oracle.svm.core.annotate.RestrictHeapAccess;
+import com.oracle.svm.core.annotate.Uninterruptible;
+import com.oracle.svm.core.c.CGlobalData;
+import com.oracle.svm.core.c.CGlobalDataFactory;
+import com.oracle.svm.core.c.function.CEntryPointOptions;
+import com.oracle.svm.core.c.function.CEntryPointOptions.NoEpilogue;
+import com.oracle.svm.core.c.function.CEntryPointOptions.NoPrologue;
+import com.oracle.svm.core.c.function.CEntryPointOptions.Publish;
+import com.oracle.svm.core.graal.nodes.WriteCurrentVMThreadNode;
+import com.oracle.svm.core.graal.snippets.CEntryPointSnippets;
+import com.oracle.svm.core.posix.headers.LibC;
+import com.oracle.svm.core.posix.headers.Pthread;
+import com.oracle.svm.core.posix.headers.Signal;
+import com.oracle.svm.core.posix.headers.Signal.AdvancedSignalDispatcher;
+import com.oracle.svm.core.posix.headers.Signal.sigaction;
+import com.oracle.svm.core.posix.headers.Signal.siginfo_t;
+import com.oracle.svm.core.posix.headers.Signal.ucontext_t;
+import com.oracle.svm.core.posix.headers.Time;
+import com.oracle.svm.core.sampler.ExecutionSampler;
+import com.oracle.svm.core.sampler.SamplerOptions;
+import com.oracle.svm.core.thread.VMThreads;
+
+@AutomaticFeature
+@Platforms({Platform.LINUX.class, Platform.DARWIN.class})
+class PosixExecutionSamplerFeature implements Feature {
+    @Override
+    public boolean isInConfiguration(IsInConfigurationAccess access) {
+        return SamplerOptions.AllowExecutionSampling.getValue();
+    }
+
+    @Override
+    public void afterRegistration(AfterRegistrationAccess access) {
+        ImageSingletons.add(ExecutionSampler.class, new PosixExecutionSampler());
+    }
+}
+
+/**
+ * Samples with a {@code SIGPROF} timer, which the kernel delivers to the threads of the process in
+ * proportion to the CPU time they consume. The signal handler finds the interrupted
+ * {@link IsolateThread} in a pthread key, so it does not depend on the register state of the
+ * interrupted code. The timer and the signal handler are process-wide, so only one isolate per
+ * process can sample, and only once.
+ */
+public class PosixExecutionSampler extends ExecutionSampler {
+
+    private static final long STATE_IDLE = 0;
+    private static final long STATE_STARTED = 1;
+    private static final long STATE_STOPPED = 2;
+
+    private static final CGlobalData<Pointer> state = CGlobalDataFactory.createWord();
+    private static final CGlobalData<Pointer> threadKey = CGlobalDataFactory.createWord();
+
+    @Platforms(Platform.HOSTED_ONLY.class)
+    PosixExecutionSampler() {
+    }
+
+    @CEntryPoint
+    @CEntryPointOptions(prologue = NoPrologue.class, epilogue = NoEpilogue.class, publishAs = Publish.NotPublished, include = CEntryPointOptions.NotIncludedAutomatically.class)
+    @RestrictHeapAccess(access = RestrictHeapAccess.Access.NO_ALLOCATION, reason = "Must not allocate in a signal handler.")
+    @Uninterruptible(reason = "The interrupted thread may be in any state.")
+    private static void dispatch(@SuppressWarnings("unused") int signalNumber, @SuppressWarnings("unused") siginfo_t sigInfo, ucontext_t uContext) {
+        if (state.get().readLong(0) != STATE_STARTED) {
+            return;
+        }
+        IsolateThread thread = Pthread.pthread_getspecific(threadKey.get().readWord(0));
+        if (thread.isNull()) {
+            /* Not a thread of the sampling isolate. */
+            return;
+        }
+        if (SubstrateOptions.MultiThreaded.getValue()) {
+            WriteCurrentVMThreadNode.writeCurrentVMThread(thread);
+        }
+        CEntryPointSnippets.setHeapBase(Isolates.getHeapBase(VMThreads.IsolateTL.get(thread)));
+
+        int savedErrno = CErrorNumber.getCErrorNumber();
+        recordSample((Pointer) RegisterDumper.singleton().getSP(uContext), (CodePointer) RegisterDumper.singleton().getIP(uContext));
+        CErrorNumber.setCErrorNumber(savedErrno);
+    }
+
+    private static final CEntryPointLiteral<AdvancedSignalDispatcher> advancedSignalDispatcher = CEntryPointLiteral.create(PosixExecutionSampler.class,
+                    "dispatch", int.class, siginfo_t.class, ucontext_t.class);
+
+    @Override
+    protected boolean startTimer(long intervalMillis) {
+        if (state.get().compareAndSwapLong(0, STATE_IDLE, STATE_STARTED, LocationIdentity.ANY_LOCATION) != STATE_IDLE) {
+            return false;
+        }
+        PosixUtils.checkStatusIs0(Pthread.pthread_key_create((WordPointer) threadKey.get(), WordFactory.nullPointer()), "PosixExecutionSampler: pthread_key_create");
+
+        int structSigActionSize = SizeOf.get(sigaction.class);
+        sigaction structSigAction = StackValue.get(structSigActionSize);
+        LibC.memset(structSigAction, WordFactory.signed(0), WordFactory.unsigned(structSigActionSize));
+        structSigAction.sa_flags(Signal.SA_SIGINFO() | Signal.SA_RESTART());
+        structSigAction.sa_sigaction(advancedSignalDispatcher.getFunctionPointer());
+        Signal.sigaction(Signal.SignalEnum.SIGPROF, structSigAction, WordFactory.nullPointer());
+
+        setTimer(intervalMillis);
+        return true;
+    }
+
+    @Override
+    protected void stopTimer() {
+        setTimer(0);
+        state.get().writeLong(0, STATE_STOPPED);
+    }
+
+    private static void setTimer(long intervalMillis) {
+        Time.itimerval timer = StackValue.get(Time.itimerval.class);
+        timer.it_interval().set_tv_sec(intervalMillis / 1000);
+        timer.it_interval().set_tv_usec((intervalMillis % 1000) * 1000);
+        timer.it_value().set_tv_sec(intervalMillis / 1000);
+        timer.it_value().set_tv_usec((intervalMillis % 1000) * 1000);
+        PosixUtils.checkStatusIs0(Time.setitimer(Time.ITIMER_PROF(), timer, WordFactory.nullPointer()), "PosixExecutionSampler: setitimer");
+    }
+
+    @Override
+    @Uninterruptible(reason = "Called from uninterruptible code.")
+    protected void registerCurrentThread(IsolateThread thread) {
+        Pthread.pthread_setspecific(threadKey.get().readWord(0), thread);
+    }
+
+    @Override
+    @Uninterruptible(reason = "Called from uninterruptible code.")
+    protected void unregisterCurrentThread() {
+        if (state.get().readLong(0) != STATE_IDLE) {
+            Pthread.pthread_setspecific(threadKey.get().readWord(0), WordFactory.nullPointer());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.posix;
+
+import java.io.FileDescriptor;
+
+import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.Platform;
+import org.graalvm.nativeimage.Platforms;
+import org.graalvm.nativeimage.c.type.CCharPointer;
+import org.graalvm.nativeimage.hosted.Feature;
+import org.graalvm.nativeimage.impl.HeapDumpSupport;
+import org.graalvm.word.UnsignedWord;
+
+import com.oracle.svm.core.VMInspection;
+import com.oracle.svm.core.annotate.AutomaticFeature;
+import com.oracle.svm.core.heapdump.HeapDumpSupportImpl;
+import com.oracle.svm.core.jdk.RuntimeSupport;
+import com.oracle.svm.core.posix.headers.Fcntl;
+import com.oracle.svm.core.posix.headers.Unistd;
+
+@AutomaticFeature
+@Platforms({Platform.LINUX.class, Platform.DARWIN.class})
+class PosixHeapDumpFeature implements Feature {
+    @Override
+    public boolean isInConfiguration(IsInConfigurationAccess access) {
+        return VMInspection.isEnabled();
+    }
+
+    @Override
+    public void afterRegistration(AfterRegistrationAccess access) {
+        ImageSingletons.add(HeapDumpSupport.class, new PosixHeapDumpSupport());
+    }
+
+    @Override
+    public void beforeAnalysis(BeforeAnalysisAccess access) {
+        RuntimeSupport.getRuntimeSupport().addStartupHook(HeapDumpSupportImpl::initializeOutOfMemoryHeapDump);
+    }
+}
+
+public class PosixHeapDumpSupport extends HeapDumpSupportImpl {
+
+    @Platforms(Platform.HOSTED_ONLY.class)
+    PosixHeapDumpSupport() {
+    }
+
+    @Override
+    protected boolean writeBytes(FileDescriptor fd, CCharPointer bytes, UnsignedWord length) {
+        return PosixUtils.writeBytes(fd, bytes, length);
+    }
+
+    @Override
+    protected boolean openFile(CCharPointer path, FileDescriptor fd) {
+        int result = Fcntl.open(path, Fcntl.O_WRONLY() | Fcntl.O_CREAT() | Fcntl.O_TRUNC(), 0666);
+        PosixUtils.setFD(fd, result);
+        return result != -1;
+    }
+
+    @Override
+    protected void closeFile(FileDescriptor fd) {
+        int result = PosixUtils.getFD(fd);
+        if (result != -1) {
+            Unistd.close(result);
+            PosixUtils.setFD(fd, -1);
+        }
+    }
+}
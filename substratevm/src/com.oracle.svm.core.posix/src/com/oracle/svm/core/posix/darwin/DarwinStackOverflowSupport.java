@@ -44,6 +44,13 @@ class DarwinStackOverflowSupport implements StackOverflowCheck.OSSupport {
         UnsignedWord stacksize = DarwinPthread.pthread_get_stacksize_np(self);
         return stackaddr.subtract(stacksize);
     }
+
+    @Uninterruptible(reason = "Called while thread is being attached to the VM, i.e., when the thread state is not yet set up.")
+    @Override
+    public UnsignedWord lookupStackBase() {
+        /* On Darwin, the stack address is the start of the stack, not the lowest address. */
+        return DarwinPthread.pthread_get_stackaddr_np(Pthread.pthread_self());
+    }
 }
 
 @AutomaticFeature
@@ -158,4 +158,19 @@ public class Pthread {
 
     @CFunction
     public static native int pthread_kill(pthread_t thread, Signal.SignalEnum sig);
+
+    /**
+     * The key is written to a zero-initialized word, so that it can be read as a word on platforms
+     * where {@code pthread_key_t} is narrower.
+     */
+    @CFunction(transition = Transition.NO_TRANSITION)
+    public static native int pthread_key_create(WordPointer key, WordBase destructor);
+
+    @CFunction(transition = Transition.NO_TRANSITION)
+    @Uninterruptible(reason = "Called from uninterruptible code.")
+    public static native int pthread_setspecific(UnsignedWord key, PointerBase value);
+
+    @CFunction(transition = Transition.NO_TRANSITION)
+    @Uninterruptible(reason = "Called from uninterruptible code.")
+    public static native <T extends PointerBase> T pthread_getspecific(UnsignedWord key);
 }
@@ -25,10 +25,12 @@
 package com.oracle.svm.core.posix.headers;
 
 import org.graalvm.nativeimage.c.CContext;
+import org.graalvm.nativeimage.c.constant.CConstant;
 import org.graalvm.nativeimage.c.function.CFunction;
 import org.graalvm.nativeimage.c.struct.AllowNarrowingCast;
 import org.graalvm.nativeimage.c.struct.AllowWideningCast;
 import org.graalvm.nativeimage.c.struct.CField;
+import org.graalvm.nativeimage.c.struct.CFieldAddress;
 import org.graalvm.nativeimage.c.struct.CStruct;
 import org.graalvm.word.PointerBase;
 
@@ -65,6 +67,21 @@ public class Time {
     @CFunction(transition = CFunction.Transition.NO_TRANSITION)
     public static native int gettimeofday(timeval tv, timezone tz);
 
+    @CStruct(addStructKeyword = true)
+    public interface itimerval extends PointerBase {
+        @CFieldAddress
+        timeval it_interval();
+
+        @CFieldAddress
+        timeval it_value();
+    }
+
+    @CConstant
+    public static native int ITIMER_PROF();
+
+    @CFunction(transition = CFunction.Transition.NO_TRANSITION)
+    public static native int setitimer(int which, itimerval newValue, itimerval oldValue);
+
     @CStruct(addStructKeyword = true)
     public interface timespec extends PointerBase {
         @CField
@@ -109,6 +109,9 @@ public class Unistd {
     @CFunction
     public static native int fsync(int fd);
 
+    @CFunction
+    public static native int close(int fd);
+
     @CFunction
     public static native int getpagesize();
 
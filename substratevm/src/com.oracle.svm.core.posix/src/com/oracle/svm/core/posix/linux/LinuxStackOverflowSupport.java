@@ -62,6 +62,23 @@ class LinuxStackOverflowSupport implements StackOverflowCheck.OSSupport {
 
         return stackaddr.add(guardsize);
     }
+
+    @Uninterruptible(reason = "Called while thread is being attached to the VM, i.e., when the thread state is not yet set up.")
+    @Override
+    public UnsignedWord lookupStackBase() {
+        Pthread.pthread_attr_t attr = StackValue.get(Pthread.pthread_attr_t.class);
+        PosixUtils.checkStatusIs0(Pthread.pthread_getattr_np(Pthread.pthread_self(), attr), "LinuxStackOverflowSupport: pthread_getattr_np");
+
+        WordPointer stackaddrPtr = StackValue.get(WordPointer.class);
+        WordPointer stacksizePtr = StackValue.get(WordPointer.class);
+        PosixUtils.checkStatusIs0(Pthread.pthread_attr_getstack(attr, stackaddrPtr, stacksizePtr), "LinuxStackOverflowSupport: pthread_attr_getstack");
+        UnsignedWord stackaddr = stackaddrPtr.read();
+        UnsignedWord stacksize = stacksizePtr.read();
+
+        PosixUtils.checkStatusIs0(Pthread.pthread_attr_destroy(attr), "LinuxStackOverflowSupport: pthread_attr_destroy");
+
+        return stackaddr.add(stacksize);
+    }
 }
 
 @AutomaticFeature
@@ -55,6 +55,20 @@ class WindowsStackOverflowSupport implements StackOverflowCheck.OSSupport {
 
         return (Pointer) minfo.AllocationBase();
     }
+
+    @Uninterruptible(reason = "Called while thread is being attached to the VM, i.e., when the thread state is not yet set up.")
+    @Override
+    public UnsignedWord lookupStackBase() {
+        MemoryAPI.MEMORY_BASIC_INFORMATION minfo = StackValue.get(MemoryAPI.MEMORY_BASIC_INFORMATION.class);
+
+        /*
+         * The committed part of the stack is a single region that ends at the start of the stack, so
+         * the end of the region that contains the current stack is the start of the stack.
+         */
+        MemoryAPI.VirtualQuery(minfo, minfo, SizeOf.unsigned(MemoryAPI.MEMORY_BASIC_INFORMATION.class));
+
+        return ((Pointer) minfo.BaseAddress()).add(minfo.RegionSize());
+    }
 }
 
 @Platforms({Platform.WINDOWS.class})
@@ -416,6 +416,12 @@ public class SubstrateOptions {
     @Option(help = "When set to true, the image generator verifies that the image heap does not contain a home directory as a substring", type = User)//
     public static final HostedOptionKey<Boolean> DetectUserDirectoriesInImageHeap = new HostedOptionKey<>(false);
 
+    @Option(help = "Lay out writable image heap objects that are likely written at run time on separate pages, so that more pages of the image heap stay clean and can be shared between processes.", type = Expert)//
+    public static final HostedOptionKey<Boolean> GroupWrittenImageHeapObjects = new HostedOptionKey<>(false);
+
+    @Option(help = "File with the names of the types whose image heap objects are written at run time, as produced by -XX:DumpImageHeapWriteProfile=<file>. Implies -H:+GroupWrittenImageHeapObjects.", type = Expert)//
+    public static final HostedOptionKey<String> ImageHeapWriteProfile = new HostedOptionKey<>("");
+
     @Option(help = "The interval in minutes between watchdog checks (0 disables the watchdog)", type = OptionType.Expert)//
     public static final HostedOptionKey<Integer> DeadlockWatchdogInterval = new HostedOptionKey<>(10);
     @Option(help = "Exit the image builder VM after printing call stacks", type = OptionType.Expert)//
@@ -449,6 +455,9 @@ public class SubstrateOptions {
         DeleteLocalSymbols.update(values, newValue == 0);
     }
 
+    @Option(help = "Compress the debug info sections of the generated native image or library (requires a linker that supports --compress-debug-sections)")//
+    public static final HostedOptionKey<Boolean> CompressDebugInfo = new HostedOptionKey<>(false);
+
     @Option(help = "Search path for source files for Application or GraalVM classes (list of comma-separated directories or jar files)")//
     public static final HostedOptionKey<String[]> DebugInfoSourceSearchPath = new HostedOptionKey<String[]>(null) {
     };
@@ -230,6 +230,18 @@ public final class CodeInfoAccess {
         return entryOffset;
     }
 
+    /**
+     * Like {@link #initFrameInfoReader}, but for an IP that is not necessarily a call site: uses the
+     * nearest preceding frame information of the same method.
+     */
+    public static long initNearestFrameInfoReader(CodeInfo info, CodePointer ip, ReusableTypeReader frameInfoReader) {
+        long entryOffset = CodeInfoDecoder.lookupNearestFrameInfoEntryOffset(info, relativeIP(info, ip));
+        if (entryOffset >= 0) {
+            CodeInfoDecoder.initFrameInfoReader(info, entryOffset, frameInfoReader);
+        }
+        return entryOffset;
+    }
+
     public static FrameInfoQueryResult nextFrameInfo(CodeInfo info, long entryOffset, ReusableTypeReader frameInfoReader,
                     FrameInfoDecoder.FrameInfoQueryResultAllocator resultAllocator, ValueInfoAllocator valueInfoAllocator, boolean fetchFirstFrame) {
         int entryFlags = CodeInfoDecoder.loadEntryFlags(info, entryOffset);
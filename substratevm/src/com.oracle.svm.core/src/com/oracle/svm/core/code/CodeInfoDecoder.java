@@ -88,6 +88,33 @@ public final class CodeInfoDecoder {
         return -1;
     }
 
+    /**
+     * Returns the offset of the last entry at or before the given IP that has frame information
+     * and belongs to the same method as the IP, or -1 if there is no such entry. This is used to
+     * approximate the source position of an IP that is not a call site.
+     */
+    static long lookupNearestFrameInfoEntryOffset(CodeInfo info, long ip) {
+        long sizeEncoding = initialSizeEncoding();
+        long entryIP = lookupEntryIP(ip);
+        long entryOffset = loadEntryOffset(info, ip);
+        long result = -1;
+        do {
+            int entryFlags = loadEntryFlags(info, entryOffset);
+            sizeEncoding = updateSizeEncoding(info, entryOffset, entryFlags, sizeEncoding);
+            if (sizeEncoding != INVALID_SIZE_ENCODING && decodeMethodStart(entryFlags, sizeEncoding)) {
+                result = -1;
+            }
+            if (extractFI(entryFlags) != FI_NO_DEOPT) {
+                result = entryOffset;
+            }
+
+            entryIP = advanceIP(info, entryOffset, entryIP);
+            entryOffset = advanceOffset(entryOffset, entryFlags);
+        } while (entryIP <= ip);
+
+        return result;
+    }
+
     static void lookupCodeInfo(CodeInfo info, long ip, CodeInfoQueryResult codeInfoQueryResult) {
         long sizeEncoding = initialSizeEncoding();
         long entryIP = lookupEntryIP(ip);
@@ -85,6 +85,7 @@ import com.oracle.svm.core.snippets.SnippetRuntime.SubstrateForeignCallDescripto
 import com.oracle.svm.core.snippets.SubstrateForeignCallTarget;
 import com.oracle.svm.core.stack.StackOverflowCheck;
 import com.oracle.svm.core.thread.ThreadingSupportImpl;
+import com.oracle.svm.core.thread.VMThreads;
 import com.oracle.svm.core.threadlocal.FastThreadLocal;
 import com.oracle.svm.core.threadlocal.FastThreadLocalFactory;
 import com.oracle.svm.core.threadlocal.FastThreadLocalInt;
@@ -127,6 +128,7 @@ final class StackOverflowCheckImpl implements StackOverflowCheck {
          * Get the real physical end of the stack. Everything past this point is memory-protected.
          */
         UnsignedWord stackEnd = ImageSingletons.lookup(StackOverflowCheck.OSSupport.class).lookupStackEnd();
+        VMThreads.StackBase.set(thread, ImageSingletons.lookup(StackOverflowCheck.OSSupport.class).lookupStackBase());
 
         /*
          * Set up our yellow and red zones. That memory is not memory protected, it is a soft limit
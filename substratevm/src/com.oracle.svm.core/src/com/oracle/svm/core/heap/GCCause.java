@@ -45,8 +45,9 @@ public class GCCause {
     @DuplicatedInNativeCode public static final GCCause JavaLangSystemGC = new GCCause("java.lang.System.gc()", 0);
     @DuplicatedInNativeCode public static final GCCause UnitTest = new GCCause("UnitTest", 1);
     @DuplicatedInNativeCode public static final GCCause TestGCInDeoptimizer = new GCCause("TestGCInDeoptimizer", 2);
+    @DuplicatedInNativeCode public static final GCCause HeapDump = new GCCause("HeapDump", 3);
 
-    protected static GCCause[] GCCauses = new GCCause[]{JavaLangSystemGC, UnitTest, TestGCInDeoptimizer};
+    protected static GCCause[] GCCauses = new GCCause[]{JavaLangSystemGC, UnitTest, TestGCInDeoptimizer, HeapDump};
 
     private final int id;
     private final String name;
@@ -83,6 +84,11 @@ public class GCCause {
         return GCCauses[causeId];
     }
 
+    /** Returns all causes indexed by their id. Ids that are not used have a null entry. */
+    public static GCCause[] getGCCauses() {
+        return GCCauses;
+    }
+
     @Platforms(Platform.HOSTED_ONLY.class)
     public static void cacheReverseMapping() {
         GCCauses = HostedGCCauseList.toArray(new GCCause[HostedGCCauseList.size()]);
@@ -94,6 +94,13 @@ public abstract class Heap {
      */
     public abstract boolean walkCollectedHeapObjects(ObjectVisitor visitor);
 
+    /**
+     * Retires the thread-local allocation buffers of all threads, so that the objects in them are
+     * visited by the walk methods above. Must only be executed as part of a VM operation that causes
+     * a safepoint.
+     */
+    public abstract void disableAndFlushAllocationBuffers();
+
     /** Returns the number of classes in the heap. */
     public abstract int getClassCount();
 
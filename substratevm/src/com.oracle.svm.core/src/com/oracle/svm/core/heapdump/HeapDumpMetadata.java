@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.heapdump;
+
+import org.graalvm.nativeimage.Platform;
+import org.graalvm.nativeimage.Platforms;
+
+import com.oracle.svm.core.annotate.UnknownObjectField;
+import com.oracle.svm.core.hub.DynamicHub;
+
+/**
+ * Field information that is needed to write heap dumps at run time, but that is otherwise not
+ * available in the image: the names, kinds and locations of the instance and static fields of every
+ * type. The information is computed at image build time and stored in flat arrays, so that it can
+ * be accessed without allocation while the heap is walked.
+ * <p>
+ * The fields of the type with type id {@code t} are at the indices
+ * {@code [fieldStarts[t], fieldStarts[t + 1])} of {@link #fieldNames}, {@link #fieldKinds} and
+ * {@link #fieldLocations}. The instance fields come first and the static fields start at
+ * {@code staticFieldStarts[t]}. Instance fields are only the fields declared by the type itself, in
+ * the order of their declaration. Static field locations are offsets into the static field arrays.
+ */
+public final class HeapDumpMetadata {
+
+    @UnknownObjectField(types = {int[].class}) private int[] fieldStarts;
+    @UnknownObjectField(types = {int[].class}) private int[] staticFieldStarts;
+    @UnknownObjectField(types = {int[].class}) private int[] fieldNames;
+    @UnknownObjectField(types = {byte[].class}) private byte[] fieldKinds;
+    @UnknownObjectField(types = {int[].class}) private int[] fieldLocations;
+    @UnknownObjectField(types = {String[].class}) private String[] names;
+
+    @Platforms(Platform.HOSTED_ONLY.class)
+    public HeapDumpMetadata() {
+    }
+
+    @Platforms(Platform.HOSTED_ONLY.class)
+    public void setData(int[] fieldStarts, int[] staticFieldStarts, int[] fieldNames, byte[] fieldKinds, int[] fieldLocations, String[] names) {
+        this.fieldStarts = fieldStarts;
+        this.staticFieldStarts = staticFieldStarts;
+        this.fieldNames = fieldNames;
+        this.fieldKinds = fieldKinds;
+        this.fieldLocations = fieldLocations;
+        this.names = names;
+    }
+
+    public boolean isInitialized() {
+        return fieldStarts != null;
+    }
+
+    /** Returns the distinct field names, which are referenced by index from the fields. */
+    public String[] getNames() {
+        return names;
+    }
+
+    public int getInstanceFieldsStart(DynamicHub hub) {
+        int typeId = hub.getTypeID();
+        return typeId + 1 < fieldStarts.length ? fieldStarts[typeId] : 0;
+    }
+
+    public int getInstanceFieldsEnd(DynamicHub hub) {
+        int typeId = hub.getTypeID();
+        return typeId + 1 < fieldStarts.length ? staticFieldStarts[typeId] : 0;
+    }
+
+    public int getStaticFieldsStart(DynamicHub hub) {
+        return getInstanceFieldsEnd(hub);
+    }
+
+    public int getStaticFieldsEnd(DynamicHub hub) {
+        int typeId = hub.getTypeID();
+        return typeId + 1 < fieldStarts.length ? fieldStarts[typeId + 1] : 0;
+    }
+
+    public String getFieldName(int field) {
+        return names[fieldNames[field]];
+    }
+
+    /** Returns the {@link jdk.vm.ci.meta.JavaKind#getTypeChar() type character} of the field. */
+    public char getFieldKind(int field) {
+        return (char) fieldKinds[field];
+    }
+
+    public int getFieldLocation(int field) {
+        return fieldLocations[field];
+    }
+}
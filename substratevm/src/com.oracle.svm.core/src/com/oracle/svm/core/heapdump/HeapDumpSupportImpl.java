@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.heapdump;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.graalvm.compiler.options.Option;
+import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.Platform;
+import org.graalvm.nativeimage.Platforms;
+import org.graalvm.nativeimage.ProcessProperties;
+import org.graalvm.nativeimage.UnmanagedMemory;
+import org.graalvm.nativeimage.c.type.CCharPointer;
+import org.graalvm.nativeimage.impl.HeapDumpSupport;
+import org.graalvm.word.UnsignedWord;
+
+import com.oracle.svm.core.heap.GCCause;
+import com.oracle.svm.core.heap.Heap;
+import com.oracle.svm.core.log.Log;
+import com.oracle.svm.core.option.RuntimeOptionKey;
+
+/**
+ * Writes heap dumps in the HPROF format at run time. The platform-specific part is only the
+ * allocation-free output of bytes to an open file, see {@link #writeBytes}.
+ */
+public abstract class HeapDumpSupportImpl implements HeapDumpSupport {
+
+    public static class Options {
+        @Option(help = "Dump the heap to a file when the garbage-collected heap is exhausted. Heap dumps require -H:+AllowVMInspection.")//
+        public static final RuntimeOptionKey<Boolean> HeapDumpOnOutOfMemoryError = new RuntimeOptionKey<>(false);
+
+        @Option(help = "The file or directory the heap dump is written to on an OutOfMemoryError.")//
+        public static final RuntimeOptionKey<String> HeapDumpPath = new RuntimeOptionKey<>("");
+    }
+
+    private final HeapDumpMetadata metadata = new HeapDumpMetadata();
+    private final AtomicBoolean outOfMemoryHeapDumpAttempted = new AtomicBoolean();
+
+    /*
+     * Like HotSpot, everything that is needed for a heap dump on an OutOfMemoryError is allocated at
+     * startup, because there is no memory left when it is needed.
+     */
+    private String outOfMemoryHeapDumpFile;
+    private CCharPointer outOfMemoryHeapDumpPath;
+    private FileDescriptor outOfMemoryHeapDumpDescriptor;
+    private HeapDumpWriter outOfMemoryHeapDumpWriter;
+
+    @Platforms(Platform.HOSTED_ONLY.class)
+    protected HeapDumpSupportImpl() {
+    }
+
+    public HeapDumpMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public void dumpHeap(String outputFile, boolean live) throws IOException {
+        if (live) {
+            /* Only reachable objects survive a full collection. */
+            Heap.getHeap().getGC().collectCompletely(GCCause.HeapDump);
+        }
+        try (FileOutputStream stream = new FileOutputStream(outputFile)) {
+            new HeapDumpWriter(this, stream.getFD()).writeHeapDump();
+        }
+    }
+
+    /**
+     * Writes the bytes to the file. This method is called while the heap is walked, so it must not
+     * allocate.
+     *
+     * @return true if all bytes were written, false if an error occurred.
+     */
+    protected abstract boolean writeBytes(FileDescriptor fd, CCharPointer bytes, UnsignedWord length);
+
+    /**
+     * Creates or truncates the file and stores its descriptor in {@code fd}. This method must not
+     * allocate.
+     *
+     * @return true if the file was opened, false if an error occurred.
+     */
+    protected abstract boolean openFile(CCharPointer path, FileDescriptor fd);
+
+    /** Closes a file opened with {@link #openFile}. This method must not allocate. */
+    protected abstract void closeFile(FileDescriptor fd);
+
+    /**
+     * Allocates the file name, the file descriptor and the writer for a heap dump on an
+     * OutOfMemoryError. Called at startup, after the runtime options were parsed.
+     */
+    public static void initializeOutOfMemoryHeapDump() {
+        if (Options.HeapDumpOnOutOfMemoryError.getValue() && ImageSingletons.contains(HeapDumpSupport.class)) {
+            HeapDumpSupport support = ImageSingletons.lookup(HeapDumpSupport.class);
+            if (support instanceof HeapDumpSupportImpl) {
+                ((HeapDumpSupportImpl) support).initializeOutOfMemoryHeapDump0();
+            }
+        }
+    }
+
+    private void initializeOutOfMemoryHeapDump0() {
+        String outputFile = getOutOfMemoryHeapDumpFile();
+        byte[] bytes = outputFile.getBytes(StandardCharsets.UTF_8);
+        CCharPointer path = UnmanagedMemory.malloc(bytes.length + 1);
+        for (int i = 0; i < bytes.length; i++) {
+            path.write(i, bytes[i]);
+        }
+        path.write(bytes.length, (byte) 0);
+
+        FileDescriptor fd = new FileDescriptor();
+        outOfMemoryHeapDumpWriter = new HeapDumpWriter(this, fd);
+        outOfMemoryHeapDumpDescriptor = fd;
+        outOfMemoryHeapDumpPath = path;
+        outOfMemoryHeapDumpFile = outputFile;
+    }
+
+    /**
+     * Writes a heap dump if requested by {@link Options#HeapDumpOnOutOfMemoryError}. Only the first
+     * OutOfMemoryError results in a heap dump.
+     */
+    public static void dumpHeapOnOutOfMemoryError() {
+        if (!Options.HeapDumpOnOutOfMemoryError.getValue() || !ImageSingletons.contains(HeapDumpSupport.class)) {
+            return;
+        }
+        HeapDumpSupport support = ImageSingletons.lookup(HeapDumpSupport.class);
+        if (support instanceof HeapDumpSupportImpl && ((HeapDumpSupportImpl) support).outOfMemoryHeapDumpAttempted.compareAndSet(false, true)) {
+            ((HeapDumpSupportImpl) support).dumpHeapOnOutOfMemoryError0();
+        }
+    }
+
+    private void dumpHeapOnOutOfMemoryError0() {
+        Log log = Log.log();
+        if (outOfMemoryHeapDumpWriter == null) {
+            log.string("Heap dump failed: the heap was exhausted during startup").newline();
+            return;
+        }
+        log.string("Dumping heap to ").string(outOfMemoryHeapDumpFile).string(" ...").newline();
+        if (!openFile(outOfMemoryHeapDumpPath, outOfMemoryHeapDumpDescriptor)) {
+            log.string("Heap dump failed: could not open the file").newline();
+            return;
+        }
+        boolean success = outOfMemoryHeapDumpWriter.writeHeapDumpWithoutAllocation();
+        closeFile(outOfMemoryHeapDumpDescriptor);
+        if (success) {
+            log.string("Heap dump file created").newline();
+        } else {
+            log.string("Heap dump failed: could not write the file").newline();
+        }
+    }
+
+    private static String getOutOfMemoryHeapDumpFile() {
+        String defaultFileName = "svm-heapdump-" + ProcessProperties.getProcessID() + "-OOME.hprof";
+        String path = Options.HeapDumpPath.getValue();
+        if (path.isEmpty()) {
+            return defaultFileName;
+        } else if (new File(path).isDirectory()) {
+            return path + File.separator + defaultFileName;
+        }
+        return path;
+    }
+}
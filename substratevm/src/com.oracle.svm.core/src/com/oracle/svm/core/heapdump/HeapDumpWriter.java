@@ -0,0 +1,655 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.heapdump;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+import org.graalvm.compiler.nodes.java.ArrayLengthNode;
+import org.graalvm.compiler.word.ObjectAccess;
+import org.graalvm.compiler.word.Word;
+import org.graalvm.nativeimage.CurrentIsolate;
+import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.IsolateThread;
+import org.graalvm.nativeimage.c.function.CodePointer;
+import org.graalvm.nativeimage.c.type.CCharPointer;
+import org.graalvm.nativeimage.impl.UnmanagedMemorySupport;
+import org.graalvm.word.Pointer;
+import org.graalvm.word.UnsignedWord;
+import org.graalvm.word.WordFactory;
+
+import com.oracle.svm.core.MemoryUtil;
+import com.oracle.svm.core.StaticFieldsSupport;
+import com.oracle.svm.core.SubstrateOptions;
+import com.oracle.svm.core.annotate.NeverInline;
+import com.oracle.svm.core.annotate.RestrictHeapAccess;
+import com.oracle.svm.core.code.CodeInfo;
+import com.oracle.svm.core.code.CodeInfoTable;
+import com.oracle.svm.core.deopt.DeoptimizedFrame;
+import com.oracle.svm.core.heap.Heap;
+import com.oracle.svm.core.heap.ObjectReferenceVisitor;
+import com.oracle.svm.core.heap.ObjectVisitor;
+import com.oracle.svm.core.heap.ReferenceAccess;
+import com.oracle.svm.core.hub.DynamicHub;
+import com.oracle.svm.core.hub.LayoutEncoding;
+import com.oracle.svm.core.snippets.KnownIntrinsics;
+import com.oracle.svm.core.stack.JavaStackWalker;
+import com.oracle.svm.core.stack.StackFrameVisitor;
+import com.oracle.svm.core.thread.JavaThreads;
+import com.oracle.svm.core.thread.JavaVMOperation;
+import com.oracle.svm.core.thread.VMThreads;
+import com.oracle.svm.core.util.UnsignedUtils;
+
+/**
+ * Writes a heap dump in the HPROF binary format. The heap is walked in a VM operation at a
+ * safepoint, and all output goes through a fixed-size native buffer that is written to the file
+ * whenever it is full. Walking the heap therefore never allocates Java objects.
+ * <p>
+ * Object identifiers are object addresses. The GC roots that are reported are all classes, the
+ * thread objects, the references in the stack frames of all threads, and all objects in the image
+ * heap, which are never collected. HPROF is big-endian, so multi-byte array elements are copied
+ * with their bytes swapped, which assumes a little-endian platform.
+ */
+final class HeapDumpWriter {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final int ID_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 1 + 4 + 4;
+    private static final long MAX_RECORD_LENGTH = 0xFFFFFFFFL;
+    /** Serial number of the only (empty) stack trace, used for all objects. */
+    private static final int STACK_TRACE_SERIAL = 1;
+
+    private static final int TAG_STRING = 0x01;
+    private static final int TAG_LOAD_CLASS = 0x02;
+    private static final int TAG_STACK_TRACE = 0x05;
+    private static final int TAG_HEAP_DUMP_SEGMENT = 0x1C;
+    private static final int TAG_HEAP_DUMP_END = 0x2C;
+
+    private static final int TAG_ROOT_UNKNOWN = 0xFF;
+    private static final int TAG_ROOT_JAVA_FRAME = 0x03;
+    private static final int TAG_ROOT_STICKY_CLASS = 0x05;
+    private static final int TAG_ROOT_THREAD_OBJECT = 0x08;
+    private static final int TAG_CLASS_DUMP = 0x20;
+    private static final int TAG_INSTANCE_DUMP = 0x21;
+    private static final int TAG_OBJECT_ARRAY_DUMP = 0x22;
+    private static final int TAG_PRIMITIVE_ARRAY_DUMP = 0x23;
+
+    private static final int TYPE_OBJECT = 2;
+    private static final int TYPE_BOOLEAN = 4;
+    private static final int TYPE_CHAR = 5;
+    private static final int TYPE_FLOAT = 6;
+    private static final int TYPE_DOUBLE = 7;
+    private static final int TYPE_BYTE = 8;
+    private static final int TYPE_SHORT = 9;
+    private static final int TYPE_INT = 10;
+    private static final int TYPE_LONG = 11;
+
+    private final HeapDumpSupportImpl support;
+    private final FileDescriptor fd;
+    private final HeapDumpMetadata metadata;
+    private final HeapDumpOperation operation;
+
+    private final LoadClassVisitor loadClassVisitor = new LoadClassVisitor();
+    private final ClassDumpVisitor classDumpVisitor = new ClassDumpVisitor();
+    private final ObjectDumpVisitor imageHeapObjectVisitor = new ObjectDumpVisitor(true);
+    private final ObjectDumpVisitor collectedHeapObjectVisitor = new ObjectDumpVisitor(false);
+    private final StackRootsVisitor stackRootsVisitor = new StackRootsVisitor();
+    private final FrameReferenceVisitor frameReferenceVisitor = new FrameReferenceVisitor();
+
+    private Pointer buffer;
+    private int position;
+    /** Position of the header of the open heap dump segment in the buffer, or -1. */
+    private int segmentStart = -1;
+    private boolean failed;
+    private int classSerial;
+    private int threadSerial;
+    private long timestamp;
+
+    HeapDumpWriter(HeapDumpSupportImpl support, FileDescriptor fd) {
+        this.support = support;
+        this.fd = fd;
+        this.metadata = support.getMetadata();
+        this.operation = new HeapDumpOperation(this);
+    }
+
+    void writeHeapDump() throws IOException {
+        if (!writeHeapDumpWithoutAllocation()) {
+            throw new IOException("Could not write the heap dump");
+        }
+    }
+
+    /**
+     * Writes the heap dump without allocating Java objects, so that it also works when the heap is
+     * exhausted. A writer can only be used once.
+     *
+     * @return true if the heap dump was written, false if an error occurred.
+     */
+    boolean writeHeapDumpWithoutAllocation() {
+        assert timestamp == 0 : "A heap dump writer can only be used once";
+        timestamp = System.currentTimeMillis();
+        buffer = ImageSingletons.lookup(UnmanagedMemorySupport.class).malloc(WordFactory.unsigned(BUFFER_SIZE));
+        if (buffer.isNull()) {
+            return false;
+        }
+        try {
+            operation.enqueue();
+        } finally {
+            ImageSingletons.lookup(UnmanagedMemorySupport.class).free(buffer);
+            buffer = WordFactory.nullPointer();
+        }
+        return !failed;
+    }
+
+    private static final class HeapDumpOperation extends JavaVMOperation {
+        private final HeapDumpWriter writer;
+
+        HeapDumpOperation(HeapDumpWriter writer) {
+            super("HeapDumpWriter.writeHeapDump", SystemEffect.SAFEPOINT);
+            this.writer = writer;
+        }
+
+        @Override
+        @RestrictHeapAccess(access = RestrictHeapAccess.Access.NO_ALLOCATION, reason = "Allocation would change the heap that is dumped.")
+        protected void operate() {
+            /* Objects in thread-local allocation buffers are only visible once they are flushed. */
+            Heap.getHeap().disableAndFlushAllocationBuffers();
+            writer.writeRecords();
+        }
+    }
+
+    private void writeRecords() {
+        writeHeader();
+        String[] names = metadata.getNames();
+        for (int i = 0; i < names.length; i++) {
+            writeString(names[i], false);
+        }
+        Heap heap = Heap.getHeap();
+        heap.walkImageHeapObjects(loadClassVisitor);
+        startRecord(TAG_STACK_TRACE, 4 + 4 + 4);
+        writeU4(STACK_TRACE_SERIAL);
+        writeU4(0);
+        writeU4(0);
+
+        heap.walkImageHeapObjects(classDumpVisitor);
+        writeThreads();
+        heap.walkImageHeapObjects(imageHeapObjectVisitor);
+        heap.walkCollectedHeapObjects(collectedHeapObjectVisitor);
+
+        startRecord(TAG_HEAP_DUMP_END, 0);
+        flush();
+    }
+
+    private void writeHeader() {
+        String format = "JAVA PROFILE 1.0.2";
+        for (int i = 0; i < format.length(); i++) {
+            writeU1(format.charAt(i));
+        }
+        writeU1(0);
+        writeU4(ID_SIZE);
+        writeU8(timestamp);
+    }
+
+    private void writeString(String value, boolean className) {
+        startRecord(TAG_STRING, ID_SIZE + utf8Length(value));
+        writeId(value);
+        writeUtf8(value, className);
+    }
+
+    private final class LoadClassVisitor implements ObjectVisitor {
+        @Override
+        public boolean visitObject(Object obj) {
+            if (obj instanceof Class) {
+                DynamicHub hub = DynamicHub.fromClass((Class<?>) obj);
+                writeString(hub.getName(), true);
+                startRecord(TAG_LOAD_CLASS, 4 + ID_SIZE + 4 + ID_SIZE);
+                writeU4(++classSerial);
+                writeId(hub);
+                writeU4(STACK_TRACE_SERIAL);
+                writeId(hub.getName());
+            }
+            return !failed;
+        }
+    }
+
+    private final class ClassDumpVisitor implements ObjectVisitor {
+        @Override
+        public boolean visitObject(Object obj) {
+            if (obj instanceof Class) {
+                DynamicHub hub = DynamicHub.fromClass((Class<?>) obj);
+                writeClassDump(hub);
+                startSubRecord(1 + ID_SIZE);
+                writeU1(TAG_ROOT_STICKY_CLASS);
+                writeId(hub);
+            }
+            return !failed;
+        }
+    }
+
+    private void writeClassDump(DynamicHub hub) {
+        int instanceFieldsStart = metadata.getInstanceFieldsStart(hub);
+        int instanceFieldsEnd = metadata.getInstanceFieldsEnd(hub);
+        int staticFieldsStart = metadata.getStaticFieldsStart(hub);
+        int staticFieldsEnd = metadata.getStaticFieldsEnd(hub);
+
+        long size = 1 + ID_SIZE + 4 + 6 * ID_SIZE + 4 + 2 + 2 + 2;
+        for (int i = staticFieldsStart; i < staticFieldsEnd; i++) {
+            size += ID_SIZE + 1 + valueSize(metadata.getFieldKind(i));
+        }
+        size += (instanceFieldsEnd - instanceFieldsStart) * (ID_SIZE + 1);
+
+        startSubRecord(size);
+        writeU1(TAG_CLASS_DUMP);
+        writeId(hub);
+        writeU4(STACK_TRACE_SERIAL);
+        writeId(hub.getSuperHub());
+        /* Class loader, signers, protection domain and two reserved fields. */
+        for (int i = 0; i < 5; i++) {
+            writeId(null);
+        }
+        int layoutEncoding = hub.getLayoutEncoding();
+        writeU4(LayoutEncoding.isInstance(layoutEncoding) ? (int) LayoutEncoding.getInstanceSize(layoutEncoding).rawValue() : 0);
+        writeU2(0);
+
+        writeU2(staticFieldsEnd - staticFieldsStart);
+        for (int i = staticFieldsStart; i < staticFieldsEnd; i++) {
+            char kind = metadata.getFieldKind(i);
+            writeId(metadata.getFieldName(i));
+            writeU1(basicType(kind));
+            Object holder = kind == 'A' ? StaticFieldsSupport.getStaticObjectFields() : StaticFieldsSupport.getStaticPrimitiveFields();
+            writeValue(holder, metadata.getFieldLocation(i), kind);
+        }
+
+        writeU2(instanceFieldsEnd - instanceFieldsStart);
+        for (int i = instanceFieldsStart; i < instanceFieldsEnd; i++) {
+            writeId(metadata.getFieldName(i));
+            writeU1(basicType(metadata.getFieldKind(i)));
+        }
+    }
+
+    private void writeThreads() {
+        threadSerial++;
+        writeThreadObject(Thread.currentThread());
+        writeCurrentThreadStackRoots();
+
+        if (SubstrateOptions.MultiThreaded.getValue()) {
+            for (IsolateThread thread = VMThreads.firstThread(); thread.isNonNull(); thread = VMThreads.nextThread(thread)) {
+                if (thread == CurrentIsolate.getCurrentThread()) {
+                    continue;
+                }
+                threadSerial++;
+                writeThreadObject(JavaThreads.fromVMThread(thread));
+                JavaStackWalker.walkThread(thread, stackRootsVisitor);
+            }
+        }
+    }
+
+    private void writeThreadObject(Thread thread) {
+        if (thread != null) {
+            startSubRecord(1 + ID_SIZE + 4 + 4);
+            writeU1(TAG_ROOT_THREAD_OBJECT);
+            writeId(thread);
+            writeU4(threadSerial);
+            writeU4(STACK_TRACE_SERIAL);
+        }
+    }
+
+    @NeverInline("Starting a stack walk in the caller frame.")
+    private void writeCurrentThreadStackRoots() {
+        JavaStackWalker.walkCurrentThread(KnownIntrinsics.readCallerStackPointer(), stackRootsVisitor);
+    }
+
+    private final class StackRootsVisitor extends StackFrameVisitor {
+        @Override
+        protected boolean visitFrame(Pointer sp, CodePointer ip, CodeInfo codeInfo, DeoptimizedFrame deoptimizedFrame) {
+            return CodeInfoTable.visitObjectReferences(sp, ip, codeInfo, deoptimizedFrame, frameReferenceVisitor) && !failed;
+        }
+    }
+
+    private final class FrameReferenceVisitor implements ObjectReferenceVisitor {
+        @Override
+        public boolean visitObjectReference(Pointer objRef, boolean compressed) {
+            Word address = ReferenceAccess.singleton().readObjectAsUntrackedPointer(objRef, compressed);
+            if (address.isNonNull()) {
+                startSubRecord(1 + ID_SIZE + 4 + 4);
+                writeU1(TAG_ROOT_JAVA_FRAME);
+                writeU8(address.rawValue());
+                writeU4(threadSerial);
+                /* The frame number is unknown because we do not write stack traces. */
+                writeU4(-1);
+            }
+            return !failed;
+        }
+    }
+
+    private final class ObjectDumpVisitor implements ObjectVisitor {
+        private final boolean imageHeap;
+
+        ObjectDumpVisitor(boolean imageHeap) {
+            this.imageHeap = imageHeap;
+        }
+
+        @Override
+        public boolean visitObject(Object obj) {
+            if (obj instanceof Class) {
+                /* Already written as a class dump. */
+                return !failed;
+            }
+            if (imageHeap) {
+                startSubRecord(1 + ID_SIZE);
+                writeU1(TAG_ROOT_UNKNOWN);
+                writeId(obj);
+            }
+            DynamicHub hub = KnownIntrinsics.readHub(obj);
+            if (!hub.hubIsArray()) {
+                writeInstance(obj, hub);
+            } else if (LayoutEncoding.isObjectArray(hub.getLayoutEncoding())) {
+                writeObjectArray(obj, hub);
+            } else {
+                writePrimitiveArray(obj, hub);
+            }
+            return !failed;
+        }
+    }
+
+    private void writeInstance(Object obj, DynamicHub hub) {
+        long dataSize = 0;
+        for (DynamicHub cur = hub; cur != null; cur = cur.getSuperHub()) {
+            int end = metadata.getInstanceFieldsEnd(cur);
+            for (int i = metadata.getInstanceFieldsStart(cur); i < end; i++) {
+                dataSize += valueSize(metadata.getFieldKind(i));
+            }
+        }
+
+        startSubRecord(1 + ID_SIZE + 4 + ID_SIZE + 4 + dataSize);
+        writeU1(TAG_INSTANCE_DUMP);
+        writeId(obj);
+        writeU4(STACK_TRACE_SERIAL);
+        writeId(hub);
+        writeU4((int) dataSize);
+        for (DynamicHub cur = hub; cur != null; cur = cur.getSuperHub()) {
+            int end = metadata.getInstanceFieldsEnd(cur);
+            for (int i = metadata.getInstanceFieldsStart(cur); i < end; i++) {
+                writeValue(obj, metadata.getFieldLocation(i), metadata.getFieldKind(i));
+            }
+        }
+    }
+
+    private void writeObjectArray(Object array, DynamicHub hub) {
+        int layoutEncoding = hub.getLayoutEncoding();
+        long headerSize = 1 + ID_SIZE + 4 + 4 + ID_SIZE;
+        /* Arrays that do not fit into a record are truncated, like HotSpot does. */
+        int length = (int) Math.min(ArrayLengthNode.arrayLength(array), (MAX_RECORD_LENGTH - headerSize) / ID_SIZE);
+
+        startSubRecord(headerSize + (long) length * ID_SIZE);
+        writeU1(TAG_OBJECT_ARRAY_DUMP);
+        writeId(array);
+        writeU4(STACK_TRACE_SERIAL);
+        writeU4(length);
+        writeId(hub);
+        for (int i = 0; i < length; i++) {
+            writeId(ObjectAccess.readObject(array, LayoutEncoding.getArrayElementOffset(layoutEncoding, i)));
+        }
+    }
+
+    private void writePrimitiveArray(Object array, DynamicHub hub) {
+        int layoutEncoding = hub.getLayoutEncoding();
+        int elementSize = LayoutEncoding.getArrayIndexScale(layoutEncoding);
+        long headerSize = 1 + ID_SIZE + 4 + 4 + 1;
+        int length = (int) Math.min(ArrayLengthNode.arrayLength(array), (MAX_RECORD_LENGTH - headerSize) / elementSize);
+
+        startSubRecord(headerSize + (long) length * elementSize);
+        writeU1(TAG_PRIMITIVE_ARRAY_DUMP);
+        writeId(array);
+        writeU4(STACK_TRACE_SERIAL);
+        writeU4(length);
+        writeU1(primitiveArrayType(hub.getComponentHub()));
+
+        Pointer from = Word.objectToUntrackedPointer(array).add(LayoutEncoding.getArrayBaseOffset(layoutEncoding));
+        UnsignedWord remaining = WordFactory.unsigned((long) length * elementSize);
+        while (remaining.aboveThan(0) && !failed) {
+            ensureCapacity(elementSize);
+            UnsignedWord chunk = UnsignedUtils.min(remaining, WordFactory.unsigned((BUFFER_SIZE - position) / elementSize * elementSize));
+            if (elementSize == 1) {
+                MemoryUtil.copyConjointMemoryAtomic(from, buffer.add(position), chunk);
+            } else {
+                MemoryUtil.copyConjointSwap(from, buffer.add(position), chunk, WordFactory.unsigned(elementSize));
+            }
+            position += (int) chunk.rawValue();
+            from = from.add(chunk);
+            remaining = remaining.subtract(chunk);
+        }
+    }
+
+    private static int primitiveArrayType(DynamicHub componentHub) {
+        Class<?> componentType = DynamicHub.toClass(componentHub);
+        if (componentType == boolean.class) {
+            return TYPE_BOOLEAN;
+        } else if (componentType == byte.class) {
+            return TYPE_BYTE;
+        } else if (componentType == char.class) {
+            return TYPE_CHAR;
+        } else if (componentType == short.class) {
+            return TYPE_SHORT;
+        } else if (componentType == int.class) {
+            return TYPE_INT;
+        } else if (componentType == float.class) {
+            return TYPE_FLOAT;
+        } else if (componentType == long.class) {
+            return TYPE_LONG;
+        } else {
+            return TYPE_DOUBLE;
+        }
+    }
+
+    private static int basicType(char kind) {
+        switch (kind) {
+            case 'Z':
+                return TYPE_BOOLEAN;
+            case 'B':
+                return TYPE_BYTE;
+            case 'C':
+                return TYPE_CHAR;
+            case 'S':
+                return TYPE_SHORT;
+            case 'I':
+                return TYPE_INT;
+            case 'F':
+                return TYPE_FLOAT;
+            case 'J':
+                return TYPE_LONG;
+            case 'D':
+                return TYPE_DOUBLE;
+            default:
+                return TYPE_OBJECT;
+        }
+    }
+
+    private static int valueSize(char kind) {
+        switch (kind) {
+            case 'Z':
+            case 'B':
+                return 1;
+            case 'C':
+            case 'S':
+                return 2;
+            case 'I':
+            case 'F':
+                return 4;
+            case 'J':
+            case 'D':
+                return 8;
+            default:
+                return ID_SIZE;
+        }
+    }
+
+    private void writeValue(Object holder, int offset, char kind) {
+        switch (kind) {
+            case 'Z':
+            case 'B':
+                writeU1(ObjectAccess.readByte(holder, offset));
+                break;
+            case 'C':
+            case 'S':
+                writeU2(ObjectAccess.readShort(holder, offset));
+                break;
+            case 'I':
+            case 'F':
+                writeU4(ObjectAccess.readInt(holder, offset));
+                break;
+            case 'J':
+            case 'D':
+                writeU8(ObjectAccess.readLong(holder, offset));
+                break;
+            default:
+                writeId(ObjectAccess.readObject(holder, offset));
+                break;
+        }
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != 0 && c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /** Writes modified UTF-8 without a length, and class names in their internal form. */
+    private void writeUtf8(String value, boolean className) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (className && c == '.') {
+                c = '/';
+            }
+            if (c != 0 && c < 0x80) {
+                writeU1(c);
+            } else if (c < 0x800) {
+                writeU1(0xC0 | (c >> 6));
+                writeU1(0x80 | (c & 0x3F));
+            } else {
+                writeU1(0xE0 | (c >> 12));
+                writeU1(0x80 | ((c >> 6) & 0x3F));
+                writeU1(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /** Starts a top-level record, which ends any open heap dump segment. */
+    private void startRecord(int tag, long length) {
+        endSegment();
+        writeU1(tag);
+        writeU4(0);
+        writeU4((int) length);
+    }
+
+    /**
+     * Makes sure that a heap dump sub-record of the given size can be written in a heap dump
+     * segment. A sub-record is never split across segments. Sub-records that do not fit into the
+     * buffer are written as a segment of their own, which is flushed in multiple parts.
+     */
+    private void startSubRecord(long size) {
+        if (segmentStart >= 0 && position + size <= BUFFER_SIZE) {
+            return;
+        }
+        endSegment();
+        if (position + RECORD_HEADER_SIZE + size > BUFFER_SIZE) {
+            flush();
+        }
+        if (RECORD_HEADER_SIZE + size <= BUFFER_SIZE) {
+            int start = position;
+            startRecord(TAG_HEAP_DUMP_SEGMENT, 0);
+            segmentStart = start;
+        } else {
+            startRecord(TAG_HEAP_DUMP_SEGMENT, size);
+        }
+    }
+
+    /** Patches the length of the open heap dump segment, once its content is complete. */
+    private void endSegment() {
+        if (segmentStart >= 0) {
+            int length = position - segmentStart - RECORD_HEADER_SIZE;
+            int lengthPosition = segmentStart + 1 + 4;
+            segmentStart = -1;
+            int savedPosition = position;
+            position = lengthPosition;
+            writeU4(length);
+            position = savedPosition;
+        }
+    }
+
+    private void flush() {
+        assert segmentStart < 0 : "the open heap dump segment must not be split";
+        if (position > 0 && !failed) {
+            failed = !support.writeBytes(fd, (CCharPointer) buffer, WordFactory.unsigned(position));
+        }
+        position = 0;
+    }
+
+    private void ensureCapacity(int size) {
+        if (position + size > BUFFER_SIZE) {
+            flush();
+        }
+    }
+
+    private void writeId(Object obj) {
+        writeU8(Word.objectToUntrackedPointer(obj).rawValue());
+    }
+
+    private void writeU1(int value) {
+        ensureCapacity(1);
+        buffer.writeByte(position, (byte) value);
+        position += 1;
+    }
+
+    private void writeU2(int value) {
+        ensureCapacity(2);
+        buffer.writeByte(position, (byte) (value >>> 8));
+        buffer.writeByte(position + 1, (byte) value);
+        position += 2;
+    }
+
+    private void writeU4(int value) {
+        ensureCapacity(4);
+        buffer.writeByte(position, (byte) (value >>> 24));
+        buffer.writeByte(position + 1, (byte) (value >>> 16));
+        buffer.writeByte(position + 2, (byte) (value >>> 8));
+        buffer.writeByte(position + 3, (byte) value);
+        position += 4;
+    }
+
+    private void writeU8(long value) {
+        writeU4((int) (value >>> 32));
+        writeU4((int) value);
+    }
+}
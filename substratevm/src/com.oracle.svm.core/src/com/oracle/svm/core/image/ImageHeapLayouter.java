@@ -38,9 +38,11 @@ public interface ImageHeapLayouter {
     ImageHeapPartition[] getPartitions();
 
     /**
-     * Assign an object to the most suitable partition.
+     * Assign an object to the most suitable partition. For writable objects, {@code likelyWritten}
+     * is a hint whether the object is expected to be written at run time, so that such objects can
+     * be grouped on pages separate from objects that are never written.
      */
-    void assignObjectToPartition(ImageHeapObject info, boolean immutable, boolean references, boolean relocatable);
+    void assignObjectToPartition(ImageHeapObject info, boolean immutable, boolean references, boolean relocatable, boolean likelyWritten);
 
     /**
      * This method places all heap partitions as one contiguous memory block in one section. After
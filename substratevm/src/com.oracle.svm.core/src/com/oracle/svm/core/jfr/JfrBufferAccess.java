@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.jfr;
+
+import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.c.struct.SizeOf;
+import org.graalvm.nativeimage.impl.UnmanagedMemorySupport;
+import org.graalvm.word.Pointer;
+import org.graalvm.word.UnsignedWord;
+import org.graalvm.word.WordFactory;
+
+import com.oracle.svm.core.annotate.Uninterruptible;
+
+/** Helper methods for {@link JfrBuffer}. */
+final class JfrBufferAccess {
+    private JfrBufferAccess() {
+    }
+
+    /** Allocates a new buffer, or returns null if there is not enough native memory. */
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static JfrBuffer allocate(UnsignedWord dataSize) {
+        JfrBuffer buffer = ImageSingletons.lookup(UnmanagedMemorySupport.class).malloc(WordFactory.unsigned(SizeOf.get(JfrBuffer.class)).add(dataSize));
+        if (buffer.isNonNull()) {
+            buffer.setSize(dataSize);
+            buffer.setPos(getDataStart(buffer));
+            buffer.setNext(WordFactory.nullPointer());
+        }
+        return buffer;
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static void free(JfrBuffer buffer) {
+        ImageSingletons.lookup(UnmanagedMemorySupport.class).free(buffer);
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static Pointer getDataStart(JfrBuffer buffer) {
+        return ((Pointer) buffer).add(SizeOf.get(JfrBuffer.class));
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static UnsignedWord getAvailableSize(JfrBuffer buffer) {
+        return getDataStart(buffer).add(buffer.getSize()).subtract(buffer.getPos());
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static UnsignedWord getCommittedSize(JfrBuffer buffer) {
+        return buffer.getPos().subtract(getDataStart(buffer));
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.jfr;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.graalvm.nativeimage.c.type.CTypeConversion;
+
+import com.oracle.svm.core.heap.GCCause;
+import com.oracle.svm.core.heap.Heap;
+import com.oracle.svm.core.hub.DynamicHub;
+
+/**
+ * Writes a recording as a sequence of chunks of the JFR file format. Each chunk consists of the
+ * chunk header, the events in the order in which their buffers were retired, and at the end the
+ * metadata event and a checkpoint event with the constant pools, so that every complete chunk can
+ * be parsed on its own. The header is patched once the chunk is complete.
+ */
+final class JfrChunkWriter {
+
+    private static final byte[] MAGIC = {'F', 'L', 'R', '\0'};
+    private static final short MAJOR_VERSION = 2;
+    private static final short MINOR_VERSION = 0;
+    private static final long TICKS_PER_SECOND = 1_000_000_000L;
+    private static final int FEATURE_COMPRESSED_INTEGERS = 1;
+    private static final int HEADER_SIZE = 4 + 2 + 2 + 7 * 8 + 4;
+
+    private static final int STRING_ENCODING_NULL = 0;
+    private static final int STRING_ENCODING_UTF8 = 3;
+
+    private final RandomAccessFile file;
+    private long chunkStart;
+    private long startNanos;
+    private long startTicks;
+
+    JfrChunkWriter(String path) throws IOException {
+        this.file = new RandomAccessFile(path, "rw");
+        file.setLength(0);
+        startChunk();
+    }
+
+    /** The number of bytes written to the current chunk so far. */
+    long getChunkSize() throws IOException {
+        return file.getFilePointer() - chunkStart;
+    }
+
+    /** Appends the committed events of the buffer. */
+    void write(JfrBuffer buffer) throws IOException {
+        int size = (int) JfrBufferAccess.getCommittedSize(buffer).rawValue();
+        if (size > 0) {
+            ByteBuffer data = CTypeConversion.asByteBuffer(JfrBufferAccess.getDataStart(buffer), size);
+            while (data.hasRemaining()) {
+                file.getChannel().write(data);
+            }
+        }
+    }
+
+    /** Completes the current chunk and starts a new one. */
+    void rotate(Map<Long, String> threadNames) throws IOException {
+        finishChunk(threadNames);
+        startChunk();
+    }
+
+    /** Completes the current chunk and closes the file. */
+    void finish(Map<Long, String> threadNames) throws IOException {
+        try {
+            finishChunk(threadNames);
+        } finally {
+            file.close();
+        }
+    }
+
+    private void startChunk() throws IOException {
+        chunkStart = file.getFilePointer();
+        startNanos = System.currentTimeMillis() * 1_000_000L;
+        startTicks = JfrEvents.ticks();
+        writeHeader(0, 0, 0, 0);
+    }
+
+    /** Writes the metadata and the constant pools and completes the header of the chunk. */
+    private void finishChunk(Map<Long, String> threadNames) throws IOException {
+        long metadataOffset = getChunkSize();
+        writeMetadata();
+        long checkpointOffset = getChunkSize();
+        writeCheckpoint(threadNames);
+        long chunkSize = getChunkSize();
+        long durationNanos = JfrEvents.ticks() - startTicks;
+        file.seek(chunkStart);
+        writeHeader(chunkSize, checkpointOffset, metadataOffset, durationNanos);
+        file.seek(chunkStart + chunkSize);
+    }
+
+    /** Writes the header with a single write, so that readers never see a partially patched one. */
+    private void writeHeader(long chunkSize, long checkpointOffset, long metadataOffset, long durationNanos) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC);
+        header.putShort(MAJOR_VERSION);
+        header.putShort(MINOR_VERSION);
+        header.putLong(chunkSize);
+        header.putLong(checkpointOffset);
+        header.putLong(metadataOffset);
+        header.putLong(startNanos);
+        header.putLong(durationNanos);
+        header.putLong(startTicks);
+        header.putLong(TICKS_PER_SECOND);
+        header.putInt(FEATURE_COMPRESSED_INTEGERS);
+        file.write(header.array());
+    }
+
+    private void writeMetadata() throws IOException {
+        JfrMetadata.Element root = JfrMetadata.createRoot();
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        collectStrings(root, strings);
+
+        Record record = new Record();
+        record.putLong(JfrMetadata.METADATA_TYPE_ID);
+        record.putLong(JfrEvents.ticks());
+        record.putLong(0);
+        /* The id of the metadata, which only changes between chunks. */
+        record.putLong(1);
+        record.putInt(strings.size());
+        for (String s : strings.keySet()) {
+            record.putString(s);
+        }
+        writeElement(record, root, strings);
+        record.writeTo(file);
+    }
+
+    private static void collectStrings(JfrMetadata.Element element, Map<String, Integer> strings) {
+        strings.putIfAbsent(element.name, strings.size());
+        for (Map.Entry<String, String> attribute : element.attributes.entrySet()) {
+            strings.putIfAbsent(attribute.getKey(), strings.size());
+            strings.putIfAbsent(attribute.getValue(), strings.size());
+        }
+        for (JfrMetadata.Element child : element.children) {
+            collectStrings(child, strings);
+        }
+    }
+
+    private static void writeElement(Record record, JfrMetadata.Element element, Map<String, Integer> strings) {
+        record.putInt(strings.get(element.name));
+        record.putInt(element.attributes.size());
+        for (Map.Entry<String, String> attribute : element.attributes.entrySet()) {
+            record.putInt(strings.get(attribute.getKey()));
+            record.putInt(strings.get(attribute.getValue()));
+        }
+        record.putInt(element.children.size());
+        for (JfrMetadata.Element child : element.children) {
+            writeElement(record, child, strings);
+        }
+    }
+
+    private void writeCheckpoint(Map<Long, String> threadNames) throws IOException {
+        Record record = new Record();
+        record.putLong(JfrMetadata.CHECKPOINT_TYPE_ID);
+        record.putLong(JfrEvents.ticks());
+        record.putLong(0);
+        /* There is no previous checkpoint. */
+        record.putLong(0);
+        record.putByte(0);
+        record.putInt(3);
+
+        record.putLong(JfrMetadata.TYPE_THREAD);
+        record.putInt(threadNames.size());
+        for (Map.Entry<Long, String> thread : threadNames.entrySet()) {
+            record.putLong(thread.getKey());
+            record.putString(thread.getValue());
+            record.putLong(thread.getKey());
+            record.putString(thread.getValue());
+            record.putLong(thread.getKey());
+        }
+
+        List<Class<?>> classes = Heap.getHeap().getClassList();
+        record.putLong(JfrMetadata.TYPE_CLASS);
+        record.putInt(classes.size());
+        for (Class<?> clazz : classes) {
+            record.putLong(JfrEvents.getClassId(DynamicHub.fromClass(clazz)));
+            record.putString(clazz.getName());
+            record.putInt(clazz.getModifiers());
+        }
+
+        GCCause[] causes = Arrays.stream(GCCause.getGCCauses()).filter(cause -> cause != null).toArray(GCCause[]::new);
+        record.putLong(JfrMetadata.TYPE_GC_CAUSE);
+        record.putInt(causes.length);
+        for (GCCause cause : causes) {
+            record.putLong(cause.getId());
+            record.putString(cause.getName());
+        }
+        record.writeTo(file);
+    }
+
+    /** A record that is assembled in a Java byte array before it is written. */
+    private static final class Record {
+        private byte[] bytes = new byte[4096];
+        private int pos = JfrNativeEventWriter.EVENT_SIZE_BYTES;
+
+        void putByte(int value) {
+            if (pos == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[pos++] = (byte) value;
+        }
+
+        void putInt(int value) {
+            putLong(value & 0xFFFFFFFFL);
+        }
+
+        void putLong(long value) {
+            long v = value;
+            for (int i = 0; i < JfrNativeEventWriter.MAX_LONG_BYTES - 1; i++) {
+                if ((v & ~0x7FL) == 0) {
+                    putByte((int) v);
+                    return;
+                }
+                putByte((int) (v | 0x80));
+                v >>>= 7;
+            }
+            putByte((int) v);
+        }
+
+        void putString(String value) {
+            if (value == null) {
+                putByte(STRING_ENCODING_NULL);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            putByte(STRING_ENCODING_UTF8);
+            putInt(utf8.length);
+            for (byte b : utf8) {
+                putByte(b);
+            }
+        }
+
+        /** Writes the record, preceded by its size, which includes the size itself. */
+        void writeTo(RandomAccessFile file) throws IOException {
+            bytes[0] = (byte) ((pos & 0x7F) | 0x80);
+            bytes[1] = (byte) (((pos >>> 7) & 0x7F) | 0x80);
+            bytes[2] = (byte) (((pos >>> 14) & 0x7F) | 0x80);
+            bytes[3] = (byte) ((pos >>> 21) & 0x7F);
+            file.write(bytes, 0, pos);
+        }
+    }
+}
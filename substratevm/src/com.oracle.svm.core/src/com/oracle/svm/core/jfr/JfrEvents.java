@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.jfr;
+
+import static com.oracle.svm.core.jfr.JfrNativeEventWriter.beginEvent;
+import static com.oracle.svm.core.jfr.JfrNativeEventWriter.endEvent;
+import static com.oracle.svm.core.jfr.JfrNativeEventWriter.maxEventSize;
+import static com.oracle.svm.core.jfr.JfrNativeEventWriter.putInt;
+import static com.oracle.svm.core.jfr.JfrNativeEventWriter.putLong;
+
+import org.graalvm.compiler.word.Word;
+import org.graalvm.word.Pointer;
+
+import com.oracle.svm.core.annotate.Uninterruptible;
+import com.oracle.svm.core.heap.GCCause;
+import com.oracle.svm.core.hub.DynamicHub;
+import com.oracle.svm.core.snippets.KnownIntrinsics;
+
+/**
+ * Emits the events that are recorded when {@link JfrOptions#AllowEventRecording event recording}
+ * is enabled. All methods return immediately when no recording is in progress, and are removed
+ * completely when event recording is not included in the image. Times are measured in ticks, see
+ * {@link #ticks()}.
+ */
+public final class JfrEvents {
+
+    private JfrEvents() {
+    }
+
+    /**
+     * Returns true if events are being recorded. Only needed by callers that have to do additional
+     * work to compute the values of an event.
+     */
+    public static boolean isRecording() {
+        return JfrRecorder.isEnabled() && JfrRecorder.singleton().isRecording();
+    }
+
+    /** The current time in ticks, which are nanoseconds. */
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    public static long ticks() {
+        return System.nanoTime();
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static long getClassId(DynamicHub hub) {
+        /* Hubs are in the image heap, so their address does not change. */
+        return Word.objectToUntrackedPointer(hub).rawValue();
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    private static boolean shouldEmit() {
+        return JfrRecorder.isEnabled() && JfrRecorder.singleton().isRecording();
+    }
+
+    /** Emitted by a newly started thread before it runs. */
+    public static void emitThreadStart(Thread thread) {
+        if (isRecording()) {
+            JfrRecorder.singleton().registerCurrentThread(thread);
+            emitThreadEvent(JfrMetadata.EVENT_THREAD_START, thread.getId());
+        }
+    }
+
+    /** Emitted by a thread after it has run. */
+    public static void emitThreadEnd(Thread thread) {
+        if (isRecording()) {
+            emitThreadEvent(JfrMetadata.EVENT_THREAD_END, thread.getId());
+            JfrRecorder.singleton().threadExited(thread);
+        }
+    }
+
+    @Uninterruptible(reason = "Accesses the event buffer of the current thread.")
+    private static void emitThreadEvent(long eventTypeId, long javaThreadId) {
+        Pointer pos = beginEvent(eventTypeId, maxEventSize(3));
+        if (pos.isNonNull()) {
+            pos = putLong(pos, ticks());
+            pos = putLong(pos, JfrRecorder.getCurrentThreadId());
+            pos = putLong(pos, javaThreadId);
+            endEvent(pos);
+        }
+    }
+
+    @Uninterruptible(reason = "Accesses the event buffer of the current thread.")
+    public static void emitGarbageCollection(long startTicks, long gcId, GCCause cause) {
+        if (shouldEmit()) {
+            Pointer pos = beginEvent(JfrMetadata.EVENT_GARBAGE_COLLECTION, maxEventSize(7));
+            if (pos.isNonNull()) {
+                long duration = ticks() - startTicks;
+                pos = putLong(pos, startTicks);
+                pos = putLong(pos, duration);
+                pos = putLong(pos, JfrRecorder.getCurrentThreadId());
+                pos = putInt(pos, (int) gcId);
+                pos = putLong(pos, cause.getId());
+                /* The whole collection is a single pause. */
+                pos = putLong(pos, duration);
+                pos = putLong(pos, duration);
+                endEvent(pos);
+            }
+        }
+    }
+
+    /** Emitted when all threads have reached the safepoint. */
+    @Uninterruptible(reason = "Accesses the event buffer of the current thread.")
+    public static void emitSafepointBegin(long startTicks, long safepointId) {
+        if (shouldEmit()) {
+            Pointer pos = beginEvent(JfrMetadata.EVENT_SAFEPOINT_BEGIN, maxEventSize(4));
+            if (pos.isNonNull()) {
+                pos = putLong(pos, startTicks);
+                pos = putLong(pos, ticks() - startTicks);
+                pos = putLong(pos, JfrRecorder.getCurrentThreadId());
+                pos = putLong(pos, safepointId);
+                endEvent(pos);
+            }
+        }
+    }
+
+    /** Emitted when all threads have been released from the safepoint. */
+    @Uninterruptible(reason = "Accesses the event buffer of the current thread.")
+    public static void emitSafepointEnd(long startTicks, long safepointId) {
+        if (shouldEmit()) {
+            Pointer pos = beginEvent(JfrMetadata.EVENT_SAFEPOINT_END, maxEventSize(4));
+            if (pos.isNonNull()) {
+                pos = putLong(pos, startTicks);
+                pos = putLong(pos, ticks() - startTicks);
+                pos = putLong(pos, JfrRecorder.getCurrentThreadId());
+                pos = putLong(pos, safepointId);
+                endEvent(pos);
+            }
+        }
+    }
+
+    /** Emitted after a thread had to wait to enter the monitor of the object. */
+    @Uninterruptible(reason = "Accesses the event buffer of the current thread.")
+    public static void emitJavaMonitorEnter(Object obj, long startTicks) {
+        if (shouldEmit()) {
+            Pointer pos = beginEvent(JfrMetadata.EVENT_JAVA_MONITOR_ENTER, maxEventSize(5));
+            if (pos.isNonNull()) {
+                pos = putLong(pos, startTicks);
+                pos = putLong(pos, ticks() - startTicks);
+                pos = putLong(pos, JfrRecorder.getCurrentThreadId());
+                pos = putLong(pos, getClassId(KnownIntrinsics.readHub(obj)));
+                pos = putLong(pos, Word.objectToUntrackedPointer(obj).rawValue());
+                endEvent(pos);
+            }
+        }
+    }
+
+    /**
+     * Emitted on the allocation slow path, i.e., once per allocation buffer. The weight is the
+     * number of bytes that the sample represents.
+     */
+    @Uninterruptible(reason = "Accesses the event buffer of the current thread.")
+    public static void emitObjectAllocationSample(DynamicHub hub, long weight) {
+        if (shouldEmit()) {
+            Pointer pos = beginEvent(JfrMetadata.EVENT_OBJECT_ALLOCATION_SAMPLE, maxEventSize(4));
+            if (pos.isNonNull()) {
+                pos = putLong(pos, ticks());
+                pos = putLong(pos, JfrRecorder.getCurrentThreadId());
+                pos = putLong(pos, getClassId(hub));
+                pos = putLong(pos, weight);
+                endEvent(pos);
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.jfr;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The ids of the types and events that are recorded, and the metadata event that describes them.
+ * JFR parsers only rely on the metadata in the recording, so events and types can use the names of
+ * their HotSpot counterparts while only having a subset of their fields.
+ */
+final class JfrMetadata {
+
+    static final long METADATA_TYPE_ID = 0;
+    static final long CHECKPOINT_TYPE_ID = 1;
+
+    static final long EVENT_THREAD_START = 10;
+    static final long EVENT_THREAD_END = 11;
+    static final long EVENT_GARBAGE_COLLECTION = 12;
+    static final long EVENT_SAFEPOINT_BEGIN = 13;
+    static final long EVENT_SAFEPOINT_END = 14;
+    static final long EVENT_JAVA_MONITOR_ENTER = 15;
+    static final long EVENT_OBJECT_ALLOCATION_SAMPLE = 16;
+
+    static final long TYPE_LONG = 20;
+    static final long TYPE_INT = 21;
+    static final long TYPE_STRING = 22;
+    static final long TYPE_THREAD = 23;
+    static final long TYPE_CLASS = 24;
+    static final long TYPE_GC_CAUSE = 25;
+    static final long TYPE_TIMESTAMP = 26;
+    static final long TYPE_TIMESPAN = 27;
+
+    private JfrMetadata() {
+    }
+
+    /** An element of the metadata tree, which is written as a tree of names and attributes. */
+    static final class Element {
+        final String name;
+        final Map<String, String> attributes = new LinkedHashMap<>();
+        final List<Element> children = new ArrayList<>();
+
+        Element(String name) {
+            this.name = name;
+        }
+
+        Element attribute(String key, Object value) {
+            attributes.put(key, String.valueOf(value));
+            return this;
+        }
+
+        Element add(Element child) {
+            children.add(child);
+            return this;
+        }
+    }
+
+    static Element createRoot() {
+        Element metadata = new Element("metadata");
+        metadata.add(type(TYPE_LONG, "long"));
+        metadata.add(type(TYPE_INT, "int"));
+        metadata.add(type(TYPE_STRING, "java.lang.String"));
+        metadata.add(type(TYPE_THREAD, "java.lang.Thread")
+                        .add(field("osName", TYPE_STRING))
+                        .add(field("osThreadId", TYPE_LONG))
+                        .add(field("javaName", TYPE_STRING))
+                        .add(field("javaThreadId", TYPE_LONG)));
+        metadata.add(type(TYPE_CLASS, "java.lang.Class")
+                        .add(field("name", TYPE_STRING))
+                        .add(field("modifiers", TYPE_INT)));
+        metadata.add(type(TYPE_GC_CAUSE, "jdk.types.GCCause")
+                        .add(field("cause", TYPE_STRING)));
+        metadata.add(annotationType(TYPE_TIMESTAMP, "jdk.jfr.Timestamp"));
+        metadata.add(annotationType(TYPE_TIMESPAN, "jdk.jfr.Timespan"));
+
+        metadata.add(event(EVENT_THREAD_START, "jdk.ThreadStart", false)
+                        .add(constantPoolField("thread", TYPE_THREAD)));
+        metadata.add(event(EVENT_THREAD_END, "jdk.ThreadEnd", false)
+                        .add(constantPoolField("thread", TYPE_THREAD)));
+        metadata.add(event(EVENT_GARBAGE_COLLECTION, "jdk.GarbageCollection", true)
+                        .add(field("gcId", TYPE_INT))
+                        .add(constantPoolField("cause", TYPE_GC_CAUSE))
+                        .add(timespanField("sumOfPauses"))
+                        .add(timespanField("longestPause")));
+        metadata.add(event(EVENT_SAFEPOINT_BEGIN, "jdk.SafepointBegin", true)
+                        .add(field("safepointId", TYPE_LONG)));
+        metadata.add(event(EVENT_SAFEPOINT_END, "jdk.SafepointEnd", true)
+                        .add(field("safepointId", TYPE_LONG)));
+        metadata.add(event(EVENT_JAVA_MONITOR_ENTER, "jdk.JavaMonitorEnter", true)
+                        .add(constantPoolField("monitorClass", TYPE_CLASS))
+                        .add(field("address", TYPE_LONG)));
+        metadata.add(event(EVENT_OBJECT_ALLOCATION_SAMPLE, "jdk.ObjectAllocationSample", false)
+                        .add(constantPoolField("objectClass", TYPE_CLASS))
+                        .add(field("weight", TYPE_LONG)));
+
+        Element region = new Element("region").attribute("locale", "en_US").attribute("gmtOffset", 0);
+        return new Element("root").add(metadata).add(region);
+    }
+
+    private static Element type(long id, String name) {
+        return new Element("class").attribute("name", name).attribute("id", id);
+    }
+
+    private static Element annotationType(long id, String name) {
+        return type(id, name).attribute("superType", "java.lang.annotation.Annotation").add(field("value", TYPE_STRING));
+    }
+
+    /** Creates an event type with the implicit fields that are common to all events. */
+    private static Element event(long id, String name, boolean hasDuration) {
+        Element event = type(id, name).attribute("superType", "jdk.jfr.Event");
+        event.add(field("startTime", TYPE_LONG).add(annotation(TYPE_TIMESTAMP, "TICKS")));
+        if (hasDuration) {
+            event.add(timespanField("duration"));
+        }
+        event.add(constantPoolField("eventThread", TYPE_THREAD));
+        return event;
+    }
+
+    private static Element field(String name, long typeId) {
+        return new Element("field").attribute("name", name).attribute("class", typeId);
+    }
+
+    private static Element constantPoolField(String name, long typeId) {
+        return field(name, typeId).attribute("constantPool", true);
+    }
+
+    private static Element timespanField(String name) {
+        return field(name, TYPE_LONG).add(annotation(TYPE_TIMESPAN, "TICKS"));
+    }
+
+    private static Element annotation(long typeId, String value) {
+        return new Element("annotation").attribute("class", typeId).attribute("value", value);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.jfr;
+
+import org.graalvm.word.Pointer;
+import org.graalvm.word.WordFactory;
+
+import com.oracle.svm.core.annotate.Uninterruptible;
+
+/**
+ * Encodes events into the event buffer of the current thread. The recording uses compressed
+ * integers, i.e., all {@code int} and {@code long} values are written in the LEB128 format.
+ * <p>
+ * An event is written between {@link #beginEvent} and {@link #endEvent}, which must be called in
+ * the same uninterruptible method. Recording is therefore never interrupted by a safepoint, at
+ * which the buffers of all threads can be retired.
+ */
+final class JfrNativeEventWriter {
+
+    /** The size of an event is written with a fixed width, so that it can be patched. */
+    static final int EVENT_SIZE_BYTES = 4;
+    /** The maximum number of bytes of a compressed {@code long} value. */
+    static final int MAX_LONG_BYTES = 9;
+
+    private JfrNativeEventWriter() {
+    }
+
+    /** Returns the maximum size of an event that has the given number of integer fields. */
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static int maxEventSize(int fieldCount) {
+        return EVENT_SIZE_BYTES + MAX_LONG_BYTES * (1 + fieldCount);
+    }
+
+    /**
+     * Reserves space for an event in the buffer of the current thread and writes the event type.
+     *
+     * @return the position at which the first field of the event is written, or null if the event
+     *         cannot be recorded.
+     */
+    @Uninterruptible(reason = "Accesses the event buffer of the current thread.", callerMustBe = true)
+    static Pointer beginEvent(long eventTypeId, int maxEventSize) {
+        JfrBuffer buffer = JfrRecorder.singleton().getThreadBuffer(maxEventSize);
+        if (buffer.isNull()) {
+            return WordFactory.nullPointer();
+        }
+        return putLong(buffer.getPos().add(EVENT_SIZE_BYTES), eventTypeId);
+    }
+
+    /** Writes the size of the event that ends at the given position and commits it. */
+    @Uninterruptible(reason = "Accesses the event buffer of the current thread.", callerMustBe = true)
+    static void endEvent(Pointer end) {
+        JfrBuffer buffer = JfrRecorder.singleton().getCurrentThreadBuffer();
+        Pointer start = buffer.getPos();
+        putPaddedInt(start, (int) end.subtract(start).rawValue());
+        buffer.setPos(end);
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static Pointer putBoolean(Pointer pos, boolean value) {
+        pos.writeByte(0, (byte) (value ? 1 : 0));
+        return pos.add(1);
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static Pointer putInt(Pointer pos, int value) {
+        return putLong(pos, value & 0xFFFFFFFFL);
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static Pointer putLong(Pointer pos, long value) {
+        Pointer p = pos;
+        long v = value;
+        for (int i = 0; i < MAX_LONG_BYTES - 1; i++) {
+            if ((v & ~0x7FL) == 0) {
+                p.writeByte(0, (byte) v);
+                return p.add(1);
+            }
+            p.writeByte(0, (byte) (v | 0x80));
+            p = p.add(1);
+            v >>>= 7;
+        }
+        /* The last byte holds all of the remaining 8 bits. */
+        p.writeByte(0, (byte) v);
+        return p.add(1);
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    private static void putPaddedInt(Pointer pos, int value) {
+        pos.writeByte(0, (byte) ((value & 0x7F) | 0x80));
+        pos.writeByte(1, (byte) (((value >>> 7) & 0x7F) | 0x80));
+        pos.writeByte(2, (byte) (((value >>> 14) & 0x7F) | 0x80));
+        pos.writeByte(3, (byte) ((value >>> 21) & 0x7F));
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.jfr;
+
+import org.graalvm.compiler.options.Option;
+import org.graalvm.compiler.options.OptionType;
+
+import com.oracle.svm.core.option.HostedOptionKey;
+import com.oracle.svm.core.option.RuntimeOptionKey;
+
+public class JfrOptions {
+    @Option(help = "Include support for recording events, such as garbage collections, safepoints, contended monitors and thread starts, in the JFR format.", type = OptionType.User)//
+    public static final HostedOptionKey<Boolean> AllowEventRecording = new HostedOptionKey<>(false);
+
+    @Option(help = "Record events into the given JFR file from startup until the isolate is torn down. Requires -H:+AllowEventRecording.", type = OptionType.User)//
+    public static final RuntimeOptionKey<String> EventRecordingFile = new RuntimeOptionKey<>("");
+
+    @Option(help = "Size in bytes of the buffer into which each thread records its events.")//
+    public static final RuntimeOptionKey<Long> EventRecordingThreadBufferSize = new RuntimeOptionKey<>(64L * 1024L);
+
+    @Option(help = "Interval in milliseconds at which full event buffers are written to the recording file.")//
+    public static final RuntimeOptionKey<Long> EventRecordingFlushInterval = new RuntimeOptionKey<>(1000L);
+
+    @Option(help = "Size in bytes after which the current chunk of the recording file is completed and a new chunk is started.")//
+    public static final RuntimeOptionKey<Long> EventRecordingMaxChunkSize = new RuntimeOptionKey<>(12L * 1024L * 1024L);
+}
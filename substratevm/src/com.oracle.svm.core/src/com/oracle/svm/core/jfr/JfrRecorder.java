@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.jfr;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.graalvm.compiler.api.replacements.Fold;
+import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.IsolateThread;
+import org.graalvm.nativeimage.Platform;
+import org.graalvm.nativeimage.Platforms;
+import org.graalvm.word.UnsignedWord;
+import org.graalvm.word.WordFactory;
+
+import com.oracle.svm.core.SubstrateOptions;
+import com.oracle.svm.core.annotate.Uninterruptible;
+import com.oracle.svm.core.jdk.UninterruptibleUtils;
+import com.oracle.svm.core.log.Log;
+import com.oracle.svm.core.thread.JavaThreads;
+import com.oracle.svm.core.thread.JavaVMOperation;
+import com.oracle.svm.core.thread.VMOperation;
+import com.oracle.svm.core.thread.VMThreads;
+import com.oracle.svm.core.threadlocal.FastThreadLocalFactory;
+import com.oracle.svm.core.threadlocal.FastThreadLocalLong;
+import com.oracle.svm.core.threadlocal.FastThreadLocalWord;
+
+/**
+ * Records events into a JFR file. Each thread records its events into its own native
+ * {@link JfrBuffer}, without any synchronization. A full buffer is retired to a lock-free list and
+ * replaced by a new one. A recorder thread periodically writes the retired buffers to the file and
+ * frees them. Once the current chunk of the file exceeds
+ * {@link JfrOptions#EventRecordingMaxChunkSize}, the buffers of all threads are retired at a
+ * safepoint and written, and the chunk is completed, so that the events recorded so far can be read
+ * while the recording continues. When the recording ends, the buffers of all threads are retired at
+ * a safepoint as well.
+ * <p>
+ * The retired buffers that have not been written yet are limited to
+ * {@link JfrOptions#EventRecordingMaxChunkSize} in total. Without a recorder thread, they are only
+ * written when the recording ends. Once the limit is reached, a thread reuses its full buffer and
+ * the events in it are lost.
+ */
+public final class JfrRecorder {
+
+    private static final FastThreadLocalWord<JfrBuffer> threadBuffer = FastThreadLocalFactory.createWord();
+    /** The Java thread id that identifies the thread in events, or 0 if the thread is unknown. */
+    private static final FastThreadLocalLong threadId = FastThreadLocalFactory.createLong();
+
+    private final UninterruptibleUtils.AtomicPointer<JfrBuffer> retiredBuffers = new UninterruptibleUtils.AtomicPointer<>();
+    private final UninterruptibleUtils.AtomicLong retiredSize = new UninterruptibleUtils.AtomicLong(0);
+    private final UninterruptibleUtils.AtomicLong lostBuffers = new UninterruptibleUtils.AtomicLong(0);
+    private final Map<Long, String> threadNames = new ConcurrentHashMap<>();
+    /** Threads whose names can be dropped once the current chunk is complete. */
+    private final Set<Long> exitedThreads = ConcurrentHashMap.newKeySet();
+    private volatile boolean recording;
+    private UnsignedWord threadBufferSize;
+    private long maxRetiredSize;
+    private JfrChunkWriter chunkWriter;
+    private Thread recorderThread;
+    private boolean writeFailed;
+
+    @Platforms(Platform.HOSTED_ONLY.class)
+    JfrRecorder() {
+    }
+
+    @Fold
+    public static boolean isEnabled() {
+        return JfrOptions.AllowEventRecording.getValue();
+    }
+
+    @Fold
+    static JfrRecorder singleton() {
+        return ImageSingletons.lookup(JfrRecorder.class);
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    boolean isRecording() {
+        return recording;
+    }
+
+    void startup() {
+        String path = JfrOptions.EventRecordingFile.getValue();
+        if (path.isEmpty()) {
+            return;
+        }
+        try {
+            chunkWriter = new JfrChunkWriter(path);
+        } catch (IOException e) {
+            Log.log().string("Could not open the event recording file ").string(path).string(": ").string(e.getMessage()).newline();
+            return;
+        }
+        threadBufferSize = WordFactory.unsigned(JfrOptions.EventRecordingThreadBufferSize.getValue());
+        maxRetiredSize = JfrOptions.EventRecordingMaxChunkSize.getValue();
+        JavaVMOperation.enqueueBlockingSafepoint("JfrRecorder.startup", this::registerAllThreads);
+
+        if (SubstrateOptions.MultiThreaded.getValue()) {
+            recorderThread = new Thread(this::runRecorderThread, "Event Recorder");
+            recorderThread.setDaemon(true);
+            recorderThread.start();
+        }
+    }
+
+    /** Registers the threads that already exist and starts the recording atomically. */
+    private void registerAllThreads() {
+        for (IsolateThread vmThread = VMThreads.firstThread(); vmThread.isNonNull(); vmThread = VMThreads.nextThread(vmThread)) {
+            Thread thread = JavaThreads.fromVMThread(vmThread);
+            if (thread != null) {
+                threadId.set(vmThread, thread.getId());
+                threadNames.put(thread.getId(), thread.getName());
+            }
+        }
+        recording = true;
+    }
+
+    void registerCurrentThread(Thread thread) {
+        threadId.set(thread.getId());
+        threadNames.put(thread.getId(), thread.getName());
+    }
+
+    /**
+     * Called when a thread has run. Its events can still be in buffers that are not written yet, so
+     * its name is only dropped after the next chunk has been completed.
+     */
+    void threadExited(Thread thread) {
+        exitedThreads.add(thread.getId());
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static long getCurrentThreadId() {
+        return threadId.get();
+    }
+
+    private void runRecorderThread() {
+        long interval = JfrOptions.EventRecordingFlushInterval.getValue();
+        long maxChunkSize = JfrOptions.EventRecordingMaxChunkSize.getValue();
+        try {
+            while (true) {
+                Thread.sleep(interval);
+                writeRetiredBuffers();
+                if (!writeFailed) {
+                    try {
+                        if (chunkWriter.getChunkSize() >= maxChunkSize) {
+                            /* Threads that exit from now on can still have events in the next chunk. */
+                            List<Long> exited = new ArrayList<>(exitedThreads);
+                            JavaVMOperation.enqueueBlockingSafepoint("JfrRecorder.rotateChunk", this::retireAllThreadBuffers);
+                            writeRetiredBuffers();
+                            chunkWriter.rotate(threadNames);
+                            threadNames.keySet().removeAll(exited);
+                            exitedThreads.removeAll(exited);
+                        }
+                    } catch (IOException e) {
+                        writeFailed = true;
+                        Log.log().string("Could not complete a chunk of the event recording: ").string(e.getMessage()).newline();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            /* The recording ends. */
+        }
+    }
+
+    void shutdown() {
+        if (!recording) {
+            return;
+        }
+        if (recorderThread != null) {
+            recorderThread.interrupt();
+            try {
+                recorderThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        JavaVMOperation.enqueueBlockingSafepoint("JfrRecorder.shutdown", this::stopRecording);
+        writeRetiredBuffers();
+        if (lostBuffers.get() > 0) {
+            Log.log().string("Events were lost because ").signed(lostBuffers.get()).string(" full event buffers could not be written in time.").newline();
+        }
+        try {
+            chunkWriter.finish(threadNames);
+        } catch (IOException e) {
+            Log.log().string("Could not complete the event recording: ").string(e.getMessage()).newline();
+        }
+    }
+
+    private void stopRecording() {
+        recording = false;
+        retireAllThreadBuffers();
+    }
+
+    private void retireAllThreadBuffers() {
+        VMOperation.guaranteeInProgressAtSafepoint("Other threads must not record events while their buffers are retired.");
+        for (IsolateThread vmThread = VMThreads.firstThread(); vmThread.isNonNull(); vmThread = VMThreads.nextThread(vmThread)) {
+            retireThreadBuffer(vmThread);
+        }
+    }
+
+    private void writeRetiredBuffers() {
+        JfrBuffer buffer;
+        do {
+            buffer = retiredBuffers.get();
+        } while (!retiredBuffers.compareAndSet(buffer, WordFactory.nullPointer()));
+
+        /* The list is in the reverse order of retirement. */
+        JfrBuffer reversed = WordFactory.nullPointer();
+        while (buffer.isNonNull()) {
+            JfrBuffer next = buffer.getNext();
+            buffer.setNext(reversed);
+            reversed = buffer;
+            buffer = next;
+        }
+
+        buffer = reversed;
+        while (buffer.isNonNull()) {
+            JfrBuffer next = buffer.getNext();
+            retiredSize.addAndGet(-buffer.getSize().rawValue());
+            if (!writeFailed) {
+                try {
+                    chunkWriter.write(buffer);
+                } catch (IOException e) {
+                    writeFailed = true;
+                    Log.log().string("Could not write recorded events: ").string(e.getMessage()).newline();
+                }
+            }
+            JfrBufferAccess.free(buffer);
+            buffer = next;
+        }
+    }
+
+    /**
+     * Returns the buffer of the current thread with at least the given number of bytes available,
+     * or null if no event can be recorded.
+     */
+    @Uninterruptible(reason = "Accesses the event buffer of the current thread.", callerMustBe = true)
+    JfrBuffer getThreadBuffer(int requiredSize) {
+        JfrBuffer buffer = threadBuffer.get();
+        if (buffer.isNonNull() && JfrBufferAccess.getAvailableSize(buffer).aboveOrEqual(requiredSize)) {
+            return buffer;
+        }
+        if (!recording) {
+            return WordFactory.nullPointer();
+        }
+        if (buffer.isNonNull()) {
+            if (retiredSize.get() >= maxRetiredSize) {
+                /* The retired buffers are not written fast enough, drop the events of this one. */
+                lostBuffers.incrementAndGet();
+                buffer.setPos(JfrBufferAccess.getDataStart(buffer));
+                return JfrBufferAccess.getAvailableSize(buffer).aboveOrEqual(requiredSize) ? buffer : WordFactory.nullPointer();
+            }
+            retire(buffer);
+        }
+        buffer = JfrBufferAccess.allocate(threadBufferSize);
+        threadBuffer.set(buffer);
+        return buffer;
+    }
+
+    @Uninterruptible(reason = "Accesses the event buffer of the current thread.", callerMustBe = true)
+    JfrBuffer getCurrentThreadBuffer() {
+        return threadBuffer.get();
+    }
+
+    /** Called when a thread is detached, so that its last events are written. */
+    @Uninterruptible(reason = "Called from uninterruptible code.")
+    public static void detachThread(IsolateThread vmThread) {
+        singleton().retireThreadBuffer(vmThread);
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    private void retireThreadBuffer(IsolateThread vmThread) {
+        JfrBuffer buffer = threadBuffer.get(vmThread);
+        if (buffer.isNonNull()) {
+            threadBuffer.set(vmThread, WordFactory.nullPointer());
+            retire(buffer);
+        }
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    private void retire(JfrBuffer buffer) {
+        retiredSize.addAndGet(buffer.getSize().rawValue());
+        JfrBuffer head;
+        do {
+            head = retiredBuffers.get();
+            buffer.setNext(head);
+        } while (!retiredBuffers.compareAndSet(head, buffer));
+    }
+}
@@ -26,6 +26,8 @@ package com.oracle.svm.core.monitor;
 
 import static jdk.vm.ci.meta.DeoptimizationAction.InvalidateReprofile;
 import static jdk.vm.ci.meta.DeoptimizationReason.NullCheckException;
+import static org.graalvm.compiler.nodes.extended.BranchProbabilityNode.FAST_PATH_PROBABILITY;
+import static org.graalvm.compiler.nodes.extended.BranchProbabilityNode.probability;
 
 import java.util.Map;
 
@@ -68,8 +70,9 @@ import jdk.vm.ci.meta.SpeculationLog;
 
 /**
  * Snippets for lowering of monitor nodes (the nodes representing the Java "synchronized" keyword).
- * There is currently no fast path, because the {@link java.util.concurrent.locks.ReentrantLock}
- * used for monitor operations cannot be inlined in a snippet without changes or code duplication.
+ * The fast path only installs or removes a thin lock of {@link MultiThreadedMonitorSupport}, which
+ * is a single compare-and-swap on the monitor slot of the object. Everything else, including
+ * inflation to a {@link java.util.concurrent.locks.ReentrantLock}, is done in the slow path.
  *
  * For AOT compiled code, the null check for the object is already inserted by the bytecode parser,
  * i.e., the object is already guaranteed to be non-null. For JIT compiled code though the null
@@ -92,6 +95,9 @@ public class MonitorSnippets extends SubstrateTemplates implements Snippets {
         KillMemoryNode.killMemory(LocationIdentity.any());
 
         if (SubstrateOptions.MultiThreaded.getValue()) {
+            if (probability(FAST_PATH_PROBABILITY, MultiThreadedMonitorSupport.tryThinLock(obj))) {
+                return;
+            }
             callSlowPath(SLOW_PATH_MONITOR_ENTER, obj);
         }
     }
@@ -102,6 +108,9 @@ public class MonitorSnippets extends SubstrateTemplates implements Snippets {
         KillMemoryNode.killMemory(LocationIdentity.any());
 
         if (SubstrateOptions.MultiThreaded.getValue()) {
+            if (probability(FAST_PATH_PROBABILITY, MultiThreadedMonitorSupport.tryThinUnlock(obj))) {
+                return;
+            }
             callSlowPath(SLOW_PATH_MONITOR_EXIT, obj);
         }
     }
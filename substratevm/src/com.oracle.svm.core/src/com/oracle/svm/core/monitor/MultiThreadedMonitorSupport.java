@@ -56,6 +56,7 @@ import com.oracle.svm.core.annotate.RestrictHeapAccess.Access;
 import com.oracle.svm.core.annotate.TargetClass;
 import com.oracle.svm.core.annotate.Uninterruptible;
 import com.oracle.svm.core.hub.DynamicHub;
+import com.oracle.svm.core.jfr.JfrEvents;
 import com.oracle.svm.core.snippets.KnownIntrinsics;
 import com.oracle.svm.core.snippets.SubstrateForeignCallTarget;
 import com.oracle.svm.core.stack.StackOverflowCheck;
@@ -76,6 +77,12 @@ import sun.misc.Unsafe;
  * (and thus need a monitor) and assigns a monitor offset to point to the {@link #getMonitorOffset
  * slot for the monitor}. The monitor is implemented with a {@link ReentrantLock}.
  * <p>
+ * The {@link ReentrantLock} is only allocated when it is actually needed. As long as an object is
+ * locked by a single thread without recursion and without waiting on it, the monitor slot holds
+ * the owning {@link Thread} itself (a thin lock), which is installed and removed with a single
+ * compare-and-swap. The thin lock is inflated to a {@link ReentrantLock} on contention, on
+ * recursive locking, and when a {@link Condition} is needed. Inflated monitors are never deflated.
+ * <p>
  * There are a few exceptions: {@link String} and {@link DynamicHub} objects never have monitor
  * fields because we want instances in the image heap to be immutable. Arrays never have monitor
  * fields because it would increase the size of every array and it is not possible to distinguish
@@ -83,7 +90,9 @@ import sun.misc.Unsafe;
  * UniverseBuilder.canHaveMonitorFields(AnalysisType) for details.
  * <p>
  * Synchronization on {@link String}, arrays, and other types not detected by the static analysis
- * (like synchronization via JNI) fall back to a monitor stored in {@link #additionalMonitors}.
+ * (like synchronization via JNI) fall back to a monitor stored in {@link #additionalMonitors}. That
+ * secondary storage is striped by identity hash code so that unrelated objects do not contend on
+ * the same lock.
  * <p>
  * {@link Condition} objects are used to implement {@link #wait()} and {@link #notify()}. When an
  * object monitor needs a condition object, it is atomically swapped into its
@@ -162,12 +171,27 @@ public class MultiThreadedMonitorSupport extends MonitorSupport {
     private static long SYNC_MONITOR_CONDITION_FIELD_OFFSET = -1;
     private static long SYNC_STATE_FIELD_OFFSET = -1;
 
+    /** Number of stripes of {@link #additionalMonitors}, must be a power of two. */
+    private static final int ADDITIONAL_MONITORS_STRIPES = 32;
+
     /**
-     * Secondary storage for monitor slots. Synchronized to prevent concurrent access and
-     * modification.
+     * Secondary storage for monitor slots. Each stripe is synchronized to prevent concurrent access
+     * and modification.
      */
-    private final Map<Object, ReentrantLock> additionalMonitors = new WeakIdentityHashMap<>();
-    private final ReentrantLock additionalMonitorsLock = new ReentrantLock();
+    private final AdditionalMonitorsStripe[] additionalMonitors;
+
+    static final class AdditionalMonitorsStripe {
+        final Map<Object, ReentrantLock> monitors = new WeakIdentityHashMap<>();
+        final ReentrantLock lock = new ReentrantLock();
+    }
+
+    @Platforms(Platform.HOSTED_ONLY.class)
+    public MultiThreadedMonitorSupport() {
+        additionalMonitors = new AdditionalMonitorsStripe[ADDITIONAL_MONITORS_STRIPES];
+        for (int i = 0; i < additionalMonitors.length; i++) {
+            additionalMonitors[i] = new AdditionalMonitorsStripe();
+        }
+    }
 
     @Override
     public int maybeAdjustNewParkStatus(int status) {
@@ -228,8 +252,18 @@ public class MultiThreadedMonitorSupport extends MonitorSupport {
     @RestrictHeapAccess(reason = NO_LONGER_UNINTERRUPTIBLE, overridesCallers = true, access = Access.UNRESTRICTED)
     @Override
     public void monitorEnter(Object obj) {
+        if (tryThinLock(obj)) {
+            /* Uncontended, e.g., when called from JNI rather than from the snippet fast path. */
+            return;
+        }
         ReentrantLock lockObject = getOrCreateMonitor(obj, true);
-        lockObject.lock();
+        if (JfrEvents.isRecording() && !lockObject.tryLock()) {
+            long startTicks = JfrEvents.ticks();
+            lockObject.lock();
+            JfrEvents.emitJavaMonitorEnter(obj, startTicks);
+        } else {
+            lockObject.lock();
+        }
     }
 
     @SubstrateForeignCallTarget(stubCallingConvention = false)
@@ -265,10 +299,33 @@ public class MultiThreadedMonitorSupport extends MonitorSupport {
     @RestrictHeapAccess(reason = NO_LONGER_UNINTERRUPTIBLE, overridesCallers = true, access = Access.UNRESTRICTED)
     @Override
     public void monitorExit(Object obj) {
+        if (tryThinUnlock(obj)) {
+            return;
+        }
         ReentrantLock lockObject = getOrCreateMonitor(obj, true);
         lockObject.unlock();
     }
 
+    /**
+     * Thin-locks the object for the current thread if it has a monitor slot and is not locked yet.
+     * This is the fast path of {@link MonitorSnippets}, so it must be inlinable into snippets.
+     */
+    static boolean tryThinLock(Object obj) {
+        int monitorOffset = KnownIntrinsics.readHub(obj).getMonitorOffset();
+        Thread currentThread = JavaThreads.currentJavaThread();
+        return monitorOffset != 0 && currentThread != null && UNSAFE.compareAndSwapObject(obj, monitorOffset, null, currentThread);
+    }
+
+    /**
+     * Releases the thin lock of the current thread on the object. Fails if the object is not
+     * thin-locked by the current thread, e.g., because the lock was inflated in the meantime.
+     */
+    static boolean tryThinUnlock(Object obj) {
+        int monitorOffset = KnownIntrinsics.readHub(obj).getMonitorOffset();
+        Thread currentThread = JavaThreads.currentJavaThread();
+        return monitorOffset != 0 && currentThread != null && UNSAFE.compareAndSwapObject(obj, monitorOffset, currentThread, null);
+    }
+
     @Override
     public Object prepareRelockObject(Object obj) {
         /*
@@ -327,12 +384,19 @@ public class MultiThreadedMonitorSupport extends MonitorSupport {
 
     @Override
     public boolean isLockedByCurrentThread(Object obj) {
+        Thread thinLockOwner = getThinLockOwner(obj);
+        if (thinLockOwner != null) {
+            return thinLockOwner == Thread.currentThread();
+        }
         ReentrantLock lockObject = getOrCreateMonitor(obj, false);
         return lockObject != null && lockObject.isHeldByCurrentThread();
     }
 
     @Override
     public boolean isLockedByAnyThread(Object obj) {
+        if (getThinLockOwner(obj) != null) {
+            return true;
+        }
         ReentrantLock lockObject = getOrCreateMonitor(obj, false);
         return lockObject != null && lockObject.isLocked();
     }
@@ -394,43 +458,70 @@ public class MultiThreadedMonitorSupport extends MonitorSupport {
         }
     }
 
-    protected ReentrantLock getOrCreateMonitorFromObject(Object obj, boolean createIfNotExisting, int monitorOffset) {
-        ReentrantLock existingMonitor = KnownIntrinsics.convertUnknownValue(BarrieredAccess.readObject(obj, monitorOffset), ReentrantLock.class);
-        if (existingMonitor != null || !createIfNotExisting) {
-            assert existingMonitor == null || isMonitorLock(existingMonitor);
-            return existingMonitor;
+    /** Returns the thread holding the thin lock of the object, or null if it is not thin-locked. */
+    protected static Thread getThinLockOwner(Object obj) {
+        int monitorOffset = getMonitorOffset(obj);
+        if (monitorOffset != 0) {
+            Object existingMonitor = KnownIntrinsics.convertUnknownValue(BarrieredAccess.readObject(obj, monitorOffset), Object.class);
+            if (existingMonitor instanceof Thread) {
+                return (Thread) existingMonitor;
+            }
         }
-        /* Atomically put a new lock in place of the null at the monitorOffset. */
-        ReentrantLock newMonitor = newMonitorLock();
-        if (UNSAFE.compareAndSwapObject(obj, monitorOffset, null, newMonitor)) {
-            return newMonitor;
+        return null;
+    }
+
+    protected ReentrantLock getOrCreateMonitorFromObject(Object obj, boolean createIfNotExisting, int monitorOffset) {
+        while (true) {
+            Object existingMonitor = KnownIntrinsics.convertUnknownValue(BarrieredAccess.readObject(obj, monitorOffset), Object.class);
+            if (existingMonitor != null && !(existingMonitor instanceof Thread)) {
+                ReentrantLock existingLock = (ReentrantLock) existingMonitor;
+                assert isMonitorLock(existingLock);
+                return existingLock;
+            }
+            if (!createIfNotExisting) {
+                return null;
+            }
+            ReentrantLock newMonitor;
+            if (existingMonitor == null) {
+                newMonitor = newMonitorLock();
+            } else {
+                /* Inflate the thin lock on behalf of its owner, which holds it exactly once. */
+                newMonitor = newLockedMonitorForThread((Thread) existingMonitor, 1);
+            }
+            /* Atomically put the new lock in place of the value we have seen at the monitorOffset. */
+            if (UNSAFE.compareAndSwapObject(obj, monitorOffset, existingMonitor, newMonitor)) {
+                return newMonitor;
+            }
+            /*
+             * We lost a race against another inflation or a thin lock operation. Retry, and use the
+             * lock some other thread installed if there is one.
+             */
         }
-        /* We lost the race, use the lock some other thread installed. */
-        return KnownIntrinsics.convertUnknownValue(BarrieredAccess.readObject(obj, monitorOffset), ReentrantLock.class);
     }
 
     protected ReentrantLock getOrCreateMonitorFromMap(Object obj, boolean createIfNotExisting) {
         assert obj.getClass() != Target_java_lang_ref_ReferenceQueue_Lock.class : "ReferenceQueue.Lock must have a monitor field or we can deadlock accessing WeakIdentityHashMap below";
-        VMError.guarantee(!additionalMonitorsLock.isHeldByCurrentThread(),
+        AdditionalMonitorsStripe stripe = additionalMonitors[System.identityHashCode(obj) & (ADDITIONAL_MONITORS_STRIPES - 1)];
+        VMError.guarantee(!stripe.lock.isHeldByCurrentThread(),
                         "Recursive manipulation of the additionalMonitors map can lead to table corruptions and double insertion of a monitor for the same object");
 
         /*
-         * Lock the monitor map and maybe add a monitor for this object. This serialization might be
-         * a scalability problem.
+         * Lock the stripe of the monitor map that is responsible for this object and maybe add a
+         * monitor for this object. Objects in other stripes can be looked up concurrently.
          */
-        additionalMonitorsLock.lock();
+        stripe.lock.lock();
         try {
-            ReentrantLock existingMonitor = additionalMonitors.get(obj);
+            ReentrantLock existingMonitor = stripe.monitors.get(obj);
             if (existingMonitor != null || !createIfNotExisting) {
                 assert existingMonitor == null || isMonitorLock(existingMonitor);
                 return existingMonitor;
             }
             ReentrantLock newMonitor = newMonitorLock();
-            ReentrantLock previousEntry = additionalMonitors.put(obj, newMonitor);
+            ReentrantLock previousEntry = stripe.monitors.put(obj, newMonitor);
             VMError.guarantee(previousEntry == null, "Replaced monitor in secondary storage map");
             return newMonitor;
         } finally {
-            additionalMonitorsLock.unlock();
+            stripe.lock.unlock();
         }
     }
 
@@ -449,6 +540,10 @@ public class MultiThreadedMonitorSupport extends MonitorSupport {
      * (for a good reason, because it is a highly unusual operation).
      */
     protected static ReentrantLock newLockedMonitorForThread(IsolateThread isolateThread, int recursionDepth) {
+        return newLockedMonitorForThread(JavaThreads.fromVMThread(isolateThread), recursionDepth);
+    }
+
+    protected static ReentrantLock newLockedMonitorForThread(Thread thread, int recursionDepth) {
         ReentrantLock result = newMonitorLock();
         for (int i = 0; i < recursionDepth; i++) {
             result.lock();
@@ -458,7 +553,7 @@ public class MultiThreadedMonitorSupport extends MonitorSupport {
         Target_java_util_concurrent_locks_AbstractOwnableSynchronizer sync = SubstrateUtil.cast(lock.sync, Target_java_util_concurrent_locks_AbstractOwnableSynchronizer.class);
 
         assert sync.exclusiveOwnerThread == Thread.currentThread() : "Must be locked by current thread";
-        sync.exclusiveOwnerThread = JavaThreads.fromVMThread(isolateThread);
+        sync.exclusiveOwnerThread = thread;
 
         return result;
     }
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.pgo;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import org.graalvm.compiler.options.Option;
+import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.Platform;
+import org.graalvm.nativeimage.Platforms;
+import org.graalvm.nativeimage.hosted.Feature;
+
+import com.oracle.svm.core.ImageProfiles;
+import com.oracle.svm.core.annotate.AutomaticFeature;
+import com.oracle.svm.core.jdk.RuntimeSupport;
+import com.oracle.svm.core.log.Log;
+import com.oracle.svm.core.option.HostedOptionKey;
+import com.oracle.svm.core.option.RuntimeOptionKey;
+
+/**
+ * The profiles collected by an image that was built with {@link Options#ProfileInstrumentation}.
+ * The profiles are written to {@link Options#ProfilesDumpFile} when the image exits.
+ *
+ * The profiles are a text file. Every executed method starts with a line {@code method <name>},
+ * where the name consists of the declaring class, the method name, the parameter types and the
+ * return type, e.g., {@code java.lang.String.indexOf(int, int):int}. It is followed by one line
+ * for each counter of the method that is not zero:
+ *
+ * <pre>
+ * entry &lt;count&gt;                     number of invocations
+ * branch &lt;bci&gt; &lt;count&gt;              number of executions of a conditional branch
+ * taken &lt;bci&gt; &lt;count&gt;               number of times the branch jumped to its target
+ * call &lt;bci&gt; &lt;count&gt;                number of executions of a call
+ * receiver &lt;bci&gt; &lt;type&gt; &lt;count&gt;     number of calls with a receiver of the given type
+ * </pre>
+ */
+public final class InstrumentedImageProfiles extends ImageProfiles {
+
+    public static class Options {
+        @Option(help = "Build an image that collects branch, call and receiver type profiles and writes them to ProfilesDumpFile at exit.")//
+        public static final HostedOptionKey<Boolean> ProfileInstrumentation = new HostedOptionKey<>(false);
+
+        @Option(help = "File that an image built with ProfileInstrumentation writes its profiles to at exit.")//
+        public static final RuntimeOptionKey<String> ProfilesDumpFile = new RuntimeOptionKey<>("default.iprof");
+    }
+
+    public static final String METHOD = "method";
+    public static final String ENTRY = "entry";
+    public static final String BRANCH = "branch";
+    public static final String TAKEN = "taken";
+    public static final String CALL = "call";
+    public static final String RECEIVER = "receiver";
+
+    /**
+     * The counters of all instrumented methods. The map access must be thread safe since it is
+     * filled during parsing when everything is concurrent.
+     */
+    private final ConcurrentMap<String, ProfileCounters> counters = new ConcurrentHashMap<>();
+
+    @Platforms(Platform.HOSTED_ONLY.class)
+    public InstrumentedImageProfiles() {
+        /*
+         * The static analysis sees the counter types as instantiated, but the actual counters are
+         * only created during compilation. Adding an unused counter makes the types reachable for
+         * the static analysis.
+         */
+        counters.put("", new ProfileCounters("", new String[]{ENTRY}));
+    }
+
+    public static InstrumentedImageProfiles singleton() {
+        return (InstrumentedImageProfiles) ImageSingletons.lookup(ImageProfiles.class);
+    }
+
+    /**
+     * Returns the counters of the given method, creating them with the given labels on first use.
+     */
+    @Platforms(Platform.HOSTED_ONLY.class)
+    public ProfileCounters getCounters(String method, Supplier<String[]> labels) {
+        return counters.computeIfAbsent(method, key -> new ProfileCounters(key, labels.get()));
+    }
+
+    @Override
+    public String computeProfiles() {
+        List<ProfileCounters> executed = new ArrayList<>();
+        for (ProfileCounters methodCounters : counters.values()) {
+            if (methodCounters.getCounts()[0] != 0) {
+                executed.add(methodCounters);
+            }
+        }
+        executed.sort(Comparator.comparing(ProfileCounters::getMethod));
+
+        StringBuilder result = new StringBuilder();
+        for (ProfileCounters methodCounters : executed) {
+            result.append(METHOD).append(' ').append(methodCounters.getMethod()).append('\n');
+            String[] labels = methodCounters.getLabels();
+            long[] counts = methodCounters.getCounts();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    result.append(labels[i]).append(' ').append(counts[i]).append('\n');
+                }
+            }
+        }
+        return result.toString();
+    }
+
+    static void dumpProfilesToFile() {
+        String path = Options.ProfilesDumpFile.getValue();
+        try (OutputStream out = new FileOutputStream(path)) {
+            out.write(dumpProfiles().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            Log.log().string("Cannot write profiles to ").string(path).string(": ").string(ex.getMessage()).newline();
+        }
+    }
+}
+
+@AutomaticFeature
+class InstrumentedImageProfilesFeature implements Feature {
+    @Override
+    public boolean isInConfiguration(IsInConfigurationAccess access) {
+        return InstrumentedImageProfiles.Options.ProfileInstrumentation.getValue();
+    }
+
+    @Override
+    public void afterRegistration(AfterRegistrationAccess access) {
+        ImageSingletons.add(ImageProfiles.class, new InstrumentedImageProfiles());
+        RuntimeSupport.getRuntimeSupport().addShutdownHook(InstrumentedImageProfiles::dumpProfilesToFile);
+    }
+}
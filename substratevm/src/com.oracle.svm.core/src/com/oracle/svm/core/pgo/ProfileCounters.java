@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.pgo;
+
+import org.graalvm.nativeimage.Platform;
+import org.graalvm.nativeimage.Platforms;
+
+/**
+ * The profiling counters of one method of an instrumented image. The compiled code of the method
+ * increments the elements of {@link #getCounts()}. Each element is described by the label with the
+ * same index, see {@link InstrumentedImageProfiles} for the format of the labels.
+ */
+public final class ProfileCounters {
+    /** Name of the method that increments these counters. */
+    private final String method;
+    /** Description of the counters. The first counter always counts the method entries. */
+    private final String[] labels;
+    /** The counters, incremented without synchronization by the compiled code. */
+    private final long[] counts;
+
+    @Platforms(Platform.HOSTED_ONLY.class)
+    ProfileCounters(String method, String[] labels) {
+        assert labels.length > 0 && labels[0].equals(InstrumentedImageProfiles.ENTRY);
+        this.method = method;
+        this.labels = labels;
+        this.counts = new long[labels.length];
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String[] getLabels() {
+        return labels;
+    }
+
+    public long[] getCounts() {
+        return counts;
+    }
+}
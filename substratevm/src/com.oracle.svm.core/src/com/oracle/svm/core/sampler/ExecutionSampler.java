@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.sampler;
+
+import static com.oracle.svm.core.annotate.RestrictHeapAccess.Access.NO_ALLOCATION;
+
+import java.io.IOException;
+
+import org.graalvm.compiler.api.replacements.Fold;
+import org.graalvm.nativeimage.CurrentIsolate;
+import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.IsolateThread;
+import org.graalvm.nativeimage.c.function.CodePointer;
+import org.graalvm.word.Pointer;
+import org.graalvm.word.UnsignedWord;
+import org.graalvm.word.WordFactory;
+
+import com.oracle.svm.core.FrameAccess;
+import com.oracle.svm.core.SubstrateOptions;
+import com.oracle.svm.core.annotate.RestrictHeapAccess;
+import com.oracle.svm.core.annotate.Uninterruptible;
+import com.oracle.svm.core.jdk.UninterruptibleUtils;
+import com.oracle.svm.core.log.Log;
+import com.oracle.svm.core.thread.JavaVMOperation;
+import com.oracle.svm.core.thread.VMOperation;
+import com.oracle.svm.core.thread.VMThreads;
+import com.oracle.svm.core.threadlocal.FastThreadLocalFactory;
+import com.oracle.svm.core.threadlocal.FastThreadLocalWord;
+
+/**
+ * Samples the stacks of threads that consume CPU time. A platform-specific timer interrupts the
+ * running threads at regular intervals of consumed CPU time, and the signal handler calls
+ * {@link #recordSample} in the interrupted thread. The sample is recorded into the preallocated
+ * {@link SamplerBuffer} of the thread, without allocating or synchronizing with other threads.
+ * <p>
+ * A buffer is owned by whoever removed it from the {@link #threadBuffer thread-local}: the signal
+ * handler while it records a sample, or the aggregation while it reads the samples. The signal
+ * handler drops the sample when it cannot take the buffer. The flush thread periodically swaps the
+ * buffers that contain samples for empty ones while holding the {@link VMThreads#THREAD_MUTEX},
+ * so that no thread has to stop at a safepoint. The buffers of detached threads are kept in a
+ * lock-free list until they are aggregated.
+ */
+public abstract class ExecutionSampler {
+
+    private static final FastThreadLocalWord<SamplerBuffer> threadBuffer = FastThreadLocalFactory.createWord();
+
+    private final UninterruptibleUtils.AtomicPointer<SamplerBuffer> detachedBuffers = new UninterruptibleUtils.AtomicPointer<>();
+    private final UninterruptibleUtils.AtomicLong sampleCount = new UninterruptibleUtils.AtomicLong(0);
+    private final UninterruptibleUtils.AtomicLong droppedSampleCount = new UninterruptibleUtils.AtomicLong(0);
+    private final UninterruptibleUtils.AtomicLong samplingNanos = new UninterruptibleUtils.AtomicLong(0);
+    private volatile boolean sampling;
+    private UnsignedWord threadBufferSize;
+    private int maxDepth;
+    private SamplerProfile profile;
+    /** Empty buffers that the flush thread swaps in, only accessed by the flush thread. */
+    private SamplerBuffer spareBuffers;
+    private Thread flushThread;
+
+    @Fold
+    public static boolean isEnabled() {
+        return ImageSingletons.contains(ExecutionSampler.class);
+    }
+
+    @Fold
+    public static ExecutionSampler singleton() {
+        return ImageSingletons.lookup(ExecutionSampler.class);
+    }
+
+    /**
+     * Starts the timer that interrupts the threads of the process every {@code intervalMillis} of
+     * consumed CPU time.
+     *
+     * @return false if the timer could not be started, e.g., because another isolate samples
+     */
+    protected abstract boolean startTimer(long intervalMillis);
+
+    protected abstract void stopTimer();
+
+    /** Makes the signal handler find the given thread, which must be the current thread. */
+    @Uninterruptible(reason = "Called from uninterruptible code.")
+    protected abstract void registerCurrentThread(IsolateThread thread);
+
+    @Uninterruptible(reason = "Called from uninterruptible code.")
+    protected abstract void unregisterCurrentThread();
+
+    void startup() {
+        String path = SamplerOptions.ExecutionSamplingFile.getValue();
+        if (path.isEmpty()) {
+            return;
+        }
+        threadBufferSize = WordFactory.unsigned(SamplerOptions.ExecutionSamplingThreadBufferSize.getValue());
+        maxDepth = SamplerOptions.ExecutionSamplingMaxDepth.getValue();
+        profile = new SamplerProfile();
+        if (!startTimer(SamplerOptions.ExecutionSamplingInterval.getValue())) {
+            Log.log().string("Execution sampling could not be started, another isolate of this process is sampling already.").newline();
+            return;
+        }
+        sampling = true;
+        attachThread(CurrentIsolate.getCurrentThread());
+
+        if (SubstrateOptions.MultiThreaded.getValue()) {
+            flushThread = new Thread(this::runFlushThread, "Execution Sampler");
+            flushThread.setDaemon(true);
+            flushThread.start();
+        }
+    }
+
+    private void runFlushThread() {
+        long interval = SamplerOptions.ExecutionSamplingFlushInterval.getValue();
+        try {
+            while (true) {
+                Thread.sleep(interval);
+                flushSamples();
+            }
+        } catch (InterruptedException e) {
+            /* Sampling ends. */
+        }
+    }
+
+    void shutdown() {
+        if (!sampling) {
+            return;
+        }
+        stopTimer();
+        if (flushThread != null) {
+            flushThread.interrupt();
+            try {
+                flushThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        JavaVMOperation.enqueueBlockingSafepoint("ExecutionSampler.shutdown", this::stopSampling);
+
+        String path = SamplerOptions.ExecutionSamplingFile.getValue();
+        try {
+            profile.write(path);
+        } catch (IOException e) {
+            Log.log().string("Could not write the execution samples to ").string(path).string(": ").string(e.getMessage()).newline();
+        }
+        if (SamplerOptions.PrintExecutionSamplingStatistics.getValue()) {
+            printStatistics();
+        }
+    }
+
+    private void stopSampling() {
+        aggregateSamples();
+        sampling = false;
+        while (spareBuffers.isNonNull()) {
+            SamplerBuffer next = spareBuffers.getNext();
+            SamplerBufferAccess.free(spareBuffers);
+            spareBuffers = next;
+        }
+    }
+
+    /** Moves the samples to the {@link SamplerProfile} while the other threads keep running. */
+    private void flushSamples() {
+        SamplerBuffer buffer;
+        VMThreads.lockThreadMutex();
+        try {
+            buffer = swapThreadBuffersLocked();
+        } finally {
+            VMThreads.THREAD_MUTEX.unlock();
+        }
+        while (buffer.isNonNull()) {
+            SamplerBuffer next = buffer.getNext();
+            profile.addSamples(SamplerBufferAccess.getDataStart(buffer), buffer.getPos());
+            SamplerBufferAccess.reset(buffer);
+            buffer.setNext(spareBuffers);
+            spareBuffers = buffer;
+            buffer = next;
+        }
+        aggregateDetachedBuffers();
+    }
+
+    /**
+     * Replaces the buffers that contain samples with spare ones. Holding the
+     * {@link VMThreads#THREAD_MUTEX} ensures that no thread is detached and its buffer freed.
+     *
+     * @return the list of buffers that were replaced
+     */
+    @Uninterruptible(reason = "Called with the THREAD_MUTEX held.")
+    private SamplerBuffer swapThreadBuffersLocked() {
+        SamplerBuffer result = WordFactory.nullPointer();
+        for (IsolateThread vmThread = VMThreads.firstThread(); vmThread.isNonNull(); vmThread = VMThreads.nextThread(vmThread)) {
+            SamplerBuffer buffer = threadBuffer.get(vmThread);
+            if (buffer.isNull() || buffer.getPos().equal(SamplerBufferAccess.getDataStart(buffer))) {
+                continue;
+            }
+            SamplerBuffer spare = spareBuffers;
+            if (spare.isNull()) {
+                spare = SamplerBufferAccess.allocate(threadBufferSize);
+                if (spare.isNull()) {
+                    break;
+                }
+            } else {
+                spareBuffers = spare.getNext();
+                spare.setNext(WordFactory.nullPointer());
+            }
+            /* If the signal handler of the thread is recording a sample, flush the buffer next time. */
+            if (threadBuffer.compareAndSet(vmThread, buffer, spare)) {
+                buffer.setNext(result);
+                result = buffer;
+            } else {
+                spare.setNext(spareBuffers);
+                spareBuffers = spare;
+            }
+        }
+        return result;
+    }
+
+    /** Moves the samples from the native buffers to the {@link SamplerProfile}. */
+    private void aggregateSamples() {
+        VMOperation.guaranteeInProgressAtSafepoint("Threads must not be detached while their buffers are read.");
+        for (IsolateThread vmThread = VMThreads.firstThread(); vmThread.isNonNull(); vmThread = VMThreads.nextThread(vmThread)) {
+            SamplerBuffer buffer = threadBuffer.get(vmThread);
+            /* If the signal handler of the thread is recording a sample, aggregate the buffer next time. */
+            if (buffer.isNonNull() && threadBuffer.compareAndSet(vmThread, buffer, WordFactory.nullPointer())) {
+                profile.addSamples(SamplerBufferAccess.getDataStart(buffer), buffer.getPos());
+                SamplerBufferAccess.reset(buffer);
+                threadBuffer.set(vmThread, buffer);
+            }
+        }
+        aggregateDetachedBuffers();
+    }
+
+    private void aggregateDetachedBuffers() {
+        SamplerBuffer buffer;
+        do {
+            buffer = detachedBuffers.get();
+        } while (!detachedBuffers.compareAndSet(buffer, WordFactory.nullPointer()));
+        while (buffer.isNonNull()) {
+            SamplerBuffer next = buffer.getNext();
+            profile.addSamples(SamplerBufferAccess.getDataStart(buffer), buffer.getPos());
+            SamplerBufferAccess.free(buffer);
+            buffer = next;
+        }
+    }
+
+    private void printStatistics() {
+        long samples = sampleCount.get();
+        long nanos = samplingNanos.get();
+        long intervalNanos = SamplerOptions.ExecutionSamplingInterval.getValue() * 1_000_000L;
+        Log log = Log.log();
+        log.string("Execution sampling: ").signed(samples).string(" samples, ").signed(droppedSampleCount.get()).string(" dropped, ");
+        log.signed(nanos / 1000).string(" us spent sampling");
+        if (samples > 0) {
+            log.string(" (").signed(nanos / samples).string(" ns per sample, ");
+            log.rational(nanos * 100, samples * intervalNanos, 3).string("% of the sampled CPU time)");
+        }
+        log.newline();
+    }
+
+    /** Called when a thread is attached, so that it is sampled if sampling is active. */
+    @Uninterruptible(reason = "Called from uninterruptible code.")
+    public static void attachThread(IsolateThread thread) {
+        ExecutionSampler sampler = singleton();
+        if (!sampler.sampling || threadBuffer.get(thread).isNonNull()) {
+            return;
+        }
+        SamplerBuffer buffer = SamplerBufferAccess.allocate(sampler.threadBufferSize);
+        if (buffer.isNonNull()) {
+            threadBuffer.set(thread, buffer);
+            sampler.registerCurrentThread(thread);
+        }
+    }
+
+    /**
+     * Called when a thread is detached, so that its samples are still aggregated. If the thread
+     * being detached is not the current thread, sampling has already ended, see
+     * {@link VMThreads#detachAllThreadsExceptCurrentWithoutCleanupForTearDown()}.
+     */
+    @Uninterruptible(reason = "Called from uninterruptible code.")
+    public static void detachThread(IsolateThread thread) {
+        ExecutionSampler sampler = singleton();
+        if (thread.equal(CurrentIsolate.getCurrentThread())) {
+            sampler.unregisterCurrentThread();
+        }
+        SamplerBuffer buffer = threadBuffer.get(thread);
+        if (buffer.isNull()) {
+            return;
+        }
+        threadBuffer.set(thread, WordFactory.nullPointer());
+        if (sampler.sampling) {
+            SamplerBuffer head;
+            do {
+                head = sampler.detachedBuffers.get();
+                buffer.setNext(head);
+            } while (!sampler.detachedBuffers.compareAndSet(head, buffer));
+        } else {
+            SamplerBufferAccess.free(buffer);
+        }
+    }
+
+    /**
+     * Called by the platform-specific signal handler in the interrupted thread, after the isolate
+     * and the thread have been set up for the current thread.
+     */
+    @Uninterruptible(reason = "Called from a signal handler.")
+    @RestrictHeapAccess(access = NO_ALLOCATION, reason = "Must not allocate in a signal handler.")
+    protected static void recordSample(Pointer sp, CodePointer ip) {
+        ExecutionSampler sampler = singleton();
+        long startNanos = System.nanoTime();
+        SamplerBuffer buffer = threadBuffer.get();
+        if (buffer.isNull() || !threadBuffer.compareAndSet(buffer, WordFactory.nullPointer())) {
+            sampler.droppedSampleCount.incrementAndGet();
+            return;
+        }
+        int wordSize = FrameAccess.wordSize();
+        if (SamplerBufferAccess.getAvailableSize(buffer).belowThan((sampler.maxDepth + 1) * wordSize)) {
+            sampler.droppedSampleCount.incrementAndGet();
+        } else {
+            Pointer pos = buffer.getPos();
+            int depth = SamplerStackWalker.walk(sp, ip, pos.add(wordSize), sampler.maxDepth);
+            pos.writeLong(0, depth);
+            buffer.setPos(pos.add((depth + 1) * wordSize));
+            sampler.sampleCount.incrementAndGet();
+        }
+        threadBuffer.set(buffer);
+        sampler.samplingNanos.addAndGet(System.nanoTime() - startNanos);
+    }
+}
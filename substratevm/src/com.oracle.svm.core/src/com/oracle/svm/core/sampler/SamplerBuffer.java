@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.sampler;
+
+import org.graalvm.nativeimage.c.struct.RawField;
+import org.graalvm.nativeimage.c.struct.RawStructure;
+import org.graalvm.word.Pointer;
+import org.graalvm.word.PointerBase;
+import org.graalvm.word.UnsignedWord;
+
+/**
+ * A preallocated native buffer into which the signal handler records the samples of a single
+ * thread. The sample data directly follows this header. Each sample is a word with the number of
+ * frames, followed by the instruction pointers of the frames, starting with the top frame.
+ */
+@RawStructure
+interface SamplerBuffer extends PointerBase {
+
+    /** The number of bytes available for samples. */
+    @RawField
+    UnsignedWord getSize();
+
+    @RawField
+    void setSize(UnsignedWord value);
+
+    /** The end of the recorded samples, i.e., where the next sample is written. */
+    @RawField
+    Pointer getPos();
+
+    @RawField
+    void setPos(Pointer value);
+
+    /** The next buffer in the list of buffers of detached threads. */
+    @RawField
+    SamplerBuffer getNext();
+
+    @RawField
+    void setNext(SamplerBuffer value);
+}
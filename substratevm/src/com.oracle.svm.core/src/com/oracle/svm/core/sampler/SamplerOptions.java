@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.sampler;
+
+import org.graalvm.compiler.options.Option;
+import org.graalvm.compiler.options.OptionType;
+
+import com.oracle.svm.core.option.HostedOptionKey;
+import com.oracle.svm.core.option.RuntimeOptionKey;
+
+public class SamplerOptions {
+    @Option(help = "Include support for sampling the Java stacks of threads that consume CPU time.", type = OptionType.User)//
+    public static final HostedOptionKey<Boolean> AllowExecutionSampling = new HostedOptionKey<>(false);
+
+    @Option(help = "Sample execution from startup until the isolate is torn down and write the aggregated stacks to the given file. Requires -H:+AllowExecutionSampling.", type = OptionType.User)//
+    public static final RuntimeOptionKey<String> ExecutionSamplingFile = new RuntimeOptionKey<>("");
+
+    @Option(help = "Interval in milliseconds of consumed CPU time between two samples.", type = OptionType.User)//
+    public static final RuntimeOptionKey<Long> ExecutionSamplingInterval = new RuntimeOptionKey<>(10L);
+
+    @Option(help = "Maximum number of frames recorded per sample.")//
+    public static final RuntimeOptionKey<Integer> ExecutionSamplingMaxDepth = new RuntimeOptionKey<>(64);
+
+    @Option(help = "Size in bytes of the buffer into which the samples of each thread are recorded.")//
+    public static final RuntimeOptionKey<Long> ExecutionSamplingThreadBufferSize = new RuntimeOptionKey<>(128L * 1024L);
+
+    @Option(help = "Interval in milliseconds at which the sample buffers of all threads are aggregated.")//
+    public static final RuntimeOptionKey<Long> ExecutionSamplingFlushInterval = new RuntimeOptionKey<>(1000L);
+
+    @Option(help = "Print the number of samples and the time spent taking them when sampling ends.")//
+    public static final RuntimeOptionKey<Boolean> PrintExecutionSamplingStatistics = new RuntimeOptionKey<>(false);
+}
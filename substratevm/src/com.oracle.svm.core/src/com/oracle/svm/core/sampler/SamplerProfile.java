@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.sampler;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.graalvm.nativeimage.c.function.CodePointer;
+import org.graalvm.word.Pointer;
+import org.graalvm.word.WordFactory;
+
+import com.oracle.svm.core.FrameAccess;
+import com.oracle.svm.core.code.CodeInfo;
+import com.oracle.svm.core.code.CodeInfoAccess;
+import com.oracle.svm.core.code.CodeInfoTable;
+import com.oracle.svm.core.c.NonmovableObjectArray;
+import com.oracle.svm.core.code.FrameInfoDecoder.FrameInfoQueryResultAllocator;
+import com.oracle.svm.core.code.FrameInfoDecoder.ValueInfoAllocator;
+import com.oracle.svm.core.code.FrameInfoQueryResult;
+import com.oracle.svm.core.code.FrameInfoQueryResult.ValueInfo;
+import com.oracle.svm.core.code.ReusableTypeReader;
+
+/**
+ * Aggregates the samples of all threads by stack and writes them in the collapsed stack format,
+ * i.e., one line per distinct stack with the frames from the outermost to the innermost separated
+ * by semicolons, followed by the number of samples. This format is understood by common flame
+ * graph tools.
+ */
+final class SamplerProfile {
+
+    private static final String NATIVE_CODE_FRAME = "[native code]";
+
+    private static final class StackTrace {
+        /** The instruction pointers, starting with the top frame. */
+        final long[] ips;
+        final int hashCode;
+        long count;
+
+        StackTrace(long[] ips) {
+            this.ips = ips;
+            this.hashCode = Arrays.hashCode(ips);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof StackTrace && Arrays.equals(ips, ((StackTrace) obj).ips);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class FrameInfoAllocator implements FrameInfoQueryResultAllocator {
+        static final FrameInfoAllocator INSTANCE = new FrameInfoAllocator();
+
+        @Override
+        public FrameInfoQueryResult newFrameInfoQueryResult() {
+            return new FrameInfoQueryResult();
+        }
+    }
+
+    /** Only the source positions are needed, so no values are decoded. */
+    private static final class NoValueInfoAllocator implements ValueInfoAllocator {
+        static final NoValueInfoAllocator INSTANCE = new NoValueInfoAllocator();
+
+        @Override
+        public ValueInfo newValueInfo() {
+            return null;
+        }
+
+        @Override
+        public ValueInfo[] newValueInfoArray(int len) {
+            return null;
+        }
+
+        @Override
+        public ValueInfo[][] newValueInfoArrayArray(int len) {
+            return null;
+        }
+
+        @Override
+        public void decodeConstant(ValueInfo valueInfo, NonmovableObjectArray<?> frameInfoObjectConstants) {
+        }
+    }
+
+    private final Map<StackTrace, StackTrace> stackTraces = new HashMap<>();
+    private final ReusableTypeReader frameInfoReader = new ReusableTypeReader();
+    /** The resolved frames of instruction pointers of top frames, which need not be call sites. */
+    private final Map<Long, String> topFrames = new HashMap<>();
+    /** The resolved frames of return addresses. */
+    private final Map<Long, String> callerFrames = new HashMap<>();
+
+    /** Adds the samples in the range {@code [start, end)} of a {@link SamplerBuffer}. */
+    void addSamples(Pointer start, Pointer end) {
+        int wordSize = FrameAccess.wordSize();
+        Pointer pos = start;
+        while (pos.belowThan(end)) {
+            int depth = (int) pos.readLong(0);
+            pos = pos.add(wordSize);
+            long[] ips = new long[depth];
+            for (int i = 0; i < depth; i++) {
+                ips[i] = pos.readLong(i * wordSize);
+            }
+            pos = pos.add(depth * wordSize);
+
+            StackTrace stackTrace = new StackTrace(ips);
+            StackTrace existing = stackTraces.putIfAbsent(stackTrace, stackTrace);
+            (existing != null ? existing : stackTrace).count++;
+        }
+    }
+
+    void write(String path) throws IOException {
+        List<StackTrace> sorted = new ArrayList<>(stackTraces.values());
+        sorted.sort((a, b) -> Long.compare(b.count, a.count));
+
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(path))) {
+            StringBuilder line = new StringBuilder();
+            for (StackTrace stackTrace : sorted) {
+                line.setLength(0);
+                for (int i = stackTrace.ips.length - 1; i >= 0; i--) {
+                    String frames = i == 0 ? resolveTopFrame(stackTrace.ips[i]) : resolveCallerFrame(stackTrace.ips[i]);
+                    if (line.length() > 0) {
+                        line.append(';');
+                    }
+                    line.append(frames);
+                }
+                line.append(' ').append(stackTrace.count);
+                writer.write(line.toString());
+                writer.newLine();
+            }
+        }
+    }
+
+    private String resolveTopFrame(long ip) {
+        if (ip == SamplerStackWalker.NATIVE_CODE_IP) {
+            return NATIVE_CODE_FRAME;
+        }
+        return topFrames.computeIfAbsent(ip, key -> resolve(key, true));
+    }
+
+    private String resolveCallerFrame(long ip) {
+        return callerFrames.computeIfAbsent(ip, key -> resolve(key, false));
+    }
+
+    /**
+     * Resolves an instruction pointer to its Java frames, including the frames of inlined methods,
+     * from the outermost to the innermost frame.
+     */
+    private String resolve(long rawIP, boolean isTopFrame) {
+        CodeInfo info = CodeInfoTable.getImageCodeInfo();
+        CodePointer ip = WordFactory.pointer(rawIP);
+        frameInfoReader.reset();
+        long entryOffset = isTopFrame ? CodeInfoAccess.initNearestFrameInfoReader(info, ip, frameInfoReader) : CodeInfoAccess.initFrameInfoReader(info, ip, frameInfoReader);
+        FrameInfoQueryResult frameInfo = null;
+        if (entryOffset >= 0) {
+            frameInfo = CodeInfoAccess.nextFrameInfo(info, entryOffset, frameInfoReader, FrameInfoAllocator.INSTANCE, NoValueInfoAllocator.INSTANCE, true);
+        }
+        if (frameInfo == null || frameInfo.getSourceClass() == null) {
+            return "0x" + Long.toHexString(rawIP);
+        }
+
+        List<String> names = new ArrayList<>();
+        for (FrameInfoQueryResult cur = frameInfo; cur != null; cur = cur.getCaller()) {
+            names.add(cur.getSourceClassName() + "." + cur.getSourceMethodName());
+        }
+        StringBuilder result = new StringBuilder();
+        for (int i = names.size() - 1; i >= 0; i--) {
+            result.append(names.get(i));
+            if (i > 0) {
+                result.append(';');
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.sampler;
+
+import org.graalvm.nativeimage.StackValue;
+import org.graalvm.nativeimage.c.function.CodePointer;
+import org.graalvm.word.Pointer;
+import org.graalvm.word.UnsignedWord;
+import org.graalvm.word.WordFactory;
+
+import com.oracle.svm.core.FrameAccess;
+import com.oracle.svm.core.annotate.Uninterruptible;
+import com.oracle.svm.core.code.CodeInfo;
+import com.oracle.svm.core.code.CodeInfoAccess;
+import com.oracle.svm.core.code.CodeInfoQueryResult;
+import com.oracle.svm.core.code.CodeInfoTable;
+import com.oracle.svm.core.code.SimpleCodeInfoQueryResult;
+import com.oracle.svm.core.stack.JavaFrameAnchor;
+import com.oracle.svm.core.stack.JavaFrameAnchors;
+import com.oracle.svm.core.stack.JavaStackWalker;
+import com.oracle.svm.core.thread.VMThreads;
+import com.oracle.svm.core.thread.VMThreads.StatusSupport;
+
+/**
+ * Walks the stack of the current thread from an arbitrary instruction, as seen by a signal handler,
+ * and records the instruction pointers of the frames. Unlike the {@link JavaStackWalker}, it does
+ * not expect the stack to be walkable: the walk ends at the first frame that is not in image code or
+ * whose caller would not be between the frame and the {@link VMThreads.StackBase stack base}, and
+ * the top frame may be misattributed when the thread is interrupted in a method prologue or
+ * epilogue. Only the instruction pointers are recorded; they are resolved to Java frames, including
+ * inlined ones, when the samples are aggregated.
+ */
+final class SamplerStackWalker {
+
+    /** Recorded as the top frame of a sample that was taken while the thread was in native code. */
+    static final long NATIVE_CODE_IP = 0;
+
+    private SamplerStackWalker() {
+    }
+
+    /**
+     * Records at most {@code maxDepth} instruction pointers, starting at {@code buffer}.
+     *
+     * @return the number of recorded frames
+     */
+    @Uninterruptible(reason = "Called from a signal handler.")
+    static int walk(Pointer startSP, CodePointer startIP, Pointer buffer, int maxDepth) {
+        CodeInfo imageCodeInfo = CodeInfoTable.getImageCodeInfo();
+        Pointer sp = startSP;
+        CodePointer ip = startIP;
+        JavaFrameAnchor anchor = JavaFrameAnchors.getFrameAnchor();
+        UnsignedWord stackBase = VMThreads.StackBase.get();
+        int depth = 0;
+
+        if (!CodeInfoAccess.contains(imageCodeInfo, ip)) {
+            buffer.writeLong(0, NATIVE_CODE_IP);
+            depth++;
+            if (!StatusSupport.isStatusNativeOrSafepoint() || anchor.isNull()) {
+                /* The frame anchor, if any, does not describe the frames of the native code. */
+                return depth;
+            }
+            sp = anchor.getLastJavaSP();
+            ip = anchor.getLastJavaIP();
+            anchor = anchor.getPreviousAnchor();
+        }
+
+        while (depth < maxDepth && CodeInfoAccess.contains(imageCodeInfo, ip)) {
+            buffer.writeWord(depth * FrameAccess.wordSize(), ip);
+            depth++;
+
+            long encodedFrameSize = lookupEncodedFrameSize(imageCodeInfo, ip);
+            Pointer callerSP;
+            if (!CodeInfoQueryResult.isEntryPoint(encodedFrameSize)) {
+                long totalFrameSize = CodeInfoQueryResult.getTotalFrameSize(encodedFrameSize);
+                if (totalFrameSize <= 0 || totalFrameSize % FrameAccess.wordSize() != 0) {
+                    /* No valid frame information, e.g., because the IP is in a stub. */
+                    break;
+                }
+                callerSP = sp.add(WordFactory.unsigned(totalFrameSize));
+                if (!isValidCallerSP(sp, callerSP, stackBase)) {
+                    break;
+                }
+                ip = FrameAccess.singleton().readReturnAddress(callerSP);
+            } else {
+                /* Continue with the Java frames that called the native code that called us. */
+                while (anchor.isNonNull() && anchor.getLastJavaSP().belowOrEqual(sp)) {
+                    anchor = anchor.getPreviousAnchor();
+                }
+                if (anchor.isNull()) {
+                    break;
+                }
+                callerSP = anchor.getLastJavaSP();
+                if (!isValidCallerSP(sp, callerSP, stackBase)) {
+                    break;
+                }
+                ip = anchor.getLastJavaIP();
+                anchor = anchor.getPreviousAnchor();
+            }
+            sp = callerSP;
+        }
+        return depth;
+    }
+
+    /**
+     * Checks that the caller frame is above the current frame and that its return address is on the
+     * stack. If it is not, the stack is not walkable, e.g., because the top frame is not yet set up.
+     */
+    @Uninterruptible(reason = "Called from a signal handler.", mayBeInlined = true)
+    private static boolean isValidCallerSP(Pointer sp, Pointer callerSP, UnsignedWord stackBase) {
+        return callerSP.aboveThan(sp) && (stackBase.equal(0) || callerSP.belowOrEqual(stackBase));
+    }
+
+    @Uninterruptible(reason = "Wrap call to code that is not annotated but does not allocate or block.", calleeMustBe = false)
+    private static long lookupEncodedFrameSize(CodeInfo imageCodeInfo, CodePointer ip) {
+        SimpleCodeInfoQueryResult queryResult = StackValue.get(SimpleCodeInfoQueryResult.class);
+        CodeInfoAccess.lookupCodeInfo(imageCodeInfo, CodeInfoAccess.relativeIP(imageCodeInfo, ip), queryResult);
+        return queryResult.getEncodedFrameSize();
+    }
+}
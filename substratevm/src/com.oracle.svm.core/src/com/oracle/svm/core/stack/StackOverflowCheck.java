@@ -89,6 +89,10 @@ public interface StackOverflowCheck {
     interface OSSupport {
         @Uninterruptible(reason = "Called while thread is being attached to the VM, i.e., when the thread state is not yet set up.")
         UnsignedWord lookupStackEnd();
+
+        /** Returns the start of the stack, i.e., the address above the highest stack slot. */
+        @Uninterruptible(reason = "Called while thread is being attached to the VM, i.e., when the thread state is not yet set up.")
+        UnsignedWord lookupStackBase();
     }
 
     @Fold
@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.core.thread;
+
+import org.graalvm.compiler.options.Option;
+import org.graalvm.nativeimage.CurrentIsolate;
+import org.graalvm.nativeimage.IsolateThread;
+import org.graalvm.word.WordFactory;
+
+import com.oracle.svm.core.SubstrateOptions;
+import com.oracle.svm.core.annotate.RestrictHeapAccess;
+import com.oracle.svm.core.annotate.Uninterruptible;
+import com.oracle.svm.core.jdk.InternalVMMethod;
+import com.oracle.svm.core.jdk.UninterruptibleUtils;
+import com.oracle.svm.core.option.RuntimeOptionKey;
+import com.oracle.svm.core.thread.VMThreads.StatusSupport;
+import com.oracle.svm.core.threadlocal.FastThreadLocalFactory;
+import com.oracle.svm.core.threadlocal.FastThreadLocalInt;
+import com.oracle.svm.core.threadlocal.FastThreadLocalObject;
+import com.oracle.svm.core.util.TimeUtils;
+
+/**
+ * Thread-local handshakes: an {@link Operation} that only needs a single thread is executed by that
+ * thread itself at its next safepoint check, while all other threads continue to run. This avoids a
+ * global safepoint for operations such as walking the stack of one particular thread.
+ * <p>
+ * The requesting thread installs the operation in the target thread and forces the target thread
+ * into the safepoint slow path, see {@link Safepoint#requestSlowPath}. The target thread then
+ * executes the operation in {@link #onSafepointCheckSlowpath()}, or when it transitions from native
+ * or VM code back to Java code.
+ * <p>
+ * If the target thread is in native code when the operation is requested, e.g., because it is
+ * blocked, the requesting thread freezes it in place: it changes the status of the target thread
+ * from native to safepoint, just like the {@link Safepoint.Master} does, so that the target thread
+ * cannot return to Java code. The requesting thread then executes the operation on behalf of the
+ * target thread and releases it again. A global safepoint that starts in the meantime leaves the
+ * frozen thread alone.
+ * <p>
+ * If the target thread does not reach a safepoint check within
+ * {@link Options#HandshakeTimeoutMillis}, the requesting thread cancels the operation and falls
+ * back to a VM operation at a global safepoint, which executes the operation on behalf of the
+ * target thread. The target thread and the requesting thread race for the operation: either the
+ * target thread claims it first, and the requesting thread waits until it is completed, or the
+ * requesting thread cancels it first, and the target thread skips it. Either way, an operation is
+ * executed exactly once, and it is completed when {@link #execute} returns.
+ */
+@InternalVMMethod
+public final class Handshake {
+
+    public static class Options {
+        @Option(help = "Use thread-local handshakes for operations that only need a single thread, instead of a global safepoint.")//
+        public static final RuntimeOptionKey<Boolean> UseThreadLocalHandshakes = new RuntimeOptionKey<>(true);
+
+        @Option(help = "Number of milliseconds to wait for the target thread of a handshake before falling back to a global safepoint.")//
+        public static final RuntimeOptionKey<Long> HandshakeTimeoutMillis = new RuntimeOptionKey<>(1L);
+    }
+
+    /** An operation that is executed for a single thread. */
+    @InternalVMMethod
+    public abstract static class Operation {
+        private static final int PENDING = 0;
+        private static final int RUNNING = 1;
+        private static final int FINISHED = 2;
+        private static final int CANCELLED = 3;
+
+        private final String name;
+        private final UninterruptibleUtils.AtomicInteger state = new UninterruptibleUtils.AtomicInteger(PENDING);
+        private Throwable failure;
+        private long requestNanos;
+        private long startNanos;
+        /** The target thread if the requesting thread has frozen it in native code. */
+        private IsolateThread frozenThread;
+
+        protected Operation(String name) {
+            this.name = name;
+        }
+
+        public final String getName() {
+            return name;
+        }
+
+        /**
+         * Executes the operation for the given thread. This method is called either by
+         * {@code thread} itself, or by the VM operation thread at a safepoint while {@code thread}
+         * is stopped. Implementations must therefore not assume that {@code thread} is the current
+         * thread.
+         */
+        protected abstract void execute(IsolateThread thread);
+
+        /** Returns true if the operation was executed, false if the target thread had exited. */
+        public final boolean wasExecuted() {
+            return state.get() == FINISHED;
+        }
+
+        /** Returns the time from the request until the execution of the operation started. */
+        public final long getTimeToStartNanos() {
+            return wasExecuted() ? startNanos - requestNanos : -1;
+        }
+
+        @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+        boolean claim() {
+            return state.compareAndSet(PENDING, RUNNING);
+        }
+
+        /**
+         * Prevents the target thread from claiming the operation. Returns false if the target thread
+         * has already claimed it.
+         */
+        boolean cancel() {
+            return state.compareAndSet(PENDING, CANCELLED);
+        }
+
+        /** Claims a cancelled operation for the execution at a safepoint. */
+        boolean claimCancelled() {
+            return state.compareAndSet(CANCELLED, RUNNING);
+        }
+
+        boolean isPending() {
+            return state.get() == PENDING;
+        }
+
+        boolean isDone() {
+            int value = state.get();
+            return value == FINISHED || value == CANCELLED;
+        }
+
+        void run(IsolateThread thread) {
+            assert state.get() == RUNNING;
+            startNanos = System.nanoTime();
+            try {
+                execute(thread);
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                state.set(FINISHED);
+            }
+        }
+
+        void rethrowFailure() {
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure != null) {
+                throw new RuntimeException(failure);
+            }
+        }
+    }
+
+    /** The operation that a thread must execute at its next safepoint check, if any. */
+    private static final FastThreadLocalObject<Operation> pendingOperation = FastThreadLocalFactory.createObject(Operation.class);
+    /** Non-zero while the thread is frozen in native code for a handshake. */
+    private static final FastThreadLocalInt frozen = FastThreadLocalFactory.createInt();
+
+    private static final int INSTALLED = 0;
+    private static final int NOT_INSTALLED = 1;
+    private static final int BUSY = 2;
+    private static final int FROZEN = 3;
+
+    private static final int BY_TARGET = 0;
+    private static final int BY_REQUESTER = 1;
+    private static final int AT_SAFEPOINT = 2;
+
+    private Handshake() {
+    }
+
+    /**
+     * Executes the operation for the given Java thread and blocks until it is completed. If the
+     * thread is not alive, the operation is not executed, see {@link Operation#wasExecuted()}.
+     */
+    public static void execute(Thread thread, Operation operation) {
+        operation.requestNanos = System.nanoTime();
+        if (thread == Thread.currentThread()) {
+            operation.claim();
+            operation.run(CurrentIsolate.getCurrentThread());
+            operation.rethrowFailure();
+            return;
+        }
+
+        int executedBy = AT_SAFEPOINT;
+        if (SubstrateOptions.MultiThreaded.getValue() && Options.UseThreadLocalHandshakes.getValue()) {
+            int result;
+            while ((result = install(thread, operation)) == BUSY) {
+                /* Another handshake for the same thread is in progress. */
+                Thread.yield();
+            }
+            if (result == INSTALLED && awaitTarget(operation, operation.requestNanos)) {
+                executedBy = BY_TARGET;
+            } else if (result == FROZEN) {
+                executeForFrozenThread(operation);
+                executedBy = BY_REQUESTER;
+            }
+        }
+        if (executedBy == AT_SAFEPOINT) {
+            if (operation.cancel()) {
+                executeAtSafepoint(thread, operation);
+            } else {
+                /* The target thread claimed the operation after the timeout. */
+                awaitCompletion(operation);
+                executedBy = BY_TARGET;
+            }
+        }
+        Statistics.record(executedBy, TimeUtils.nanoSecondsSince(operation.requestNanos));
+        operation.rethrowFailure();
+    }
+
+    /**
+     * Installs the operation in the target thread, or freezes the target thread if it is in native
+     * code. Holding {@link VMThreads#THREAD_MUTEX} ensures that the target thread cannot exit and
+     * that no global safepoint is in progress.
+     */
+    private static int install(Thread thread, Operation operation) {
+        VMThreads.lockThreadMutex();
+        try {
+            return installLocked(thread, operation);
+        } finally {
+            VMThreads.THREAD_MUTEX.unlock();
+        }
+    }
+
+    @Uninterruptible(reason = "Called with the THREAD_MUTEX held.")
+    private static int installLocked(Thread thread, Operation operation) {
+        for (IsolateThread vmThread = VMThreads.firstThread(); vmThread.isNonNull(); vmThread = VMThreads.nextThread(vmThread)) {
+            if (JavaThreads.currentThread.get(vmThread) != thread) {
+                continue;
+            }
+            if (StatusSupport.isStatusIgnoreSafepoints(vmThread)) {
+                /* The thread is exiting. */
+                return NOT_INSTALLED;
+            }
+            int status = StatusSupport.getStatusVolatile(vmThread);
+            if (status == StatusSupport.STATUS_IN_NATIVE) {
+                /*
+                 * The thread would not reach a safepoint check soon. If it returns to Java code in
+                 * the meantime, the compare-and-swap fails and the operation is installed instead.
+                 * A thread that waits for the THREAD_MUTEX will return to Java code as soon as we
+                 * release it, so we retry.
+                 */
+                if (frozen.get(vmThread) == 0 && !VMThreads.isLockingThreadMutex(vmThread) && StatusSupport.compareAndSetNativeToSafepoint(vmThread)) {
+                    frozen.set(vmThread, 1);
+                    operation.frozenThread = vmThread;
+                    return FROZEN;
+                }
+                return BUSY;
+            }
+            if (status != StatusSupport.STATUS_IN_JAVA && status != StatusSupport.STATUS_IN_VM) {
+                return NOT_INSTALLED;
+            }
+            if (!pendingOperation.compareAndSet(vmThread, null, operation)) {
+                return BUSY;
+            }
+            Safepoint.requestSlowPath(vmThread);
+            return INSTALLED;
+        }
+        return NOT_INSTALLED;
+    }
+
+    /** Returns true if the target thread executed the operation. */
+    private static boolean awaitTarget(Operation operation, long startNanos) {
+        long timeoutNanos = TimeUtils.millisToNanos(Options.HandshakeTimeoutMillis.getValue());
+        while (!operation.isDone()) {
+            if (operation.isPending() && TimeUtils.nanoSecondsSince(startNanos) > timeoutNanos) {
+                return false;
+            }
+            Thread.yield();
+        }
+        return true;
+    }
+
+    /**
+     * Executes the operation on behalf of the frozen target thread. The operation may allocate and
+     * cause a GC: the global safepoint treats the frozen thread like a thread stopped at a safepoint
+     * and leaves it frozen.
+     */
+    private static void executeForFrozenThread(Operation operation) {
+        IsolateThread vmThread = operation.frozenThread;
+        try {
+            if (operation.claim()) {
+                operation.run(vmThread);
+            }
+        } finally {
+            operation.frozenThread = WordFactory.nullPointer();
+            /* Releasing the thread during a global safepoint would let it run, so wait for its end. */
+            VMThreads.lockThreadMutex();
+            try {
+                thawLocked(vmThread);
+            } finally {
+                VMThreads.THREAD_MUTEX.unlock();
+            }
+        }
+    }
+
+    @Uninterruptible(reason = "Called with the THREAD_MUTEX held.")
+    private static void thawLocked(IsolateThread vmThread) {
+        frozen.set(vmThread, 0);
+        StatusSupport.setStatusNative(vmThread);
+    }
+
+    /**
+     * Returns true if the thread is frozen in native code for a handshake, so that it must stay in
+     * the safepoint status even when a global safepoint ends.
+     */
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static boolean isFrozen(IsolateThread vmThread) {
+        return frozen.getVolatile(vmThread) != 0;
+    }
+
+    private static void awaitCompletion(Operation operation) {
+        while (!operation.isDone()) {
+            Thread.yield();
+        }
+    }
+
+    /** Executes an operation that the requesting thread has cancelled in the target thread. */
+    private static void executeAtSafepoint(Thread thread, Operation operation) {
+        JavaVMOperation.enqueueBlockingSafepoint(operation.getName(), () -> {
+            for (IsolateThread vmThread = VMThreads.firstThread(); vmThread.isNonNull(); vmThread = VMThreads.nextThread(vmThread)) {
+                if (JavaThreads.fromVMThread(vmThread) == thread) {
+                    pendingOperation.compareAndSet(vmThread, operation, null);
+                    if (operation.claimCancelled()) {
+                        operation.run(vmThread);
+                    }
+                    return;
+                }
+            }
+            /* The thread exited, so the operation stays cancelled and is not executed. */
+        });
+        assert operation.isDone();
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static boolean isPending() {
+        return pendingOperation.get() != null;
+    }
+
+    /**
+     * Executes a pending operation of the current thread. Called from the safepoint slow path after
+     * the thread is in Java state.
+     */
+    @Uninterruptible(reason = "Must not contain safepoint checks.")
+    static void onSafepointCheckSlowpath() {
+        assert StatusSupport.isStatusJava() : "must only be executed when the thread is in Java state";
+        Operation operation = pendingOperation.get();
+        if (operation == null || VMOperation.isInProgress() || VMThreads.THREAD_MUTEX.isOwner()) {
+            /*
+             * Operations may allocate, so they must neither run within a VM operation nor while
+             * holding the THREAD_MUTEX. The requesting thread will eventually execute the operation
+             * at a safepoint instead.
+             */
+            return;
+        }
+        pendingOperation.set(null);
+        if (operation.claim()) {
+            runOperation(operation);
+        }
+    }
+
+    /**
+     * Separate method to invoke {@link Operation#run} so that {@link #onSafepointCheckSlowpath()}
+     * can be strictly {@link Uninterruptible} and allocation-free.
+     */
+    @Uninterruptible(reason = "Required by caller, but does not apply to callee.", calleeMustBe = false)
+    @RestrictHeapAccess(reason = "Callee may allocate", access = RestrictHeapAccess.Access.UNRESTRICTED, overridesCallers = true)
+    private static void runOperation(Operation operation) {
+        operation.run(CurrentIsolate.getCurrentThread());
+    }
+
+    /** Statistics about handshakes, e.g., for measuring the latency of single-thread operations. */
+    public static final class Statistics {
+        private static final UninterruptibleUtils.AtomicLong executedByTarget = new UninterruptibleUtils.AtomicLong(0);
+        private static final UninterruptibleUtils.AtomicLong executedByRequester = new UninterruptibleUtils.AtomicLong(0);
+        private static final UninterruptibleUtils.AtomicLong executedAtSafepoint = new UninterruptibleUtils.AtomicLong(0);
+        private static final UninterruptibleUtils.AtomicLong totalNanos = new UninterruptibleUtils.AtomicLong(0);
+
+        private Statistics() {
+            // All static: no instances.
+        }
+
+        static void record(int executedBy, long nanos) {
+            if (executedBy == BY_TARGET) {
+                executedByTarget.incrementAndGet();
+            } else if (executedBy == BY_REQUESTER) {
+                executedByRequester.incrementAndGet();
+            } else {
+                executedAtSafepoint.incrementAndGet();
+            }
+            totalNanos.addAndGet(nanos);
+        }
+
+        /** The number of handshakes that were executed by the target thread itself. */
+        public static long getExecutedByTarget() {
+            return executedByTarget.get();
+        }
+
+        /** The number of handshakes that the requesting thread executed for a frozen thread. */
+        public static long getExecutedByRequester() {
+            return executedByRequester.get();
+        }
+
+        /** The number of handshakes that fell back to a global safepoint. */
+        public static long getExecutedAtSafepoint() {
+            return executedAtSafepoint.get();
+        }
+
+        /** The accumulated time that requesting threads waited for handshakes to complete. */
+        public static long getTotalNanos() {
+            return totalNanos.get();
+        }
+    }
+}
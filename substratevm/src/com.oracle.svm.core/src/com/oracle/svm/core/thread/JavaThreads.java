@@ -29,6 +29,7 @@ import static com.oracle.svm.core.snippets.KnownIntrinsics.readCallerStackPointe
 
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -59,10 +60,12 @@ import com.oracle.svm.core.annotate.Uninterruptible;
 import com.oracle.svm.core.heap.Heap;
 import com.oracle.svm.core.heap.ReferenceHandler;
 import com.oracle.svm.core.heap.ReferenceHandlerThreadFeature;
+import com.oracle.svm.core.jdk.InternalVMMethod;
 import com.oracle.svm.core.jdk.StackTraceUtils;
 import com.oracle.svm.core.jdk.UninterruptibleUtils;
 import com.oracle.svm.core.jdk.UninterruptibleUtils.AtomicReference;
 import com.oracle.svm.core.jdk.management.ManagementSupport;
+import com.oracle.svm.core.jfr.JfrEvents;
 import com.oracle.svm.core.locks.VMMutex;
 import com.oracle.svm.core.log.Log;
 import com.oracle.svm.core.monitor.MonitorSupport;
@@ -192,6 +195,16 @@ public abstract class JavaThreads {
         return currentThread.get(vmThread);
     }
 
+    /**
+     * Returns the {@link Thread} object for the current thread, or null in the very early
+     * initialization stages of a newly attached thread. Unlike {@link Thread#currentThread()}, this
+     * method can be inlined into snippets.
+     */
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    public static Thread currentJavaThread() {
+        return currentThread.get();
+    }
+
     @SuppressFBWarnings(value = "BC", justification = "Cast for @TargetClass")
     static Target_java_lang_ThreadGroup toTarget(ThreadGroup threadGroup) {
         return Target_java_lang_ThreadGroup.class.cast(threadGroup);
@@ -506,6 +519,7 @@ public abstract class JavaThreads {
 
         singleton().beforeThreadRun(thread);
         ManagementSupport.getSingleton().noteThreadStart(thread);
+        JfrEvents.emitThreadStart(thread);
 
         try {
             if (VMThreads.isTearingDown()) {
@@ -523,6 +537,7 @@ public abstract class JavaThreads {
         } finally {
             exit(thread);
             ManagementSupport.getSingleton().noteThreadFinish(thread);
+            JfrEvents.emitThreadEnd(thread);
         }
     }
 
@@ -559,16 +574,37 @@ public abstract class JavaThreads {
             return StackTraceUtils.getStackTrace(false, KnownIntrinsics.readCallerStackPointer());
         }
 
-        StackTraceElement[][] result = new StackTraceElement[1][0];
-        JavaVMOperation.enqueueBlockingSafepoint("getStackTrace", () -> {
-            for (IsolateThread cur = VMThreads.firstThread(); cur.isNonNull(); cur = VMThreads.nextThread(cur)) {
-                if (JavaThreads.fromVMThread(cur) == thread) {
-                    result[0] = getStackTrace(cur);
-                    break;
+        /* Only the target thread needs to be stopped, so a handshake suffices. */
+        GetStackTraceOperation operation = new GetStackTraceOperation();
+        Handshake.execute(thread, operation);
+        return operation.result;
+    }
+
+    @InternalVMMethod
+    private static final class GetStackTraceOperation extends Handshake.Operation {
+        StackTraceElement[] result = new StackTraceElement[0];
+
+        GetStackTraceOperation() {
+            super("getStackTrace");
+        }
+
+        @Override
+        protected void execute(IsolateThread thread) {
+            StackTraceElement[] trace = getStackTrace(thread);
+            if (thread == CurrentIsolate.getCurrentThread()) {
+                /*
+                 * The target thread executes the operation in the safepoint slow path, which was
+                 * entered from the frame where the thread was interrupted. The slow path frames
+                 * must not show up in the stack trace, so it starts at that frame.
+                 */
+                int start = 0;
+                while (start < trace.length && trace[start].getClassName().equals(Safepoint.class.getName())) {
+                    start++;
                 }
+                trace = Arrays.copyOfRange(trace, start, trace.length);
             }
-        });
-        return result[0];
+            result = trace;
+        }
     }
 
     static Map<Thread, StackTraceElement[]> getAllStackTraces() {
@@ -781,7 +817,7 @@ public abstract class JavaThreads {
         @Override
         public void operate() {
             list.clear();
-            VMMutex lock = VMThreads.THREAD_MUTEX.lock();
+            VMMutex lock = VMThreads.lockThreadMutex();
             try {
                 for (IsolateThread isolateThread = VMThreads.firstThread(); isolateThread.isNonNull(); isolateThread = VMThreads.nextThread(isolateThread)) {
                     if (isApplicationThread(isolateThread)) {
@@ -822,7 +858,7 @@ public abstract class JavaThreads {
         public void operate() {
             int attachedCount = 0;
             int unattachedStartedCount;
-            VMMutex lock = VMThreads.THREAD_MUTEX.lock();
+            VMMutex lock = VMThreads.lockThreadMutex();
             try {
                 for (IsolateThread isolateThread = VMThreads.firstThread(); isolateThread.isNonNull(); isolateThread = VMThreads.nextThread(isolateThread)) {
                     if (isApplicationThread(isolateThread)) {
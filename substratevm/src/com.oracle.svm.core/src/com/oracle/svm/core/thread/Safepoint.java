@@ -54,6 +54,7 @@ import com.oracle.svm.core.annotate.Uninterruptible;
 import com.oracle.svm.core.graal.nodes.KillMemoryNode;
 import com.oracle.svm.core.heap.Heap;
 import com.oracle.svm.core.jdk.UninterruptibleUtils;
+import com.oracle.svm.core.jfr.JfrEvents;
 import com.oracle.svm.core.log.Log;
 import com.oracle.svm.core.nodes.CFunctionEpilogueNode;
 import com.oracle.svm.core.nodes.CFunctionPrologueNode;
@@ -190,6 +191,7 @@ public final class Safepoint {
      * <li>to do a thread state transition from native state to Java or VM state.</li>
      * <li>to suspend the thread at a safepoint and resume execution after the safepoint.</li>
      * <li>to execute the recurring callback periodically.</li>
+     * <li>to execute a {@link Handshake handshake} operation for this thread.</li>
      * </ul>
      **/
     @Uninterruptible(reason = "Must not contain safepoint checks.")
@@ -205,15 +207,15 @@ public final class Safepoint {
                     Statistics.incFrozen();
                     freezeAtSafepoint(newStatus, callerHasJavaFrameAnchor);
                     Statistics.incThawed();
-                    VMError.guarantee(StatusSupport.getStatusVolatile() == newStatus, "Transition to the new thread status must have been successful.");
+                    VMError.guarantee(StatusSupport.getStatusVolatile() == newStatus || Handshake.isFrozen(myself), "Transition to the new thread status must have been successful.");
                 }
 
                 /*
                  * If we entered this code as slow path for a native-to-Java or native-to-VM
                  * transition and no safepoint is actually pending, we have to do the transition
                  * before continuing. However, the CAS can fail if another thread is currently
-                 * initiating a safepoint and already brought us into state IN_SAFEPOINT, in which
-                 * case we have to start over.
+                 * initiating a safepoint or a handshake and already brought us into state
+                 * IN_SAFEPOINT, in which case we have to start over.
                  */
             } while (StatusSupport.getStatusVolatile() != newStatus && !StatusSupport.compareAndSetNativeToNewStatus(newStatus));
         }
@@ -228,8 +230,9 @@ public final class Safepoint {
 
     /**
      * Slow path code run after a safepoint check or after transitioning from VM to Java state. It
-     * resets the safepoint counter, runs recurring callbacks if necessary, and executes pending
-     * {@link ActionOnTransitionToJavaSupport transition actions}.
+     * resets the safepoint counter, runs recurring callbacks if necessary, executes pending
+     * {@link ActionOnTransitionToJavaSupport transition actions}, and executes a pending
+     * {@link Handshake handshake} operation.
      */
     @Uninterruptible(reason = "Must not contain safepoint checks.")
     private static void slowPathRunJavaStateActions() {
@@ -239,6 +242,9 @@ public final class Safepoint {
             CodeSynchronizationNode.synchronizeCode();
             ActionOnTransitionToJavaSupport.clearActions();
         }
+        if (Handshake.isPending()) {
+            Handshake.onSafepointCheckSlowpath();
+        }
     }
 
     @NeverInline("Must not be inlined in a caller that has an exception handler: We only support InvokeNode and not InvokeWithExceptionNode between a CFunctionPrologueNode and CFunctionEpilogueNode")
@@ -254,6 +260,7 @@ public final class Safepoint {
              * until the safepoint had ended, i.e., until the thread state would have been set back
              * to Native anyway.
              */
+            VMThreads.beginLockingThreadMutex();
             CFunctionPrologueNode.cFunctionPrologue(StatusSupport.STATUS_IN_NATIVE);
             /*
              * Grab the safepoint mutex. This is the place where all threads line up until the
@@ -268,6 +275,7 @@ public final class Safepoint {
              * safepoint can be active.
              */
             CFunctionEpilogueNode.cFunctionEpilogue(StatusSupport.STATUS_IN_NATIVE);
+            VMThreads.endLockingThreadMutex();
 
         } else {
             /*
@@ -293,7 +301,8 @@ public final class Safepoint {
             notInlinedLockNoTransition();
 
             boolean result = StatusSupport.compareAndSetNativeToNewStatus(newStatus);
-            if (!result) {
+            if (!result && !Handshake.isFrozen(CurrentIsolate.getCurrentThread())) {
+                /* A thread frozen for a handshake stays in state IN_SAFEPOINT until it is released. */
                 throw VMError.shouldNotReachHere("Transition to the new thread status failed.");
             }
         }
@@ -359,6 +368,24 @@ public final class Safepoint {
         return safepointRequested.getVolatile(vmThread);
     }
 
+    /**
+     * Forces the given thread into the safepoint slow path at its next safepoint check by doing an
+     * atomic arithmetic negation of {@link #safepointRequested}. As a side effect, this also
+     * preserves the old value. A value that is already negative was negated by a
+     * {@linkplain Handshake handshake} request and is left unchanged.
+     */
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static void requestSlowPath(IsolateThread vmThread) {
+        if (ThreadingSupportImpl.isRecurringCallbackSupported()) {
+            int value;
+            do {
+                value = safepointRequested.getVolatile(vmThread);
+            } while (value > 0 && !safepointRequested.compareAndSet(vmThread, value, -value));
+        } else {
+            safepointRequested.setVolatile(vmThread, 0);
+        }
+    }
+
     /**
      * Returns the memory location identity for {@link #safepointRequested}.
      */
@@ -560,9 +587,10 @@ public final class Safepoint {
             /* the current thread may already own the lock for non-safepoint reasons */
             boolean lock = !VMThreads.THREAD_MUTEX.isOwner();
             if (lock) {
-                VMThreads.THREAD_MUTEX.lock();
+                VMThreads.lockThreadMutex();
             }
 
+            long startTicks = JfrEvents.ticks();
             requestingThread = CurrentIsolate.getCurrentThread();
             Statistics.reset();
             Statistics.setStartNanos();
@@ -573,6 +601,7 @@ public final class Safepoint {
             Statistics.setFrozenNanos();
             safepointState = AT_SAFEPOINT;
             safepointId = safepointId.add(1);
+            JfrEvents.emitSafepointBegin(startTicks, safepointId.rawValue());
             return lock;
         }
 
@@ -582,10 +611,12 @@ public final class Safepoint {
             assert SubstrateOptions.MultiThreaded.getValue() : "Should only thaw from a safepoint when multi-threaded.";
             assert VMOperationControl.mayExecuteVmOperations();
 
+            long startTicks = JfrEvents.ticks();
             safepointState = NOT_AT_SAFEPOINT;
             releaseSafepoints(reason);
             ImageSingletons.lookup(Heap.class).endSafepoint();
             Statistics.setThawedNanos();
+            JfrEvents.emitSafepointEnd(startTicks, safepointId.rawValue());
             requestingThread = WordFactory.nullPointer();
 
             if (unlock) {
@@ -635,16 +666,7 @@ public final class Safepoint {
          * race conditions that can't be avoided for performance reasons).
          */
         private static void requestSafepoint(IsolateThread vmThread) {
-            if (ThreadingSupportImpl.isRecurringCallbackSupported()) {
-                int value;
-                do {
-                    value = safepointRequested.getVolatile(vmThread);
-                    assert value >= 0 : "the value can only be negative if a safepoint was requested";
-                } while (!safepointRequested.compareAndSet(vmThread, value, -value));
-            } else {
-                safepointRequested.setVolatile(vmThread, 0);
-            }
-
+            requestSlowPath(vmThread);
             Statistics.incRequested();
         }
 
@@ -768,9 +790,12 @@ public final class Safepoint {
                      * Release the thread back to native code. Most threads will transition from
                      * safepoint to native; but some threads will already be in native code if they
                      * returned from native code, found the safepoint in progress and blocked on the
-                     * mutex putting themselves back in native code again.
+                     * mutex putting themselves back in native code again. A thread that is frozen
+                     * for a handshake is released by the handshake.
                      */
-                    StatusSupport.setStatusNative(vmThread);
+                    if (!Handshake.isFrozen(vmThread)) {
+                        StatusSupport.setStatusNative(vmThread);
+                    }
                     Statistics.incReleased();
                     if (trace.isEnabled()) {
                         trace.string("  ->  ").string(StatusSupport.getStatusString(vmThread)).newline();
@@ -50,8 +50,10 @@ import com.oracle.svm.core.c.function.CFunctionOptions;
 import com.oracle.svm.core.heap.Heap;
 import com.oracle.svm.core.jdk.UninterruptibleUtils;
 import com.oracle.svm.core.jdk.UninterruptibleUtils.AtomicWord;
+import com.oracle.svm.core.jfr.JfrRecorder;
 import com.oracle.svm.core.locks.VMCondition;
 import com.oracle.svm.core.locks.VMMutex;
+import com.oracle.svm.core.sampler.ExecutionSampler;
 import com.oracle.svm.core.threadlocal.FastThreadLocal;
 import com.oracle.svm.core.threadlocal.FastThreadLocalFactory;
 import com.oracle.svm.core.threadlocal.FastThreadLocalInt;
@@ -108,7 +110,43 @@ public abstract class VMThreads {
      * still holds that mutex.</li>
      * </ul>
      */
-    protected static final VMMutex THREAD_MUTEX = new VMMutex();
+    public static final VMMutex THREAD_MUTEX = new VMMutex();
+
+    /**
+     * Non-zero while the thread waits for the {@link #THREAD_MUTEX} in native code. A
+     * {@link Handshake} must not freeze such a thread: the thread would own the mutex when it
+     * returns to Java code, but the handshake needs the mutex to release the thread again.
+     */
+    private static final FastThreadLocalInt lockingThreadMutexTL = FastThreadLocalFactory.createInt();
+
+    /**
+     * Locks the {@link #THREAD_MUTEX} from Java code. The thread is in native code while it is
+     * blocked, so this method must be used instead of {@code THREAD_MUTEX.lock()}.
+     */
+    public static VMMutex lockThreadMutex() {
+        beginLockingThreadMutex();
+        try {
+            return THREAD_MUTEX.lock();
+        } finally {
+            endLockingThreadMutex();
+        }
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static void beginLockingThreadMutex() {
+        /* A counter, because a safepoint check can lock the mutex while it is being locked. */
+        lockingThreadMutexTL.setVolatile(lockingThreadMutexTL.get() + 1);
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static void endLockingThreadMutex() {
+        lockingThreadMutexTL.setVolatile(lockingThreadMutexTL.get() - 1);
+    }
+
+    @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+    static boolean isLockingThreadMutex(IsolateThread vmThread) {
+        return lockingThreadMutexTL.getVolatile(vmThread) != 0;
+    }
 
     /**
      * A condition variable for waiting for and notifying on changes to the {@link IsolateThread}
@@ -299,6 +337,9 @@ public abstract class VMThreads {
         } finally {
             VMThreads.THREAD_MUTEX.unlock();
         }
+        if (ExecutionSampler.isEnabled()) {
+            ExecutionSampler.attachThread(thread);
+        }
         return CEntryPointErrors.NO_ERROR;
     }
 
@@ -366,6 +407,12 @@ public abstract class VMThreads {
     private static void releaseThread(IsolateThread thread) {
         THREAD_MUTEX.guaranteeIsOwner("This mutex must be locked to prevent that a GC is triggered while detaching a thread from the heap");
         Heap.getHeap().detachThread(thread);
+        if (JfrRecorder.isEnabled()) {
+            JfrRecorder.detachThread(thread);
+        }
+        if (ExecutionSampler.isEnabled()) {
+            ExecutionSampler.detachThread(thread);
+        }
         singleton().freeIsolateThread(thread);
         // After that point, the freed thread must not access Object data in the Java heap.
     }
@@ -636,6 +683,7 @@ public abstract class VMThreads {
         }
 
         /** There is no unguarded change to safepoint. */
+        @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
         public static boolean compareAndSetNativeToSafepoint(IsolateThread vmThread) {
             return statusTL.compareAndSet(vmThread, STATUS_IN_NATIVE, STATUS_IN_SAFEPOINT);
         }
@@ -823,6 +871,23 @@ public abstract class VMThreads {
         }
     }
 
+    /** The start of the stack of a thread, which is above all its frames. */
+    public static class StackBase {
+
+        private static final FastThreadLocalWord<UnsignedWord> stackBaseTL = FastThreadLocalFactory.createWord();
+
+        /** Returns the stack base of the current thread, or zero if it is not known. */
+        @Uninterruptible(reason = "Called from uninterruptible code.", mayBeInlined = true)
+        public static UnsignedWord get() {
+            return stackBaseTL.get();
+        }
+
+        @Uninterruptible(reason = "Called while thread is being attached to the VM, i.e., when the thread state is not yet set up.")
+        public static void set(IsolateThread thread, UnsignedWord stackBase) {
+            stackBaseTL.set(thread, stackBase);
+        }
+    }
+
     public interface OSThreadHandle extends PointerBase {
     }
 
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.hosted.pgo;
+
+import static com.oracle.svm.core.pgo.InstrumentedImageProfiles.BRANCH;
+import static com.oracle.svm.core.pgo.InstrumentedImageProfiles.CALL;
+import static com.oracle.svm.core.pgo.InstrumentedImageProfiles.ENTRY;
+import static com.oracle.svm.core.pgo.InstrumentedImageProfiles.RECEIVER;
+import static com.oracle.svm.core.pgo.InstrumentedImageProfiles.TAKEN;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.svm.core.pgo.InstrumentedImageProfiles;
+import com.oracle.svm.core.pgo.ProfileCounters;
+import com.oracle.svm.core.util.UserError;
+import com.oracle.svm.hosted.pgo.ExecutionProfiles.MethodProfile;
+
+/**
+ * Checks that {@link ExecutionProfiles} reads the profiles in the format that
+ * {@link InstrumentedImageProfiles} writes.
+ */
+public class ExecutionProfilesTest {
+
+    private static final String METHOD = "p.C.m(int, java.lang.String):java.lang.Object";
+    private static final String BRIDGE = "p.C.m(int, java.lang.String):java.lang.String";
+
+    private static ExecutionProfiles load(String profiles) throws IOException {
+        Path file = Files.createTempFile("profiles", ".iprof");
+        try {
+            Files.write(file, profiles.getBytes(StandardCharsets.UTF_8));
+            return ExecutionProfiles.load(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void parseCounters() throws IOException {
+        ExecutionProfiles profiles = load("method " + METHOD + "\n" +
+                        "entry 10\n" +
+                        "branch 4 10\n" +
+                        "taken 4 3\n" +
+                        "call 12 7\n" +
+                        "receiver 12 p.D 5\n" +
+                        "receiver 12 p.E 2\n" +
+                        "\n" +
+                        "method " + BRIDGE + "\n" +
+                        "entry 1\n");
+
+        MethodProfile profile = profiles.lookup(METHOD);
+        Assert.assertEquals(10, profile.entryCount);
+        Assert.assertArrayEquals(new long[]{10, 3}, profile.branches.get(4));
+        Assert.assertEquals(Long.valueOf(7), profile.calls.get(12));
+        Assert.assertEquals(Long.valueOf(5), profile.receivers.get(12).get("p.D"));
+        Assert.assertEquals(Long.valueOf(2), profile.receivers.get(12).get("p.E"));
+        Assert.assertEquals("Methods that differ in the return type have separate profiles", 1, profiles.lookup(BRIDGE).entryCount);
+        Assert.assertNull(profiles.lookup("p.C.m(int, java.lang.String)"));
+    }
+
+    @Test
+    public void addRepeatedCounters() throws IOException {
+        String run = "method " + METHOD + "\nentry 2\ncall 12 3000000000\nreceiver 12 p.D 1\n";
+        MethodProfile profile = load(run + run).lookup(METHOD);
+        Assert.assertEquals(4, profile.entryCount);
+        Assert.assertEquals("Counts beyond the int range must not overflow", Long.valueOf(6_000_000_000L), profile.calls.get(12));
+        Assert.assertEquals(Long.valueOf(2), profile.receivers.get(12).get("p.D"));
+    }
+
+    @Test
+    public void rejectMalformedLines() throws IOException {
+        String[] malformed = {
+                        "entry 1\n",
+                        "method " + METHOD + "\nentry\n",
+                        "method " + METHOD + "\nentry x\n",
+                        "method " + METHOD + "\nbranch 4\n",
+                        "method " + METHOD + "\ntaken 4 3 1\n",
+                        "method " + METHOD + "\nreceiver 12 5\n",
+                        "method " + METHOD + "\nunknown 1\n",
+        };
+        for (String profiles : malformed) {
+            try {
+                load(profiles);
+                Assert.fail("Accepted malformed profiles: " + profiles);
+            } catch (UserError.UserException ex) {
+                Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("Malformed profiles file"));
+            }
+        }
+    }
+
+    @Test
+    public void writeAndRead() throws IOException {
+        InstrumentedImageProfiles written = new InstrumentedImageProfiles();
+        ProfileCounters method = written.getCounters(METHOD, () -> new String[]{ENTRY, BRANCH + " 4", TAKEN + " 4", CALL + " 12", RECEIVER + " 12 p.D", RECEIVER + " 12 p.E"});
+        long[] counts = method.getCounts();
+        counts[0] = 10;
+        counts[1] = 10;
+        counts[2] = 3;
+        counts[3] = Integer.MAX_VALUE + 1L;
+        counts[4] = Integer.MAX_VALUE + 1L;
+        ProfileCounters bridge = written.getCounters(BRIDGE, () -> new String[]{ENTRY, CALL + " 1"});
+        bridge.getCounts()[0] = 1;
+        written.getCounters("p.C.notExecuted():void", () -> new String[]{ENTRY, CALL + " 1"});
+
+        ExecutionProfiles read = load(written.computeProfiles());
+
+        MethodProfile profile = read.lookup(METHOD);
+        Assert.assertEquals(10, profile.entryCount);
+        Assert.assertArrayEquals(new long[]{10, 3}, profile.branches.get(4));
+        Assert.assertEquals(Long.valueOf(Integer.MAX_VALUE + 1L), profile.calls.get(12));
+        Assert.assertEquals(Long.valueOf(Integer.MAX_VALUE + 1L), profile.receivers.get(12).get("p.D"));
+        Assert.assertNull("Counters that are zero are not written", profile.receivers.get(12).get("p.E"));
+
+        profile = read.lookup(BRIDGE);
+        Assert.assertEquals(1, profile.entryCount);
+        Assert.assertTrue(profile.calls.isEmpty());
+
+        Assert.assertNull("Methods that were not executed are not written", read.lookup("p.C.notExecuted():void"));
+    }
+}
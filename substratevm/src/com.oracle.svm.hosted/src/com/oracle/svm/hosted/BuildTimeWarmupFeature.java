@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.hosted;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.hosted.Feature;
+import org.graalvm.nativeimage.impl.BuildTimeWarmupSupport;
+import org.graalvm.nativeimage.impl.RuntimeClassInitializationSupport;
+
+import com.oracle.svm.core.annotate.AutomaticFeature;
+import com.oracle.svm.core.util.UserError;
+
+/**
+ * Runs the warmup code registered with {@link org.graalvm.nativeimage.hosted.BuildTimeWarmup}
+ * before the static analysis, so that the objects it creates are found by the analysis like all
+ * other objects reachable from static fields. No special handling is needed for these objects: the
+ * checks for disallowed objects in the image heap, and the checks that classes registered for
+ * initialization at run time are not initialized, apply as usual.
+ */
+@AutomaticFeature
+public final class BuildTimeWarmupFeature implements Feature, BuildTimeWarmupSupport {
+
+    private static final class Warmup {
+        final Runnable action;
+        final String reason;
+
+        Warmup(Runnable action, String reason) {
+            this.action = action;
+            this.reason = reason;
+        }
+    }
+
+    private final List<Warmup> warmups = new ArrayList<>();
+    private boolean sealed;
+
+    @Override
+    public void afterRegistration(AfterRegistrationAccess access) {
+        ImageSingletons.add(BuildTimeWarmupSupport.class, this);
+    }
+
+    @Override
+    public synchronized void register(Runnable action, Class<?>[] holders, String reason) {
+        if (sealed) {
+            throw UserError.abort("Too late to register build-time warmup code (%s). Registration must happen in a Feature before or during the setup phase.", reason);
+        }
+        RuntimeClassInitializationSupport classInitialization = ImageSingletons.lookup(RuntimeClassInitializationSupport.class);
+        for (Class<?> holder : holders) {
+            classInitialization.initializeAtBuildTime(holder, reason);
+        }
+        warmups.add(new Warmup(action, reason));
+    }
+
+    @Override
+    public void beforeAnalysis(BeforeAnalysisAccess access) {
+        List<Warmup> registered;
+        synchronized (this) {
+            sealed = true;
+            registered = new ArrayList<>(warmups);
+            warmups.clear();
+        }
+        for (Warmup warmup : registered) {
+            try {
+                warmup.action.run();
+            } catch (Throwable ex) {
+                throw UserError.abort(ex, "Build-time warmup failed (%s): %s", warmup.reason, ex);
+            }
+        }
+    }
+}
@@ -54,6 +54,8 @@ import com.oracle.svm.hosted.meta.HostedField;
 import com.oracle.svm.hosted.meta.HostedInstanceClass;
 import com.oracle.svm.hosted.meta.HostedMetaAccess;
 import com.oracle.svm.hosted.meta.HostedUniverse;
+import com.oracle.svm.hosted.pgo.ExecutionProfiles;
+import com.oracle.svm.hosted.pgo.ProfiledStaticAnalysisResultsBuilder;
 
 import jdk.vm.ci.meta.JavaKind;
 
@@ -149,6 +151,9 @@ public class HostedConfiguration {
     }
 
     public StaticAnalysisResultsBuilder createStaticAnalysisResultsBuilder(BigBang bigbang, HostedUniverse universe) {
+        if (ImageSingletons.contains(ExecutionProfiles.class)) {
+            return new ProfiledStaticAnalysisResultsBuilder(bigbang, universe, ExecutionProfiles.singleton());
+        }
         return new StaticAnalysisResultsBuilder(bigbang, universe);
     }
 
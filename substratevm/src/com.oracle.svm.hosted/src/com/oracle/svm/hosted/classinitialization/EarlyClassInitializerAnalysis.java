@@ -26,6 +26,7 @@ package com.oracle.svm.hosted.classinitialization;
 
 import static org.graalvm.compiler.nodes.graphbuilderconf.InlineInvokePlugin.InlineInfo.createStandardInlineInfo;
 
+import java.util.Arrays;
 import java.util.function.Supplier;
 
 import org.graalvm.compiler.api.replacements.SnippetReflectionProvider;
@@ -53,11 +54,13 @@ import org.graalvm.compiler.phases.OptimisticOptimizations;
 import org.graalvm.compiler.phases.tiers.HighTierContext;
 import org.graalvm.compiler.phases.util.Providers;
 
+import com.oracle.svm.core.RuntimeAssertionsSupport;
 import com.oracle.svm.core.option.HostedOptionValues;
 import com.oracle.svm.core.util.VMError;
 import com.oracle.svm.hosted.c.GraalAccess;
 import com.oracle.svm.hosted.phases.EarlyConstantFoldLoadFieldPlugin;
 import com.oracle.svm.hosted.phases.NoClassInitializationPlugin;
+import com.oracle.svm.hosted.server.BuildServerCache;
 import com.oracle.svm.hosted.snippets.SubstrateGraphBuilderPlugins;
 
 import jdk.vm.ci.meta.ResolvedJavaField;
@@ -107,8 +110,22 @@ class EarlyClassInitializerAnalysis {
         context = new HighTierContext(originalProviders, null, OptimisticOptimizations.NONE);
     }
 
-    @SuppressWarnings("try")
     boolean canInitializeWithoutSideEffects(Class<?> clazz) {
+        if (BuildServerCache.isShareable(clazz)) {
+            /*
+             * The result for a JDK class does not depend on the image, apart from the assertion
+             * status that is folded into the class initializer. A build server can therefore reuse
+             * it for all subsequent builds.
+             */
+            String key = "EarlyClassInitializerAnalysis:" + clazz.getName() + ":" + Arrays.toString(RuntimeAssertionsSupport.Options.RuntimeAssertions.getValue()) + ":" +
+                            RuntimeAssertionsSupport.Options.RuntimeSystemAssertions.getValue();
+            return BuildServerCache.singleton().lookup(key, 2L * key.length(), () -> analyze(clazz));
+        }
+        return analyze(clazz);
+    }
+
+    @SuppressWarnings("try")
+    private boolean analyze(Class<?> clazz) {
         ResolvedJavaType type = originalProviders.getMetaAccess().lookupJavaType(clazz);
         assert type.getSuperclass() == null || type.getSuperclass().isInitialized() : "This analysis assumes that the superclass was successfully analyzed and initialized beforehand: " +
                         type.toJavaName(true);
@@ -139,6 +139,7 @@ import com.oracle.svm.hosted.NativeImageGenerator;
 import com.oracle.svm.hosted.NativeImageOptions;
 import com.oracle.svm.hosted.meta.HostedMethod;
 import com.oracle.svm.hosted.meta.HostedUniverse;
+import com.oracle.svm.hosted.pgo.ExecutionProfiles;
 import com.oracle.svm.hosted.phases.DevirtualizeCallsPhase;
 import com.oracle.svm.hosted.phases.HostedGraphBuilderPhase;
 import com.oracle.svm.hosted.phases.StrengthenStampsPhase;
@@ -635,6 +636,10 @@ public class CompileQueue {
         if (callee.compilationInfo.isTrivialMethod()) {
             return true;
         }
+        if (ExecutionProfiles.isHotCallSite(invoke) && callee.compilationInfo.getGraph() != null &&
+                        callee.compilationInfo.getGraph().getNodeCount() <= ExecutionProfiles.Options.MaxNodesInProfiledInlining.getValue()) {
+            return true;
+        }
         return false;
     }
 
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.hosted.diagnostic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.hosted.Feature;
+import org.graalvm.nativeimage.impl.HeapDumpSupport;
+
+import com.oracle.svm.core.VMInspection;
+import com.oracle.svm.core.annotate.AutomaticFeature;
+import com.oracle.svm.core.heapdump.HeapDumpSupportImpl;
+import com.oracle.svm.hosted.FeatureImpl.BeforeCompilationAccessImpl;
+import com.oracle.svm.hosted.meta.HostedField;
+import com.oracle.svm.hosted.meta.HostedType;
+
+import jdk.vm.ci.meta.ResolvedJavaField;
+
+/**
+ * Collects the field information that the runtime heap dump writer needs, see
+ * {@link com.oracle.svm.core.heapdump.HeapDumpMetadata}. The field locations are only known after
+ * the hosted universe has been built, so this is done before compilation.
+ */
+@AutomaticFeature
+public class HeapDumpMetadataFeature implements Feature {
+
+    @Override
+    public boolean isInConfiguration(IsInConfigurationAccess access) {
+        return VMInspection.isEnabled();
+    }
+
+    @Override
+    public void beforeCompilation(BeforeCompilationAccess a) {
+        if (!ImageSingletons.contains(HeapDumpSupport.class) || !(ImageSingletons.lookup(HeapDumpSupport.class) instanceof HeapDumpSupportImpl)) {
+            return;
+        }
+        BeforeCompilationAccessImpl access = (BeforeCompilationAccessImpl) a;
+
+        int maxTypeId = -1;
+        for (HostedType type : access.getUniverse().getTypes()) {
+            maxTypeId = Math.max(maxTypeId, type.getTypeID());
+        }
+        HostedType[] types = new HostedType[maxTypeId + 1];
+        for (HostedType type : access.getUniverse().getTypes()) {
+            types[type.getTypeID()] = type;
+        }
+
+        int[] fieldStarts = new int[types.length + 1];
+        int[] staticFieldStarts = new int[types.length];
+        List<HostedField> fields = new ArrayList<>();
+        for (int typeId = 0; typeId < types.length; typeId++) {
+            fieldStarts[typeId] = fields.size();
+            HostedType type = types[typeId];
+            if (type != null) {
+                for (HostedField field : type.getInstanceFields(false)) {
+                    if (field.hasLocation()) {
+                        fields.add(field);
+                    }
+                }
+            }
+            staticFieldStarts[typeId] = fields.size();
+            if (type != null) {
+                for (ResolvedJavaField field : type.getStaticFields()) {
+                    HostedField hostedField = (HostedField) field;
+                    if (hostedField.hasLocation()) {
+                        fields.add(hostedField);
+                    }
+                }
+            }
+        }
+        fieldStarts[types.length] = fields.size();
+
+        Map<String, Integer> nameIndices = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        int[] fieldNames = new int[fields.size()];
+        byte[] fieldKinds = new byte[fields.size()];
+        int[] fieldLocations = new int[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            HostedField field = fields.get(i);
+            fieldNames[i] = nameIndices.computeIfAbsent(field.getName(), name -> {
+                names.add(name);
+                return names.size() - 1;
+            });
+            fieldKinds[i] = (byte) field.getStorageKind().getTypeChar();
+            fieldLocations[i] = field.getLocation();
+        }
+
+        HeapDumpSupportImpl support = (HeapDumpSupportImpl) ImageSingletons.lookup(HeapDumpSupport.class);
+        support.getMetadata().setData(fieldStarts, staticFieldStarts, fieldNames, fieldKinds, fieldLocations, names.toArray(new String[0]));
+    }
+}
@@ -25,10 +25,13 @@
 package com.oracle.svm.hosted.image;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -86,16 +89,22 @@ public class LIRNativeImageCodeCache extends NativeImageCodeCache {
 
         try (Indent indent = debug.logAndIndent("layout methods")) {
 
+            MethodOrdering methodOrdering = new MethodOrdering(compilations);
+            Set<HostedMethod> hotMethods = new HashSet<>();
+            List<HostedMethod> order = methodOrdering.computeOrder(hotMethods);
+            if (!hotMethods.isEmpty()) {
+                debug.log("%s ordering: %d hot methods on %d pages, compilation order: %d pages", methodOrdering.getOrdering(), hotMethods.size(),
+                                methodOrdering.countPages(order, hotMethods), methodOrdering.countPages(new ArrayList<>(compilations.keySet()), hotMethods));
+            }
+
             // Assign a location to all methods.
             assert codeCacheSize == 0;
             HostedMethod firstMethod = null;
-            for (Entry<HostedMethod, CompilationResult> entry : compilations.entrySet()) {
-
-                HostedMethod method = entry.getKey();
+            for (HostedMethod method : order) {
                 if (firstMethod == null) {
                     firstMethod = method;
                 }
-                CompilationResult compilation = entry.getValue();
+                CompilationResult compilation = compilations.get(method);
                 compilationsByStart.put(codeCacheSize, compilation);
                 method.setCodeAddressOffset(codeCacheSize);
                 codeCacheSize = NumUtil.roundUp(codeCacheSize + compilation.getTargetCodeSize(), SubstrateOptions.codeAlignment());
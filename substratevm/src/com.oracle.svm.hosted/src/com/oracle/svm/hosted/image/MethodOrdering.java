@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.hosted.image;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.graalvm.collections.EconomicSet;
+import org.graalvm.compiler.code.CompilationResult;
+import org.graalvm.compiler.core.common.NumUtil;
+import org.graalvm.compiler.options.Option;
+import org.graalvm.nativeimage.ImageSingletons;
+
+import com.oracle.svm.core.SubstrateOptions;
+import com.oracle.svm.core.option.HostedOptionKey;
+import com.oracle.svm.core.util.UserError;
+import com.oracle.svm.hosted.NativeImageOptions;
+import com.oracle.svm.hosted.meta.HostedMethod;
+import com.oracle.svm.hosted.pgo.ExecutionProfiles;
+
+import jdk.vm.ci.code.BytecodeFrame;
+import jdk.vm.ci.code.site.Call;
+import jdk.vm.ci.code.site.Infopoint;
+
+/**
+ * Computes the order of the compiled methods in the text section of the image. By default, methods
+ * are placed in the order of the compilations map. Hot code is then scattered over the whole text
+ * section, so that more pages must be faulted in at startup and more iTLB entries are needed at run
+ * time. The other orderings place methods next to the methods that call them:
+ *
+ * <ul>
+ * <li>{@value #PROFILE} uses the profiles given by {@link ExecutionProfiles.Options#ProfilesUse}.
+ * Starting with the method that was entered most often, each method is followed by its not yet
+ * placed hot callees, ordered by the number of calls of the call site. Methods that were never
+ * entered come last, in the default order.</li>
+ * <li>{@value #CALL_GRAPH} needs no profiles. Starting at the entry points of the image, each method
+ * is followed by its not yet placed direct callees in the order of their call sites, which
+ * approximates the order in which methods are first executed at startup.</li>
+ * </ul>
+ */
+public final class MethodOrdering {
+
+    public static final String COMPILATION = "compilation";
+    public static final String CALL_GRAPH = "callgraph";
+    public static final String PROFILE = "profile";
+
+    public static class Options {
+        @Option(help = "Order of the methods in the text section: " + COMPILATION + ", " + CALL_GRAPH + ", or " + PROFILE + ". The default is " + PROFILE +
+                        " if ProfilesUse is set, and " + COMPILATION + " otherwise.")//
+        public static final HostedOptionKey<String> CodeOrdering = new HostedOptionKey<>("");
+    }
+
+    private final Map<HostedMethod, CompilationResult> compilations;
+    private final String ordering;
+
+    MethodOrdering(Map<HostedMethod, CompilationResult> compilations) {
+        this.compilations = compilations;
+        this.ordering = ordering();
+    }
+
+    private static String ordering() {
+        String value = Options.CodeOrdering.getValue();
+        if (value.isEmpty()) {
+            return ImageSingletons.contains(ExecutionProfiles.class) ? PROFILE : COMPILATION;
+        }
+        switch (value) {
+            case COMPILATION:
+            case CALL_GRAPH:
+                return value;
+            case PROFILE:
+                if (!ImageSingletons.contains(ExecutionProfiles.class)) {
+                    throw UserError.abort("CodeOrdering=%s requires profiles, which are given with ProfilesUse.", PROFILE);
+                }
+                return value;
+            default:
+                throw UserError.abort("Invalid value for CodeOrdering: %s. Valid values are %s, %s, and %s.", value, COMPILATION, CALL_GRAPH, PROFILE);
+        }
+    }
+
+    String getOrdering() {
+        return ordering;
+    }
+
+    /**
+     * Returns all compiled methods in the order in which they are placed in the text section. If the
+     * order is computed from profiles, the methods that were executed are added to the given set.
+     * The call graph ordering does not know which methods are hot, so it leaves the set empty.
+     */
+    List<HostedMethod> computeOrder(Set<HostedMethod> hotMethods) {
+        List<HostedMethod> roots;
+        Predicate<HostedMethod> followCallee;
+        Comparator<Call> callOrder;
+        switch (ordering) {
+            case PROFILE:
+                ExecutionProfiles profiles = ExecutionProfiles.singleton();
+                Map<HostedMethod, Long> entryCounts = new HashMap<>();
+                for (HostedMethod method : compilations.keySet()) {
+                    entryCounts.put(method, profiles.getEntryCount(method));
+                }
+                roots = new ArrayList<>(compilations.keySet());
+                roots.removeIf(method -> entryCounts.get(method) == 0);
+                /* The sort is stable, so methods with equal counts keep the default order. */
+                roots.sort(Comparator.comparingLong((HostedMethod method) -> entryCounts.get(method)).reversed());
+                followCallee = method -> entryCounts.getOrDefault(method, 0L) > 0;
+                callOrder = Comparator.comparingLong(MethodOrdering::callCount).reversed();
+                break;
+            case CALL_GRAPH:
+                roots = new ArrayList<>(compilations.keySet());
+                roots.removeIf(method -> !method.isEntryPoint());
+                followCallee = method -> true;
+                callOrder = Comparator.comparingInt((Call call) -> call.pcOffset);
+                break;
+            default:
+                return new ArrayList<>(compilations.keySet());
+        }
+
+        List<HostedMethod> order = new ArrayList<>(compilations.size());
+        Set<HostedMethod> placed = new HashSet<>();
+        for (HostedMethod root : roots) {
+            place(root, followCallee, callOrder, placed, order);
+        }
+        for (HostedMethod method : compilations.keySet()) {
+            if (!placed.contains(method)) {
+                order.add(method);
+            }
+        }
+        assert order.size() == compilations.size();
+        if (ordering.equals(PROFILE)) {
+            hotMethods.addAll(placed);
+        }
+        return order;
+    }
+
+    /**
+     * Places the method and then, depth first, its callees. An explicit stack is used because call
+     * chains can be deeper than the stack of the image builder.
+     */
+    private void place(HostedMethod root, Predicate<HostedMethod> followCallee, Comparator<Call> callOrder, Set<HostedMethod> placed, List<HostedMethod> order) {
+        Deque<HostedMethod> worklist = new ArrayDeque<>();
+        worklist.push(root);
+        while (!worklist.isEmpty()) {
+            HostedMethod method = worklist.pop();
+            if (!placed.add(method)) {
+                continue;
+            }
+            order.add(method);
+
+            List<HostedMethod> callees = directCallees(compilations.get(method), callOrder);
+            for (int i = callees.size() - 1; i >= 0; i--) {
+                HostedMethod callee = callees.get(i);
+                if (!placed.contains(callee) && followCallee.test(callee)) {
+                    worklist.push(callee);
+                }
+            }
+        }
+    }
+
+    private List<HostedMethod> directCallees(CompilationResult compilation, Comparator<Call> callOrder) {
+        List<Call> calls = new ArrayList<>();
+        for (Infopoint infopoint : compilation.getInfopoints()) {
+            if (infopoint instanceof Call) {
+                Call call = (Call) infopoint;
+                if (call.direct && call.target instanceof HostedMethod && compilations.containsKey(call.target)) {
+                    calls.add(call);
+                }
+            }
+        }
+        calls.sort(callOrder);
+
+        /* A callee can be called from several call sites, the first one determines its position. */
+        LinkedHashMap<HostedMethod, Boolean> callees = new LinkedHashMap<>();
+        for (Call call : calls) {
+            callees.putIfAbsent((HostedMethod) call.target, Boolean.TRUE);
+        }
+        return new ArrayList<>(callees.keySet());
+    }
+
+    /**
+     * The number of times a call site was executed. The call site is identified by the innermost
+     * frame, so that the count is also found for call sites in inlined methods.
+     */
+    private static long callCount(Call call) {
+        BytecodeFrame frame = call.debugInfo == null ? null : call.debugInfo.frame();
+        if (frame == null || !(frame.getMethod() instanceof HostedMethod)) {
+            return 0;
+        }
+        return Math.max(((HostedMethod) frame.getMethod()).getProfilingInfo().getExecutionCount(frame.getBCI()), 0);
+    }
+
+    /**
+     * Returns the number of pages of the text section that contain code of the given methods, if
+     * the methods are placed in the given order. This is the number of pages that must be faulted
+     * in if all these methods are executed.
+     */
+    int countPages(List<HostedMethod> order, Set<HostedMethod> methods) {
+        long pageSize = NativeImageOptions.getPageSize();
+        EconomicSet<Long> pages = EconomicSet.create();
+        int offset = 0;
+        for (HostedMethod method : order) {
+            int size = compilations.get(method).getTargetCodeSize();
+            if (methods.contains(method) && size > 0) {
+                for (long page = offset / pageSize; page <= (offset + size - 1) / pageSize; page++) {
+                    pages.add(page);
+                }
+            }
+            offset = NumUtil.roundUp(offset + size, SubstrateOptions.codeAlignment());
+        }
+        return pages.size();
+    }
+}
@@ -132,6 +132,11 @@ public abstract class NativeBootImageViaCC extends NativeBootImage {
             if (SubstrateOptions.DeleteLocalSymbols.getValue()) {
                 additionalPreOptions.add("-Wl,-x");
             }
+
+            if (SubstrateOptions.GenerateDebugInfo.getValue() > 0 && SubstrateOptions.CompressDebugInfo.getValue()) {
+                /* Let the linker compress the .debug_* sections of the image with zlib. */
+                additionalPreOptions.add("-Wl,--compress-debug-sections=zlib");
+            }
         }
 
         @Override
@@ -29,8 +29,10 @@ import static com.oracle.objectfile.debuginfo.DebugInfoProvider.DebugFrameSizeCh
 import static com.oracle.objectfile.debuginfo.DebugInfoProvider.DebugFrameSizeChange.Type.EXTEND;
 
 import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -76,7 +78,15 @@ class NativeImageDebugInfoProvider implements DebugInfoProvider {
 
     @Override
     public Stream<DebugCodeInfo> codeInfoProvider() {
-        return codeCache.compilations.entrySet().stream().map(entry -> new NativeImageDebugCodeInfo(entry.getKey(), entry.getValue()));
+        /*
+         * The methods are not laid out in compilation order (see MethodOrdering), but the debug info
+         * generator expects the methods of a class in address order, with all deoptimization
+         * targets after the normal methods.
+         */
+        return codeCache.compilations.entrySet().stream()
+                        .sorted(Comparator.comparing((Map.Entry<HostedMethod, CompilationResult> entry) -> entry.getKey().isDeoptTarget())
+                                        .thenComparingInt(entry -> entry.getKey().getCodeAddressOffset()))
+                        .map(entry -> new NativeImageDebugCodeInfo(entry.getKey(), entry.getValue()));
     }
 
     @Override
@@ -26,14 +26,18 @@ package com.oracle.svm.hosted.image;
 
 import static com.oracle.svm.core.util.VMError.shouldNotReachHere;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -48,6 +52,8 @@ import org.graalvm.nativeimage.c.function.RelocatedPointer;
 import org.graalvm.word.UnsignedWord;
 import org.graalvm.word.WordBase;
 
+import com.oracle.graal.pointsto.flow.MethodTypeFlow;
+import com.oracle.graal.pointsto.meta.AnalysisField;
 import com.oracle.graal.pointsto.meta.AnalysisUniverse;
 import com.oracle.graal.pointsto.util.AnalysisError;
 import com.oracle.svm.core.StaticFieldsSupport;
@@ -121,6 +127,15 @@ public final class NativeImageHeap implements ImageHeap {
     /** Objects that are known to be immutable in the native image heap. */
     private final Set<Object> knownImmutableObjects = Collections.newSetFromMap(new IdentityHashMap<>());
 
+    /**
+     * The names of the types whose objects are written at run time according to
+     * {@link SubstrateOptions#ImageHeapWriteProfile}, or null if there is no profile.
+     */
+    private final Set<String> writtenTypesProfile;
+
+    /** Cache for {@link #isWrittenAtRunTime}. */
+    private final Map<HostedField, Boolean> fieldsWrittenAtRunTime = new HashMap<>();
+
     public NativeImageHeap(AnalysisUniverse aUniverse, HostedUniverse universe, HostedMetaAccess metaAccess, ImageHeapLayouter heapLayouter) {
         this.aUniverse = aUniverse;
         this.universe = universe;
@@ -132,6 +147,31 @@ public final class NativeImageHeap implements ImageHeap {
         this.minInstanceSize = objectLayout.getMinimumInstanceObjectSize();
         this.minArraySize = objectLayout.getMinimumArraySize();
         assert assertFillerObjectSizes();
+
+        this.writtenTypesProfile = loadWrittenTypesProfile();
+    }
+
+    /**
+     * Reads a profile with one type name per line, optionally followed by the number of written
+     * objects of that type. Lines starting with '#' are comments.
+     */
+    private static Set<String> loadWrittenTypesProfile() {
+        String file = SubstrateOptions.ImageHeapWriteProfile.getValue();
+        if (file.isEmpty()) {
+            return null;
+        }
+        Set<String> result = new HashSet<>();
+        try {
+            for (String line : Files.readAllLines(Paths.get(file))) {
+                String trimmed = line.trim();
+                if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                    result.add(trimmed.split("\\s+")[0]);
+                }
+            }
+        } catch (IOException ex) {
+            throw UserError.abort("Cannot read image heap write profile %s: %s", file, ex.getMessage());
+        }
+        return result;
     }
 
     @Override
@@ -371,6 +411,7 @@ public final class NativeImageHeap implements ImageHeap {
 
         boolean immutable = immutableFromParent || isKnownImmutable(object);
         boolean written = false;
+        boolean writtenAtRunTime = false;
         boolean references = false;
         boolean relocatable = false; /* always false when !spawnIsolates() */
 
@@ -379,6 +420,8 @@ public final class NativeImageHeap implements ImageHeap {
             // If the type has a monitor field, it has a reference field that is written.
             if (clazz.getMonitorFieldOffset() != 0) {
                 written = true;
+                /* The analysis found synchronization on the type, which writes the monitor field. */
+                writtenAtRunTime = true;
                 references = true;
                 // also not immutable: users of registerAsImmutable() must take precautions
             }
@@ -449,7 +492,10 @@ public final class NativeImageHeap implements ImageHeap {
                          * be inlined. Relocatable pointers are read-only for our purposes, however.
                          */
                         relocatable = relocatable || fieldRelocatable;
-                        written = written || (field.isWritten() && !field.isFinal() && !fieldRelocatable);
+                        if (field.isWritten() && !field.isFinal() && !fieldRelocatable) {
+                            written = true;
+                            writtenAtRunTime = writtenAtRunTime || isWrittenAtRunTime(field);
+                        }
                     }
 
                 }
@@ -483,7 +529,48 @@ public final class NativeImageHeap implements ImageHeap {
         if (relocatable && !isKnownImmutable(object)) {
             VMError.shouldNotReachHere("Object with relocatable pointers must be explicitly immutable: " + object);
         }
-        heapLayouter.assignObjectToPartition(info, !written || immutable, references, relocatable);
+        boolean writable = written && !immutable;
+        info.likelyWritten = writable && isLikelyWritten(info, type, writtenAtRunTime);
+        heapLayouter.assignObjectToPartition(info, !writable, references, relocatable, info.likelyWritten);
+    }
+
+    /**
+     * Determines if a writable object is expected to be written at run time. A profile is
+     * authoritative when available. Otherwise, an instance is likely written if the static analysis
+     * found a write of one of its fields that can target an existing object, see
+     * {@link #isWrittenAtRunTime}. The analysis does not track stores to array elements, so an array
+     * is assumed to be written if the object that refers to it is.
+     */
+    private boolean isLikelyWritten(ObjectInfo info, HostedType type, boolean fieldsWrittenAtRunTime) {
+        if (writtenTypesProfile != null) {
+            return writtenTypesProfile.contains(info.getObject().getClass().getName());
+        } else if (!SubstrateOptions.GroupWrittenImageHeapObjects.getValue()) {
+            return false;
+        } else if (type.isInstanceClass()) {
+            return fieldsWrittenAtRunTime;
+        }
+        return !(info.reason instanceof ObjectInfo) || ((ObjectInfo) info.reason).likelyWritten;
+    }
+
+    /**
+     * Returns true if the field can be written in an object that already exists, i.e., in an image
+     * heap object. Writes in constructors only initialize new objects, so a field that is written
+     * only by constructors keeps its value from the image build. Writes without a known method
+     * happen in hosted code, except for unsafe accesses.
+     */
+    private boolean isWrittenAtRunTime(HostedField field) {
+        return fieldsWrittenAtRunTime.computeIfAbsent(field, f -> {
+            AnalysisField aField = f.wrapped;
+            if (aField.isUnsafeAccessed()) {
+                return true;
+            }
+            for (MethodTypeFlow method : aField.getWrittenBy()) {
+                if (!method.getMethod().isConstructor()) {
+                    return true;
+                }
+            }
+            return false;
+        });
     }
 
     private static HostedType requireType(Optional<HostedType> optionalType, Object object, Object reason) {
@@ -617,6 +704,8 @@ public final class NativeImageHeap implements ImageHeap {
         private final int identityHashCode;
         private ImageHeapPartition partition;
         private long offsetInPartition;
+        /** True if this writable object is expected to be written at run time. */
+        private boolean likelyWritten;
         /**
          * For debugging only: the reason why this object is in the native image heap.
          *
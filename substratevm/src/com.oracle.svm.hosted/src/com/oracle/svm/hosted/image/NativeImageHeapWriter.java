@@ -29,6 +29,7 @@ import static com.oracle.svm.core.util.VMError.shouldNotReachHere;
 import java.lang.reflect.Array;
 import java.lang.reflect.Modifier;
 import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
 
 import org.graalvm.compiler.core.common.CompressEncoding;
 import org.graalvm.compiler.core.common.NumUtil;
@@ -50,6 +51,7 @@ import com.oracle.svm.core.heap.ObjectHeader;
 import com.oracle.svm.core.hub.DynamicHub;
 import com.oracle.svm.core.image.ImageHeapLayoutInfo;
 import com.oracle.svm.core.meta.SubstrateObjectConstant;
+import com.oracle.svm.hosted.SVMHost;
 import com.oracle.svm.hosted.config.HybridLayout;
 import com.oracle.svm.hosted.image.NativeImageHeap.ObjectInfo;
 import com.oracle.svm.hosted.meta.HostedClass;
@@ -68,25 +70,30 @@ import jdk.vm.ci.meta.ResolvedJavaMethod;
 public final class NativeImageHeapWriter {
     private final NativeImageHeap heap;
     private final ImageHeapLayoutInfo heapLayout;
-    private long sectionOffsetOfARelocatablePointer;
 
     public NativeImageHeapWriter(NativeImageHeap heap, ImageHeapLayoutInfo heapLayout) {
         this.heap = heap;
         this.heapLayout = heapLayout;
-        this.sectionOffsetOfARelocatablePointer = -1;
     }
 
     /**
      * Write the model of the native image heap to the RelocatableBuffers that represent the native
      * image.
+     *
+     * Objects are written in parallel. Every object has its own range in the buffer and the layout
+     * is fixed at this point, so the result does not depend on the order in which the objects are
+     * written.
+     *
+     * @return the offset of a relocatable pointer in the buffer, or -1 if there is none
      */
     @SuppressWarnings("try")
     public long writeHeap(DebugContext debug, RelocatableBuffer buffer) {
         try (Indent perHeapIndent = debug.logAndIndent("BootImageHeap.writeHeap:")) {
-            for (ObjectInfo info : heap.getObjects()) {
+            ForkJoinPool executor = ((SVMHost) heap.getAnalysisUniverse().hostVM()).executor();
+            executor.submit(() -> heap.getObjects().parallelStream().forEach(info -> {
                 assert !heap.isBlacklisted(info.getObject());
                 writeObject(info, buffer);
-            }
+            })).join();
 
             // Only static fields that are writable get written to the native image heap,
             // the read-only static fields have been inlined into the code.
@@ -94,7 +101,8 @@ public final class NativeImageHeapWriter {
 
             heap.getLayouter().writeMetadata(buffer.getByteBuffer(), 0);
         }
-        return sectionOffsetOfARelocatablePointer;
+        /* All relocations in the buffer are pointers written by this class. */
+        return buffer.hasRelocations() ? buffer.getSortedRelocations().iterator().next().getKey() : -1;
     }
 
     private void writeStaticFields(RelocatableBuffer buffer) {
@@ -215,17 +223,11 @@ public final class NativeImageHeapWriter {
         assert size == 4 || size == 8;
         assert !NativeImageHeap.spawnIsolates() || heapLayout.isReadOnlyRelocatable(index);
         buffer.addRelocationWithoutAddend(index, size == 8 ? ObjectFile.RelocationKind.DIRECT_8 : ObjectFile.RelocationKind.DIRECT_4, target);
-        if (sectionOffsetOfARelocatablePointer == -1) {
-            sectionOffsetOfARelocatablePointer = index;
-        }
     }
 
     private void addDirectRelocationWithAddend(RelocatableBuffer buffer, int index, DynamicHub target, long objectHeaderBits) {
         assert !NativeImageHeap.spawnIsolates() || heapLayout.isReadOnlyRelocatable(index);
         buffer.addRelocationWithAddend(index, referenceSize() == 8 ? ObjectFile.RelocationKind.DIRECT_8 : ObjectFile.RelocationKind.DIRECT_4, objectHeaderBits, target);
-        if (sectionOffsetOfARelocatablePointer == -1) {
-            sectionOffsetOfARelocatablePointer = index;
-        }
     }
 
     /**
@@ -31,7 +31,7 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import org.graalvm.compiler.core.common.NumUtil;
 import org.graalvm.nativeimage.c.function.RelocatedPointer;
@@ -40,7 +40,8 @@ import com.oracle.objectfile.ObjectFile;
 
 /**
  * Offers a {@link ByteBuffer} with additional support for marking relocation sites within the
- * buffer for later processing.
+ * buffer for later processing. Disjoint parts of the buffer can be written and marked concurrently
+ * as long as only the absolute put methods of the {@link ByteBuffer} are used.
  */
 public final class RelocatableBuffer {
     private final ByteBuffer byteBuffer;
@@ -49,7 +50,7 @@ public final class RelocatableBuffer {
     public RelocatableBuffer(long size, ByteOrder byteOrder) {
         int intSize = NumUtil.safeToInt(size);
         this.byteBuffer = ByteBuffer.wrap(new byte[intSize]).order(byteOrder);
-        this.relocations = new TreeMap<>();
+        this.relocations = new ConcurrentSkipListMap<>();
     }
 
     public void addRelocationWithoutAddend(int key, ObjectFile.RelocationKind relocationKind, Object targetObject) {
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.hosted.pgo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.graalvm.compiler.nodes.FrameState;
+import org.graalvm.compiler.nodes.Invoke;
+import org.graalvm.compiler.options.Option;
+import org.graalvm.nativeimage.ImageSingletons;
+import org.graalvm.nativeimage.hosted.Feature;
+
+import com.oracle.svm.core.annotate.AutomaticFeature;
+import com.oracle.svm.core.option.HostedOptionKey;
+import com.oracle.svm.core.pgo.InstrumentedImageProfiles;
+import com.oracle.svm.core.util.UserError;
+
+import jdk.vm.ci.meta.JavaMethodProfile;
+import jdk.vm.ci.meta.JavaMethodProfile.ProfiledMethod;
+import jdk.vm.ci.meta.JavaTypeProfile;
+import jdk.vm.ci.meta.JavaTypeProfile.ProfiledType;
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+
+/**
+ * The profiles that an instrumented image wrote at exit, loaded from the file given by
+ * {@link Options#ProfilesUse}. The format is described in {@link InstrumentedImageProfiles}.
+ * Counters that occur more than once, e.g., because the profiles of several runs were
+ * concatenated, are added up.
+ *
+ * The profiles are made available to the compiler through {@link ProfiledStaticAnalysisResults}.
+ */
+public final class ExecutionProfiles {
+
+    public static class Options {
+        @Option(help = "Use the profiles written by an image built with ProfileInstrumentation to guide inlining and code layout.")//
+        public static final HostedOptionKey<String> ProfilesUse = new HostedOptionKey<>("");
+
+        @Option(help = "Maximum number of nodes in a method so that it is inlined at call sites that are hot in the profiles given by ProfilesUse.")//
+        public static final HostedOptionKey<Integer> MaxNodesInProfiledInlining = new HostedOptionKey<>(60);
+    }
+
+    /** The hottest call sites that together make up this fraction of all calls are hot. */
+    private static final double HOT_CALLS_FRACTION = 0.9;
+
+    static final class MethodProfile {
+        long entryCount;
+        /** Maps the bci of a branch to its number of executions and jumps. */
+        final Map<Integer, long[]> branches = new HashMap<>();
+        final Map<Integer, Long> calls = new HashMap<>();
+        /** Maps the bci of a call to the number of calls per receiver type name. */
+        final Map<Integer, Map<String, Long>> receivers = new HashMap<>();
+
+        long[] branch(int bci) {
+            return branches.computeIfAbsent(bci, key -> new long[2]);
+        }
+    }
+
+    private final Map<String, MethodProfile> methods;
+    private final long hotCallCount;
+
+    private ExecutionProfiles(Map<String, MethodProfile> methods) {
+        this.methods = methods;
+        this.hotCallCount = computeHotCallCount(methods);
+    }
+
+    public static ExecutionProfiles singleton() {
+        return ImageSingletons.lookup(ExecutionProfiles.class);
+    }
+
+    /**
+     * The name under which the profiles of a method are stored. It includes the return type because
+     * bridge methods differ from the methods they call only in the return type.
+     */
+    public static String methodName(ResolvedJavaMethod method) {
+        return method.format("%H.%n(%P):%R");
+    }
+
+    MethodProfile lookup(ResolvedJavaMethod method) {
+        return lookup(methodName(method));
+    }
+
+    MethodProfile lookup(String methodName) {
+        return methods.get(methodName);
+    }
+
+    /** Returns how often the method was entered, or 0 if it has no profile. */
+    public long getEntryCount(ResolvedJavaMethod method) {
+        MethodProfile profile = lookup(method);
+        return profile == null ? 0 : profile.entryCount;
+    }
+
+    /** Returns how often the call at the given bci was executed, or 0 if it has no profile. */
+    public long getCallCount(ResolvedJavaMethod method, int bci) {
+        MethodProfile profile = lookup(method);
+        return profile == null ? 0 : profile.calls.getOrDefault(bci, 0L);
+    }
+
+    /**
+     * Returns true if the given call site is among the hottest call sites of the profiles. The
+     * call site is identified by the innermost frame state of the invoke, so the result is the
+     * same after the invoke was inlined into another method.
+     */
+    public static boolean isHotCallSite(Invoke invoke) {
+        if (!ImageSingletons.contains(ExecutionProfiles.class)) {
+            return false;
+        }
+        FrameState state = invoke.stateAfter();
+        if (state == null) {
+            return false;
+        }
+        /* The profiling info clamps the counts to int, so look at the profiles directly. */
+        ExecutionProfiles profiles = singleton();
+        return profiles.getCallCount(state.getMethod(), invoke.bci()) >= profiles.hotCallCount;
+    }
+
+    private static long computeHotCallCount(Map<String, MethodProfile> methods) {
+        long[] counts = methods.values().stream().flatMap(profile -> profile.calls.values().stream()).mapToLong(Long::longValue).sorted().toArray();
+        long total = Arrays.stream(counts).sum();
+        long covered = 0;
+        for (int i = counts.length - 1; i >= 0; i--) {
+            covered += counts[i];
+            if (covered >= total * HOT_CALLS_FRACTION) {
+                return Math.max(counts[i], 1);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Weighs the types of a type profile of the static analysis with the counted receiver types.
+     * The static analysis determined the exact set of possible types, so every type keeps a
+     * non-zero probability.
+     */
+    static JavaTypeProfile refine(JavaTypeProfile typeProfile, Map<String, Long> receivers) {
+        if (typeProfile == null || receivers == null) {
+            return typeProfile;
+        }
+        ProfiledType[] types = typeProfile.getTypes();
+        long[] counts = new long[types.length];
+        long total = 0;
+        for (int i = 0; i < types.length; i++) {
+            counts[i] = receivers.getOrDefault(types[i].getType().toJavaName(true), 0L);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return typeProfile;
+        }
+        ProfiledType[] refined = new ProfiledType[types.length];
+        for (int i = 0; i < types.length; i++) {
+            refined[i] = new ProfiledType(types[i].getType(), probability(counts[i], total, types.length));
+        }
+        Arrays.sort(refined, Comparator.comparingDouble((ProfiledType type) -> type.getProbability()).reversed());
+        return new JavaTypeProfile(typeProfile.getNullSeen(), typeProfile.getNotRecordedProbability(), refined);
+    }
+
+    /**
+     * Weighs the callees of a method profile of the static analysis with the counted method
+     * entries. Like for types, every callee keeps a non-zero probability.
+     */
+    JavaMethodProfile refine(JavaMethodProfile methodProfile) {
+        if (methodProfile == null || methodProfile.getMethods().length < 2) {
+            return methodProfile;
+        }
+        ProfiledMethod[] callees = methodProfile.getMethods();
+        long[] counts = new long[callees.length];
+        long total = 0;
+        for (int i = 0; i < callees.length; i++) {
+            MethodProfile profile = lookup(callees[i].getMethod());
+            counts[i] = profile == null ? 0 : profile.entryCount;
+            total += counts[i];
+        }
+        if (total == 0) {
+            return methodProfile;
+        }
+        ProfiledMethod[] refined = new ProfiledMethod[callees.length];
+        for (int i = 0; i < callees.length; i++) {
+            refined[i] = new ProfiledMethod(callees[i].getMethod(), probability(counts[i], total, callees.length));
+        }
+        Arrays.sort(refined, Comparator.comparingDouble((ProfiledMethod callee) -> callee.getProbability()).reversed());
+        return new JavaMethodProfile(methodProfile.getNotRecordedProbability(), refined);
+    }
+
+    private static double probability(long count, long total, int items) {
+        return (count + 1) / (double) (total + items);
+    }
+
+    static ExecutionProfiles load(Path file) {
+        Map<String, MethodProfile> methods = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            MethodProfile current = null;
+            int lineNumber = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                } else if (line.startsWith(InstrumentedImageProfiles.METHOD + ' ')) {
+                    current = methods.computeIfAbsent(line.substring(InstrumentedImageProfiles.METHOD.length() + 1), key -> new MethodProfile());
+                } else if (current == null || !parseCounter(current, line.split(" "))) {
+                    throw UserError.abort("Malformed profiles file %s, line %d: %s", file, lineNumber, line);
+                }
+            }
+        } catch (IOException ex) {
+            throw UserError.abort(ex, "Cannot read profiles file %s: %s", file, ex.getMessage());
+        }
+        return new ExecutionProfiles(methods);
+    }
+
+    private static boolean parseCounter(MethodProfile profile, String[] parts) {
+        try {
+            long count = Long.parseLong(parts[parts.length - 1]);
+            switch (parts[0]) {
+                case InstrumentedImageProfiles.ENTRY:
+                    profile.entryCount += count;
+                    return parts.length == 2;
+                case InstrumentedImageProfiles.BRANCH:
+                    profile.branch(Integer.parseInt(parts[1]))[0] += count;
+                    return parts.length == 3;
+                case InstrumentedImageProfiles.TAKEN:
+                    profile.branch(Integer.parseInt(parts[1]))[1] += count;
+                    return parts.length == 3;
+                case InstrumentedImageProfiles.CALL:
+                    profile.calls.merge(Integer.parseInt(parts[1]), count, Long::sum);
+                    return parts.length == 3;
+                case InstrumentedImageProfiles.RECEIVER:
+                    profile.receivers.computeIfAbsent(Integer.parseInt(parts[1]), key -> new HashMap<>()).merge(parts[2], count, Long::sum);
+                    return parts.length == 4;
+                default:
+                    return false;
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+            return false;
+        }
+    }
+}
+
+@AutomaticFeature
+class ExecutionProfilesFeature implements Feature {
+    @Override
+    public boolean isInConfiguration(IsInConfigurationAccess access) {
+        return !ExecutionProfiles.Options.ProfilesUse.getValue().isEmpty();
+    }
+
+    @Override
+    public void afterRegistration(AfterRegistrationAccess access) {
+        ImageSingletons.add(ExecutionProfiles.class, ExecutionProfiles.load(Paths.get(ExecutionProfiles.Options.ProfilesUse.getValue())));
+    }
+}
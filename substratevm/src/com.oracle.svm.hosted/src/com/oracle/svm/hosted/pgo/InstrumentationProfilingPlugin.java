@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.hosted.pgo;
+
+import static com.oracle.svm.core.pgo.InstrumentedImageProfiles.BRANCH;
+import static com.oracle.svm.core.pgo.InstrumentedImageProfiles.CALL;
+import static com.oracle.svm.core.pgo.InstrumentedImageProfiles.ENTRY;
+import static com.oracle.svm.core.pgo.InstrumentedImageProfiles.RECEIVER;
+import static com.oracle.svm.core.pgo.InstrumentedImageProfiles.TAKEN;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.graalvm.compiler.bytecode.BytecodeStream;
+import org.graalvm.compiler.bytecode.Bytecodes;
+import org.graalvm.compiler.core.common.type.TypeReference;
+import org.graalvm.compiler.nodes.ConstantNode;
+import org.graalvm.compiler.nodes.FrameState;
+import org.graalvm.compiler.nodes.LogicNode;
+import org.graalvm.compiler.nodes.NodeView;
+import org.graalvm.compiler.nodes.ValueNode;
+import org.graalvm.compiler.nodes.calc.AddNode;
+import org.graalvm.compiler.nodes.calc.ConditionalNode;
+import org.graalvm.compiler.nodes.graphbuilderconf.GraphBuilderConfiguration.Plugins;
+import org.graalvm.compiler.nodes.graphbuilderconf.GraphBuilderContext;
+import org.graalvm.compiler.nodes.graphbuilderconf.ProfilingPlugin;
+import org.graalvm.compiler.nodes.java.InstanceOfNode;
+import org.graalvm.compiler.nodes.java.LoadIndexedNode;
+import org.graalvm.compiler.nodes.java.StoreIndexedNode;
+import org.graalvm.compiler.phases.util.Providers;
+
+import com.oracle.svm.core.annotate.AutomaticFeature;
+import com.oracle.svm.core.annotate.RestrictHeapAccess;
+import com.oracle.svm.core.annotate.Uninterruptible;
+import com.oracle.svm.core.graal.GraalFeature;
+import com.oracle.svm.core.meta.SubstrateObjectConstant;
+import com.oracle.svm.core.pgo.InstrumentedImageProfiles;
+import com.oracle.svm.core.pgo.ProfileCounters;
+import com.oracle.svm.hosted.meta.HostedMethod;
+
+import jdk.vm.ci.meta.JavaKind;
+import jdk.vm.ci.meta.JavaTypeProfile;
+import jdk.vm.ci.meta.JavaTypeProfile.ProfiledType;
+import jdk.vm.ci.meta.ResolvedJavaMethod;
+import jdk.vm.ci.meta.ResolvedJavaType;
+
+/**
+ * Instruments the methods of an image that is built with
+ * {@link InstrumentedImageProfiles.Options#ProfileInstrumentation}. The instrumentation counts
+ * method entries, conditional branches, calls, and the receiver types of virtual calls in the
+ * {@link ProfileCounters} of the method. The counters are incremented without synchronization, so
+ * concurrent increments can be lost.
+ *
+ * Receiver types are only counted at call sites for which the static analysis found at most
+ * {@link #MAX_RECEIVER_TYPES} possible types.
+ */
+public final class InstrumentationProfilingPlugin implements ProfilingPlugin {
+
+    private static final int MAX_RECEIVER_TYPES = 8;
+
+    @Override
+    public boolean shouldProfile(GraphBuilderContext builder, ResolvedJavaMethod method) {
+        if (builder.parsingIntrinsic() || !(method instanceof HostedMethod)) {
+            return false;
+        }
+        HostedMethod hMethod = (HostedMethod) method;
+        /*
+         * Deoptimization targets must match the frame states of the regular methods. Methods with
+         * heap access restrictions can run before the image heap is accessible.
+         */
+        return !hMethod.compilationInfo.isDeoptTarget() && hMethod.getAnnotation(Uninterruptible.class) == null && hMethod.getAnnotation(RestrictHeapAccess.class) == null;
+    }
+
+    /** Counts the entries of the method. The graph builder calls this at the start of a method. */
+    @Override
+    public void profileInvoke(GraphBuilderContext builder, ResolvedJavaMethod method, FrameState frameState) {
+        increment(builder, getCounters(method), 0, builder.add(ConstantNode.forLong(1)));
+    }
+
+    @Override
+    public void profileGoto(GraphBuilderContext builder, ResolvedJavaMethod method, int bci, int targetBci, FrameState frameState) {
+        /* Unconditional jumps are not profiled. */
+    }
+
+    @Override
+    public void profileIf(GraphBuilderContext builder, ResolvedJavaMethod method, int bci, LogicNode condition, int trueBranchBci, int falseBranchBci, FrameState frameState) {
+        ProfileCounters counters = getCounters(method);
+        int slot = indexOf(counters, BRANCH + ' ' + bci);
+        if (slot < 0) {
+            return;
+        }
+        /* The successor that does not jump falls through to the next bytecode. */
+        boolean trueIsTaken = trueBranchBci != bci + Bytecodes.lengthOf(Bytecodes.IFEQ);
+        ValueNode taken = builder.add(new ConditionalNode(condition, builder.add(ConstantNode.forLong(trueIsTaken ? 1 : 0)), builder.add(ConstantNode.forLong(trueIsTaken ? 0 : 1))));
+        increment(builder, counters, slot, builder.add(ConstantNode.forLong(1)));
+        increment(builder, counters, slot + 1, taken);
+    }
+
+    /** Counts the executions and the receiver types of a call that is not inlined while parsing. */
+    public void profileCall(GraphBuilderContext builder, ResolvedJavaMethod method, int bci, ValueNode[] args, boolean hasReceiver) {
+        ProfileCounters counters = getCounters(method);
+        int slot = indexOf(counters, CALL + ' ' + bci);
+        if (slot < 0) {
+            return;
+        }
+        ValueNode one = builder.add(ConstantNode.forLong(1));
+        increment(builder, counters, slot, one);
+
+        if (hasReceiver) {
+            /* The receiver counters follow the call counter, in the order of the layout. */
+            List<ResolvedJavaType> types = receiverTypes((HostedMethod) method, bci);
+            for (int i = 0; i < types.size(); i++) {
+                LogicNode isType = builder.add(InstanceOfNode.create(TypeReference.createExactTrusted(types.get(i)), args[0]));
+                ValueNode matches = builder.add(new ConditionalNode(isType, one, builder.add(ConstantNode.forLong(0))));
+                increment(builder, counters, slot + 1 + i, matches);
+            }
+        }
+    }
+
+    private static void increment(GraphBuilderContext builder, ProfileCounters counters, int slot, ValueNode delta) {
+        ValueNode array = ConstantNode.forConstant(SubstrateObjectConstant.forObject(counters.getCounts()), builder.getMetaAccess(), builder.getGraph());
+        ValueNode index = builder.add(ConstantNode.forInt(slot));
+        ValueNode count = builder.add(LoadIndexedNode.create(builder.getAssumptions(), array, index, null, JavaKind.Long, builder.getMetaAccess(), builder.getConstantReflection()));
+        ValueNode sum = builder.add(AddNode.create(count, delta, NodeView.DEFAULT));
+        builder.add(new StoreIndexedNode(array, index, null, null, JavaKind.Long, sum));
+    }
+
+    private static int indexOf(ProfileCounters counters, String label) {
+        String[] labels = counters.getLabels();
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equals(label)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static ProfileCounters getCounters(ResolvedJavaMethod method) {
+        return InstrumentedImageProfiles.singleton().getCounters(ExecutionProfiles.methodName(method), () -> createLabels((HostedMethod) method));
+    }
+
+    /**
+     * Lays out the counters of a method. The layout only depends on the bytecode and the static
+     * analysis results, so it is known before the method is parsed.
+     */
+    private static String[] createLabels(HostedMethod method) {
+        List<String> labels = new ArrayList<>();
+        labels.add(ENTRY);
+        BytecodeStream stream = new BytecodeStream(method.getCode());
+        while (stream.currentBC() != Bytecodes.END) {
+            int bci = stream.currentBCI();
+            int opcode = stream.currentBC();
+            if ((opcode >= Bytecodes.IFEQ && opcode <= Bytecodes.IF_ACMPNE) || opcode == Bytecodes.IFNULL || opcode == Bytecodes.IFNONNULL) {
+                labels.add(BRANCH + ' ' + bci);
+                labels.add(TAKEN + ' ' + bci);
+            } else if (opcode >= Bytecodes.INVOKEVIRTUAL && opcode <= Bytecodes.INVOKEDYNAMIC) {
+                labels.add(CALL + ' ' + bci);
+                for (ResolvedJavaType type : receiverTypes(method, bci)) {
+                    labels.add(RECEIVER + ' ' + bci + ' ' + type.toJavaName(true));
+                }
+            }
+            stream.next();
+        }
+        return labels.toArray(new String[labels.size()]);
+    }
+
+    private static List<ResolvedJavaType> receiverTypes(HostedMethod method, int bci) {
+        List<ResolvedJavaType> result = new ArrayList<>();
+        int opcode = method.getCode()[bci] & 0xff;
+        JavaTypeProfile typeProfile = method.getProfilingInfo().getTypeProfile(bci);
+        if ((opcode == Bytecodes.INVOKEVIRTUAL || opcode == Bytecodes.INVOKEINTERFACE) && typeProfile != null) {
+            ProfiledType[] types = typeProfile.getTypes();
+            /* A single possible type needs no profile. */
+            if (types.length > 1 && types.length <= MAX_RECEIVER_TYPES) {
+                for (ProfiledType type : types) {
+                    result.add(type.getType());
+                }
+            }
+        }
+        return result;
+    }
+}
+
+@AutomaticFeature
+class InstrumentationProfilingFeature implements GraalFeature {
+    @Override
+    public boolean isInConfiguration(IsInConfigurationAccess access) {
+        return InstrumentedImageProfiles.Options.ProfileInstrumentation.getValue();
+    }
+
+    @Override
+    public void registerGraphBuilderPlugins(Providers providers, Plugins plugins, boolean analysis, boolean hosted) {
+        if (hosted && !analysis) {
+            plugins.setProfilingPlugin(new InstrumentationProfilingPlugin());
+        }
+    }
+}
+
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.hosted.pgo;
+
+import org.graalvm.compiler.nodes.extended.BranchProbabilityNode;
+
+import com.oracle.graal.pointsto.results.StaticAnalysisResults;
+import com.oracle.svm.hosted.pgo.ExecutionProfiles.MethodProfile;
+
+import jdk.vm.ci.meta.JavaTypeProfile;
+
+/**
+ * Static analysis results that also provide the branch probabilities and execution counts that an
+ * instrumented image collected for the method.
+ */
+final class ProfiledStaticAnalysisResults extends StaticAnalysisResults {
+
+    private final MethodProfile profile;
+
+    ProfiledStaticAnalysisResults(int codeSize, JavaTypeProfile[] parameterTypeProfiles, JavaTypeProfile resultTypeProfile, BytecodeEntry first, MethodProfile profile) {
+        super(codeSize, parameterTypeProfiles, resultTypeProfile, first);
+        this.profile = profile;
+    }
+
+    @Override
+    public double getBranchTakenProbability(int bci) {
+        long[] branch = profile.branches.get(bci);
+        if (branch == null || branch[0] == 0) {
+            return super.getBranchTakenProbability(bci);
+        }
+        /*
+         * A branch must never look like it is not executed, because the bytecode parser would
+         * replace the not executed successor with a deoptimization.
+         */
+        double probability = branch[1] / (double) branch[0];
+        return Math.min(Math.max(probability, BranchProbabilityNode.LUDICROUSLY_SLOW_PATH_PROBABILITY), BranchProbabilityNode.LUDICROUSLY_FAST_PATH_PROBABILITY);
+    }
+
+    @Override
+    public int getExecutionCount(int bci) {
+        Long calls = profile.calls.get(bci);
+        if (calls != null) {
+            return (int) Math.min(calls, Integer.MAX_VALUE);
+        }
+        long[] branch = profile.branches.get(bci);
+        if (branch != null) {
+            return (int) Math.min(branch[0], Integer.MAX_VALUE);
+        }
+        return super.getExecutionCount(bci);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.hosted.pgo;
+
+import com.oracle.graal.pointsto.BigBang;
+import com.oracle.graal.pointsto.infrastructure.Universe;
+import com.oracle.graal.pointsto.meta.AnalysisMethod;
+import com.oracle.graal.pointsto.results.StaticAnalysisResults;
+import com.oracle.graal.pointsto.results.StaticAnalysisResults.BytecodeEntry;
+import com.oracle.graal.pointsto.results.StaticAnalysisResultsBuilder;
+import com.oracle.svm.hosted.pgo.ExecutionProfiles.MethodProfile;
+
+import jdk.vm.ci.meta.JavaMethodProfile;
+import jdk.vm.ci.meta.JavaTypeProfile;
+
+/**
+ * Combines the static analysis results with the {@link ExecutionProfiles} of an instrumented
+ * image: the types and callees of invokes are weighted with the counted receivers and method
+ * entries, and methods that were executed get {@link ProfiledStaticAnalysisResults}.
+ */
+public class ProfiledStaticAnalysisResultsBuilder extends StaticAnalysisResultsBuilder {
+
+    private final ExecutionProfiles profiles;
+
+    public ProfiledStaticAnalysisResultsBuilder(BigBang bb, Universe converter, ExecutionProfiles profiles) {
+        super(bb, converter);
+        this.profiles = profiles;
+    }
+
+    @Override
+    protected BytecodeEntry createBytecodeEntry(AnalysisMethod method, int bci, JavaTypeProfile typeProfile, JavaMethodProfile methodProfile, JavaTypeProfile invokeResultTypeProfile) {
+        MethodProfile profile = profiles.lookup(method);
+        if (profile == null) {
+            return super.createBytecodeEntry(method, bci, typeProfile, methodProfile, invokeResultTypeProfile);
+        }
+        return super.createBytecodeEntry(method, bci, ExecutionProfiles.refine(typeProfile, profile.receivers.get(bci)), profiles.refine(methodProfile), invokeResultTypeProfile);
+    }
+
+    @Override
+    protected StaticAnalysisResults createStaticAnalysisResults(AnalysisMethod method, JavaTypeProfile[] parameterTypeProfiles, JavaTypeProfile resultTypeProfile, BytecodeEntry first) {
+        MethodProfile profile = profiles.lookup(method);
+        if (profile == null) {
+            return super.createStaticAnalysisResults(method, parameterTypeProfiles, resultTypeProfile, first);
+        }
+        return new ProfiledStaticAnalysisResults(method.getCodeSize(), parameterTypeProfiles, resultTypeProfile, first, profile);
+    }
+}
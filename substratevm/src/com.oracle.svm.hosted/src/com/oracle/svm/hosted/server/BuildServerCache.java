@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.hosted.server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Build artifacts that only depend on the JDK the build server runs on, and can therefore be shared
+ * between all images that the server builds. Artifacts that refer to classes of the image class
+ * path must never be stored here: the class loader of those classes is discarded after each build.
+ * Keys and values should not refer to any object of a build, e.g., a class of the JDK is referenced
+ * by name.
+ *
+ * The cache retains at most a configured number of bytes, based on the size estimate provided for
+ * each entry, and evicts the least recently used entries first. It is only enabled in the
+ * {@link NativeImageBuildServer}, since a builder that runs a single build has nothing to share.
+ *
+ * Each entry remembers how long it took to compute its value. The statistics reported after a build
+ * therefore show how much build time the cache actually saved, so that it is easy to tell whether
+ * caching a kind of artifact pays off.
+ */
+public final class BuildServerCache {
+
+    private static final BuildServerCache INSTANCE = new BuildServerCache();
+
+    /** Estimated memory retained by a map entry, without the key and the value. */
+    public static final long ENTRY_OVERHEAD_IN_BYTES = 64;
+
+    private static final class Entry {
+        final Object value;
+        final long sizeInBytes;
+        final long computeNanos;
+
+        Entry(Object value, long sizeInBytes, long computeNanos) {
+            this.value = value;
+            this.sizeInBytes = sizeInBytes;
+            this.computeNanos = computeNanos;
+        }
+    }
+
+    /** Entries in access order, i.e., the least recently used entry comes first. */
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(1024, 0.75f, true);
+    private long capacityInBytes;
+    private long sizeInBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    /** Time that computing the values of hits took when they were missing. */
+    private long savedNanos;
+    /** Time spent computing the values of misses. */
+    private long computeNanos;
+
+    private BuildServerCache() {
+    }
+
+    public static BuildServerCache singleton() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns true if artifacts derived from the given class can be shared between builds, i.e.,
+     * the class is loaded by the boot or the platform class loader.
+     */
+    public static boolean isShareable(Class<?> clazz) {
+        ClassLoader loader = clazz.getClassLoader();
+        return loader == null || loader == ClassLoader.getSystemClassLoader().getParent();
+    }
+
+    synchronized void setCapacity(long newCapacityInBytes) {
+        assert newCapacityInBytes >= 0 : "Negative capacity";
+        capacityInBytes = newCapacityInBytes;
+        evict();
+    }
+
+    public synchronized boolean isEnabled() {
+        return capacityInBytes > 0;
+    }
+
+    /**
+     * Returns the cached value for the key, or computes it with the supplier and caches it. The
+     * supplier is called without holding the lock of the cache, so it can be called concurrently
+     * for the same key. It must therefore be deterministic.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T lookup(Object key, long valueSizeInBytes, Supplier<T> supplier) {
+        synchronized (this) {
+            if (capacityInBytes == 0) {
+                return supplier.get();
+            }
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+                savedNanos += entry.computeNanos;
+                return (T) entry.value;
+            }
+            misses++;
+        }
+
+        long startNanos = System.nanoTime();
+        T value = supplier.get();
+        long nanos = System.nanoTime() - startNanos;
+
+        synchronized (this) {
+            computeNanos += nanos;
+            long size = ENTRY_OVERHEAD_IN_BYTES + valueSizeInBytes;
+            Entry previous = entries.put(key, new Entry(value, size, nanos));
+            if (previous != null) {
+                sizeInBytes -= previous.sizeInBytes;
+            }
+            sizeInBytes += size;
+            evict();
+        }
+        return value;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Object, Entry>> iterator = entries.entrySet().iterator();
+        while (sizeInBytes > capacityInBytes && iterator.hasNext()) {
+            sizeInBytes -= iterator.next().getValue().sizeInBytes;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /** Resets the statistics that are reported after each build. */
+    synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+        savedNanos = 0;
+        computeNanos = 0;
+    }
+
+    synchronized String statistics() {
+        return String.format("%d hits (saved %d ms), %d misses (computed in %d ms), %d evictions, %d entries, %.2f of %.2f MB", hits, savedNanos / 1_000_000, misses,
+                        computeNanos / 1_000_000, evictions, entries.size(), sizeInBytes / (1024.0 * 1024.0), capacityInBytes / (1024.0 * 1024.0));
+    }
+}
@@ -84,7 +84,9 @@ import com.oracle.svm.util.ReflectionUtil;
 
 /**
  * A server for SVM image building that keeps the classpath and JIT compiler code caches warm over
- * consecutive runs. Each compilation is defined by an {@link ImageBuildTask}.
+ * consecutive runs. Each compilation is defined by an {@link ImageBuildTask}. Analysis results that
+ * only depend on the JDK are kept in the {@link BuildServerCache}, so that they are shared between
+ * the builds of different images.
  */
 public final class NativeImageBuildServer {
 
@@ -92,6 +94,12 @@ public final class NativeImageBuildServer {
     public static final String TASK_PREFIX = "-task=";
     public static final String PORT_PREFIX = "-port=";
     public static final String LOG_PREFIX = "-logFile=";
+    public static final String CACHE_SIZE_PREFIX = "-cacheSizeMB=";
+    /*
+     * An early class initializer analysis verdict takes about 200 bytes, so this is enough for the
+     * verdicts of all JDK classes.
+     */
+    private static final long DEFAULT_CACHE_SIZE_MB = 16;
     private static final int TIMEOUT_MINUTES = 240;
     private static final String GRAALVM_VERSION_PROPERTY = "org.graalvm.version";
     private static final int SERVER_THREAD_POOL_SIZE = 4;
@@ -114,10 +122,13 @@ public final class NativeImageBuildServer {
     private final AtomicLong activeBuildTasks = new AtomicLong();
     private Instant lastKeepAliveAction = Instant.now();
     private ThreadPoolExecutor threadPoolExecutor;
+    private long firstBuildMillis = -1;
+    private long previousBuildMillis = -1;
 
-    private NativeImageBuildServer(int port, PrintStream logOutput) {
+    private NativeImageBuildServer(int port, PrintStream logOutput, long cacheSizeMB) {
         this.port = port;
         this.logOutput = logOutput;
+        BuildServerCache.singleton().setCapacity(cacheSizeMB * 1024 * 1024);
         threadPoolExecutor = new ThreadPoolExecutor(SERVER_THREAD_POOL_SIZE, SERVER_THREAD_POOL_SIZE, Long.MAX_VALUE, TimeUnit.DAYS, new LinkedBlockingQueue<>());
 
         /*
@@ -149,7 +160,8 @@ public final class NativeImageBuildServer {
 
     private static void printUsageAndExit() {
         System.out.println("Usage:");
-        System.out.println(String.format("  java -cp <compiler_class_path> " + NativeImageBuildServer.class.getName() + " %s<port_number> %s<log_file>", PORT_PREFIX, LOG_PREFIX));
+        System.out.println(String.format("  java -cp <compiler_class_path> " + NativeImageBuildServer.class.getName() + " %s<port_number> %s<log_file> [%s<cache_size_in_MB>]", PORT_PREFIX, LOG_PREFIX,
+                        CACHE_SIZE_PREFIX));
         System.exit(FAILED_EXIT_STATUS);
     }
 
@@ -174,6 +186,7 @@ public final class NativeImageBuildServer {
             printUsageAndExit();
         } else {
             Optional<String> logFile = extractLogFile(args);
+            Optional<Long> cacheSizeMB = extractCacheSize(args);
             PrintStream output = System.out;
             try {
                 if (logFile.isPresent()) {
@@ -184,7 +197,7 @@ public final class NativeImageBuildServer {
                     }
                     output = new PrintStream(new FileOutputStream(file));
                 }
-                new NativeImageBuildServer(port.get(), output).serve();
+                new NativeImageBuildServer(port.get(), output, cacheSizeMB.orElse(DEFAULT_CACHE_SIZE_MB)).serve();
             } catch (IOException e) {
                 System.err.println("Starting server failed with an exception: " + e);
                 System.exit(FAILED_EXIT_STATUS);
@@ -202,6 +215,22 @@ public final class NativeImageBuildServer {
         return portArg.map(arg -> arg.substring(LOG_PREFIX.length()));
     }
 
+    private static Optional<Long> extractCacheSize(List<String> args) {
+        Optional<String> cacheSizeArg = extractArg(args, CACHE_SIZE_PREFIX);
+        Optional<Long> cacheSizeMB = Optional.empty();
+        try {
+            cacheSizeMB = cacheSizeArg.map(arg -> Long.parseLong(arg.substring(CACHE_SIZE_PREFIX.length())));
+        } catch (NumberFormatException ignored) {
+            System.err.println("error: invalid cache size format");
+            printUsageAndExit();
+        }
+        if (cacheSizeMB.isPresent() && (cacheSizeMB.get() < 0 || cacheSizeMB.get() > Long.MAX_VALUE / (1024 * 1024))) {
+            System.err.println("error: the cache size must be between 0 and " + Long.MAX_VALUE / (1024 * 1024) + " MB");
+            printUsageAndExit();
+        }
+        return cacheSizeMB;
+    }
+
     static Optional<Integer> extractPort(List<String> args) {
         Optional<String> portArg = extractArg(args, PORT_PREFIX);
         try {
@@ -338,11 +367,14 @@ public final class NativeImageBuildServer {
                         outJSONStream.writingInterrupted(false);
                         outJSONStream.setOriginal(socket.getOutputStream());
 
+                        BuildServerCache.singleton().resetStatistics();
+                        long startMillis = System.currentTimeMillis();
                         int exitStatus = withJVMContext(
                                         serverStdout,
                                         serverStderr,
                                         () -> executeCompilation(arguments));
                         sendExitStatus(output, exitStatus);
+                        logBuildTime(System.currentTimeMillis() - startMillis);
                         log("Image building completed.\n");
 
                         lastKeepAliveAction = Instant.now();
@@ -379,6 +411,17 @@ public final class NativeImageBuildServer {
         }
     }
 
+    private void logBuildTime(long buildMillis) {
+        log("Build time: %d ms", buildMillis);
+        if (firstBuildMillis >= 0) {
+            log(" (previous build: %d ms, first build of this server: %d ms)", previousBuildMillis, firstBuildMillis);
+        } else {
+            firstBuildMillis = buildMillis;
+        }
+        previousBuildMillis = buildMillis;
+        log("\nBuild server cache: %s\n", BuildServerCache.singleton().statistics());
+    }
+
     private static void sendExitStatus(DataOutputStream output, int exitStatus) {
         try {
             SubstrateServerMessage.send(new SubstrateServerMessage(ServerCommand.SEND_STATUS, ByteBuffer.allocate(4).putInt(exitStatus).array()), output);
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.test.jdk11;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Reads the event recording of the running image with {@link RecordingFile}. Only the chunks that
+ * were completed so far can be read, so this test needs an image built with
+ * {@code -H:+AllowEventRecording} that is run with a small {@code -XX:EventRecordingMaxChunkSize}
+ * and with the recording file in the system property {@value #FILE_PROPERTY}, see
+ * {@code native_unittests_task} in {@code mx_substratevm.py}.
+ */
+public class EventRecordingTest {
+
+    private static final String FILE_PROPERTY = "com.oracle.svm.test.jdk11.EventRecordingTest.file";
+    private static final String THREAD_NAME = "EventRecordingTest thread";
+    private static final long TIMEOUT_MILLIS = 60_000;
+
+    private static final byte[] MAGIC = {'F', 'L', 'R', '\0'};
+    private static final int CHUNK_SIZE_OFFSET = 8;
+
+    @Test
+    public void testRecordingFile() throws Exception {
+        String file = System.getProperty(FILE_PROPERTY);
+        Assume.assumeTrue("Event recording is not enabled", file != null);
+
+        Thread thread = new Thread(() -> {
+        }, THREAD_NAME);
+        thread.start();
+        thread.join();
+        System.gc();
+
+        Path completedChunks = Files.createTempFile("recording", ".jfr");
+        try {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            Set<String> missing = null;
+            while (System.currentTimeMillis() < deadline) {
+                if (copyCompletedChunks(Paths.get(file), completedChunks) > 0) {
+                    missing = findMissingEvents(RecordingFile.readAllEvents(completedChunks));
+                    if (missing.isEmpty()) {
+                        return;
+                    }
+                }
+                /* Events that were recorded after the last completed chunk are in a later chunk. */
+                System.gc();
+                Thread.sleep(100);
+            }
+            Assert.fail("Events missing from the completed chunks: " + missing);
+        } finally {
+            Files.delete(completedChunks);
+        }
+    }
+
+    private static Set<String> findMissingEvents(List<RecordedEvent> events) {
+        Set<String> missing = new HashSet<>();
+        missing.add("jdk.GarbageCollection");
+        missing.add("jdk.ThreadStart");
+        missing.add("jdk.ThreadEnd");
+        for (RecordedEvent event : events) {
+            String name = event.getEventType().getName();
+            if (name.equals("jdk.GarbageCollection")) {
+                Assert.assertTrue(event.getInt("gcId") >= 0);
+                Assert.assertNotNull(event.getString("cause.cause"));
+                Assert.assertFalse(event.getStartTime().isAfter(event.getEndTime()));
+                missing.remove(name);
+            } else if (name.equals("jdk.ThreadStart") || name.equals("jdk.ThreadEnd")) {
+                RecordedThread thread = event.getThread("thread");
+                if (thread != null && THREAD_NAME.equals(thread.getJavaName())) {
+                    missing.remove(name);
+                }
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Copies the chunks of the recording that are complete, i.e., whose header contains the size of
+     * the chunk, and returns their number.
+     */
+    private static int copyCompletedChunks(Path recording, Path target) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(recording));
+        int chunks = 0;
+        int end = 0;
+        while (bytes.limit() - end >= CHUNK_SIZE_OFFSET + 8) {
+            for (int i = 0; i < MAGIC.length; i++) {
+                Assert.assertEquals("Chunk header expected", MAGIC[i], bytes.get(end + i));
+            }
+            long chunkSize = bytes.getLong(end + CHUNK_SIZE_OFFSET);
+            if (chunkSize == 0 || end + chunkSize > bytes.limit()) {
+                break;
+            }
+            end += (int) chunkSize;
+            chunks++;
+        }
+        Files.write(target, Arrays.copyOf(bytes.array(), end));
+        return chunks;
+    }
+}
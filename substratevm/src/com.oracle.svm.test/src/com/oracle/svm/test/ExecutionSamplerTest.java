@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Consumes CPU time in {@link #spin} on two threads. When the image is built with
+ * {@code -H:+AllowExecutionSampling} and run with {@code -XX:ExecutionSamplingFile}, the profile
+ * that is written at shutdown must contain samples of that method, which
+ * {@code native_unittests_task} in {@code mx_substratevm.py} checks.
+ */
+public class ExecutionSamplerTest {
+
+    private static final long SPIN_NANOS = 1_000_000_000L;
+
+    private static volatile long sink;
+
+    static long spin(long nanos) {
+        long result = 0;
+        long deadline = System.nanoTime() + nanos;
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < 10_000; i++) {
+                result = result * 31 + i;
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testSampledThreads() throws InterruptedException {
+        Thread thread = new Thread(() -> sink = spin(SPIN_NANOS), "ExecutionSamplerTest thread");
+        thread.start();
+        sink = spin(SPIN_NANOS);
+        thread.join();
+        Assert.assertFalse(thread.isAlive());
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.test;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import sun.misc.Unsafe;
+
+/**
+ * Checks that objects survive collections intact. Some configurations of the garbage collector are
+ * only used when this test is run with their options, see {@code native_unittests_task} in
+ * {@code mx_substratevm.py}.
+ */
+public class GarbageCollectorTest {
+
+    private static final int NODES = 100_000;
+    private static final int ROUNDS = 40;
+
+    static final class Node {
+        final int value;
+        final Node next;
+        final byte[] payload;
+
+        Node(int value, Node next, byte[] payload) {
+            this.value = value;
+            this.next = next;
+            this.payload = payload;
+        }
+    }
+
+    private static volatile Object sink;
+
+    private static final Unsafe UNSAFE = getUnsafe();
+
+    private static Unsafe getUnsafe() {
+        try {
+            Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return (Unsafe) theUnsafe.get(Unsafe.class);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /** Reads the raw, possibly compressed, reference stored in an array element. */
+    private static long referenceBits(Object[] array, int index) {
+        long offset = UNSAFE.arrayBaseOffset(Object[].class) + (long) index * UNSAFE.arrayIndexScale(Object[].class);
+        if (UNSAFE.arrayIndexScale(Object[].class) == Integer.BYTES) {
+            return UNSAFE.getInt(array, offset) & 0xFFFFFFFFL;
+        }
+        return UNSAFE.getLong(array, offset);
+    }
+
+    private static Node createList(int length) {
+        Node head = null;
+        for (int i = 0; i < length; i++) {
+            byte[] payload = new byte[i % 64];
+            if (payload.length > 0) {
+                payload[0] = (byte) i;
+            }
+            head = new Node(i, head, payload);
+        }
+        return head;
+    }
+
+    private static void verifyList(Node head, int length) {
+        int expected = length - 1;
+        for (Node node = head; node != null; node = node.next) {
+            Assert.assertEquals(expected, node.value);
+            Assert.assertEquals(expected % 64, node.payload.length);
+            if (node.payload.length > 0) {
+                Assert.assertEquals((byte) expected, node.payload[0]);
+            }
+            expected--;
+        }
+        Assert.assertEquals(-1, expected);
+    }
+
+    private static void allocateGarbage(int count) {
+        for (int i = 0; i < count; i++) {
+            sink = new Object[i % 16];
+        }
+    }
+
+    @Test
+    public void testObjectsSurviveCollections() {
+        Node longLived = createList(NODES);
+        byte[][] largeArrays = new byte[ROUNDS][];
+        for (int round = 0; round < ROUNDS; round++) {
+            Node shortLived = createList(NODES / 10);
+            allocateGarbage(NODES);
+            /* Large arrays are allocated in their own chunks. */
+            largeArrays[round] = new byte[1024 * 1024];
+            largeArrays[round][round] = (byte) round;
+            if (round % 8 == 0) {
+                System.gc();
+            }
+            verifyList(shortLived, NODES / 10);
+            verifyList(longLived, NODES);
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            Assert.assertEquals((byte) round, largeArrays[round][round]);
+        }
+    }
+
+    @Test
+    public void testWeakReferencesAreCleared() {
+        WeakReference<Object> ref = new WeakReference<>(new Object());
+        for (int i = 0; i < 10 && ref.get() != null; i++) {
+            System.gc();
+        }
+        Assert.assertNull(ref.get());
+    }
+
+    @Test
+    public void testWeakReferencesToLiveObjectsAreKept() {
+        Node list = createList(NODES);
+        WeakReference<Node> ref = new WeakReference<>(list);
+        allocateGarbage(NODES);
+        System.gc();
+        Assert.assertSame(list, ref.get());
+        verifyList(ref.get(), NODES);
+    }
+
+    /**
+     * Interleaves live and dead objects in the old generation and checks that a complete collection
+     * moves the live objects and updates the references to them. Complete collections either copy
+     * or, with {@code CompactOldGeneration}, compact the old generation, both move objects.
+     */
+    @Test
+    public void testCompleteCollectionMovesObjects() {
+        Node[] live = new Node[NODES / 10];
+        Object[] dead = new Object[live.length];
+        Node previous = null;
+        for (int i = 0; i < live.length; i++) {
+            dead[i] = new byte[i % 64 + 16];
+            byte[] payload = new byte[i % 64];
+            if (payload.length > 0) {
+                payload[0] = (byte) i;
+            }
+            previous = new Node(i, previous, payload);
+            live[i] = previous;
+        }
+        /* Promote both the live and the dead objects to the old generation. */
+        System.gc();
+        long[] before = new long[live.length];
+        for (int i = 0; i < live.length; i++) {
+            before[i] = referenceBits(live, i);
+        }
+        dead = null;
+        System.gc();
+        int moved = 0;
+        for (int i = 0; i < live.length; i++) {
+            if (referenceBits(live, i) != before[i]) {
+                moved++;
+            }
+        }
+        Assert.assertTrue("no object was moved", moved > 0);
+        for (int i = 0; i < live.length; i++) {
+            Assert.assertSame(i == 0 ? null : live[i - 1], live[i].next);
+        }
+        verifyList(live[live.length - 1], live.length);
+    }
+}
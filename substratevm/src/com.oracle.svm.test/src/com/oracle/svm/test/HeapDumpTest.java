@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.test;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.graalvm.nativeimage.VMRuntime;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Dumps the heap and parses the HPROF file. Heap dumps require {@code -H:+AllowVMInspection}, so
+ * this test only runs in the image that {@code native_unittests_task} in {@code mx_substratevm.py}
+ * builds for it.
+ */
+public class HeapDumpTest {
+
+    private static final int MARKERS = 1000;
+
+    private static final int TAG_STRING = 0x01;
+    private static final int TAG_LOAD_CLASS = 0x02;
+    private static final int TAG_HEAP_DUMP = 0x0C;
+    private static final int TAG_HEAP_DUMP_SEGMENT = 0x1C;
+    private static final int TAG_HEAP_DUMP_END = 0x2C;
+
+    private static final int TAG_ROOT_UNKNOWN = 0xFF;
+    private static final int TAG_ROOT_JAVA_FRAME = 0x03;
+    private static final int TAG_ROOT_STICKY_CLASS = 0x05;
+    private static final int TAG_ROOT_THREAD_OBJECT = 0x08;
+    private static final int TAG_CLASS_DUMP = 0x20;
+    private static final int TAG_INSTANCE_DUMP = 0x21;
+    private static final int TAG_OBJECT_ARRAY_DUMP = 0x22;
+    private static final int TAG_PRIMITIVE_ARRAY_DUMP = 0x23;
+
+    private static final int TYPE_OBJECT = 2;
+
+    static final class Marker {
+        final long value;
+
+        Marker(long value) {
+            this.value = value;
+        }
+    }
+
+    static Marker[] markers;
+
+    @Test
+    public void testHeapDump() throws IOException {
+        markers = new Marker[MARKERS];
+        for (int i = 0; i < MARKERS; i++) {
+            markers[i] = new Marker(i);
+        }
+        File file = File.createTempFile("heapdump", ".hprof");
+        try {
+            try {
+                VMRuntime.dumpHeap(file.getPath(), true);
+            } catch (UnsupportedOperationException e) {
+                Assume.assumeNoException("Heap dumps are not enabled in this image", e);
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                new HprofParser(in).parse();
+            }
+        } finally {
+            markers = null;
+            file.delete();
+        }
+    }
+
+    private static final class HprofParser {
+        private final DataInputStream in;
+        private final Map<Long, String> strings = new HashMap<>();
+        private final Map<Long, String> classNames = new HashMap<>();
+        private final BitSet markerValues = new BitSet();
+        private int markerClassDumps;
+        private int markerFieldCount = -1;
+        private int idSize;
+
+        HprofParser(DataInputStream in) {
+            this.in = in;
+        }
+
+        void parse() throws IOException {
+            byte[] format = new byte["JAVA PROFILE 1.0.2".length()];
+            in.readFully(format);
+            Assert.assertEquals("JAVA PROFILE 1.0.2", new String(format, StandardCharsets.US_ASCII));
+            Assert.assertEquals(0, in.readUnsignedByte());
+            idSize = in.readInt();
+            Assert.assertEquals(8, idSize);
+            long timestamp = in.readLong();
+            Assert.assertTrue(timestamp > 0 && timestamp <= System.currentTimeMillis());
+
+            boolean ended = false;
+            while (!ended) {
+                int tag = in.readUnsignedByte();
+                in.readInt(); /* Time offset. */
+                long length = Integer.toUnsignedLong(in.readInt());
+                switch (tag) {
+                    case TAG_STRING:
+                        long id = readId();
+                        byte[] bytes = new byte[(int) length - idSize];
+                        in.readFully(bytes);
+                        strings.put(id, new String(bytes, StandardCharsets.UTF_8));
+                        break;
+                    case TAG_LOAD_CLASS:
+                        Assert.assertEquals(4 + idSize + 4 + idSize, length);
+                        in.readInt();
+                        long classId = readId();
+                        in.readInt();
+                        String name = strings.get(readId());
+                        Assert.assertNotNull("Class name must be written before the class", name);
+                        classNames.put(classId, name);
+                        break;
+                    case TAG_HEAP_DUMP:
+                    case TAG_HEAP_DUMP_SEGMENT:
+                        parseHeapDumpSegment(length);
+                        break;
+                    case TAG_HEAP_DUMP_END:
+                        Assert.assertEquals(0, length);
+                        ended = true;
+                        break;
+                    default:
+                        skip(length);
+                }
+            }
+            try {
+                in.readUnsignedByte();
+                Assert.fail("Data after the heap dump end record");
+            } catch (EOFException e) {
+                /* Expected. */
+            }
+
+            Assert.assertEquals("Class dumps of the marker class", 1, markerClassDumps);
+            Assert.assertEquals("Instance fields of the marker class", 1, markerFieldCount);
+            Assert.assertEquals("Marker instances", MARKERS, markerValues.cardinality());
+            Assert.assertEquals(MARKERS, markerValues.nextClearBit(0));
+        }
+
+        private void parseHeapDumpSegment(long length) throws IOException {
+            long remaining = length;
+            while (remaining > 0) {
+                remaining -= parseSubRecord();
+            }
+            Assert.assertEquals("Sub-records must end with their segment", 0, remaining);
+        }
+
+        private long parseSubRecord() throws IOException {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case TAG_ROOT_UNKNOWN:
+                case TAG_ROOT_STICKY_CLASS:
+                    readId();
+                    return 1 + idSize;
+                case TAG_ROOT_JAVA_FRAME:
+                case TAG_ROOT_THREAD_OBJECT:
+                    readId();
+                    in.readInt();
+                    in.readInt();
+                    return 1 + idSize + 4 + 4;
+                case TAG_CLASS_DUMP:
+                    return parseClassDump();
+                case TAG_INSTANCE_DUMP:
+                    return parseInstanceDump();
+                case TAG_OBJECT_ARRAY_DUMP: {
+                    readId();
+                    in.readInt();
+                    int elements = in.readInt();
+                    readId();
+                    skip((long) elements * idSize);
+                    return 1 + idSize + 4 + 4 + idSize + (long) elements * idSize;
+                }
+                case TAG_PRIMITIVE_ARRAY_DUMP: {
+                    readId();
+                    in.readInt();
+                    int elements = in.readInt();
+                    long size = (long) elements * valueSize(in.readUnsignedByte());
+                    skip(size);
+                    return 1 + idSize + 4 + 4 + 1 + size;
+                }
+                default:
+                    throw new AssertionError("Unknown heap dump sub-record tag " + tag);
+            }
+        }
+
+        private long parseClassDump() throws IOException {
+            long classId = readId();
+            in.readInt();
+            /* Super class, class loader, signers, protection domain and two reserved fields. */
+            for (int i = 0; i < 6; i++) {
+                readId();
+            }
+            in.readInt();
+            long size = 1 + idSize + 4 + 6 * idSize + 4;
+            int constantPoolEntries = in.readUnsignedShort();
+            size += 2;
+            for (int i = 0; i < constantPoolEntries; i++) {
+                in.readUnsignedShort();
+                int valueSize = valueSize(in.readUnsignedByte());
+                skip(valueSize);
+                size += 2 + 1 + valueSize;
+            }
+            int staticFields = in.readUnsignedShort();
+            size += 2;
+            for (int i = 0; i < staticFields; i++) {
+                Assert.assertNotNull("Static field names must be written", strings.get(readId()));
+                int valueSize = valueSize(in.readUnsignedByte());
+                skip(valueSize);
+                size += idSize + 1 + valueSize;
+            }
+            int instanceFields = in.readUnsignedShort();
+            size += 2;
+            boolean isMarker = isMarkerClass(classId);
+            for (int i = 0; i < instanceFields; i++) {
+                String name = strings.get(readId());
+                int type = in.readUnsignedByte();
+                if (isMarker) {
+                    Assert.assertEquals("value", name);
+                    Assert.assertEquals(8, valueSize(type));
+                }
+                size += idSize + 1;
+            }
+            if (isMarker) {
+                markerClassDumps++;
+                markerFieldCount = instanceFields;
+            }
+            return size;
+        }
+
+        private long parseInstanceDump() throws IOException {
+            readId();
+            in.readInt();
+            long classId = readId();
+            int dataSize = in.readInt();
+            if (isMarkerClass(classId)) {
+                /* Marker has no super class fields. */
+                Assert.assertEquals(8, dataSize);
+                long value = in.readLong();
+                Assert.assertTrue(value >= 0 && value < MARKERS);
+                Assert.assertFalse("Marker written twice", markerValues.get((int) value));
+                markerValues.set((int) value);
+            } else {
+                skip(dataSize);
+            }
+            return 1 + idSize + 4 + idSize + 4 + dataSize;
+        }
+
+        private boolean isMarkerClass(long classId) {
+            return "com/oracle/svm/test/HeapDumpTest$Marker".equals(classNames.get(classId));
+        }
+
+        private int valueSize(int type) {
+            switch (type) {
+                case TYPE_OBJECT:
+                    return idSize;
+                case 4: /* boolean */
+                case 8: /* byte */
+                    return 1;
+                case 5: /* char */
+                case 9: /* short */
+                    return 2;
+                case 6: /* float */
+                case 10: /* int */
+                    return 4;
+                case 7: /* double */
+                case 11: /* long */
+                    return 8;
+                default:
+                    throw new AssertionError("Unknown basic type " + type);
+            }
+        }
+
+        private long readId() throws IOException {
+            return in.readLong();
+        }
+
+        private void skip(long length) throws IOException {
+            long remaining = length;
+            while (remaining > 0) {
+                int skipped = in.skipBytes((int) Math.min(remaining, Integer.MAX_VALUE));
+                if (skipped <= 0) {
+                    throw new EOFException();
+                }
+                remaining -= skipped;
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2018, 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.test;
+
+import java.lang.reflect.Field;
+
+import org.graalvm.nativeimage.hosted.Feature;
+import org.graalvm.nativeimage.hosted.RuntimeClassInitialization;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import sun.misc.Unsafe;
+
+/**
+ * Checks that image heap objects whose fields are written at run time are placed before the
+ * objects that are never written, so that they do not share pages. The image must be built with
+ * {@link TestFeature} and {@code -H:+GroupWrittenImageHeapObjects}, and run with
+ * {@code -Dcom.oracle.svm.test.ImageHeapLayoutTest.grouped=true}.
+ */
+public class ImageHeapLayoutTest {
+    public static class TestFeature implements Feature {
+        @Override
+        public void beforeAnalysis(BeforeAnalysisAccess access) {
+            RuntimeClassInitialization.initializeAtBuildTime(ImageObjects.class, Counter.class, Constant.class);
+        }
+    }
+
+    /** Its field is written at run time, see {@link #increment}. */
+    static final class Counter {
+        long value;
+
+        void increment() {
+            value++;
+        }
+    }
+
+    /** Its field is only written by the constructor, so it keeps its value from the image build. */
+    static final class Constant {
+        long value;
+
+        Constant(long value) {
+            this.value = value;
+        }
+    }
+
+    static final class ImageObjects {
+        static final int COUNT = 32;
+        static final Object[] COUNTERS = new Object[COUNT];
+        static final Object[] CONSTANTS = new Object[COUNT];
+
+        static {
+            for (int i = 0; i < COUNT; i++) {
+                COUNTERS[i] = new Counter();
+                CONSTANTS[i] = new Constant(i);
+            }
+        }
+    }
+
+    private static final Unsafe UNSAFE = getUnsafe();
+
+    private static Unsafe getUnsafe() {
+        try {
+            Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return (Unsafe) theUnsafe.get(Unsafe.class);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /** Reads the raw, possibly compressed, reference stored in an array element. */
+    private static long referenceBits(Object[] array, int index) {
+        long offset = UNSAFE.arrayBaseOffset(Object[].class) + (long) index * UNSAFE.arrayIndexScale(Object[].class);
+        if (UNSAFE.arrayIndexScale(Object[].class) == Integer.BYTES) {
+            return UNSAFE.getInt(array, offset) & 0xFFFFFFFFL;
+        }
+        return UNSAFE.getLong(array, offset);
+    }
+
+    @Test
+    public void testWrittenObjectsArePlacedFirst() {
+        Assume.assumeTrue("Image heap objects are not grouped by writes", Boolean.getBoolean("com.oracle.svm.test.ImageHeapLayoutTest.grouped"));
+
+        /* Make the writes reachable for the static analysis. */
+        ((Counter) ImageObjects.COUNTERS[0]).increment();
+        Assert.assertEquals(1, ((Counter) ImageObjects.COUNTERS[0]).value);
+        Assert.assertEquals(42, new Constant(42).value);
+
+        long lastCounter = 0;
+        long firstConstant = Long.MAX_VALUE;
+        for (int i = 0; i < ImageObjects.COUNT; i++) {
+            lastCounter = Math.max(lastCounter, referenceBits(ImageObjects.COUNTERS, i));
+            firstConstant = Math.min(firstConstant, referenceBits(ImageObjects.CONSTANTS, i));
+            Assert.assertEquals(i, ((Constant) ImageObjects.CONSTANTS[i]).value);
+        }
+        Assert.assertTrue("Objects that are never written must be placed after the written objects", lastCounter < firstConstant);
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.svm.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Covers the transitions of a monitor between its thin and its inflated state: recursive locking,
+ * contention, waiting and identity hash codes.
+ */
+public class MonitorTest {
+
+    private static final int RECURSION_DEPTH = 1000;
+    private static final int THREADS = 8;
+    private static final int INCREMENTS = 100_000;
+
+    private static int lockRecursively(Object lock, int depth) {
+        synchronized (lock) {
+            Assert.assertTrue(Thread.holdsLock(lock));
+            if (depth == 0) {
+                return 0;
+            }
+            return lockRecursively(lock, depth - 1) + 1;
+        }
+    }
+
+    @Test
+    public void testRecursiveLocking() {
+        Object lock = new Object();
+        Assert.assertEquals(RECURSION_DEPTH, lockRecursively(lock, RECURSION_DEPTH));
+        Assert.assertFalse(Thread.holdsLock(lock));
+
+        /* The lock must also be free for other threads afterwards. */
+        AtomicBoolean acquired = new AtomicBoolean();
+        Thread thread = new Thread(() -> {
+            synchronized (lock) {
+                acquired.set(true);
+            }
+        });
+        thread.start();
+        join(thread);
+        Assert.assertTrue(acquired.get());
+    }
+
+    static final class Counter {
+        int value;
+    }
+
+    @Test
+    public void testContention() {
+        Counter counter = new Counter();
+        Thread[] threads = new Thread[THREADS];
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < THREADS; i++) {
+            threads[i] = new Thread(() -> {
+                await(start);
+                for (int j = 0; j < INCREMENTS; j++) {
+                    synchronized (counter) {
+                        counter.value++;
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            join(thread);
+        }
+        synchronized (counter) {
+            Assert.assertEquals(THREADS * INCREMENTS, counter.value);
+        }
+    }
+
+    @Test
+    public void testContentionWhileLockedRecursively() {
+        Counter counter = new Counter();
+        CountDownLatch started = new CountDownLatch(1);
+        Thread thread;
+        synchronized (counter) {
+            synchronized (counter) {
+                thread = new Thread(() -> {
+                    started.countDown();
+                    synchronized (counter) {
+                        counter.value++;
+                    }
+                });
+                thread.start();
+                await(started);
+                sleep(50);
+                /* The other thread is blocked on the lock. */
+                Assert.assertEquals(0, counter.value);
+            }
+            Assert.assertTrue(Thread.holdsLock(counter));
+        }
+        join(thread);
+        Assert.assertEquals(1, counter.value);
+    }
+
+    @Test
+    public void testWaitAndNotify() {
+        Object lock = new Object();
+        AtomicBoolean notified = new AtomicBoolean();
+        AtomicBoolean holdsLockAfterWait = new AtomicBoolean();
+        CountDownLatch waiting = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            synchronized (lock) {
+                waiting.countDown();
+                while (!notified.get()) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+                holdsLockAfterWait.set(Thread.holdsLock(lock));
+            }
+        });
+        waiter.start();
+        await(waiting);
+        synchronized (lock) {
+            /* The waiter released the lock while waiting. */
+            notified.set(true);
+            lock.notifyAll();
+        }
+        join(waiter);
+        Assert.assertTrue(holdsLockAfterWait.get());
+        Assert.assertFalse(Thread.holdsLock(lock));
+    }
+
+    @Test
+    public void testTimedWaitOnThinLock() throws InterruptedException {
+        Object lock = new Object();
+        synchronized (lock) {
+            synchronized (lock) {
+                long start = System.nanoTime();
+                lock.wait(10);
+                Assert.assertTrue(System.nanoTime() - start >= 5_000_000L);
+                /* Waiting must restore the recursion count. */
+                Assert.assertTrue(Thread.holdsLock(lock));
+            }
+            Assert.assertTrue(Thread.holdsLock(lock));
+        }
+        Assert.assertFalse(Thread.holdsLock(lock));
+    }
+
+    @Test(expected = IllegalMonitorStateException.class)
+    public void testNotifyWithoutLock() {
+        new Object().notify();
+    }
+
+    @Test
+    public void testIdentityHashCode() {
+        Object hashedFirst = new Object();
+        int hash = hashedFirst.hashCode();
+        synchronized (hashedFirst) {
+            Assert.assertEquals(hash, hashedFirst.hashCode());
+            Assert.assertEquals(hash, System.identityHashCode(hashedFirst));
+        }
+        Assert.assertEquals(hash, hashedFirst.hashCode());
+
+        Object lockedFirst = new Object();
+        int lockedHash;
+        synchronized (lockedFirst) {
+            lockedHash = System.identityHashCode(lockedFirst);
+            synchronized (lockedFirst) {
+                Assert.assertEquals(lockedHash, lockedFirst.hashCode());
+            }
+        }
+        Assert.assertEquals(lockedHash, lockedFirst.hashCode());
+
+        /* An inflated monitor must not change the hash code either. */
+        Object contended = new Object();
+        int contendedHash = contended.hashCode();
+        AtomicInteger hashSeenByOtherThread = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        Thread thread;
+        synchronized (contended) {
+            thread = new Thread(() -> {
+                started.countDown();
+                synchronized (contended) {
+                    hashSeenByOtherThread.set(contended.hashCode());
+                }
+            });
+            thread.start();
+            await(started);
+            sleep(10);
+        }
+        join(thread);
+        Assert.assertEquals(contendedHash, hashSeenByOtherThread.get());
+        Assert.assertEquals(contendedHash, System.identityHashCode(contended));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void join(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
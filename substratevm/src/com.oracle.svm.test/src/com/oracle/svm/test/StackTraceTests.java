@@ -25,8 +25,11 @@
 package com.oracle.svm.test;
 
 import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 
+import java.util.concurrent.CountDownLatch;
+
 import org.junit.Test;
 
 /**
@@ -48,4 +51,34 @@ public class StackTraceTests {
         assertSame(StackTraceTests.class, classes[0]);
         assertTrue(classes.length > 1);
     }
+
+    static volatile boolean spinning;
+
+    static void spin(CountDownLatch started) {
+        started.countDown();
+        while (spinning) {
+            /* Busy wait, so that the thread reaches safepoint checks in this method. */
+        }
+    }
+
+    @Test
+    public void testGetStackTraceOfOtherThread() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        spinning = true;
+        Thread thread = new Thread(() -> spin(started));
+        thread.start();
+        try {
+            started.await();
+            StackTraceElement[] trace = thread.getStackTrace();
+            boolean foundSpin = false;
+            for (StackTraceElement element : trace) {
+                assertFalse(element.toString(), element.getClassName().endsWith(".Safepoint"));
+                foundSpin |= element.getClassName().equals(StackTraceTests.class.getName()) && element.getMethodName().equals("spin");
+            }
+            assertTrue(foundSpin);
+        } finally {
+            spinning = false;
+            thread.join();
+        }
+    }
 }
@@ -204,6 +204,7 @@ suite = {
       "dependencies" : [
         "com.oracle.truffle.api.instrumentation.test",
         "TRUFFLE_API",
+        "TRUFFLE_NFI",
         "mx:JMH_1_21",
       ],
       "requiresConcealed" : {
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.oracle.truffle.api.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.library.ExportLibrary;
+import com.oracle.truffle.api.library.ExportMessage;
+import com.oracle.truffle.api.library.GenerateLibrary;
+import com.oracle.truffle.api.library.Library;
+import com.oracle.truffle.api.library.LibraryFactory;
+import com.oracle.truffle.api.nodes.RootNode;
+
+/**
+ * Measures the interpreter performance of library calls at megamorphic call sites, i.e. call sites
+ * that saw more receiver types than their limit allows. Such call sites dispatch using uncached
+ * libraries.
+ */
+@State(Scope.Thread)
+public class LibraryDispatchBenchmark extends TruffleBenchmark {
+
+    private static final int RECEIVERS = 8;
+    private static final int CALLS = 1000;
+
+    @GenerateLibrary
+    public abstract static class BenchmarkLibrary extends Library {
+
+        public abstract int value(Object receiver);
+
+    }
+
+    @ExportLibrary(BenchmarkLibrary.class)
+    static final class Receiver0 {
+        @ExportMessage
+        int value() {
+            return 0;
+        }
+    }
+
+    @ExportLibrary(BenchmarkLibrary.class)
+    static final class Receiver1 {
+        @ExportMessage
+        int value() {
+            return 1;
+        }
+    }
+
+    @ExportLibrary(BenchmarkLibrary.class)
+    static final class Receiver2 {
+        @ExportMessage
+        int value() {
+            return 2;
+        }
+    }
+
+    @ExportLibrary(BenchmarkLibrary.class)
+    static final class Receiver3 {
+        @ExportMessage
+        int value() {
+            return 3;
+        }
+    }
+
+    @ExportLibrary(BenchmarkLibrary.class)
+    static final class Receiver4 {
+        @ExportMessage
+        int value() {
+            return 4;
+        }
+    }
+
+    @ExportLibrary(BenchmarkLibrary.class)
+    static final class Receiver5 {
+        @ExportMessage
+        int value() {
+            return 5;
+        }
+    }
+
+    @ExportLibrary(BenchmarkLibrary.class)
+    static final class Receiver6 {
+        @ExportMessage
+        int value() {
+            return 6;
+        }
+    }
+
+    @ExportLibrary(BenchmarkLibrary.class)
+    static final class Receiver7 {
+        @ExportMessage
+        int value() {
+            return 7;
+        }
+    }
+
+    static final class DispatchRootNode extends RootNode {
+
+        @Child BenchmarkLibrary library;
+
+        DispatchRootNode(BenchmarkLibrary library) {
+            super(null);
+            this.library = library;
+        }
+
+        @Override
+        public Object execute(VirtualFrame frame) {
+            return null;
+        }
+    }
+
+    private static final LibraryFactory<BenchmarkLibrary> FACTORY = LibraryFactory.resolve(BenchmarkLibrary.class);
+
+    @State(Scope.Thread)
+    public static class MegamorphicState {
+
+        final Object[] receivers = new Object[CALLS];
+        BenchmarkLibrary dispatched;
+        BenchmarkLibrary uncached;
+
+        @Setup
+        public void setup() {
+            Object[] types = new Object[]{new Receiver0(), new Receiver1(), new Receiver2(), new Receiver3(),
+                            new Receiver4(), new Receiver5(), new Receiver6(), new Receiver7()};
+            for (int i = 0; i < CALLS; i++) {
+                // few receiver types per call site, but more than the limit
+                receivers[i] = types[i % 3];
+            }
+            DispatchRootNode root = new DispatchRootNode(FACTORY.createDispatched(2));
+            root.adoptChildren();
+            dispatched = root.library;
+            uncached = FACTORY.getUncached();
+            // make the dispatched library megamorphic
+            for (int i = 0; i < RECEIVERS; i++) {
+                dispatched.value(types[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int megamorphicDispatched(MegamorphicState state) {
+        BenchmarkLibrary library = state.dispatched;
+        Object[] receivers = state.receivers;
+        int sum = 0;
+        for (int i = 0; i < receivers.length; i++) {
+            sum += library.value(receivers[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int uncachedDispatched(MegamorphicState state) {
+        BenchmarkLibrary library = state.uncached;
+        Object[] receivers = state.receivers;
+        int sum = 0;
+        for (int i = 0; i < receivers.length; i++) {
+            sum += library.value(receivers[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int uncachedLookup(MegamorphicState state) {
+        Object[] receivers = state.receivers;
+        int sum = 0;
+        for (int i = 0; i < receivers.length; i++) {
+            Object receiver = receivers[i];
+            sum += FACTORY.getUncached(receiver).value(receiver);
+        }
+        return sum;
+    }
+
+}
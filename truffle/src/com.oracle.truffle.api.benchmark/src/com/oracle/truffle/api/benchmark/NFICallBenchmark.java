@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.oracle.truffle.api.benchmark;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures calls of small native functions through NFI. The integer and pointer signatures are
+ * called without going through libffi, the floating point signature is called using libffi.
+ */
+@State(Scope.Thread)
+public class NFICallBenchmark extends TruffleBenchmark {
+
+    private static final int CALLS = 1000;
+
+    private Context context;
+    private Value abs;
+    private Value labs;
+    private Value fabs;
+    private Value srand;
+
+    @Setup
+    public void setup() {
+        context = Context.newBuilder().allowNativeAccess(true).build();
+        Value library = context.eval("nfi", "default");
+        abs = library.getMember("abs").invokeMember("bind", "(sint32):sint32");
+        labs = library.getMember("labs").invokeMember("bind", "(sint64):sint64");
+        fabs = library.getMember("fabs").invokeMember("bind", "(double):double");
+        srand = library.getMember("srand").invokeMember("bind", "(uint32):void");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public int callInt() {
+        int sum = 0;
+        for (int i = 0; i < CALLS; i++) {
+            sum += abs.execute(-i).asInt();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public long callLong() {
+        long sum = 0;
+        for (int i = 0; i < CALLS; i++) {
+            sum += labs.execute(-(long) i).asLong();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public double callDouble() {
+        double sum = 0;
+        for (int i = 0; i < CALLS; i++) {
+            sum += fabs.execute(-(double) i).asDouble();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public void callVoid() {
+        for (int i = 0; i < CALLS; i++) {
+            srand.execute(i);
+        }
+    }
+
+}
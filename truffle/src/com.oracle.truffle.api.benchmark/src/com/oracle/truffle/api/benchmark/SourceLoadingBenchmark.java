@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.oracle.truffle.api.benchmark;
+
+import static com.oracle.truffle.api.benchmark.TruffleBenchmark.Defaults.FORKS;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the time to the first execution of a code base loaded from files, once with file
+ * content read into the heap and once with memory mapped file content. Run with
+ * {@code -prof gc} to compare the allocation rates. The benchmark language does not look at the
+ * source content, so only the loading overhead of the sources is measured.
+ */
+@State(Scope.Benchmark)
+public class SourceLoadingBenchmark extends TruffleBenchmark {
+
+    @Param({"16"}) int files;
+    @Param({"1048576"}) int fileSize;
+
+    private Path directory;
+    private final List<File> sources = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("source_loading");
+        StringBuilder line = new StringBuilder();
+        while (line.length() < 80) {
+            line.append("statement; ");
+        }
+        line.append('\n');
+        byte[] lineBytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] content = new byte[fileSize];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = lineBytes[i % lineBytes.length];
+        }
+        for (int i = 0; i < files; i++) {
+            Path file = directory.resolve("source" + i + ".js");
+            Files.write(file, content);
+            sources.add(file.toFile());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (File file : sources) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public Object read() throws IOException {
+        return loadAndExecute();
+    }
+
+    @Benchmark
+    @Fork(value = FORKS, jvmArgsAppend = "-Dtruffle.SourceMappingThreshold=0")
+    public Object mapped() throws IOException {
+        return loadAndExecute();
+    }
+
+    private Object loadAndExecute() throws IOException {
+        Object result = null;
+        try (Context context = Context.newBuilder().allowIO(true).build()) {
+            for (File file : sources) {
+                result = context.eval(Source.newBuilder(EngineBenchmark.TEST_LANGUAGE, file).build());
+            }
+        }
+        return result;
+    }
+
+}
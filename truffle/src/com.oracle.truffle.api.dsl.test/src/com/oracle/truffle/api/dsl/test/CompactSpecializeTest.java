@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.oracle.truffle.api.dsl.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.GenerateCompactSpecialize;
+import com.oracle.truffle.api.dsl.ReportPolymorphism;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.dsl.UnsupportedSpecializationException;
+import com.oracle.truffle.api.dsl.test.CompactSpecializeTestFactory.CompactCachedNodeGen;
+import com.oracle.truffle.api.dsl.test.CompactSpecializeTestFactory.CompactFrameNodeGen;
+import com.oracle.truffle.api.dsl.test.CompactSpecializeTestFactory.CompactGuardsNodeGen;
+import com.oracle.truffle.api.dsl.test.CompactSpecializeTestFactory.CompactPolymorphicNodeGen;
+import com.oracle.truffle.api.dsl.test.CompactSpecializeTestFactory.DefaultGuardsNodeGen;
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.nodes.Node;
+
+@SuppressWarnings("unused")
+public class CompactSpecializeTest {
+
+    abstract static class CompactTestNode extends Node {
+
+        abstract Object execute(Object arg);
+
+    }
+
+    @GenerateCompactSpecialize
+    abstract static class CompactGuardsNode extends CompactTestNode {
+
+        @Specialization(guards = "arg >= 0")
+        int doPositiveInt(int arg) {
+            return arg;
+        }
+
+        @Specialization
+        double doDouble(double arg) {
+            return arg * 2;
+        }
+
+        @Specialization(guards = "arg.length() > 0")
+        String doString(String arg) {
+            return arg + "!";
+        }
+
+        @Specialization
+        boolean doBoolean(boolean arg) {
+            return !arg;
+        }
+    }
+
+    abstract static class DefaultGuardsNode extends CompactTestNode {
+
+        @Specialization(guards = "arg >= 0")
+        int doPositiveInt(int arg) {
+            return arg;
+        }
+
+        @Specialization
+        double doDouble(double arg) {
+            return arg * 2;
+        }
+    }
+
+    @Test
+    public void testGuards() {
+        CompactGuardsNode node = CompactGuardsNodeGen.create();
+        assertEquals(42, node.execute(42));
+        assertEquals(3.0d, node.execute(1.5d));
+        assertEquals("a!", node.execute("a"));
+        assertEquals(false, node.execute(true));
+        assertEquals(0, node.execute(0));
+        assertUnsupported(node, -1);
+        assertUnsupported(node, "");
+        assertUnsupported(node, new Object());
+    }
+
+    @GenerateCompactSpecialize
+    abstract static class CompactCachedNode extends CompactTestNode {
+
+        @Specialization(guards = "arg == cachedArg", limit = "2")
+        String doCached(int arg, @Cached("arg") int cachedArg) {
+            return "cached" + cachedArg;
+        }
+
+        @Specialization(replaces = "doCached")
+        String doGeneric(int arg) {
+            return "generic" + arg;
+        }
+
+        @Specialization(guards = "arg == cachedArg", limit = "1")
+        String doCachedString(String arg, @Cached("arg") String cachedArg) {
+            return "cached" + cachedArg;
+        }
+
+        @Specialization
+        String doLong(long arg) {
+            return "long" + arg;
+        }
+    }
+
+    @Test
+    public void testCached() {
+        CompactCachedNode node = CompactCachedNodeGen.create();
+        assertEquals("cached1", node.execute(1));
+        assertEquals("cached2", node.execute(2));
+        assertEquals("cached1", node.execute(1));
+        assertEquals("generic3", node.execute(3));
+        assertEquals("generic1", node.execute(1));
+        assertEquals("long4", node.execute(4L));
+        assertEquals("cacheda", node.execute("a"));
+        assertEquals("cacheda", node.execute("a"));
+        assertUnsupported(node, "b");
+        assertEquals("generic5", node.execute(5));
+    }
+
+    @GenerateCompactSpecialize
+    @ReportPolymorphism
+    abstract static class CompactPolymorphicNode extends CompactTestNode {
+
+        @Specialization(guards = "arg == cachedArg", limit = "2")
+        int doCached(int arg, @Cached("arg") int cachedArg) {
+            return cachedArg;
+        }
+
+        @Specialization(replaces = "doCached")
+        int doGeneric(int arg) {
+            return -arg;
+        }
+
+        @Specialization
+        String doString(String arg) {
+            return arg;
+        }
+    }
+
+    @Test
+    public void testPolymorphic() {
+        CompactPolymorphicNode node = CompactPolymorphicNodeGen.create();
+        assertEquals(1, node.execute(1));
+        assertEquals(2, node.execute(2));
+        assertEquals(-3, node.execute(3));
+        assertEquals("a", node.execute("a"));
+        assertEquals(-1, node.execute(1));
+    }
+
+    @GenerateCompactSpecialize
+    abstract static class CompactFrameNode extends Node {
+
+        abstract Object execute(VirtualFrame frame, Object arg);
+
+        @Specialization
+        int doInt(int arg) {
+            return arg + 1;
+        }
+
+        @Specialization
+        String doString(VirtualFrame frame, String arg) {
+            return arg + "?";
+        }
+    }
+
+    @Test
+    public void testFrame() {
+        CompactFrameNode node = CompactFrameNodeGen.create();
+        assertEquals(2, node.execute(null, 1));
+        assertEquals("a?", node.execute(null, "a"));
+        assertEquals(3, node.execute(null, 2));
+    }
+
+    @Test
+    public void testOutlinedMethods() {
+        assertEquals(4, getOutlinedMethods(CompactGuardsNodeGen.class).size());
+        assertEquals(3, getOutlinedMethods(CompactCachedNodeGen.class).size());
+        assertEquals(2, getOutlinedMethods(CompactPolymorphicNodeGen.class).size());
+        assertEquals(2, getOutlinedMethods(CompactFrameNodeGen.class).size());
+        assertEquals(0, getOutlinedMethods(DefaultGuardsNodeGen.class).size());
+    }
+
+    @Test
+    public void testPolymorphismReported() throws NoSuchMethodException {
+        // the entry method reports polymorphism after the outlined methods return
+        Method check = CompactPolymorphicNodeGen.class.getDeclaredMethod("checkForPolymorphicSpecialize", int.class, int.class, int.class);
+        assertEquals(void.class, check.getReturnType());
+        assertTrue(getOutlinedMethods(CompactPolymorphicNodeGen.class).size() > 1);
+    }
+
+    private static List<Method> getOutlinedMethods(Class<?> nodeClass) {
+        List<Method> result = new ArrayList<>();
+        for (Method method : nodeClass.getDeclaredMethods()) {
+            if (method.getName().startsWith("executeAndSpecialize_")) {
+                result.add(method);
+            }
+        }
+        return result;
+    }
+
+    private static void assertUnsupported(CompactTestNode node, Object arg) {
+        try {
+            node.execute(arg);
+            fail();
+        } catch (UnsupportedSpecializationException e) {
+        }
+    }
+
+}
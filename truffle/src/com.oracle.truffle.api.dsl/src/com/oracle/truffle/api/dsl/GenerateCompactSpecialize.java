@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.oracle.truffle.api.dsl;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates a compact specialization method for nodes with many specializations. By default the
+ * generated <code>executeAndSpecialize</code> method contains the guards, cache initializers and
+ * state updates of all specializations in a single method. For nodes with many specializations this
+ * method may become large, which increases interpreter footprint and the size of the graphs that
+ * need to be parsed during partial evaluation. If this annotation is present, the top-level
+ * specialization groups are outlined into separate methods that are chained in declaration order.
+ * Each outlined method only contains the slow-path code of its own specializations and delegates to
+ * the next method if none of its specializations match.
+ * <p>
+ * The semantics of the node are not affected by this annotation. The fast-path
+ * <code>execute</code> methods are generated in the same way as without this annotation. If the
+ * specializations of a node cannot be split, for example if all specializations share a common
+ * type guard, then the annotation has no effect.
+ * <p>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * &#64;GenerateCompactSpecialize
+ * abstract static class AddNode extends Node {
+ *
+ *     abstract Object execute(Object left, Object right);
+ *
+ *     &#64;Specialization
+ *     static int doInt(int left, int right) {
+ *         // ...
+ *     }
+ *
+ *     &#64;Specialization
+ *     static double doDouble(double left, double right) {
+ *         // ...
+ *     }
+ *
+ *     // many more specializations
+ * }
+ * </pre>
+ *
+ * @since 21.0
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target({ElementType.TYPE})
+@Inherited
+public @interface GenerateCompactSpecialize {
+
+}
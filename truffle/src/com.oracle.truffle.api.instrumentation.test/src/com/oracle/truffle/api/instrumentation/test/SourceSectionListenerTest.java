@@ -269,6 +269,32 @@ public class SourceSectionListenerTest extends AbstractInstrumentationTest {
         }
     }
 
+    @Test
+    public void testLoadSourceSectionSourceIs() throws IOException {
+        SourceSection[] sourceSections1 = sections("STATEMENT(EXPRESSION)", "STATEMENT(EXPRESSION)", "EXPRESSION");
+        SourceSection[] sourceSections2 = sections("STATEMENT(EXPRESSION, EXPRESSION)", "STATEMENT(EXPRESSION, EXPRESSION)", "EXPRESSION");
+        SourceSection[] sourceSections3 = sections("STATEMENT", "STATEMENT");
+        Source source1 = sourceSections1[0].getSource();
+        Source source2 = sourceSections2[0].getSource();
+        Source source3 = sourceSections3[0].getSource();
+        run(source1);
+        run(source2);
+
+        List<LoadSourceSectionEvent> events2 = new ArrayList<>();
+        SourceSectionFilter filter2 = SourceSectionFilter.newBuilder().sourceIs(getSourceImpl(source2)).build();
+        instrumentEnv.getInstrumenter().attachLoadSourceSectionListener(filter2, events2::add, true);
+        assertEvents(events2, sourceSections2);
+
+        // roots loaded after the source index was initialized are found too
+        run(source3);
+        assertEvents(events2, sourceSections2);
+        List<LoadSourceSectionEvent> events13 = new ArrayList<>();
+        SourceSectionFilter filter13 = SourceSectionFilter.newBuilder().sourceIs(getSourceImpl(source3), getSourceImpl(source1)).build();
+        instrumentEnv.getInstrumenter().attachLoadSourceSectionListener(filter13, events13::add, true);
+        // sections of multiple sources are notified in the load order
+        assertEvents(events13, merge(sourceSections1, sourceSections3));
+    }
+
     @Test
     public void testLoadSourceSectionException() throws IOException {
         assureEnabled(engine.getInstruments().get("testLoadSourceSectionException"));
@@ -283,6 +283,23 @@ public class EventBinding<T> {
             }
         }
 
+        boolean isSourceRestricted() {
+            return getFilter().isSourceRestricted();
+        }
+
+        boolean isSourceCandidate(com.oracle.truffle.api.source.Source source) {
+            try {
+                return getFilter().isSourceCandidate(source);
+            } catch (Throwable t) {
+                if (isLanguageBinding()) {
+                    throw t;
+                } else {
+                    ProbeNode.exceptionEventForClientInstrument(this, getFilter().toString(), t);
+                    return false;
+                }
+            }
+        }
+
         boolean isExecutionEvent() {
             return isExecutionEvent;
         }
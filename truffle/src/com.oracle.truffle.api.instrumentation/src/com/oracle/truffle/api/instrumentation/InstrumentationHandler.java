@@ -45,13 +45,17 @@ import static com.oracle.truffle.api.instrumentation.InstrumentAccessor.ENGINE;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -108,6 +112,8 @@ final class InstrumentationHandler {
 
     final Collection<RootNode> loadedRoots = new WeakAsyncList<>(256);
     private final Collection<RootNode> executedRoots = new WeakAsyncList<>(64);
+    private final SourceRootIndex loadedRootsIndex = new SourceRootIndex(loadedRoots);
+    private final SourceRootIndex executedRootsIndex = new SourceRootIndex(executedRoots);
     private final Collection<AllocationReporter> allocationReporters = new WeakAsyncList<>(16);
 
     private volatile boolean hasLoadOrExecutionBinding = false;
@@ -179,6 +185,7 @@ final class InstrumentationHandler {
         }
 
         loadedRoots.add(root);
+        loadedRootsIndex.onAdded(root);
 
         // fast path no bindings attached
         if (hasLoadOrExecutionBinding) {
@@ -197,6 +204,7 @@ final class InstrumentationHandler {
         }
 
         executedRoots.add(root);
+        executedRootsIndex.onAdded(root);
 
         // fast path no bindings attached
         if (hasLoadOrExecutionBinding) {
@@ -340,7 +348,7 @@ final class InstrumentationHandler {
             visitorBuilder.addNotifyLoadedOperationForAllBindings(VisitOperation.Scope.ONLY_MATERIALIZED);
             visitorBuilder.addFindSourcesOperation(VisitOperation.Scope.ONLY_MATERIALIZED);
             visitorBuilder.addFindSourcesExecutedOperation(VisitOperation.Scope.ONLY_MATERIALIZED);
-            visitRoots(executedRoots, visitorBuilder.buildVisitor(), true);
+            visitRoots(executedRootsIndex.findRoots(binding), visitorBuilder.buildVisitor(), true);
         }
 
         if (TRACE) {
@@ -366,7 +374,7 @@ final class InstrumentationHandler {
                 visitorBuilder.addInsertWrapperOperationForAllBindings(VisitOperation.Scope.ONLY_MATERIALIZED);
                 visitorBuilder.addFindSourcesOperation(VisitOperation.Scope.ONLY_MATERIALIZED);
                 visitorBuilder.addFindSourcesExecutedOperation(VisitOperation.Scope.ONLY_MATERIALIZED);
-                visitRoots(loadedRoots, visitorBuilder.buildVisitor());
+                visitRoots(loadedRootsIndex.findRoots(binding), visitorBuilder.buildVisitor());
             }
         }
 
@@ -389,7 +397,7 @@ final class InstrumentationHandler {
             visitorBuilder.addInsertWrapperOperationForAllBindings(VisitOperation.Scope.ONLY_MATERIALIZED);
             visitorBuilder.addFindSourcesOperation(VisitOperation.Scope.ONLY_MATERIALIZED);
             visitorBuilder.addFindSourcesExecutedOperation(VisitOperation.Scope.ONLY_MATERIALIZED);
-            visitRoots(loadedRoots, visitorBuilder.buildVisitor());
+            visitRoots(loadedRootsIndex.findRoots(binding), visitorBuilder.buildVisitor());
         }
 
         if (TRACE) {
@@ -567,7 +575,7 @@ final class InstrumentationHandler {
             if (sourceBinding.isExecutionEvent()) {
                 VisitorBuilder visitorBuilder = new VisitorBuilder();
                 visitorBuilder.addDisposeWrapperOperationForBinding(sourceBinding);
-                visitRoots(executedRoots, visitorBuilder.buildVisitor());
+                visitRoots(executedRootsIndex.findRoots(sourceBinding), visitorBuilder.buildVisitor());
                 executionBindings.remove(sourceBinding);
             } else {
                 Object listener = sourceBinding.getElement();
@@ -2712,6 +2720,149 @@ final class InstrumentationHandler {
         }
     }
 
+    /**
+     * Index of roots by the source of their root source section. The index allows to find the
+     * roots that may be instrumented by a binding with a source based filter without visiting all
+     * the roots. The index is initialized lazily when it is used for the first time, until then
+     * adding a root costs just a volatile read.
+     * <p>
+     * Sources are compared by identity: {@link Source#equals(Object)} is content based, so with
+     * equality an entry could be keyed by an equal source that is collected while the roots of
+     * the entry, which hold a different source instance, are still alive. With identity, the key
+     * of an entry stays reachable as long as any root of the entry.
+     */
+    static final class SourceRootIndex {
+
+        private final Collection<RootNode> roots;
+        private final Map<SourceKey, Collection<RootNode>> rootsBySource = new HashMap<>();
+        private final ReferenceQueue<Source> collectedSources = new ReferenceQueue<>();
+        private final Collection<RootNode> rootsWithoutSource = new WeakAsyncList<>(16);
+        private volatile boolean initialized;
+
+        SourceRootIndex(Collection<RootNode> roots) {
+            this.roots = roots;
+        }
+
+        /**
+         * Must be called after the root was added to the indexed root collection.
+         */
+        void onAdded(RootNode root) {
+            if (initialized) {
+                synchronized (this) {
+                    index(root);
+                }
+            }
+        }
+
+        /**
+         * Returns the roots that may be instrumented by the binding. Roots are only excluded if
+         * their source is known to be the same for all nodes and if the source is not a candidate
+         * for the binding filter. A root that was indexed twice, because it was added concurrently
+         * with the lazy initialization, is returned only once.
+         */
+        Collection<RootNode> findRoots(EventBinding.Source<?> binding) {
+            if (!binding.isSourceRestricted()) {
+                return roots;
+            }
+            synchronized (this) {
+                if (!initialized) {
+                    initialized = true;
+                    for (RootNode root : roots) {
+                        index(root);
+                    }
+                }
+                Set<RootNode> found = Collections.newSetFromMap(new IdentityHashMap<>());
+                List<RootNode> foundList = new ArrayList<>();
+                int foundGroups = collect(rootsWithoutSource, true, found, foundList);
+                expungeCollectedSources();
+                for (Map.Entry<SourceKey, Collection<RootNode>> entry : rootsBySource.entrySet()) {
+                    Source source = entry.getKey().get();
+                    if (source != null) {
+                        foundGroups += collect(entry.getValue(), binding.isSourceCandidate(source), found, foundList);
+                    }
+                }
+                if (foundGroups <= 1) {
+                    return foundList;
+                }
+                /*
+                 * Roots of multiple groups were found. Restore the order in which the roots were
+                 * added, such that the bindings are notified in the same order as without the
+                 * index.
+                 */
+                List<RootNode> orderedList = new ArrayList<>(foundList.size());
+                for (RootNode root : roots) {
+                    if (found.remove(root)) {
+                        orderedList.add(root);
+                    }
+                }
+                return orderedList;
+            }
+        }
+
+        private static int collect(Collection<RootNode> group, boolean candidate, Set<RootNode> found, List<RootNode> foundList) {
+            int foundBefore = foundList.size();
+            for (RootNode root : group) {
+                if ((candidate || !RootNodeBits.isSameSource(RootNodeBits.get(root))) && found.add(root)) {
+                    foundList.add(root);
+                }
+            }
+            return foundList.size() > foundBefore ? 1 : 0;
+        }
+
+        private void index(RootNode root) {
+            SourceSection rootSourceSection = root.getSourceSection();
+            Source source = rootSourceSection != null ? rootSourceSection.getSource() : null;
+            if (source == null) {
+                rootsWithoutSource.add(root);
+            } else {
+                expungeCollectedSources();
+                Collection<RootNode> sourceRoots = rootsBySource.get(new SourceKey(source, null));
+                if (sourceRoots == null) {
+                    sourceRoots = new WeakAsyncList<>(4);
+                    rootsBySource.put(new SourceKey(source, collectedSources), sourceRoots);
+                }
+                sourceRoots.add(root);
+            }
+        }
+
+        private void expungeCollectedSources() {
+            Reference<? extends Source> collected;
+            while ((collected = collectedSources.poll()) != null) {
+                rootsBySource.remove(collected);
+            }
+        }
+
+        /**
+         * A weak reference to a source that is compared by the identity of the referent.
+         */
+        private static final class SourceKey extends WeakReference<Source> {
+
+            private final int hash;
+
+            SourceKey(Source source, ReferenceQueue<Source> queue) {
+                super(source, queue);
+                this.hash = System.identityHashCode(source);
+            }
+
+            @Override
+            public int hashCode() {
+                return hash;
+            }
+
+            @Override
+            public boolean equals(Object obj) {
+                if (obj == this) {
+                    return true;
+                }
+                if (!(obj instanceof SourceKey)) {
+                    return false;
+                }
+                Source source = get();
+                return source != null && source == ((SourceKey) obj).get();
+            }
+        }
+    }
+
     static final class StableThreadsActivationListeners {
 
         final Assumption assumption;
@@ -224,6 +224,33 @@ public final class SourceSectionFilter {
         return true;
     }
 
+    /**
+     * Returns <code>true</code> if this filter contains at least one expression that depends on the
+     * source only. Roots with a single source can then be excluded by their source alone.
+     */
+    boolean isSourceRestricted() {
+        for (EventFilterExpression exp : expressions) {
+            if (exp.isSourceOnly()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns <code>false</code> if no source section of the given source can be instrumented by
+     * this filter. Only the source based expressions are considered, the remaining expressions are
+     * ignored.
+     */
+    boolean isSourceCandidate(Source source) {
+        for (EventFilterExpression exp : expressions) {
+            if (exp.isSourceOnly() && !exp.isSourceIncluded(source)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Configure your own {@link SourceSectionFilter} before creating its instance. Specify various
      * parameters by calling individual {@link Builder} methods. When done, call {@link #build()}.
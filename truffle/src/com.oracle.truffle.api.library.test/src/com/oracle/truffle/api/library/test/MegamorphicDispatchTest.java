@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.oracle.truffle.api.library.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.oracle.truffle.api.library.DynamicDispatchLibrary;
+import com.oracle.truffle.api.library.ExportLibrary;
+import com.oracle.truffle.api.library.ExportMessage;
+import com.oracle.truffle.api.library.GenerateLibrary;
+import com.oracle.truffle.api.library.Library;
+import com.oracle.truffle.api.nodes.NodeCost;
+import com.oracle.truffle.api.test.AbstractLibraryTest;
+
+/**
+ * Tests call sites of dispatched libraries that exceeded their limit and use the call site cache
+ * of uncached libraries.
+ */
+@SuppressWarnings("unused")
+public class MegamorphicDispatchTest extends AbstractLibraryTest {
+
+    @GenerateLibrary
+    abstract static class MegamorphicTestLibrary extends Library {
+
+        public String m0(Object receiver) {
+            return "default";
+        }
+
+    }
+
+    @ExportLibrary(MegamorphicTestLibrary.class)
+    static final class Receiver0 {
+        @ExportMessage
+        String m0() {
+            return "r0";
+        }
+    }
+
+    @ExportLibrary(MegamorphicTestLibrary.class)
+    static final class Receiver1 {
+        @ExportMessage
+        String m0() {
+            return "r1";
+        }
+    }
+
+    @ExportLibrary(MegamorphicTestLibrary.class)
+    static final class Receiver2 {
+        @ExportMessage
+        String m0() {
+            return "r2";
+        }
+    }
+
+    @ExportLibrary(MegamorphicTestLibrary.class)
+    static final class Receiver3 {
+        @ExportMessage
+        String m0() {
+            return "r3";
+        }
+    }
+
+    @ExportLibrary(MegamorphicTestLibrary.class)
+    static class Receiver4 {
+        @ExportMessage
+        String m0() {
+            return "r4";
+        }
+    }
+
+    static final class Receiver4Subclass extends Receiver4 {
+    }
+
+    @ExportLibrary(DynamicDispatchLibrary.class)
+    static final class DynamicReceiver {
+
+        Class<?> dispatch;
+
+        DynamicReceiver(Class<?> dispatch) {
+            this.dispatch = dispatch;
+        }
+
+        @ExportMessage
+        Class<?> dispatch() {
+            return dispatch;
+        }
+    }
+
+    @ExportLibrary(value = MegamorphicTestLibrary.class, receiverType = DynamicReceiver.class)
+    static final class DynamicTarget0 {
+        @ExportMessage
+        static String m0(DynamicReceiver receiver) {
+            return "dynamic0";
+        }
+    }
+
+    @ExportLibrary(value = MegamorphicTestLibrary.class, receiverType = DynamicReceiver.class)
+    static final class DynamicTarget1 {
+        @ExportMessage
+        static String m0(DynamicReceiver receiver) {
+            return "dynamic1";
+        }
+    }
+
+    @Test
+    public void testManyReceivers() {
+        MegamorphicTestLibrary library = createCachedDispatch(MegamorphicTestLibrary.class, 2);
+        Object[] receivers = new Object[]{new Receiver0(), new Receiver1(), new Receiver2(), new Receiver3(),
+                        new Receiver4(), new Receiver4Subclass(), "", new DynamicReceiver(DynamicTarget0.class),
+                        new DynamicReceiver(DynamicTarget1.class)};
+        String[] expected = new String[]{"r0", "r1", "r2", "r3", "r4", "r4", "default", "dynamic0", "dynamic1"};
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < receivers.length; i++) {
+                assertEquals(expected[i], library.m0(receivers[i]));
+            }
+            for (int i = receivers.length - 1; i >= 0; i--) {
+                assertEquals(expected[i], library.m0(receivers[i]));
+            }
+            // repeated calls with the same receiver hit the call site cache
+            for (int i = 0; i < receivers.length; i++) {
+                assertEquals(expected[i], library.m0(receivers[i]));
+                assertEquals(expected[i], library.m0(receivers[i]));
+            }
+        }
+        assertEquals(NodeCost.MEGAMORPHIC, library.getCost());
+    }
+
+    @Test
+    public void testDispatchChanges() {
+        MegamorphicTestLibrary library = createCachedDispatch(MegamorphicTestLibrary.class, 1);
+        DynamicReceiver receiver = new DynamicReceiver(DynamicTarget0.class);
+        assertEquals("r0", library.m0(new Receiver0()));
+        assertEquals("r1", library.m0(new Receiver1()));
+        assertEquals("dynamic0", library.m0(receiver));
+        assertEquals("dynamic0", library.m0(receiver));
+        receiver.dispatch = DynamicTarget1.class;
+        assertEquals("dynamic1", library.m0(receiver));
+        receiver.dispatch = DynamicTarget0.class;
+        assertEquals("dynamic0", library.m0(receiver));
+    }
+
+    @Test
+    public void testConcurrentCalls() throws Exception {
+        MegamorphicTestLibrary library = createCachedDispatch(MegamorphicTestLibrary.class, 1);
+        Object[] receivers = new Object[]{new Receiver0(), new Receiver1(), new Receiver2(), new Receiver3(),
+                        new Receiver4(), new Receiver4Subclass(), ""};
+        String[] expected = new String[]{"r0", "r1", "r2", "r3", "r4", "r4", "default"};
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        int index = (i * (offset + 1) + offset) % receivers.length;
+                        assertEquals(expected[index], library.m0(receivers[index]));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
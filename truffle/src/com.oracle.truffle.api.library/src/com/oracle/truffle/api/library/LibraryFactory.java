@@ -52,11 +52,13 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 
 import com.oracle.truffle.api.CompilerAsserts;
 import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.TruffleLogger;
 import com.oracle.truffle.api.TruffleOptions;
 import com.oracle.truffle.api.dsl.GeneratedBy;
 import com.oracle.truffle.api.library.LibraryExport.DelegateExport;
@@ -144,6 +146,7 @@ public abstract class LibraryFactory<T extends Library> {
             removeClassesLoadedDuringImageBuild(libraryFactory.exportCache, imageClassLoader);
             removeClassesLoadedDuringImageBuild(libraryFactory.uncachedCache, imageClassLoader);
             removeClassesLoadedDuringImageBuild(libraryFactory.cachedCache, imageClassLoader);
+            removeClassesLoadedDuringImageBuild(libraryFactory.siteCacheEntries, imageClassLoader);
             /* Reset the default exports. */
             LibraryFactory.externalDefaultProviders = null;
             libraryFactory.afterBuiltinDefaultExports = null;
@@ -168,6 +171,7 @@ public abstract class LibraryFactory<T extends Library> {
     private final ConcurrentHashMap<Class<?>, LibraryExport<T>> exportCache = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<Class<?>, T> uncachedCache = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<Class<?>, T> cachedCache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, SiteCacheEntry> siteCacheEntries = new ConcurrentHashMap<>();
     private final ProxyExports proxyExports = new ProxyExports();
     final Map<String, Message> nameToMessages;
     @CompilationFinal private volatile T uncachedDispatch;
@@ -367,6 +371,89 @@ public abstract class LibraryFactory<T extends Library> {
         return uncached;
     }
 
+    /**
+     * Returns an uncached manually dispatched library for a given receiver using a call site
+     * specific cache. The cache is direct mapped: the slot of a receiver is determined by the hash
+     * code of its class and a slot remembers the library of exactly one receiver class. A hit
+     * therefore costs a class comparison and a miss a lookup of the receiver class in a shared
+     * cache of slot entries. Receivers that export {@link DynamicDispatchLibrary} may change their
+     * dispatch class at any time, for them the slot only remembers that the shared cache must be
+     * used. Slots are replaced with immutable entries, so concurrent updates are safe and at worst
+     * cause an additional lookup later on. The receiver must not be <code>null</code>.
+     * <p>
+     * Misses are logged with level {@link Level#FINE FINE} to the <code>engine</code> logger of
+     * {@link LibraryFactory}.
+     * <p>
+     * This method is intended to be used by generated code of megamorphic library call sites only.
+     *
+     * @param siteCache the cache of the call site, its length must be a power of two. The elements
+     *            are managed by this method only.
+     * @param receiver the receiver the library is looked up for.
+     * @since 21.0
+     */
+    @TruffleBoundary
+    @SuppressWarnings("unchecked")
+    protected final T getUncached(Object[] siteCache, Object receiver) {
+        assert Integer.bitCount(siteCache.length) == 1 : "site cache length must be a power of two";
+        Class<?> receiverClass = receiver.getClass();
+        int index = receiverClass.hashCode() & (siteCache.length - 1);
+        SiteCacheEntry entry = (SiteCacheEntry) siteCache[index];
+        if (entry != null && entry.receiverClass == receiverClass) {
+            if (entry.library == null) {
+                return getUncached(receiver);
+            }
+            return (T) entry.library;
+        }
+        SiteCacheEntry newEntry = siteCacheEntries.get(receiverClass);
+        if (newEntry == null) {
+            newEntry = createSiteCacheEntry(receiver);
+        }
+        TruffleLogger log = MegamorphicLogger.LOG;
+        if (log.isLoggable(Level.FINE)) {
+            log.fine(String.format("Megamorphic %s call site missed for receiver %s, replacing %s.", libraryClass.getSimpleName(),
+                            receiverClass.getName(), entry == null ? "empty slot" : entry.receiverClass.getName()));
+        }
+        siteCache[index] = newEntry;
+        if (newEntry.library == null) {
+            return getUncached(receiver);
+        }
+        return (T) newEntry.library;
+    }
+
+    private SiteCacheEntry createSiteCacheEntry(Object receiver) {
+        Class<?> receiverClass = receiver.getClass();
+        boolean dynamicDispatch = dispatchLibrary != null && ResolvedDispatch.lookup(receiverClass).getLibrary(DynamicDispatchLibrary.class) != null;
+        SiteCacheEntry entry = new SiteCacheEntry(receiverClass, dynamicDispatch ? null : getUncached(receiver));
+        SiteCacheEntry otherEntry = siteCacheEntries.putIfAbsent(receiverClass, entry);
+        if (otherEntry != null) {
+            return otherEntry;
+        }
+        return entry;
+    }
+
+    /*
+     * Immutable call site cache entry. A null library means that the receiver class uses dynamic
+     * dispatch and the library must be looked up for every receiver.
+     */
+    private static final class SiteCacheEntry {
+
+        final Class<?> receiverClass;
+        final Library library;
+
+        SiteCacheEntry(Class<?> receiverClass, Library library) {
+            this.receiverClass = receiverClass;
+            this.library = library;
+        }
+
+    }
+
+    /*
+     * Creates the logger lazily, library factories are also resolved before the engine is set up.
+     */
+    private static final class MegamorphicLogger {
+        static final TruffleLogger LOG = TruffleLogger.getLogger("engine", LibraryFactory.class);
+    }
+
     private static volatile Map<String, List<DefaultExportProvider>> externalDefaultProviders;
 
     private static Map<String, List<DefaultExportProvider>> getExternalDefaultProviders() {
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.oracle.truffle.api.test.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oracle.truffle.api.TruffleFile;
+import com.oracle.truffle.api.source.Source;
+import com.oracle.truffle.api.test.polyglot.AbstractPolyglotTest;
+import com.oracle.truffle.api.test.polyglot.ProxyLanguage;
+
+/**
+ * Tests sources with memory mapped content, see the {@code truffle.SourceMappingThreshold} system
+ * property.
+ */
+public class MappedSourceTest extends AbstractPolyglotTest {
+
+    private static final String THRESHOLD_PROPERTY = "truffle.SourceMappingThreshold";
+
+    @Before
+    public void setUp() {
+        setupEnv();
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(THRESHOLD_PROPERTY);
+    }
+
+    private TruffleFile createFile(String content, Charset encoding) throws IOException {
+        File file = File.createTempFile("mapped", ".txt").getCanonicalFile();
+        file.deleteOnExit();
+        Files.write(file.toPath(), content.getBytes(encoding));
+        return languageEnv.getPublicTruffleFile(file.getAbsolutePath());
+    }
+
+    private static Source load(TruffleFile file, Charset encoding, boolean mapped) throws IOException {
+        if (mapped) {
+            System.setProperty(THRESHOLD_PROPERTY, "0");
+        } else {
+            System.clearProperty(THRESHOLD_PROPERTY);
+        }
+        return Source.newBuilder(ProxyLanguage.ID, file).encoding(encoding).build();
+    }
+
+    private static String content(int length) {
+        StringBuilder b = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            b.append(i % 80 == 79 ? '\n' : (char) ('a' + i % 26));
+        }
+        return b.toString();
+    }
+
+    @Test
+    public void testMappedCharacters() throws IOException {
+        String expected = content(1000);
+        Source source = load(createFile(expected, StandardCharsets.UTF_8), StandardCharsets.UTF_8, true);
+        CharSequence characters = source.getCharacters();
+        assertFalse(characters instanceof String);
+        assertEquals(expected.length(), characters.length());
+        assertEquals(expected.hashCode(), characters.hashCode());
+        assertTrue(characters.equals(expected));
+        assertEquals(expected, characters.toString());
+        assertSame(characters.toString(), characters.toString());
+        assertTrue(characters.subSequence(10, 20).equals(expected.subSequence(10, 20)));
+        assertEquals(expected.substring(10, 20).hashCode(), characters.subSequence(10, 20).hashCode());
+        assertFalse(characters.equals(expected.substring(1) + "a"));
+        assertFalse(characters.equals(expected.substring(1)));
+        assertEquals(expected.split("\n").length, source.getLineCount());
+    }
+
+    @Test
+    public void testMappedEqualsRead() throws IOException {
+        String expected = content(1000);
+        TruffleFile file = createFile(expected, StandardCharsets.ISO_8859_1);
+        Source mapped = load(file, StandardCharsets.ISO_8859_1, true);
+        assertFalse(mapped.getCharacters() instanceof String);
+        // sources are interned, equal sources with string content resolve to the mapped one
+        Source read = load(file, StandardCharsets.ISO_8859_1, false);
+        assertSame(mapped, read);
+        assertEquals(mapped.hashCode(), read.hashCode());
+    }
+
+    @Test
+    public void testReadEqualsMapped() throws IOException {
+        String expected = content(1000);
+        TruffleFile file = createFile(expected, StandardCharsets.US_ASCII);
+        Source read = load(file, StandardCharsets.US_ASCII, false);
+        assertTrue(read.getCharacters() instanceof String);
+        Source mapped = load(file, StandardCharsets.US_ASCII, true);
+        assertSame(read, mapped);
+    }
+
+    @Test
+    public void testNotMappedEncoding() throws IOException {
+        String expected = "\u00e4\u00f6\u00fc" + content(100);
+        TruffleFile file = createFile(expected, StandardCharsets.UTF_8);
+        Source source = load(file, StandardCharsets.UTF_8, true);
+        // non ASCII UTF-8 content is decoded into a string
+        assertTrue(source.getCharacters() instanceof String);
+        assertEquals(expected, source.getCharacters());
+    }
+
+    @Test
+    public void testDifferentContent() throws IOException {
+        String content = content(1000);
+        Source source1 = load(createFile(content, StandardCharsets.UTF_8), StandardCharsets.UTF_8, true);
+        Source source2 = load(createFile(content.replace('x', 'y'), StandardCharsets.UTF_8), StandardCharsets.UTF_8, true);
+        assertNotEquals(source1.getCharacters(), source2.getCharacters());
+        assertNotEquals(source1, source2);
+    }
+
+    @Test
+    public void testLargeFile() throws IOException {
+        String expected = content(16 * 1024 * 1024 + 17);
+        Source source = load(createFile(expected, StandardCharsets.UTF_8), StandardCharsets.UTF_8, true);
+        CharSequence characters = source.getCharacters();
+        assertFalse(characters instanceof String);
+        assertEquals(expected.length(), characters.length());
+        assertEquals(expected.charAt(0), characters.charAt(0));
+        assertEquals(expected.charAt(expected.length() - 1), characters.charAt(characters.length() - 1));
+        assertEquals(expected.hashCode(), characters.hashCode());
+        int start = expected.length() - 1000;
+        assertTrue(characters.subSequence(start, expected.length()).equals(expected.substring(start)));
+        assertEquals(expected.substring(start), source.createSection(start, 1000).getCharacters().toString());
+        assertTrue(characters.equals(expected));
+    }
+
+}
@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.oracle.truffle.api.source;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.graalvm.nativeimage.ImageInfo;
+import org.graalvm.polyglot.io.ByteSequence;
+import org.graalvm.polyglot.io.FileSystem;
+
+import com.oracle.truffle.api.TruffleFile;
+
+/**
+ * Memory mapped file content for sources loaded from files of the internal file systems. Mapping is
+ * enabled by setting the {@code truffle.SourceMappingThreshold} system property to the minimal
+ * size in bytes of a file to be mapped instead of read. Byte based content and ASCII or ISO-8859-1
+ * encoded character content is decoded on demand from the mapped buffer, other character content
+ * is decoded from the mapped buffer into a string without an intermediate byte array. The content
+ * is shared by all sources loaded from the same unmodified file, also across contexts.
+ * <p>
+ * The mapped content is not read eagerly. A file that is modified or truncated while its source is
+ * alive changes or invalidates the source content. Mapping should therefore only be enabled for
+ * files that are not modified while the application runs, e.g. installed libraries.
+ */
+final class MappedContent {
+
+    private static final String THRESHOLD_PROPERTY = "truffle.SourceMappingThreshold";
+    private static final int MAX_MAPPED_SIZE = Integer.MAX_VALUE - 8;
+
+    private static final ConcurrentHashMap<Key, WeakContentRef> TABLE = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Object> DEAD_REFERENCES = new ReferenceQueue<>();
+
+    private MappedContent() {
+    }
+
+    /**
+     * Returns the mapped content of the file or <code>null</code> if the file cannot be or should
+     * not be mapped. The content is a {@link CharSequence} if an encoding is given, otherwise a
+     * {@link ByteSequence}.
+     */
+    static Object map(TruffleFile file, Charset encoding) throws IOException {
+        /*
+         * The threshold is read on each call rather than in the class initializer, this class may
+         * be initialized at native image build time and the property is set at run time.
+         */
+        long threshold = Long.getLong(THRESHOLD_PROPERTY, -1);
+        if (threshold < 0 || ImageInfo.inImageBuildtimeCode()) {
+            // mapped buffers must not end up in the image heap
+            return null;
+        }
+        FileSystem fileSystem = SourceAccessor.LANGUAGE.getFileSystem(file);
+        if (!SourceAccessor.ACCESSOR.engineSupport().isInternal(fileSystem)) {
+            return null;
+        }
+        Path path = fileSystem.toAbsolutePath(SourceAccessor.LANGUAGE.getPath(file));
+        Map<String, Object> attributes = fileSystem.readAttributes(path, "size,lastModifiedTime");
+        long size = (Long) attributes.get("size");
+        if (size < threshold || size > MAX_MAPPED_SIZE) {
+            return null;
+        }
+        cleanupStaleEntries();
+        Key key = new Key(path.toString(), size, attributes.get("lastModifiedTime"), encoding);
+        WeakContentRef contentRef = TABLE.get(key);
+        Object content = contentRef != null ? contentRef.get() : null;
+        if (content == null) {
+            ByteBuffer buffer;
+            try (SeekableByteChannel channel = fileSystem.newByteChannel(path, Collections.emptySet())) {
+                if (!(channel instanceof FileChannel) || channel.size() != size) {
+                    return null;
+                }
+                buffer = ((FileChannel) channel).map(MapMode.READ_ONLY, 0, size);
+            }
+            content = decode(buffer, (int) size, encoding);
+            TABLE.put(key, new WeakContentRef(key, content, DEAD_REFERENCES));
+        }
+        return content;
+    }
+
+    private static Object decode(ByteBuffer buffer, int length, Charset encoding) {
+        if (encoding == null) {
+            return new MappedByteSequence(buffer, 0, length);
+        } else if (StandardCharsets.ISO_8859_1.equals(encoding)) {
+            return new MappedCharSequence(buffer, 0, length);
+        } else if ((StandardCharsets.UTF_8.equals(encoding) || StandardCharsets.US_ASCII.equals(encoding)) && isASCII(buffer, length)) {
+            return new MappedCharSequence(buffer, 0, length);
+        } else {
+            return encoding.decode(buffer).toString();
+        }
+    }
+
+    private static boolean isASCII(ByteBuffer buffer, int length) {
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static void resetNativeImageState() {
+        TABLE.clear();
+    }
+
+    private static void cleanupStaleEntries() {
+        WeakContentRef contentRef;
+        while ((contentRef = (WeakContentRef) DEAD_REFERENCES.poll()) != null) {
+            TABLE.remove(contentRef.key, contentRef);
+        }
+    }
+
+    private static final class Key {
+
+        private final String path;
+        private final long size;
+        private final Object lastModifiedTime;
+        private final Charset encoding;
+
+        Key(String path, long size, Object lastModifiedTime, Charset encoding) {
+            this.path = path;
+            this.size = size;
+            this.lastModifiedTime = lastModifiedTime;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return size == other.size && path.equals(other.path) && Objects.equals(lastModifiedTime, other.lastModifiedTime) && Objects.equals(encoding, other.encoding);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, lastModifiedTime, encoding);
+        }
+    }
+
+    private static final class WeakContentRef extends WeakReference<Object> {
+
+        final Key key;
+
+        WeakContentRef(Key key, Object referent, ReferenceQueue<Object> q) {
+            super(referent, q);
+            this.key = key;
+        }
+    }
+
+    /**
+     * Byte content backed by a mapped buffer. The hash code is computed the same way as for
+     * {@link ByteSequence#create(byte[]) byte array sequences} such that sources with equal
+     * content have equal hash codes.
+     */
+    static final class MappedByteSequence implements ByteSequence {
+
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int length;
+        private int hash;
+
+        MappedByteSequence(ByteBuffer buffer, int start, int length) {
+            this.buffer = buffer;
+            this.start = start;
+            this.length = length;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public byte byteAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            }
+            return buffer.get(start + index);
+        }
+
+        public ByteSequence subSequence(int startIndex, int endIndex) {
+            if (startIndex < 0 || endIndex > length || startIndex > endIndex) {
+                throw new IndexOutOfBoundsException(String.valueOf(startIndex));
+            }
+            return new MappedByteSequence(buffer, start + startIndex, endIndex - startIndex);
+        }
+
+        public byte[] toByteArray() {
+            return copyBytes(buffer, start, length);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (!(obj instanceof ByteSequence)) {
+                return false;
+            }
+            ByteSequence other = (ByteSequence) obj;
+            if (length != other.length()) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(start + i) != other.byteAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = hash;
+            if (h == 0 && length > 0) {
+                int end = start + length;
+                h = 1;
+                int i = start;
+                for (; i + 3 < end; i += 4) {
+                    int h0 = buffer.get(i + 0) & 0xff << 0;
+                    int h1 = buffer.get(i + 1) & 0xff << 8;
+                    int h2 = buffer.get(i + 2) & 0xff << 16;
+                    int h3 = buffer.get(i + 3) & 0xff << 24;
+                    h = 31 * h + (h0 | h1 | h2 | h3);
+                }
+                for (; i < end; i++) {
+                    h = 31 * h + buffer.get(i);
+                }
+                hash = h;
+            }
+            return h;
+        }
+    }
+
+    /**
+     * Character content backed by a mapped buffer with one byte per character. The hash code is
+     * computed the same way as for strings. The string returned by {@link #toString()} is created
+     * on first use and cached, as it copies the whole content.
+     */
+    static final class MappedCharSequence implements CharSequence {
+
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int length;
+        private int hash;
+        private String string;
+
+        MappedCharSequence(ByteBuffer buffer, int start, int length) {
+            this.buffer = buffer;
+            this.start = start;
+            this.length = length;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            }
+            return (char) (buffer.get(start + index) & 0xff);
+        }
+
+        public CharSequence subSequence(int startIndex, int endIndex) {
+            if (startIndex < 0 || endIndex > length || startIndex > endIndex) {
+                throw new IndexOutOfBoundsException(String.valueOf(startIndex));
+            }
+            return new MappedCharSequence(buffer, start + startIndex, endIndex - startIndex);
+        }
+
+        /**
+         * Compares the characters with any other {@link CharSequence}, like
+         * {@link MappedByteSequence#equals(Object)} does for bytes. Note that this is not symmetric
+         * for strings, {@link String#equals(Object)} only accepts strings.
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (!(obj instanceof CharSequence)) {
+                return false;
+            }
+            CharSequence other = (CharSequence) obj;
+            if (length != other.length()) {
+                return false;
+            }
+            if (other instanceof MappedCharSequence) {
+                MappedCharSequence otherMapped = (MappedCharSequence) other;
+                for (int i = 0; i < length; i++) {
+                    if (buffer.get(start + i) != otherMapped.buffer.get(otherMapped.start + i)) {
+                        return false;
+                    }
+                }
+            } else {
+                for (int i = 0; i < length; i++) {
+                    if ((char) (buffer.get(start + i) & 0xff) != other.charAt(i)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = hash;
+            if (h == 0 && length > 0) {
+                for (int i = 0; i < length; i++) {
+                    h = 31 * h + (buffer.get(start + i) & 0xff);
+                }
+                hash = h;
+            }
+            return h;
+        }
+
+        @Override
+        public String toString() {
+            String s = string;
+            if (s == null) {
+                s = new String(copyBytes(buffer, start, length), StandardCharsets.ISO_8859_1);
+                string = s;
+            }
+            return s;
+        }
+    }
+
+    private static byte[] copyBytes(ByteBuffer buffer, int start, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(start);
+        view.get(bytes);
+        return bytes;
+    }
+
+}
@@ -1012,7 +1012,7 @@ public abstract class Source {
                     useEncoding = useEncoding == null ? findEncoding(useTruffleFile, useMimeType) : useEncoding;
                     useContent = read(useTruffleFile, useEncoding);
                 } else {
-                    useContent = ByteSequence.create(useTruffleFile.readAllBytes());
+                    useContent = readBytes(useTruffleFile);
                 }
             }
         } else if (useOrigin instanceof URL) {
@@ -1037,7 +1037,7 @@ public abstract class Source {
                         useEncoding = useEncoding == null ? findEncoding(useTruffleFile, useMimeType) : useEncoding;
                         useContent = read(useTruffleFile, useEncoding);
                     } else {
-                        useContent = ByteSequence.create(useTruffleFile.readAllBytes());
+                        useContent = readBytes(useTruffleFile);
                     }
                 }
             } catch (FileSystemNotFoundException fsnf) {
@@ -1145,10 +1145,22 @@ public abstract class Source {
         return (capacity == nread) ? buf : Arrays.copyOf(buf, nread);
     }
 
-    static String read(TruffleFile file, Charset encoding) throws IOException {
+    static CharSequence read(TruffleFile file, Charset encoding) throws IOException {
+        Object mapped = MappedContent.map(file, encoding);
+        if (mapped != null) {
+            return (CharSequence) mapped;
+        }
         return new String(file.readAllBytes(), encoding);
     }
 
+    static ByteSequence readBytes(TruffleFile file) throws IOException {
+        Object mapped = MappedContent.map(file, null);
+        if (mapped != null) {
+            return (ByteSequence) mapped;
+        }
+        return ByteSequence.create(file.readAllBytes());
+    }
+
     static String read(Reader reader) throws IOException {
         final StringBuilder builder = new StringBuilder();
         final char[] buffer = new char[1024];
@@ -1720,6 +1732,7 @@ public abstract class Source {
     @SuppressWarnings("unused")
     private static void resetNativeImageState() {
         SOURCES.resetNativeImageState();
+        MappedContent.resetNativeImageState();
     }
 
     static {
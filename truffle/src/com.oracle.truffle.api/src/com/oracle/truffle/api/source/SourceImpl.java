@@ -42,6 +42,7 @@ package com.oracle.truffle.api.source;
 
 import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.TruffleFile;
+import com.oracle.truffle.api.source.MappedContent.MappedCharSequence;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
@@ -288,6 +289,11 @@ final class SourceImpl extends Source {
         private static boolean compareCharacters(CharSequence characters, CharSequence other) {
             if (characters == null || characters.length() != other.length()) {
                 return false;
+            } else if (characters instanceof MappedCharSequence) {
+                // compare without copying the mapped content into a string
+                return characters.equals(other);
+            } else if (other instanceof MappedCharSequence) {
+                return other.equals(characters);
             } else {
                 return Objects.equals(characters.toString(), other.toString());
             }
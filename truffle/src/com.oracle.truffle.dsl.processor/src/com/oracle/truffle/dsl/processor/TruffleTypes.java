@@ -147,6 +147,7 @@ public class TruffleTypes {
     public static final String Fallback_Name = "com.oracle.truffle.api.dsl.Fallback";
     public static final String GeneratedBy_Name = "com.oracle.truffle.api.dsl.GeneratedBy";
     public static final String GenerateNodeFactory_Name = "com.oracle.truffle.api.dsl.GenerateNodeFactory";
+    public static final String GenerateCompactSpecialize_Name = "com.oracle.truffle.api.dsl.GenerateCompactSpecialize";
     public static final String GenerateUncached_Name = "com.oracle.truffle.api.dsl.GenerateUncached";
     public static final String ImplicitCast_Name = "com.oracle.truffle.api.dsl.ImplicitCast";
     public static final String ImportStatic_Name = "com.oracle.truffle.api.dsl.ImportStatic";
@@ -182,6 +183,7 @@ public class TruffleTypes {
     public final DeclaredType Fallback = c.getDeclaredType(Fallback_Name);
     public final DeclaredType GeneratedBy = c.getDeclaredType(GeneratedBy_Name);
     public final DeclaredType GenerateNodeFactory = c.getDeclaredType(GenerateNodeFactory_Name);
+    public final DeclaredType GenerateCompactSpecialize = c.getDeclaredType(GenerateCompactSpecialize_Name);
     public final DeclaredType GenerateUncached = c.getDeclaredType(GenerateUncached_Name);
     public final DeclaredType ImplicitCast = c.getDeclaredType(ImplicitCast_Name);
     public final DeclaredType ImportStatic = c.getDeclaredType(ImportStatic_Name);
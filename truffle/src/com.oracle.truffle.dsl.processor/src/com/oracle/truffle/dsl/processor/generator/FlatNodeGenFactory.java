@@ -592,7 +592,7 @@ public class FlatNodeGenFactory {
             createExecute(clazz, type, genericAndSpecialized);
         }
 
-        clazz.addOptional(createExecuteAndSpecialize());
+        clazz.addOptional(createExecuteAndSpecialize(clazz));
         final ReportPolymorphismAction reportPolymorphismAction = reportPolymorphismAction(node, reachableSpecializations);
         if (reportPolymorphismAction.required()) {
             clazz.addOptional(createCheckForPolymorphicSpecialize(reportPolymorphismAction));
@@ -1645,7 +1645,7 @@ public class FlatNodeGenFactory {
         }
     }
 
-    private CodeExecutableElement createExecuteAndSpecialize() {
+    private CodeExecutableElement createExecuteAndSpecialize(CodeTypeElement clazz) {
         if (!needsRewrites()) {
             return null;
         }
@@ -1679,12 +1679,16 @@ public class FlatNodeGenFactory {
 
         FrameState originalFrameState = frameState.copy();
         SpecializationGroup group = createSpecializationGroups();
-        CodeTree execution = visitSpecializationGroup(builder, null, group, executeAndSpecializeType, frameState, null);
+        if (isCompactSpecialize(group)) {
+            builder.tree(createCompactSpecializeChain(clazz, builder, group, frameState, frame));
+        } else {
+            CodeTree execution = visitSpecializationGroup(builder, null, group, executeAndSpecializeType, frameState, null);
 
-        builder.tree(execution);
+            builder.tree(execution);
 
-        if (group.hasFallthrough()) {
-            builder.tree(createThrowUnsupported(builder, originalFrameState));
+            if (group.hasFallthrough()) {
+                builder.tree(createThrowUnsupported(builder, originalFrameState));
+            }
         }
 
         if (needsSpecializeLocking || reportPolymorphismAction.required()) {
@@ -1703,6 +1707,118 @@ public class FlatNodeGenFactory {
         return method;
     }
 
+    /*
+     * The compact mode can only split the root group if it does not contribute any checks by
+     * itself. Otherwise the checks would need to be repeated in every outlined method.
+     */
+    private boolean isCompactSpecialize(SpecializationGroup group) {
+        if (!node.isGenerateCompactSpecialize() || generatorMode != GeneratorMode.DEFAULT) {
+            return false;
+        }
+        return group.getSpecialization() == null && group.getTypeGuards().isEmpty() && group.getGuards().isEmpty() && group.getChildren().size() > 1;
+    }
+
+    /*
+     * Outlines each top-level specialization group into its own method. The methods are chained
+     * such that a group that falls through delegates to the method of the next group. The
+     * specialize lock, if needed, is handed over from method to method and released by the method
+     * that either calls a specialization or fails with an exception.
+     */
+    private CodeTree createCompactSpecializeChain(CodeTypeElement clazz, CodeTreeBuilder parent, SpecializationGroup group, FrameState frameState, String frame) {
+        CodeExecutableElement parentMethod = (CodeExecutableElement) parent.findMethod();
+        String baseName = parentMethod.getSimpleName().toString();
+        List<CodeExecutableElement> chain = new ArrayList<>();
+        List<SpecializationGroup> children = group.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            SpecializationGroup child = children.get(i);
+            CodeExecutableElement method = clazz.add(new CodeExecutableElement(modifiers(PRIVATE), parentMethod.getReturnType(), baseName + "_" + i));
+            addSpecializeChainParameters(method, frameState, frame);
+            chain.add(method);
+
+            FrameState childFrameState = frameState.copy(method);
+            CodeTreeBuilder builder = method.createBuilder();
+            if (needsSpecializeLocking) {
+                builder.declaration(context.getType(boolean.class), "hasLock", "true");
+                builder.startTryBlock();
+            }
+            builder.tree(visitSpecializationGroup(builder, null, child, executeAndSpecializeType, childFrameState.copy(), null));
+            boolean last = i == children.size() - 1;
+            if (child.hasFallthrough()) {
+                if (last) {
+                    builder.tree(createThrowUnsupported(builder, childFrameState));
+                } else {
+                    if (needsSpecializeLocking) {
+                        builder.statement("hasLock = false");
+                    }
+                    builder.tree(createCallSpecializeChain(builder, baseName + "_" + (i + 1), childFrameState, frame));
+                }
+            }
+            if (needsSpecializeLocking) {
+                builder.end().startFinallyBlock();
+                builder.startIf().string("hasLock").end().startBlock();
+                builder.statement("lock.unlock()");
+                builder.end();
+                builder.end();
+            }
+            if (!child.hasFallthrough()) {
+                // the remaining groups are not reachable
+                break;
+            }
+        }
+
+        // thrown types of later methods in the chain are propagated to the earlier ones
+        for (int i = chain.size() - 1; i > 0; i--) {
+            addThrownTypes(chain.get(i - 1), chain.get(i).getThrownTypes());
+        }
+        addThrownTypes(parentMethod, chain.get(0).getThrownTypes());
+
+        CodeTreeBuilder builder = parent.create();
+        if (needsSpecializeLocking) {
+            builder.statement("hasLock = false");
+        }
+        builder.tree(createCallSpecializeChain(builder, baseName + "_0", frameState, frame));
+        return builder.build();
+    }
+
+    private void addSpecializeChainParameters(CodeExecutableElement method, FrameState frameState, String frame) {
+        if (needsSpecializeLocking) {
+            method.addParameter(new CodeVariableElement(context.getType(Lock.class), "lock"));
+        }
+        multiState.addParametersTo(frameState, method);
+        LocalVariable excludeLocal = frameState.get(exclude.getName());
+        if (excludeLocal != null) {
+            method.addParameter(excludeLocal.createParameter());
+        }
+        frameState.addParametersTo(method, Integer.MAX_VALUE, frame);
+    }
+
+    private CodeTree createCallSpecializeChain(CodeTreeBuilder parent, String methodName, FrameState frameState, String frame) {
+        CodeTreeBuilder builder = parent.create();
+        builder.startReturn().startCall(methodName);
+        if (needsSpecializeLocking) {
+            builder.string("lock");
+        }
+        multiState.addReferencesTo(frameState, builder);
+        LocalVariable excludeLocal = frameState.get(exclude.getName());
+        if (excludeLocal != null) {
+            builder.tree(excludeLocal.createReference());
+        }
+        frameState.addReferencesTo(builder, frame);
+        builder.end().end();
+        return builder.build();
+    }
+
+    private static void addThrownTypes(CodeExecutableElement method, List<? extends TypeMirror> thrownTypes) {
+        outer: for (TypeMirror thrownType : thrownTypes) {
+            for (TypeMirror existingType : method.getThrownTypes()) {
+                if (ElementUtils.typeEquals(thrownType, existingType)) {
+                    continue outer;
+                }
+            }
+            method.getThrownTypes().add(thrownType);
+        }
+    }
+
     // Polymorphism reporting constants
     private static final String OLD_PREFIX = "old";
     private static final String NEW_PREFIX = "new";
@@ -5246,7 +5362,11 @@ public class FlatNodeGenFactory {
         }
 
         public FrameState copy() {
-            FrameState copy = new FrameState(factory, mode, method);
+            return copy(method);
+        }
+
+        public FrameState copy(CodeExecutableElement targetMethod) {
+            FrameState copy = new FrameState(factory, mode, targetMethod);
             copy.values.putAll(values);
             copy.caughtTypes.addAll(caughtTypes);
             copy.directValues.putAll(directValues);
@@ -86,6 +86,11 @@ public class LibraryGenerator extends CodeTypeElementFactory<LibraryData> {
 
     private static final String ACCEPTS = "accepts";
 
+    /*
+     * Number of receiver classes remembered per megamorphic call site, must be a power of two.
+     */
+    private static final int MEGAMORPHIC_CACHE_SIZE = 4;
+
     private ProcessorContext context;
     private LibraryData model;
 
@@ -456,6 +461,10 @@ public class LibraryGenerator extends CodeTypeElementFactory<LibraryData> {
         CodeExecutableElement getCost = cachedToUncached.add(CodeExecutableElement.clone(ElementUtils.findExecutableElement(types.Node, "getCost")));
         getCost.createBuilder().startReturn().staticReference(ElementUtils.findVariableElement(types.NodeCost, "MEGAMORPHIC")).end();
 
+        CodeTypeMirror.ArrayCodeTypeMirror siteCacheType = new CodeTypeMirror.ArrayCodeTypeMirror(context.getType(Object.class));
+        CodeVariableElement siteCache = cachedToUncached.add(new CodeVariableElement(modifiers(PRIVATE, FINAL), siteCacheType, "siteCache_"));
+        siteCache.createInitBuilder().startNewArray(siteCacheType, CodeTreeBuilder.singleString(String.valueOf(MEGAMORPHIC_CACHE_SIZE))).end();
+
         for (MessageObjects message : methods) {
             CodeExecutableElement execute = cachedToUncached.add(CodeExecutableElement.cloneNoAnnotations(message.model.getExecutable()));
             execute.renameArguments("receiver_");
@@ -471,7 +480,7 @@ public class LibraryGenerator extends CodeTypeElementFactory<LibraryData> {
                     GeneratorUtils.pushEncapsulatingNode(builder, "getParent()");
                     builder.startTryBlock();
                 }
-                builder.startReturn().startCall("INSTANCE.getUncached(receiver_)", execute.getSimpleName().toString());
+                builder.startReturn().startCall("INSTANCE.getUncached(this.siteCache_, receiver_)", execute.getSimpleName().toString());
                 for (VariableElement var : execute.getParameters()) {
                     builder.string(var.getSimpleName().toString());
                 }
@@ -82,6 +82,7 @@ public class NodeData extends Template implements Comparable<NodeData> {
     private TypeMirror frameType;
     private boolean generateIntrospection;
     private boolean generateStatistics;
+    private boolean generateCompactSpecialize;
 
     private boolean reportPolymorphism;
     private boolean isUncachable;
@@ -111,6 +112,14 @@ public class NodeData extends Template implements Comparable<NodeData> {
         return generateStatistics;
     }
 
+    public void setGenerateCompactSpecialize(boolean generateCompactSpecialize) {
+        this.generateCompactSpecialize = generateCompactSpecialize;
+    }
+
+    public boolean isGenerateCompactSpecialize() {
+        return generateCompactSpecialize;
+    }
+
     public Map<CacheExpression, String> getSharedCaches() {
         return sharedCaches;
     }
@@ -312,6 +312,9 @@ public final class NodeParser extends AbstractParser<NodeData> {
         if (findFirstAnnotation(lookupTypes, types.SpecializationStatistics_AlwaysEnabled) != null) {
             node.setGenerateStatistics(true);
         }
+        if (findFirstAnnotation(lookupTypes, types.GenerateCompactSpecialize) != null) {
+            node.setGenerateCompactSpecialize(true);
+        }
 
         AnnotationMirror reportPolymorphism = findFirstAnnotation(lookupTypes, types.ReportPolymorphism);
         AnnotationMirror excludePolymorphism = findFirstAnnotation(lookupTypes, types.ReportPolymorphism_Exclude);
@@ -46,6 +46,7 @@
 #include "native.h"
 
 #include <errno.h>
+#include <stdint.h>
 #include <stdlib.h>
 #include <ffi.h>
 #include "internal.h"
@@ -53,9 +54,154 @@
 
 struct cif_data {
     ffi_cif cif;
+    int direct;
+    int directArgsSize;
     ffi_type *args[0];
 };
 
+/*
+ * Signatures with at most MAX_DIRECT_ARGS arguments that only use integer or pointer arguments and
+ * return values can be called without going through ffi_call on platforms where these arguments are
+ * passed in 64-bit integer registers. Each argument is widened to 64 bits according to its type,
+ * and the function is called through a prototype with exactly the number of arguments of the
+ * signature. The decision is made once per signature, when it is prepared. Calls that do not pass
+ * any objects also skip the argument marshalling, see executeDirect.
+ */
+#if (defined(__x86_64__) || defined(_M_X64) || defined(__aarch64__) || defined(_M_ARM64))
+#define DIRECT_CALL_SUPPORTED 1
+#else
+#define DIRECT_CALL_SUPPORTED 0
+#endif
+
+#define MAX_DIRECT_ARGS 6
+
+typedef int64_t (*direct_fn0)(void);
+typedef int64_t (*direct_fn1)(int64_t);
+typedef int64_t (*direct_fn2)(int64_t, int64_t);
+typedef int64_t (*direct_fn3)(int64_t, int64_t, int64_t);
+typedef int64_t (*direct_fn4)(int64_t, int64_t, int64_t, int64_t);
+typedef int64_t (*direct_fn5)(int64_t, int64_t, int64_t, int64_t, int64_t);
+typedef int64_t (*direct_fn6)(int64_t, int64_t, int64_t, int64_t, int64_t, int64_t);
+
+static int is_direct_type(ffi_type *type) {
+    switch (type->type) {
+        case FFI_TYPE_UINT8:
+        case FFI_TYPE_SINT8:
+        case FFI_TYPE_UINT16:
+        case FFI_TYPE_SINT16:
+        case FFI_TYPE_UINT32:
+        case FFI_TYPE_SINT32:
+        case FFI_TYPE_UINT64:
+        case FFI_TYPE_SINT64:
+        case FFI_TYPE_POINTER:
+            return 1;
+        default:
+            return 0;
+    }
+}
+
+static int can_call_direct(ffi_type *ret, int nargs, ffi_type **args) {
+    int i;
+    if (!DIRECT_CALL_SUPPORTED || sizeof(void *) != sizeof(int64_t) || nargs > MAX_DIRECT_ARGS) {
+        return 0;
+    }
+    if (ret->type != FFI_TYPE_VOID && !is_direct_type(ret)) {
+        return 0;
+    }
+    for (i = 0; i < nargs; i++) {
+        if (!is_direct_type(args[i])) {
+            return 0;
+        }
+    }
+    return 1;
+}
+
+static int64_t load_direct_arg(ffi_type *type, const void *ptr) {
+    switch (type->type) {
+        case FFI_TYPE_UINT8:
+            return *((const uint8_t *) ptr);
+        case FFI_TYPE_SINT8:
+            return *((const int8_t *) ptr);
+        case FFI_TYPE_UINT16:
+            return *((const uint16_t *) ptr);
+        case FFI_TYPE_SINT16:
+            return *((const int16_t *) ptr);
+        case FFI_TYPE_UINT32:
+            return *((const uint32_t *) ptr);
+        case FFI_TYPE_SINT32:
+            return *((const int32_t *) ptr);
+        case FFI_TYPE_POINTER:
+            return (int64_t) (intptr_t) *((void * const *) ptr);
+        default:
+            return *((const int64_t *) ptr);
+    }
+}
+
+/*
+ * Stores the return value the same way ffi_call does: small integer types are widened to the full
+ * ffi_arg size.
+ */
+static void store_direct_ret(ffi_type *type, void *ret, int64_t value) {
+    switch (type->type) {
+        case FFI_TYPE_VOID:
+            break;
+        case FFI_TYPE_UINT8:
+            *((ffi_arg *) ret) = (uint8_t) value;
+            break;
+        case FFI_TYPE_SINT8:
+            *((ffi_sarg *) ret) = (int8_t) value;
+            break;
+        case FFI_TYPE_UINT16:
+            *((ffi_arg *) ret) = (uint16_t) value;
+            break;
+        case FFI_TYPE_SINT16:
+            *((ffi_sarg *) ret) = (int16_t) value;
+            break;
+        case FFI_TYPE_UINT32:
+            *((ffi_arg *) ret) = (uint32_t) value;
+            break;
+        case FFI_TYPE_SINT32:
+            *((ffi_sarg *) ret) = (int32_t) value;
+            break;
+        case FFI_TYPE_POINTER:
+            *((void **) ret) = (void *) (intptr_t) value;
+            break;
+        default:
+            *((int64_t *) ret) = value;
+            break;
+    }
+}
+
+static int64_t call_direct(jlong address, unsigned nargs, const int64_t *args) {
+    switch (nargs) {
+        case 0:
+            return ((direct_fn0) address)();
+        case 1:
+            return ((direct_fn1) address)(args[0]);
+        case 2:
+            return ((direct_fn2) address)(args[0], args[1]);
+        case 3:
+            return ((direct_fn3) address)(args[0], args[1], args[2]);
+        case 4:
+            return ((direct_fn4) address)(args[0], args[1], args[2], args[3]);
+        case 5:
+            return ((direct_fn5) address)(args[0], args[1], args[2], args[3], args[4]);
+        default:
+            return ((direct_fn6) address)(args[0], args[1], args[2], args[3], args[4], args[5]);
+    }
+}
+
+static void direct_call(ffi_cif *cif, jlong address, void *ret, void **argPtrs) {
+    int64_t args[MAX_DIRECT_ARGS];
+    int64_t value;
+    unsigned i;
+    for (i = 0; i < cif->nargs; i++) {
+        args[i] = load_direct_arg(cif->arg_types[i], argPtrs[i]);
+    }
+    value = call_direct(address, cif->nargs, args);
+    store_direct_ret(cif->rtype, ret, value);
+}
+
 static int align_up(int index, int alignment) {
     if (index % alignment != 0) {
         index += alignment - (index % alignment);
@@ -63,6 +209,44 @@ static int align_up(int index, int alignment) {
     return index;
 }
 
+/*
+ * The number of bytes of the primitive argument array that are used by a direct signature.
+ */
+static int direct_args_size(int nargs, ffi_type **args) {
+    int primIdx = 0, i;
+    for (i = 0; i < nargs; i++) {
+        primIdx = align_up(primIdx, args[i]->alignment);
+        primIdx += args[i]->size;
+    }
+    return primIdx;
+}
+
+/*
+ * Calls a direct signature without any object arguments. The arguments are copied out of the Java
+ * array and widened in one pass, no argument pointers, patches or releases are needed.
+ */
+static void executeDirect(JNIEnv *env, void *ret, ffi_cif *cif, jlong address, jbyteArray primArgs) {
+    jbyte primArgValues[MAX_DIRECT_ARGS * sizeof(int64_t)];
+    int64_t args[MAX_DIRECT_ARGS];
+    int64_t value;
+    int primIdx, i;
+
+    (*env)->GetByteArrayRegion(env, primArgs, 0, ((struct cif_data *) cif)->directArgsSize, primArgValues);
+
+    primIdx = 0;
+    for (i = 0; i < cif->nargs; i++) {
+        primIdx = align_up(primIdx, cif->arg_types[i]->alignment);
+        args[i] = load_direct_arg(cif->arg_types[i], primArgValues + primIdx);
+        primIdx += cif->arg_types[i]->size;
+    }
+
+    errno = errnoMirror;
+    value = call_direct(address, cif->nargs, args);
+    errnoMirror = errno;
+
+    store_direct_ret(cif->rtype, ret, value);
+}
+
 static void executeHelper(JNIEnv *env, TruffleContext *ctx, void *ret, ffi_cif *cif, jlong address, jbyteArray primArgs, jint patchCount, jintArray patch, jobjectArray objArgs) {
     struct __TruffleEnvInternal truffleEnv;
     void **argPtrs;
@@ -75,6 +259,11 @@ static void executeHelper(JNIEnv *env, TruffleContext *ctx, void *ret, ffi_cif *
     const void **ptrsForRelease;
     int releaseCount;
 
+    if (patchCount == 0 && ((struct cif_data *) cif)->direct) {
+        executeDirect(env, ret, cif, address, primArgs);
+        return;
+    }
+
     truffleEnv.functions = &truffleNativeAPI;
     truffleEnv.context = (struct __TruffleContextInternal *) ctx;
     truffleEnv.jniEnv = env;
@@ -169,7 +358,11 @@ static void executeHelper(JNIEnv *env, TruffleContext *ctx, void *ret, ffi_cif *
 
     errno = errnoMirror;
 
-    ffi_call(cif, (void (*)(void)) address, ret, argPtrs);
+    if (((struct cif_data *) cif)->direct) {
+        direct_call(cif, address, ret, argPtrs);
+    } else {
+        ffi_call(cif, (void (*)(void)) address, ret, argPtrs);
+    }
 
     errnoMirror = errno;
 
@@ -254,6 +447,8 @@ JNIEXPORT jlong JNICALL Java_com_oracle_truffle_nfi_impl_NFIContext_prepareSigna
     ffi_type *ret = (ffi_type*) (*env)->GetLongField(env, retType, ctx->LibFFIType_type);
 
     ffi_status result = ffi_prep_cif(&data->cif, FFI_DEFAULT_ABI, nargs, ret, data->args);
+    data->direct = result == FFI_OK && can_call_direct(ret, nargs, data->args);
+    data->directArgsSize = data->direct ? direct_args_size(nargs, data->args) : 0;
 
     if (result == FFI_OK) {
         return (jlong) data;
@@ -270,6 +465,9 @@ JNIEXPORT jlong JNICALL Java_com_oracle_truffle_nfi_impl_NFIContext_prepareSigna
     ffi_type *ret = (ffi_type*) (*env)->GetLongField(env, retType, ctx->LibFFIType_type);
 
     ffi_status result = ffi_prep_cif_var(&data->cif, FFI_DEFAULT_ABI, nFixedArgs, nargs, ret, data->args);
+    // variadic functions need the full calling convention of libffi
+    data->direct = 0;
+    data->directArgsSize = 0;
 
     if (result == FFI_OK) {
         return (jlong) data;
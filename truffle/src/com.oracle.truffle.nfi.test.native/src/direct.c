@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+#include <stdint.h>
+
+#include "common.h"
+
+/*
+ * Functions with integer and pointer signatures of up to six arguments. These signatures are
+ * called without libffi, the others are called using libffi and serve as reference.
+ */
+
+EXPORT int64_t direct_args0() {
+    return 42;
+}
+
+EXPORT int64_t direct_mixed(int8_t a, uint8_t b, int16_t c, uint16_t d, int32_t e, uint32_t f) {
+    return a + b * 10LL + c * 100LL + d * 1000LL + e * 10000LL + f;
+}
+
+EXPORT int64_t direct_mixed7(int8_t a, uint8_t b, int16_t c, uint16_t d, int32_t e, uint32_t f, int64_t g) {
+    return direct_mixed(a, b, c, d, e, f) + g;
+}
+
+EXPORT int64_t direct_mixed_double(int8_t a, uint8_t b, int16_t c, uint16_t d, int32_t e, double f) {
+    return a + b * 10LL + c * 100LL + d * 1000LL + e * 10000LL + (int64_t) f;
+}
+
+EXPORT int8_t direct_ret_sint8(int32_t arg) {
+    return (int8_t) (arg + 1);
+}
+
+EXPORT uint16_t direct_ret_uint16(int32_t arg) {
+    return (uint16_t) (arg + 1);
+}
+
+EXPORT uint64_t direct_ret_uint64(uint64_t arg) {
+    return arg + 1;
+}
+
+EXPORT int64_t direct_pointer(void *ptr, int64_t offset) {
+    return (int64_t) (intptr_t) ptr + offset;
+}
+
+static int64_t lastVoidArg;
+
+EXPORT void direct_void(int64_t arg) {
+    lastVoidArg = arg;
+}
+
+EXPORT int64_t direct_last_void_arg() {
+    return lastVoidArg;
+}
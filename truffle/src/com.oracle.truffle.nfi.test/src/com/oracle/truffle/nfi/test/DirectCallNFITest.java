@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2020, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * The Universal Permissive License (UPL), Version 1.0
+ *
+ * Subject to the condition set forth below, permission is hereby granted to any
+ * person obtaining a copy of this software, associated documentation and/or
+ * data (collectively the "Software"), free of charge and under any and all
+ * copyright rights in the Software, and any and all patent rights owned or
+ * freely licensable by each licensor hereunder covering either (i) the
+ * unmodified Software as contributed to or provided by such licensor, or (ii)
+ * the Larger Works (as defined below), to deal in both
+ *
+ * (a) the Software, and
+ *
+ * (b) any piece of software and/or hardware listed in the lrgrwrks.txt file if
+ * one is included with the Software each a "Larger Work" to which the Software
+ * is contributed by such licensors),
+ *
+ * without restriction, including without limitation the rights to copy, create
+ * derivative works of, display, perform, and distribute the Software and make,
+ * use, sell, offer for sale, import, export, have made, and have sold the
+ * Software and the Larger Work(s), and to sublicense the foregoing rights on
+ * either these or other terms.
+ *
+ * This license is subject to the following condition:
+ *
+ * The above copyright notice and either this complete permission notice or at a
+ * minimum a reference to the UPL must be included in all copies or substantial
+ * portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.oracle.truffle.nfi.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.oracle.truffle.api.CallTarget;
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.interop.InteropException;
+import com.oracle.truffle.api.interop.InteropLibrary;
+import com.oracle.truffle.nfi.test.interop.NativeVector;
+import com.oracle.truffle.tck.TruffleRunner;
+import com.oracle.truffle.tck.TruffleRunner.Inject;
+
+/**
+ * Tests signatures with up to six integer or pointer arguments, which are called without libffi,
+ * against signatures that are called using libffi.
+ */
+@RunWith(TruffleRunner.class)
+public class DirectCallNFITest extends NFITest {
+
+    private static final Object[] MIXED_ARGS = {(byte) -3, 250, (short) -7, 65000, -100000, 4000000000L};
+
+    private static long mixed(Object[] args) {
+        return ((Number) args[0]).longValue() + ((Number) args[1]).longValue() * 10 + ((Number) args[2]).longValue() * 100 + ((Number) args[3]).longValue() * 1000 +
+                        ((Number) args[4]).longValue() * 10000 + ((Number) args[5]).longValue();
+    }
+
+    public static class NoArgs extends SendExecuteNode {
+
+        public NoArgs() {
+            super("direct_args0", "():sint64");
+        }
+    }
+
+    @Test
+    public void testNoArgs(@Inject(NoArgs.class) CallTarget target) {
+        Assert.assertEquals(42L, target.call());
+    }
+
+    public static class Mixed extends SendExecuteNode {
+
+        public Mixed() {
+            super("direct_mixed", "(sint8, uint8, sint16, uint16, sint32, uint32):sint64");
+        }
+    }
+
+    @Test
+    public void testMixed(@Inject(Mixed.class) CallTarget target) {
+        Assert.assertEquals(mixed(MIXED_ARGS), target.call(MIXED_ARGS));
+    }
+
+    public static class Mixed7 extends SendExecuteNode {
+
+        public Mixed7() {
+            super("direct_mixed7", "(sint8, uint8, sint16, uint16, sint32, uint32, sint64):sint64");
+        }
+    }
+
+    @Test
+    public void testMoreThanSixArgs(@Inject(Mixed7.class) CallTarget target) {
+        Object ret = target.call(MIXED_ARGS[0], MIXED_ARGS[1], MIXED_ARGS[2], MIXED_ARGS[3], MIXED_ARGS[4], MIXED_ARGS[5], 5L);
+        Assert.assertEquals(mixed(MIXED_ARGS) + 5L, ret);
+    }
+
+    public static class MixedDouble extends SendExecuteNode {
+
+        public MixedDouble() {
+            super("direct_mixed_double", "(sint8, uint8, sint16, uint16, sint32, double):sint64");
+        }
+    }
+
+    @Test
+    public void testFloatingPointArg(@Inject(MixedDouble.class) CallTarget target) {
+        Object ret = target.call(MIXED_ARGS[0], MIXED_ARGS[1], MIXED_ARGS[2], MIXED_ARGS[3], MIXED_ARGS[4], 4000000000.0);
+        Assert.assertEquals(mixed(MIXED_ARGS), ret);
+    }
+
+    public static class RetSInt8 extends SendExecuteNode {
+
+        public RetSInt8() {
+            super("direct_ret_sint8", "(sint32):sint8");
+        }
+    }
+
+    @Test
+    public void testNarrowSignedReturn(@Inject(RetSInt8.class) CallTarget target) {
+        Assert.assertEquals((byte) -128, target.call(127));
+        Assert.assertEquals((byte) 0, target.call(-1));
+    }
+
+    public static class RetUInt16 extends SendExecuteNode {
+
+        public RetUInt16() {
+            super("direct_ret_uint16", "(sint32):uint16");
+        }
+    }
+
+    @Test
+    public void testNarrowUnsignedReturn(@Inject(RetUInt16.class) CallTarget target) {
+        Assert.assertEquals(0, target.call(65535));
+        Assert.assertEquals(65535, target.call(65534));
+    }
+
+    public static class RetUInt64 extends SendExecuteNode {
+
+        public RetUInt64() {
+            super("direct_ret_uint64", "(uint64):uint64");
+        }
+    }
+
+    @Test
+    public void testUInt64(@Inject(RetUInt64.class) CallTarget target) {
+        Assert.assertEquals(Long.MIN_VALUE, target.call(Long.MAX_VALUE));
+    }
+
+    public static class Pointer extends SendExecuteNode {
+
+        public Pointer() {
+            super("direct_pointer", "(pointer, sint64):sint64");
+        }
+    }
+
+    @Test
+    public void testNativePointer(@Inject(Pointer.class) CallTarget target) {
+        try (NativeVector vector = new NativeVector(new double[2])) {
+            vector.toNative();
+            Assert.assertEquals(vector.asPointer() + 8, target.call(vector, 8L));
+        }
+    }
+
+    public static class TestVoid extends NFITestRootNode {
+
+        private final Object directVoid = lookupAndBind("direct_void", "(sint64):void");
+        @Child InteropLibrary directVoidInterop = getInterop(directVoid);
+
+        private final Object lastVoidArg = lookupAndBind("direct_last_void_arg", "():sint64");
+        @Child InteropLibrary lastVoidArgInterop = getInterop(lastVoidArg);
+
+        @Override
+        public Object executeTest(VirtualFrame frame) throws InteropException {
+            directVoidInterop.execute(directVoid, frame.getArguments()[0]);
+            return lastVoidArgInterop.execute(lastVoidArg);
+        }
+    }
+
+    @Test
+    public void testVoid(@Inject(TestVoid.class) CallTarget target) {
+        Assert.assertEquals(-17L, target.call(-17L));
+    }
+}